@@ -0,0 +1,98 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.ws.rs.core.MultivaluedHashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Results;
+import com.pinguela.reflejovision.rest.bench.stub.StubData;
+import com.pinguela.reflejovision.rest.encoding.CborMessageBodyWriter;
+import com.pinguela.reflejovision.rest.encoding.CompressionFilter;
+
+/**
+ * CPU y tamaño de una página de productos con sus consumos en cada formato
+ * (JSON-B o CBOR) y codificación (sin comprimir, gzip o deflate), tal como la
+ * escriben los proveedores y el {@link CompressionFilter} de la aplicación.
+ * <p>
+ * El tiempo medido es el de serializar y comprimir; el tamaño de cada
+ * combinación se imprime al preparar el benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+	private static final String IDENTITY = "identity";
+
+	@Param({ "json", "cbor" })
+	private String format;
+
+	@Param({ IDENTITY, CompressionFilter.GZIP, CompressionFilter.DEFLATE })
+	private String encoding;
+
+	@Param({ "10", "100" })
+	private int pageSize;
+
+	private Jsonb jsonb;
+	private CborMessageBodyWriter cborWriter;
+	private Results<Producto> results;
+
+	@Setup
+	public void setup() throws IOException {
+		jsonb = JsonbBuilder.create();
+		cborWriter = new CborMessageBodyWriter();
+		results = new Results<Producto>();
+		results.setPage(StubData.productos(pageSize, 300));
+		results.setTotal(pageSize * 10);
+		System.out.printf("%n%s/%s/%d: %d bytes%n", format, encoding, pageSize, encode().length);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public byte[] encode() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+		OutputStream out = bytes;
+		if (CompressionFilter.GZIP.equals(encoding)) {
+			out = new GZIPOutputStream(bytes, 8192, true);
+		} else if (CompressionFilter.DEFLATE.equals(encoding)) {
+			out = new DeflaterOutputStream(bytes, true);
+		}
+		if ("cbor".equals(format)) {
+			cborWriter.writeTo(results, Results.class, Results.class, null, CborMessageBodyWriter.APPLICATION_CBOR_TYPE,
+					new MultivaluedHashMap<String, Object>(), out);
+		} else {
+			jsonb.toJson(results, out);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Results;
+import com.pinguela.reflejovision.rest.bench.stub.StubData;
+import com.pinguela.reflejovision.rest.encoding.JacksonJsonProvider;
+
+/**
+ * Escritura y lectura JSON de las entidades que devuelven y reciben los
+ * recursos con los dos proveedores de json.provider: JSON-B (Yasson) y el
+ * {@link JacksonJsonProvider}, con sus ObjectWriter y ObjectReader
+ * precalculados.
+ * <p>
+ * Se escribe sobre un stream, como en la respuesta, y no a un String.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonProviderBenchmark {
+
+	@Param({ JacksonJsonProvider.JSONB, JacksonJsonProvider.JACKSON })
+	private String provider;
+
+	@Param({ "producto", "materiaPrima", "usuario", "results" })
+	private String payload;
+
+	private Jsonb jsonb;
+	private Object value;
+	private Type type;
+	private ObjectWriter writer;
+	private ObjectReader reader;
+	private byte[] json;
+
+	@Setup
+	public void setup() throws IOException {
+		jsonb = JsonbBuilder.create();
+		switch (payload) {
+		case "producto":
+			value = StubData.producto(1, 300);
+			break;
+		case "materiaPrima":
+			value = StubData.materiaPrima(1);
+			break;
+		case "usuario":
+			value = StubData.usuario(1);
+			break;
+		default:
+			Results<Producto> results = new Results<Producto>();
+			results.setPage(StubData.productos(50, 300));
+			results.setTotal(500);
+			value = results;
+			type = new TypeReference<Results<Producto>>() {
+			}.getType();
+		}
+		if (type == null) {
+			type = value.getClass();
+		}
+		writer = JacksonJsonProvider.writerFor(type);
+		reader = JacksonJsonProvider.readerFor(type);
+		json = write().toByteArray();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream write() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+		if (JacksonJsonProvider.JACKSON.equals(provider)) {
+			writer.writeValue(out, value);
+		} else {
+			jsonb.toJson(value, type, out);
+		}
+		return out;
+	}
+
+	@Benchmark
+	public Object read() throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream(json);
+		if (JacksonJsonProvider.JACKSON.equals(provider)) {
+			return reader.readValue(in);
+		}
+		return jsonb.fromJson(in, type);
+	}
+
+}
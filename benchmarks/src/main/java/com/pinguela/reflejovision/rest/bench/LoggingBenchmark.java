@@ -0,0 +1,87 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.glassfish.jersey.test.JerseyTest;
+import org.glassfish.jersey.test.inmemory.InMemoryTestContainerFactory;
+import org.glassfish.jersey.test.spi.TestContainerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pinguela.reflejovision.rest.bench.stub.StubServiceBinder;
+import com.pinguela.reflejovision.rest.conf.ReflejoVisionApplication;
+
+/**
+ * Throughput de GET /producto/{id} con la configuración de log anterior
+ * (sync: TRACE, fichero síncrono y ubicación de cada traza) frente a la actual
+ * (async: loggers asíncronos a nivel INFO). Ambas escriben en
+ * target/bench-logs, así que el coste de disco entra en la medida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+	@Param({ "sync", "async" })
+	public String logging;
+
+	private JerseyTest jersey;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Configurator.reconfigure(getClass().getResource("/log4j2-" + logging + ".properties").toURI());
+
+		jersey = new JerseyTest() {
+			@Override
+			protected Application configure() {
+				return new ReflejoVisionApplication().register(new StubServiceBinder());
+			}
+
+			@Override
+			protected TestContainerFactory getTestContainerFactory() {
+				return new InMemoryTestContainerFactory();
+			}
+		};
+		jersey.setUp();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		jersey.tearDown();
+	}
+
+	@Benchmark
+	public String findById() {
+		Response response = jersey.target("producto/42").request(MediaType.APPLICATION_JSON).get();
+		try {
+			if (response.getStatus() >= 400) {
+				throw new IllegalStateException("HTTP " + response.getStatus());
+			}
+			return response.readEntity(String.class);
+		} finally {
+			response.close();
+		}
+	}
+
+}
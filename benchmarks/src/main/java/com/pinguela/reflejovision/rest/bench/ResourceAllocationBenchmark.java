@@ -0,0 +1,64 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.internal.inject.InjectionManager;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.luis.reflejovision.service.ProductoService;
+import com.pinguela.reflejovision.rest.api.ProductoResource;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.conf.ReflejoVisionApplication;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.service.impl.CachedProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedStockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.ProductoQueryServiceImpl;
+
+/**
+ * Compara el coste por petición de construir el recurso con sus servicios
+ * (comportamiento anterior, un recurso por petición) frente a obtener los
+ * servicios singleton de HK2. Ejecutar con {@code -prof gc} para ver los bytes
+ * asignados por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceAllocationBenchmark {
+
+	private InjectionManager injectionManager;
+	private AsyncExecutors asyncExecutors;
+
+	@Setup
+	public void setup() {
+		injectionManager = new ApplicationHandler(new ReflejoVisionApplication()).getInjectionManager();
+		asyncExecutors = injectionManager.getInstance(AsyncExecutors.class);
+	}
+
+	@Benchmark
+	public ProductoResource recursoPorPeticion() {
+		return new ProductoResource(new CachedProductoServiceImpl(), new ProductoQueryServiceImpl(),
+				new CachedStockServiceImpl(), asyncExecutors);
+	}
+
+	@Benchmark
+	public ProductoResource recursoInyectado() {
+		return new ProductoResource(injectionManager.getInstance(ProductoService.class),
+				injectionManager.getInstance(ProductoQueryService.class),
+				injectionManager.getInstance(StockService.class), asyncExecutors);
+	}
+
+}
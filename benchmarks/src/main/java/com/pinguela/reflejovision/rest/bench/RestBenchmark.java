@@ -0,0 +1,110 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Form;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.jersey.test.JerseyTest;
+import org.glassfish.jersey.test.inmemory.InMemoryTestContainerFactory;
+import org.glassfish.jersey.test.spi.TestContainerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pinguela.reflejovision.rest.bench.stub.StubServiceBinder;
+import com.pinguela.reflejovision.rest.conf.ReflejoVisionApplication;
+
+/**
+ * Peticiones completas (enrutado, parámetros, executor asíncrono, servicio y
+ * serialización JSON-B) contra la aplicación real desplegada en el contenedor
+ * en memoria de Jersey. Los servicios de productos y materias primas son los de
+ * {@link StubServiceBinder}, de modo que no interviene la base de datos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestBenchmark {
+
+	private JerseyTest jersey;
+	private Form materiaPrima;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		jersey = new JerseyTest() {
+			@Override
+			protected Application configure() {
+				return new ReflejoVisionApplication().register(new StubServiceBinder());
+			}
+
+			@Override
+			protected TestContainerFactory getTestContainerFactory() {
+				return new InMemoryTestContainerFactory();
+			}
+		};
+		jersey.setUp();
+
+		materiaPrima = new Form();
+		materiaPrima.param("nombre_es", "Harina");
+		materiaPrima.param("nombre_en", "Flour");
+		materiaPrima.param("nombre_gl", "Fariña");
+		materiaPrima.param("precio", "1.25");
+		materiaPrima.param("unidades", "100");
+		materiaPrima.param("unidadMedida", "1");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		jersey.tearDown();
+	}
+
+	@Benchmark
+	public String findById() {
+		return read(jersey.target("producto/42").request(MediaType.APPLICATION_JSON).get());
+	}
+
+	@Benchmark
+	public String findByCriteria() {
+		return read(jersey.target("producto/search").queryParam("nombre", "Producto").queryParam("limit", 20)
+				.request(MediaType.APPLICATION_JSON).get());
+	}
+
+	@Benchmark
+	public String createMateriaPrima() {
+		return read(jersey.target("materiaprima").request(MediaType.APPLICATION_JSON)
+				.post(Entity.form(materiaPrima)));
+	}
+
+	@Benchmark
+	public String updateStock() {
+		return read(jersey.target("producto/update-stock/42/1/es").request(MediaType.APPLICATION_JSON)
+				.put(Entity.text("")));
+	}
+
+	private String read(Response response) {
+		try {
+			if (response.getStatus() >= 400) {
+				throw new IllegalStateException("HTTP " + response.getStatus());
+			}
+			return response.readEntity(String.class);
+		} finally {
+			response.close();
+		}
+	}
+
+}
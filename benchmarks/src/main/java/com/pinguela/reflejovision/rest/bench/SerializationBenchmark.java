@@ -0,0 +1,61 @@
+package com.pinguela.reflejovision.rest.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Results;
+import com.pinguela.reflejovision.rest.bench.stub.StubData;
+
+/**
+ * Serialización JSON-B (Yasson) de una página de productos con sus consumos,
+ * tal como la devuelven las búsquedas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	@Param({ "10", "100" })
+	private int pageSize;
+
+	private Jsonb jsonb;
+	private Results<Producto> results;
+
+	@Setup
+	public void setup() {
+		jsonb = JsonbBuilder.create();
+		results = new Results<Producto>();
+		results.setPage(StubData.productos(pageSize, 300));
+		results.setTotal(pageSize * 10);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		jsonb.close();
+	}
+
+	@Benchmark
+	public String toJson() {
+		return jsonb.toJson(results);
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.pinguela.reflejovision.rest.bench.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Usuario;
+
+/**
+ * Datos de prueba deterministas: productos con tres consumos cada uno,
+ * materias primas con sus tres traducciones y usuarios.
+ */
+public class StubData {
+
+	public static final int CONSUMOS_POR_PRODUCTO = 3;
+	private static final String[] LOCALES = { "es", "en", "gl_ES" };
+
+	public static final Producto producto(long id, int materiasPrimas) {
+		Producto p = new Producto();
+		p.setId(id);
+		p.setNombre("Producto " + id);
+		p.setPrecio(10d + id % 90);
+		p.setUnidades(1000);
+		List<ConsumoDTO> consumos = new ArrayList<ConsumoDTO>();
+		for (int i = 0; i < CONSUMOS_POR_PRODUCTO; i++) {
+			long idMateriaPrima = 1 + (id * CONSUMOS_POR_PRODUCTO + i) % materiasPrimas;
+			ConsumoDTO consumo = new ConsumoDTO();
+			consumo.setIdProducto(id);
+			consumo.setIdMateriaPrima(idMateriaPrima);
+			consumo.setNombreMateriaPrima("Materia prima " + idMateriaPrima);
+			consumo.setIdUnidadMedidaMp(1);
+			consumo.setPrecioMateriaPrima(1.5d);
+			consumo.setUnidades(0.5d);
+			consumos.add(consumo);
+		}
+		p.setConsumos(consumos);
+		return p;
+	}
+
+	public static final MateriaPrimaDTO materiaPrima(long id) {
+		MateriaPrimaDTO mp = new MateriaPrimaDTO();
+		mp.setId(id);
+		mp.setNombre("Materia prima " + id);
+		mp.setPrecio(1.5d);
+		mp.setUnidades(1000000);
+		mp.setIdUnidadMedida(1L);
+		List<MateriaPrimaIdioma> traducciones = new ArrayList<MateriaPrimaIdioma>();
+		for (String locale : LOCALES) {
+			MateriaPrimaIdioma traduccion = new MateriaPrimaIdioma();
+			traduccion.setIdMateriaPrima(id);
+			traduccion.setLocale(locale);
+			traduccion.setNombre("Materia prima " + id + " (" + locale + ")");
+			traducciones.add(traduccion);
+		}
+		mp.setTraducciones(traducciones);
+		return mp;
+	}
+
+	public static final Usuario usuario(long id) {
+		Usuario u = new Usuario();
+		u.setId(id);
+		u.setUsername("usuario" + id);
+		u.setNombre("Usuario " + id);
+		u.setCorreo("usuario" + id + "@reflejovision.com");
+		u.setRol(1L);
+		return u;
+	}
+
+	public static final List<Producto> productos(int n, int materiasPrimas) {
+		List<Producto> productos = new ArrayList<Producto>(n);
+		for (long id = 1; id <= n; id++) {
+			productos.add(producto(id, materiasPrimas));
+		}
+		return productos;
+	}
+
+}
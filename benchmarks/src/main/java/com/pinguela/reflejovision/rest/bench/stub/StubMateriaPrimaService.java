@@ -0,0 +1,65 @@
+package com.pinguela.reflejovision.rest.bench.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.MateriaPrimaService;
+
+/**
+ * MateriaPrimaService en memoria. Las materias primas creadas no se guardan,
+ * para que el benchmark de creación no haga crecer el heap.
+ */
+public class StubMateriaPrimaService implements MateriaPrimaService {
+
+	private final Map<Long, MateriaPrimaDTO> materiasPrimas = new ConcurrentHashMap<Long, MateriaPrimaDTO>();
+	private final AtomicLong ids;
+
+	public StubMateriaPrimaService(int n) {
+		for (long id = 1; id <= n; id++) {
+			materiasPrimas.put(id, StubData.materiaPrima(id));
+		}
+		ids = new AtomicLong(n);
+	}
+
+	@Override
+	public MateriaPrimaDTO findbyId(Long id, String locale) throws DataException {
+		return materiasPrimas.get(id);
+	}
+
+	@Override
+	public Results<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, int pos, int pageSize)
+			throws DataException {
+		List<MateriaPrimaDTO> page = new ArrayList<MateriaPrimaDTO>(pageSize);
+		for (long id = pos; id < pos + pageSize && materiasPrimas.containsKey(id); id++) {
+			page.add(materiasPrimas.get(id));
+		}
+		Results<MateriaPrimaDTO> results = new Results<MateriaPrimaDTO>();
+		results.setPage(page);
+		results.setTotal(materiasPrimas.size());
+		return results;
+	}
+
+	@Override
+	public Long create(MateriaPrimaDTO mp) throws DataException {
+		mp.setId(ids.incrementAndGet());
+		return mp.getId();
+	}
+
+	@Override
+	public boolean update(MateriaPrimaDTO mp) throws DataException {
+		return materiasPrimas.replace(mp.getId(), mp) != null;
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		return materiasPrimas.remove(id) != null;
+	}
+
+}
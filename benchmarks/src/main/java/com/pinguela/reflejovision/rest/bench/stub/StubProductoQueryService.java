@@ -0,0 +1,65 @@
+package com.pinguela.reflejovision.rest.bench.stub;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+
+/**
+ * ProductoQueryService en memoria: pagina por id sobre una lista fija.
+ */
+public class StubProductoQueryService implements ProductoQueryService {
+
+	private final List<Producto> productos;
+
+	public StubProductoQueryService(List<Producto> productos) {
+		this.productos = productos;
+	}
+
+	@Override
+	public CursorResults<Producto> findBy(ProductoCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException {
+		Long afterId = CursorUtils.decodeId(cursor);
+		int from = afterId == null ? 0 : afterId.intValue();
+		int to = Math.min(from + limit, productos.size());
+
+		CursorResults<Producto> results = new CursorResults<Producto>();
+		results.setPage(productos.subList(Math.min(from, to), to));
+		if (to < productos.size()) {
+			results.setNextCursor(CursorUtils.encodeId(productos.get(to - 1).getId()));
+		}
+		if (count) {
+			results.setTotal(productos.size());
+		}
+		return results;
+	}
+
+	@Override
+	public void export(ProductoCriteria criteria, boolean prefijo, RowHandler<Producto> handler)
+			throws DataException, IOException {
+		for (Producto p : productos) {
+			handler.process(p);
+		}
+	}
+
+	@Override
+	public Map<Long, Producto> findByIds(Collection<Long> ids) throws DataException {
+		Map<Long, Producto> encontrados = new HashMap<Long, Producto>();
+		for (Long id : ids) {
+			if (id > 0 && id <= productos.size()) {
+				encontrados.put(id, productos.get(id.intValue() - 1));
+			}
+		}
+		return encontrados;
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.pinguela.reflejovision.rest.bench.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+
+/**
+ * ProductoService en memoria, para medir la capa REST sin base de datos.
+ */
+public class StubProductoService implements ProductoService {
+
+	private final Map<Long, Producto> productos = new ConcurrentHashMap<Long, Producto>();
+	private final AtomicLong ids;
+
+	public StubProductoService(List<Producto> productos) {
+		for (Producto p : productos) {
+			this.productos.put(p.getId(), p);
+		}
+		ids = new AtomicLong(productos.size());
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return productos.get(id);
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		List<Producto> page = new ArrayList<Producto>(pageSize);
+		for (long id = pos; id < pos + pageSize && productos.containsKey(id); id++) {
+			page.add(productos.get(id));
+		}
+		Results<Producto> results = new Results<Producto>();
+		results.setPage(page);
+		results.setTotal(productos.size());
+		return results;
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		p.setId(ids.incrementAndGet());
+		return p.getId();
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		return productos.replace(p.getId(), p) != null;
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+		productos.computeIfPresent(id, (k, p) -> {
+			p.setUnidades(p.getUnidades() + variacionStock);
+			return p;
+		});
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		return productos.remove(id) != null;
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.pinguela.reflejovision.rest.bench.stub;
+
+import java.util.List;
+
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.luis.reflejovision.service.ProductoService;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+
+/**
+ * Sustituye los servicios de productos y materias primas por implementaciones
+ * en memoria. Se registra junto al ServiceBinder de la aplicación con mayor
+ * prioridad, de modo que el resto de servicios siguen siendo los reales.
+ */
+public class StubServiceBinder extends AbstractBinder {
+
+	public static final int PRODUCTOS = 1000;
+	public static final int MATERIAS_PRIMAS = 300;
+
+	private static final int RANKING = 100;
+
+	@Override
+	protected void configure() {
+		List<Producto> productos = StubData.productos(PRODUCTOS, MATERIAS_PRIMAS);
+		bind(new StubProductoService(productos)).to(ProductoService.class).ranked(RANKING);
+		bind(new StubProductoQueryService(productos)).to(ProductoQueryService.class).ranked(RANKING);
+		bind(new StubMateriaPrimaService(MATERIAS_PRIMAS)).to(MateriaPrimaService.class).ranked(RANKING);
+	}
+
+}
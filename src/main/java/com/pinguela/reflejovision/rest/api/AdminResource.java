@@ -0,0 +1,212 @@
+package com.pinguela.reflejovision.rest.api;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import com.pinguela.reflejovision.rest.async.AsyncExecutorStats;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.CacheStats;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.dao.StatementStats;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyStats;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyStore;
+import com.pinguela.reflejovision.rest.model.LoggerLevel;
+import com.pinguela.reflejovision.rest.pool.ConnectionPoolStats;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.ratelimit.ConcurrencyLimiter;
+import com.pinguela.reflejovision.rest.ratelimit.ConcurrencyStats;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimiter;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimiterStats;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.stock.StockLedgerStats;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+@Path("/admin")
+@Singleton
+public class AdminResource {
+
+	private static Logger logger = LogManager.getLogger(AdminResource.class);
+
+	/**
+	 * Nombre con el que se indica el logger raíz en /admin/log-level.
+	 */
+	private static final String ROOT = "root";
+
+	private Provider<StockLedger> stockLedger = null;
+	private AsyncExecutors asyncExecutors = null;
+	private Provider<IdempotencyStore> idempotencyStore = null;
+	private Provider<RateLimiter> rateLimiter = null;
+	private Provider<ConcurrencyLimiter> concurrencyLimiter = null;
+
+	@Inject
+	public AdminResource(Provider<StockLedger> stockLedger, AsyncExecutors asyncExecutors,
+			Provider<IdempotencyStore> idempotencyStore, Provider<RateLimiter> rateLimiter,
+			Provider<ConcurrencyLimiter> concurrencyLimiter) {
+		this.stockLedger = stockLedger;
+		this.asyncExecutors = asyncExecutors;
+		this.idempotencyStore = idempotencyStore;
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	@GET
+	@Path("/cache")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estadísticas de las cachés", description = "Devuelve, para cada caché de lectura, su tamaño y los contadores de aciertos, fallos, expulsiones, caducidades e invalidaciones.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estadísticas de las cachés", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = CacheStats.class)))) })
+	public Response getCacheStats() {
+		List<CacheStats> stats = CacheManager.getStats();
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/stock")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado del ledger de stock", description = "Devuelve el número de productos y materias primas en memoria, las variaciones pendientes de escribir y los contadores de escritura del ledger de stock.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado del ledger", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = StockLedgerStats.class))),
+			@ApiResponse(responseCode = "404", description = "El ledger de stock no está activo (stock.engine=jdbc)") })
+	public Response getStockLedgerStats() {
+		StockLedger ledger = stockLedger.get();
+		if (ledger == null) {
+			return Response.status(Status.NOT_FOUND).entity("El ledger de stock no está activo.").build();
+		}
+		return Response.ok(ledger.getStats()).build();
+	}
+
+	@GET
+	@Path("/idempotency")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado de las Idempotency-Key", description = "Devuelve las claves en memoria y las que siguen en curso, y los contadores de peticiones nuevas, respuestas repetidas, reintentos rechazados por estar en curso (409) o por ser otra petición (422), claves liberadas tras un error y errores de la tabla IDEMPOTENCY_KEY.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado de las Idempotency-Key", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = IdempotencyStats.class))),
+			@ApiResponse(responseCode = "404", description = "Las Idempotency-Key no están activas (idempotency.enabled=false)") })
+	public Response getIdempotencyStats() {
+		IdempotencyStore store = idempotencyStore.get();
+		if (store == null) {
+			return Response.status(Status.NOT_FOUND).entity("Las Idempotency-Key no están activas.").build();
+		}
+		return Response.ok(store.getStats()).build();
+	}
+
+	@GET
+	@Path("/ratelimit")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado del límite de peticiones", description = "Devuelve los clientes con bucket en memoria y los contadores de peticiones admitidas, rechazadas (429) y admitidas sin límite por superar ratelimit.maxClients.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado del límite de peticiones", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = RateLimiterStats.class))),
+			@ApiResponse(responseCode = "404", description = "El límite de peticiones no está activo (ratelimit.enabled=false)") })
+	public Response getRateLimitStats() {
+		RateLimiter limiter = rateLimiter.get();
+		if (limiter == null) {
+			return Response.status(Status.NOT_FOUND).entity("El límite de peticiones no está activo.").build();
+		}
+		return Response.ok(limiter.getStats()).build();
+	}
+
+	@GET
+	@Path("/concurrency")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Peticiones en curso por grupo", description = "Devuelve, para las lecturas, las búsquedas y las escrituras, el máximo de peticiones en curso, las que hay ahora y las rechazadas (503) por estar lleno.", responses = {
+			@ApiResponse(responseCode = "200", description = "Peticiones en curso por grupo", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = ConcurrencyStats.class)))),
+			@ApiResponse(responseCode = "404", description = "El límite de peticiones en curso no está activo (concurrency.enabled=false)") })
+	public Response getConcurrencyStats() {
+		ConcurrencyLimiter limiter = concurrencyLimiter.get();
+		if (limiter == null) {
+			return Response.status(Status.NOT_FOUND).entity("El límite de peticiones en curso no está activo.")
+					.build();
+		}
+		return Response.ok(limiter.getStats()).build();
+	}
+
+	@GET
+	@Path("/async")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado de los executors", description = "Devuelve, para cada executor de peticiones, su capacidad, las tareas activas y en espera, y los contadores de completadas, rechazadas (503) y timeouts.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado de los executors", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = AsyncExecutorStats.class)))) })
+	public Response getAsyncStats() {
+		List<AsyncExecutorStats> stats = asyncExecutors.getStats();
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/pool")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado de los pools de conexiones", description = "Devuelve, para cada pool de conexiones, su implementación y tamaño, las conexiones activas e inactivas, los hilos esperando una conexión y el histograma del tiempo que tarda la aplicación en obtenerla.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado de los pools", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = ConnectionPoolStats.class)))) })
+	public Response getPoolStats() {
+		List<ConnectionPoolStats> stats = ConnectionPools.getStats();
+		return Response.ok(stats).build();
+	}
+
+	@GET
+	@Path("/statements")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Sentencias preparadas", description = "Devuelve cuántas sentencias SQL distintas ha preparado la aplicación, la proporción de sentencias distintas sobre preparaciones y las sentencias más frecuentes. Con server=true incluye los contadores Com_stmt_prepare y Com_stmt_execute de MySQL, que miden cuántas ejecuciones no han necesitado preparar la sentencia en el servidor.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estadísticas de las sentencias", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = StatementStats.class))) })
+	public Response getStatementStats(
+			@Parameter(description = "Número de sentencias más frecuentes que se devuelven") @QueryParam("top") @DefaultValue("20") int top,
+			@Parameter(description = "Consultar también los contadores del servidor") @QueryParam("server") boolean server) {
+		return Response.ok(SqlShapes.getStats(Math.max(0, top), server)).build();
+	}
+
+	@GET
+	@Path("/log-level/{logger}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Nivel de log de un logger", description = "Devuelve el nivel efectivo de un logger (por ejemplo com.pinguela.reflejovision.rest.api, o root para el logger raíz).", responses = {
+			@ApiResponse(responseCode = "200", description = "Nivel del logger", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = LoggerLevel.class))) })
+	public Response getLogLevel(
+			@Parameter(description = "Nombre del logger o root", required = true) @PathParam("logger") String loggerName) {
+		return Response.ok(toLoggerLevel(loggerName)).build();
+	}
+
+	@PUT
+	@Path("/log-level/{logger}/{level}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Cambiar el nivel de log", description = "Cambia en caliente el nivel de un logger y de sus descendientes, sin redesplegar. El cambio se pierde si se modifica log4j2.properties, porque log4j2 vuelve a cargar la configuración del fichero.", responses = {
+			@ApiResponse(responseCode = "200", description = "Nivel cambiado", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = LoggerLevel.class))),
+			@ApiResponse(responseCode = "400", description = "Nivel de log no válido") })
+	public Response setLogLevel(
+			@Parameter(description = "Nombre del logger o root", required = true) @PathParam("logger") String loggerName,
+			@Parameter(description = "Nivel: OFF, FATAL, ERROR, WARN, INFO, DEBUG, TRACE o ALL", required = true) @PathParam("level") String levelName) {
+		Level level = Level.toLevel(levelName, null);
+		if (level == null) {
+			return Response.status(Status.BAD_REQUEST).entity("Nivel de log no válido: " + levelName).build();
+		}
+		if (ROOT.equalsIgnoreCase(loggerName)) {
+			Configurator.setRootLevel(level);
+		} else {
+			Configurator.setAllLevels(loggerName, level);
+		}
+		logger.warn("Nivel de log de {} cambiado a {}", loggerName, level);
+		return Response.ok(toLoggerLevel(loggerName)).build();
+	}
+
+	private LoggerLevel toLoggerLevel(String loggerName) {
+		Logger l = ROOT.equalsIgnoreCase(loggerName) ? LogManager.getRootLogger() : LogManager.getLogger(loggerName);
+		return new LoggerLevel(loggerName, l.getLevel().name());
+	}
+
+}
@@ -0,0 +1,250 @@
+package com.pinguela.reflejovision.rest.api;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.PinguelaException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.service.ConsumoService;
+import com.luis.reflejovision.service.ProductoService;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.idempotency.Idempotent;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimited;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.util.LocaleUtils;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+@Path("/consumo")
+@Singleton
+@RateLimited
+public class ConsumoResource {
+
+	private ConsumoService consumoService = null;
+	private ProductoService productoService = null;
+	private StockService stockService = null;
+	private TranslationTable translationTable = null;
+	private AsyncExecutors asyncExecutors = null;
+	private static Logger logger = LogManager.getLogger(ConsumoResource.class);
+
+	private static final String ACCEPT_LANGUAGE = "Accept-Language";
+	private static final String LOCALE_DESCRIPTION = "Idioma del nombre de las materias primas (por defecto, el de Accept-Language)";
+
+	@Inject
+	public ConsumoResource(ConsumoService consumoService, ProductoService productoService,
+			StockService stockService, TranslationTable translationTable, AsyncExecutors asyncExecutors) {
+		this.consumoService = consumoService;
+		this.productoService = productoService;
+		this.stockService = stockService;
+		this.translationTable = translationTable;
+		this.asyncExecutors = asyncExecutors;
+	}
+
+	@GET
+	@Path("/{idProducto}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Obtener los consumos de un producto", description = "Este endpoint devuelve las materias primas que consume una unidad del producto y en qué cantidad, con el nombre de cada materia prima en el idioma indicado en locale o, si no se indica, en Accept-Language. Se sirve de la tabla de consumos en memoria.", responses = {
+			@ApiResponse(responseCode = "200", description = "Consumos del producto", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = ConsumoDTO.class)))),
+			@ApiResponse(responseCode = "400", description = "Idioma no soportado"),
+			@ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar obtener los consumos") })
+	public void findByProducto(
+			@Parameter(description = "ID del producto", required = true) @PathParam("idProducto") Long idProducto,
+			@Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+			@Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			try {
+				if (productoService.findById(idProducto) == null) {
+					logger.warn("Producto con ID {} no encontrado.", idProducto);
+					return Response.status(Status.NOT_FOUND).entity("Producto con ID " + idProducto + " no encontrado.")
+							.build();
+				}
+				List<ConsumoDTO> consumos = consumoService.findByProducto(idProducto);
+				for (ConsumoDTO consumo : consumos) {
+					consumo.setNombreMateriaPrima(translationTable.getNombre(consumo.getIdMateriaPrima(), idioma));
+				}
+				return Response.ok(consumos).language(LocaleUtils.toLanguageTag(idioma))
+						.header(HttpHeaders.VARY, ACCEPT_LANGUAGE).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al buscar los consumos del producto con ID: {}", idProducto, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al buscar los consumos: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al buscar los consumos del producto con ID: {}", idProducto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al buscar los consumos: " + e.getMessage()).build();
+			}
+		});
+	}
+
+	@GET
+	@Path("/{idProducto}/fabricables")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Unidades fabricables de un producto", description = "Este endpoint calcula cuántas unidades del producto se pueden fabricar ahora mismo con el stock de las materias primas que consume, e indica la materia prima que lo limita. Si el producto no consume ninguna materia prima no hay límite y unidades no se devuelve. No reserva stock.", responses = {
+			@ApiResponse(responseCode = "200", description = "Unidades fabricables", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Fabricables.class))),
+			@ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar calcular las unidades") })
+	public void findFabricables(
+			@Parameter(description = "ID del producto", required = true) @PathParam("idProducto") Long idProducto,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				Fabricables fabricables = stockService.findFabricables(idProducto);
+				if (fabricables == null) {
+					logger.warn("Producto con ID {} no encontrado.", idProducto);
+					return Response.status(Status.NOT_FOUND).entity("Producto con ID " + idProducto + " no encontrado.")
+							.build();
+				}
+				return Response.ok(fabricables).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al calcular las unidades fabricables del producto con ID: {}", idProducto, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al calcular las unidades fabricables: " + pe.getMessage())
+						.build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al calcular las unidades fabricables del producto con ID: {}",
+						idProducto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al calcular las unidades fabricables: "
+								+ e.getMessage())
+						.build();
+			}
+		});
+	}
+
+	@POST
+	@Path("/{idProducto}")
+	@Idempotent
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Añadir consumos a un producto", description = "Este endpoint añade al producto los consumos indicados: para cada materia prima, las unidades que consume una unidad del producto. Las materias primas no pueden repetirse ni estar ya entre los consumos del producto.", responses = {
+			@ApiResponse(responseCode = "201", description = "Consumos creados"),
+			@ApiResponse(responseCode = "400", description = "Lista vacía, materia prima no indicada o repetida, o unidades no mayores que 0"),
+			@ApiResponse(responseCode = "404", description = "Producto no encontrado"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar crear los consumos") })
+	public void create(
+			@Parameter(description = "ID del producto", required = true) @PathParam("idProducto") Long idProducto,
+			@RequestBody(description = "Consumos a añadir", required = true) List<ConsumoDTO> consumos,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String error = validate(consumos);
+			if (error != null) {
+				return Response.status(Status.BAD_REQUEST).entity(error).build();
+			}
+			try {
+				logger.info("Intentando añadir {} consumos al producto con ID: {}", consumos.size(), idProducto);
+				if (productoService.findById(idProducto) == null) {
+					logger.warn("Producto con ID {} no encontrado.", idProducto);
+					return Response.status(Status.NOT_FOUND).entity("Producto con ID " + idProducto + " no encontrado.")
+							.build();
+				}
+				consumoService.create(idProducto, consumos);
+				logger.info("Consumos añadidos al producto con ID: {}", idProducto);
+				return Response.status(Status.CREATED)
+						.entity("Consumos creados exitosamente para el producto ID: " + idProducto).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al crear los consumos del producto con ID: {}", idProducto, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al crear los consumos: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al crear los consumos del producto con ID: {}", idProducto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al crear los consumos: " + e.getMessage()).build();
+			}
+		});
+	}
+
+	@DELETE
+	@Path("/{idProducto}")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Eliminar los consumos de un producto", description = "Este endpoint elimina todos los consumos de materias primas del producto.", responses = {
+			@ApiResponse(responseCode = "200", description = "Consumos eliminados"),
+			@ApiResponse(responseCode = "404", description = "El producto no tiene consumos"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar eliminar los consumos") })
+	public void deleteByProducto(
+			@Parameter(description = "ID del producto", required = true) @PathParam("idProducto") Long idProducto,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando eliminar los consumos del producto con ID: {}", idProducto);
+				if (consumoService.deleteByProducto(idProducto)) {
+					logger.info("Consumos del producto con ID {} eliminados.", idProducto);
+					return Response.ok()
+							.entity("Consumos del producto con ID " + idProducto + " eliminados exitosamente.").build();
+				}
+				logger.warn("El producto con ID {} no tiene consumos.", idProducto);
+				return Response.status(Status.NOT_FOUND).entity("El producto con ID " + idProducto + " no tiene consumos.")
+						.build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al eliminar los consumos del producto con ID: {}", idProducto, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al eliminar los consumos: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al eliminar los consumos del producto con ID: {}", idProducto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al eliminar los consumos: " + e.getMessage()).build();
+			}
+		});
+	}
+
+	/**
+	 * @return Mensaje de error, o null si los consumos son válidos.
+	 */
+	private String validate(List<ConsumoDTO> consumos) {
+		if (consumos == null || consumos.isEmpty()) {
+			return "Debe indicarse al menos un consumo.";
+		}
+		Set<Long> idsMateriaPrima = new HashSet<Long>();
+		for (ConsumoDTO consumo : consumos) {
+			if (consumo == null || consumo.getIdMateriaPrima() == null) {
+				return "El ID de la materia prima es obligatorio.";
+			}
+			if (consumo.getUnidades() == null || consumo.getUnidades() <= 0) {
+				return "Las unidades consumidas de la materia prima " + consumo.getIdMateriaPrima()
+						+ " deben ser mayores que 0.";
+			}
+			if (!idsMateriaPrima.add(consumo.getIdMateriaPrima())) {
+				return "La materia prima " + consumo.getIdMateriaPrima() + " está repetida.";
+			}
+		}
+		return null;
+	}
+
+}
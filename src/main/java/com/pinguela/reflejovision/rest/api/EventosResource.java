@@ -0,0 +1,118 @@
+package com.pinguela.reflejovision.rest.api;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.pinguela.reflejovision.rest.events.ChangeEvent;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+import com.pinguela.reflejovision.rest.events.ChangeEventStats;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+@Path("/eventos")
+@Singleton
+public class EventosResource {
+
+	private static Logger logger = LogManager.getLogger(EventosResource.class);
+
+	private static final String INACTIVO = "Los eventos de cambios no están activos (events.enabled=false).";
+
+	private Provider<ChangeEventBus> eventBus = null;
+
+	@Inject
+	public EventosResource(Provider<ChangeEventBus> eventBus) {
+		this.eventBus = eventBus;
+	}
+
+	@GET
+	@Produces(MediaType.SERVER_SENT_EVENTS)
+	@Operation(summary = "Flujo de cambios de productos y materias primas", description = "Este endpoint mantiene abierta una conexión Server-Sent Events por la que se envía un evento JSON (ChangeEvent) por cada alta, modificación, baja o variación de stock de un producto o una materia prima, en lugar de consultar periódicamente los endpoints de lectura. Los cambios seguidos de un mismo elemento se fusionan en un solo evento. Al reconectar con Last-Event-ID se reciben los eventos perdidos si siguen en el buffer; si no, se recibe un evento reset y hay que volver a leer el estado. Los clientes que no leen al ritmo de los cambios se desconectan.", responses = {
+			@ApiResponse(responseCode = "200", description = "Flujo de eventos", content = @Content(mediaType = MediaType.SERVER_SENT_EVENTS, schema = @Schema(implementation = ChangeEvent.class))),
+			@ApiResponse(responseCode = "400", description = "Tipo de elemento no válido"),
+			@ApiResponse(responseCode = "404", description = "Los eventos no están activos"),
+			@ApiResponse(responseCode = "503", description = "Se ha alcanzado el número máximo de suscriptores") })
+	public void subscribe(
+			@Parameter(description = "Tipos de elemento (producto, materiaprima); por defecto, todos") @QueryParam("tipo") List<String> tipos,
+			@Parameter(description = "Ids de los elementos; por defecto, todos") @QueryParam("id") List<Long> ids,
+			@Parameter(description = "Id del último evento recibido, para recuperar los posteriores") @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+			@Context SseEventSink sink, @Context Sse sse) {
+		ChangeEventBus bus = eventBus.get();
+		if (bus == null) {
+			throw error(Status.NOT_FOUND, INACTIVO);
+		}
+		Set<String> tiposSet = new HashSet<String>();
+		for (String tipo : tipos) {
+			if (!ChangeEvent.TIPO_PRODUCTO.equals(tipo) && !ChangeEvent.TIPO_MATERIA_PRIMA.equals(tipo)) {
+				logger.warn("Tipo de elemento no válido: {}", tipo);
+				throw error(Status.BAD_REQUEST, "Tipo de elemento no válido: " + tipo);
+			}
+			tiposSet.add(tipo);
+		}
+		Set<Long> idsSet = new HashSet<Long>(ids);
+		idsSet.remove(null);
+		if (!bus.subscribe(sink, sse, tiposSet, idsSet, parseLastEventId(lastEventId))) {
+			logger.warn("Suscripción a eventos rechazada: se ha alcanzado el máximo de suscriptores");
+			throw error(Status.SERVICE_UNAVAILABLE, "Se ha alcanzado el número máximo de suscriptores.");
+		}
+	}
+
+	@GET
+	@Path("/stats")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Estado del flujo de cambios", description = "Devuelve el número de suscriptores, el último id, los eventos guardados para Last-Event-ID y los contadores de eventos publicados, enviados, fusionados, suscripciones desbordadas y reinicios.", responses = {
+			@ApiResponse(responseCode = "200", description = "Estado del flujo", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = ChangeEventStats.class))),
+			@ApiResponse(responseCode = "404", description = "Los eventos no están activos") })
+	public Response getStats() {
+		ChangeEventBus bus = eventBus.get();
+		if (bus == null) {
+			return Response.status(Status.NOT_FOUND).entity(INACTIVO).build();
+		}
+		return Response.ok(bus.getStats()).build();
+	}
+
+	/**
+	 * @return El id, o un valor que fuerza un reset si no es un id de este
+	 *         servidor.
+	 */
+	private static Long parseLastEventId(String lastEventId) {
+		if (lastEventId == null || lastEventId.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return Long.valueOf(lastEventId.trim());
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	private static WebApplicationException error(Status status, String mensaje) {
+		return new WebApplicationException(
+				Response.status(status).entity(mensaje).type(MediaType.TEXT_PLAIN_TYPE).build());
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.pinguela.reflejovision.rest.api;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.PinguelaException;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+import com.pinguela.reflejovision.rest.inventory.InventorySummary;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimited;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+@Path("/inventario")
+@Singleton
+@RateLimited
+public class InventarioResource {
+
+	private static Logger logger = LogManager.getLogger(InventarioResource.class);
+
+	private static final String INACTIVO = "Los agregados de inventario no están activos (inventory.enabled=false).";
+
+	private Provider<InventoryAggregates> inventory = null;
+	private AsyncExecutors asyncExecutors = null;
+
+	@Inject
+	public InventarioResource(Provider<InventoryAggregates> inventory, AsyncExecutors asyncExecutors) {
+		this.inventory = inventory;
+		this.asyncExecutors = asyncExecutors;
+	}
+
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Resumen del inventario", description = "Este endpoint devuelve, para productos y materias primas, el número de elementos, las unidades y el valor (precio por unidades) totales, y los elementos con menos unidades que el umbral de bajo stock. Se sirve de agregados en memoria que mantienen las escrituras y que se concilian periódicamente con la base de datos, sin recorrer las tablas.", responses = {
+			@ApiResponse(responseCode = "200", description = "Resumen de productos y materias primas", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = InventorySummary.class)))),
+			@ApiResponse(responseCode = "404", description = "Los agregados de inventario no están activos") })
+	public Response getSummaries(
+			@Parameter(description = "Número máximo de ids de bajo stock que se devuelven de cada tipo") @QueryParam("limit") @DefaultValue("100") int limit) {
+		InventoryAggregates aggregates = inventory.get();
+		if (aggregates == null) {
+			return Response.status(Status.NOT_FOUND).entity(INACTIVO).build();
+		}
+		return Response.ok(aggregates.getSummaries(Math.max(0, limit))).build();
+	}
+
+	@POST
+	@Path("/reconcile")
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Conciliar el inventario", description = "Este endpoint vuelve a calcular los agregados de inventario desde la base de datos sin esperar a la siguiente conciliación periódica, y devuelve el resumen resultante con las desviaciones corregidas.", responses = {
+			@ApiResponse(responseCode = "200", description = "Resumen tras la conciliación", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = InventorySummary.class)))),
+			@ApiResponse(responseCode = "404", description = "Los agregados de inventario no están activos"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar conciliar el inventario") })
+	public void reconcile(
+			@Parameter(description = "Número máximo de ids de bajo stock que se devuelven de cada tipo") @QueryParam("limit") @DefaultValue("100") int limit,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			InventoryAggregates aggregates = inventory.get();
+			if (aggregates == null) {
+				return Response.status(Status.NOT_FOUND).entity(INACTIVO).build();
+			}
+			try {
+				aggregates.reconcile();
+				List<InventorySummary> summaries = aggregates.getSummaries(Math.max(0, limit));
+				return Response.ok(summaries).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al conciliar el inventario", pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al conciliar el inventario: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al conciliar el inventario", e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al conciliar el inventario: " + e.getMessage()).build();
+			}
+		});
+	}
+
+}
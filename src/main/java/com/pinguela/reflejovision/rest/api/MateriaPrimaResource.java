@@ -1,11 +1,21 @@
 package com.pinguela.reflejovision.rest.api;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -13,121 +23,354 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.luis.reflejovision.PinguelaException;
+import com.luis.reflejovision.dao.DataException;
 import com.luis.reflejovision.model.MateriaPrimaCriteria;
 import com.luis.reflejovision.model.MateriaPrimaDTO;
 import com.luis.reflejovision.model.MateriaPrimaIdioma;
-import com.luis.reflejovision.model.Results;
 import com.luis.reflejovision.service.MateriaPrimaService;
-import com.luis.reflejovision.service.impl.MateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.encoding.CborMessageBodyWriter;
+import com.pinguela.reflejovision.rest.encoding.Compressed;
+import com.pinguela.reflejovision.rest.idempotency.Idempotent;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.model.MultiGetResults;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.model.Sugerencia;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimited;
+import com.pinguela.reflejovision.rest.search.LocalizedNameIndex;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.search.TextUtils;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaQueryService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+import com.pinguela.reflejovision.rest.util.EntityTagUtils;
+import com.pinguela.reflejovision.rest.util.JsonArrayIterator;
+import com.pinguela.reflejovision.rest.util.LocaleUtils;
+import com.pinguela.reflejovision.rest.util.LogSampler;
+import com.pinguela.reflejovision.rest.util.MultiGetUtils;
+import com.pinguela.reflejovision.rest.util.NdjsonRowHandler;
+import com.pinguela.reflejovision.rest.util.NdjsonUtils;
+import com.pinguela.reflejovision.rest.util.SortUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 
 @Path("/materiaprima")
 @Singleton
+@RateLimited
 public class MateriaPrimaResource {
 
 	private MateriaPrimaService materiaPrimaService = null;
+	private MateriaPrimaQueryService materiaPrimaQueryService = null;
+	private MateriaPrimaBulkService materiaPrimaBulkService = null;
+	private AsyncExecutors asyncExecutors = null;
 	private static Logger logger = LogManager.getLogger(MateriaPrimaResource.class);
 
-	public MateriaPrimaResource() {
-		materiaPrimaService = new MateriaPrimaServiceImpl();
+	private static final LogSampler FIND_BY_ID_LOG = LogSampler.forEndpoint("materiaprima.findById");
+	private static final LogSampler SEARCH_LOG = LogSampler.forEndpoint("materiaprima.search");
+
+	private static final String ACCEPT_LANGUAGE = "Accept-Language";
+	private static final String LOCALE_DESCRIPTION = "Idioma del nombre (por defecto, el de Accept-Language)";
+	private static final String PREFIJO_DESCRIPTION = "Buscar el nombre por prefijos de palabra, sin distinguir mayúsculas ni acentos, con el índice en memoria. Por defecto, o si el índice no está disponible, el nombre se busca como subcadena";
+
+	@Inject
+	public MateriaPrimaResource(MateriaPrimaService materiaPrimaService,
+			MateriaPrimaQueryService materiaPrimaQueryService, MateriaPrimaBulkService materiaPrimaBulkService,
+			AsyncExecutors asyncExecutors) {
+		this.materiaPrimaService = materiaPrimaService;
+		this.materiaPrimaQueryService = materiaPrimaQueryService;
+		this.materiaPrimaBulkService = materiaPrimaBulkService;
+		this.asyncExecutors = asyncExecutors;
+	}
+
+	@GET
+	@Compressed
+	@Produces({ MediaType.APPLICATION_JSON, CborMessageBodyWriter.APPLICATION_CBOR })
+	@Operation(summary = "Obtener varias materias primas por ID", description = "Este endpoint permite obtener varias materias primas en una sola petición, con el nombre en el idioma indicado en locale o, si no se indica, en Accept-Language. Los resultados siguen el orden de los ids solicitados, con null en la posición de cada id que no existe; esos ids se devuelven además en noEncontrados.", responses = {
+			@ApiResponse(responseCode = "200", description = "Búsqueda realizada", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MultiGetResults.class))),
+			@ApiResponse(responseCode = "400", description = "Lista de ids vacía, inválida o demasiado larga, o idioma no soportado"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar obtener las materias primas") })
+	public void findByIds(
+			@Parameter(description = "IDs de las materias primas separados por comas", required = true) @QueryParam("ids") String ids,
+			@Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+			@Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			List<Long> idList = null;
+			try {
+				idList = MultiGetUtils.parseIds(ids);
+			} catch (IllegalArgumentException e) {
+				logger.warn("Lista de ids inválida: {}", ids);
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			try {
+				Map<Long, MateriaPrimaDTO> materiasPrimas = materiaPrimaQueryService
+						.findByIds(MultiGetUtils.distinct(idList), idioma);
+				MultiGetResults<MateriaPrimaDTO> resultados = MultiGetUtils.toResults(idList, materiasPrimas);
+				if (!resultados.getNoEncontrados().isEmpty()) {
+					logger.debug("Materias primas no encontradas: {}", resultados.getNoEncontrados());
+				}
+				return localized(Response.ok(resultados), idioma).build();
+			} catch (Exception e) {
+				logger.error("Error al buscar las materias primas con IDs: {}", ids, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error al buscar las materias primas: " + e.getMessage()).build();
+			}
+		});
 	}
 
 	@GET
 	@Path("/{id}")
 	@Produces(MediaType.APPLICATION_JSON)
-	@Operation(summary = "Obtener una materia prima por ID", description = "Este endpoint permite obtener una materia prima del sistema por su ID.", responses = {
+	@Operation(summary = "Obtener una materia prima por ID", description = "Este endpoint permite obtener una materia prima del sistema por su ID, con el nombre en el idioma indicado en locale o, si no se indica, en Accept-Language.", responses = {
 			@ApiResponse(responseCode = "200", description = "Materia prima encontrada", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaDTO.class))),
+			@ApiResponse(responseCode = "304", description = "La materia prima no ha cambiado desde el ETag indicado en If-None-Match"),
+			@ApiResponse(responseCode = "400", description = "Idioma no soportado"),
 			@ApiResponse(responseCode = "404", description = "Materia prima no encontrada"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar obtener la materia prima") })
-	public Response findById(
-			@Parameter(description = "ID de la materia prima a buscar", required = true) @PathParam("id") Long id) {
+	public void findById(
+			@Parameter(description = "ID de la materia prima a buscar", required = true) @PathParam("id") Long id,
+			@Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+			@Context HttpHeaders headers, @Context Request request, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			try {
+				boolean traza = FIND_BY_ID_LOG.sample();
+				if (traza) {
+					logger.info("Buscando materia prima con ID: {}", id);
+				}
+
+				// Llamar al servicio para obtener la materia prima por ID
+				MateriaPrimaDTO materiaPrima = materiaPrimaService.findbyId(id, idioma);
 
-		try {
-			logger.info("Buscando materia prima con ID: " + id);
+				if (materiaPrima == null) {
+					logger.warn("Materia prima con ID {} no encontrada.", id);
+					return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
+							.build();
+				}
 
-			// Llamar al servicio para obtener la materia prima por ID
-			MateriaPrimaDTO materiaPrima = materiaPrimaService.findbyId(id, "es");
+				EntityTag etag = EntityTagUtils.of(materiaPrima);
+				ResponseBuilder notModified = request.evaluatePreconditions(etag);
+				if (notModified != null) {
+					logger.debug("Materia prima con ID {} no modificada.", id);
+					return localized(notModified.tag(etag), idioma).build();
+				}
 
-			if (materiaPrima == null) {
-				logger.warn("Materia prima con ID " + id + " no encontrada.");
-				return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
-						.build();
+				if (traza) {
+					logger.info("Materia prima con ID {} encontrada.", id);
+				}
+				return localized(Response.status(Status.OK).entity(materiaPrima).tag(etag), idioma).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al buscar la materia prima con ID: {}", id, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al buscar la materia prima: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al buscar la materia prima con ID: {}", id, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al buscar la materia prima: " + e.getMessage()).build();
 			}
-
-			logger.info("Materia prima con ID " + id + " encontrada.");
-			return Response.status(Status.OK).entity(materiaPrima).build();
-		} catch (PinguelaException pe) {
-			logger.error("Error al buscar la materia prima con ID: " + id, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al buscar la materia prima: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al buscar la materia prima con ID: " + id, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al buscar la materia prima: " + e.getMessage()).build();
-		}
+		});
 	}
 
 	@GET
 	@Path("/search")
-	@Produces(MediaType.APPLICATION_JSON)
-	@Operation(summary = "Buscar materias primas por criterios", description = "Este endpoint permite buscar materias primas aplicando filtros opcionales como ID, nombre, rango de precios, cantidad de unidades, y localización.", responses = {
-	        @ApiResponse(responseCode = "200", description = "Materias primas encontradas", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Results.class))),
-	        @ApiResponse(responseCode = "400", description = "Criterios de búsqueda no proporcionados o inválidos"),
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Compressed
+	@Produces({ MediaType.APPLICATION_JSON, CborMessageBodyWriter.APPLICATION_CBOR })
+	@Operation(summary = "Buscar materias primas por criterios", description = "Este endpoint permite buscar materias primas aplicando filtros opcionales como ID, nombre, rango de precios, cantidad de unidades, y localización. Los resultados se paginan por cursor: la respuesta incluye nextCursor para pedir la página siguiente. El total solo se calcula si se indica count=true; en caso contrario no se incluye en la respuesta. Los resultados se ordenan por id salvo que se indique sort (id, nombre, precio o unidades) y dir (asc o desc); a igualdad se ordenan por id. El nombre se ordena en el idioma de la búsqueda.", responses = {
+	        @ApiResponse(responseCode = "200", description = "Materias primas encontradas", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = CursorResults.class))),
+	        @ApiResponse(responseCode = "304", description = "La página no ha cambiado desde el ETag indicado en If-None-Match"),
+	        @ApiResponse(responseCode = "400", description = "Criterios de búsqueda, ordenación o cursor no proporcionados o inválidos, o idioma no soportado"),
 	        @ApiResponse(responseCode = "404", description = "No se encontraron materias primas con los criterios proporcionados"),
 	        @ApiResponse(responseCode = "500", description = "Error interno en el servidor al procesar la búsqueda") })
-	public Response findByCriteria(
+	public void findByCriteria(
 	        @QueryParam("id") Long id,
 	        @QueryParam("unidadesDesde") Integer unidadesDesde,
 	        @QueryParam("unidadesHasta") Integer unidadesHasta,
 	        @QueryParam("nombre") String nombre,
 	        @QueryParam("precioDesde") Double precioDesde,
 	        @QueryParam("precioHasta") Double precioHasta,
-	        @QueryParam("locale") String locale) {
-
-	    try {
-	        logger.info("Criterios recibidos: id=" + id + ", unidadesDesde=" + unidadesDesde + ", unidadesHasta=" + unidadesHasta +
-	                ", nombre=" + nombre + ", precioDesde=" + precioDesde + ", precioHasta=" + precioHasta + ", locale=" + locale);
-
-	        MateriaPrimaCriteria criteria = new MateriaPrimaCriteria();
-	        criteria.setId(id);
-	        criteria.setUnidadesDesde(unidadesDesde);
-	        criteria.setUnidadesHasta(unidadesHasta);
-	        criteria.setNombre(nombre);
-	        criteria.setPrecioDesde(precioDesde);
-	        criteria.setPrecioHasta(precioHasta);
-	        criteria.setLocale(locale);
-
-	        Results<MateriaPrimaDTO> resultados = materiaPrimaService.findBy(criteria, 1, 10);
-
-	        if (resultados == null) {
-	            logger.warn("No se encontraron resultados con los criterios: " + criteria);
-	            return Response.status(Response.Status.NOT_FOUND)
-	                    .entity("No se encontraron materias primas con los criterios proporcionados.").build();
-	        }
-
-	        return Response.ok(resultados).build();
-	    } catch (Exception e) {
-	        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-	                .entity("Error al buscar materias primas: " + e.getMessage()).build();
-	    }
+	        @Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+	        @Parameter(description = PREFIJO_DESCRIPTION) @QueryParam("prefijo") @DefaultValue("false") boolean prefijo,
+	        @Parameter(description = "Cursor devuelto en la página anterior") @QueryParam("cursor") String cursor,
+	        @Parameter(description = "Tamaño de página (máximo 100)") @QueryParam("limit") Integer limit,
+	        @Parameter(description = "Calcular el total de resultados") @QueryParam("count") @DefaultValue("false") boolean count,
+	        @Parameter(description = "Campo de ordenación: id (por defecto), nombre, precio o unidades") @QueryParam("sort") String sort,
+	        @Parameter(description = "Dirección de la ordenación: asc (por defecto) o desc") @QueryParam("dir") String dir,
+	        @Context HttpHeaders headers, @Context Request request,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getBusquedas().submit(asyncResponse, () -> {
+		    String idioma = null;
+		    try {
+		        idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+		    } catch (IllegalArgumentException e) {
+		        logger.warn(e.getMessage());
+		        return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+		    }
+		    try {
+		        if (SEARCH_LOG.sample()) {
+		            logger.info("Criterios recibidos: id={}, unidadesDesde={}, unidadesHasta={}, nombre={}, "
+		                    + "precioDesde={}, precioHasta={}, locale={}, cursor={}, limit={}, sort={}, dir={}", id,
+		                    unidadesDesde, unidadesHasta, nombre, precioDesde, precioHasta, locale, cursor, limit, sort,
+		                    dir);
+		        }
+
+		        MateriaPrimaCriteria criteria = buildCriteria(id, unidadesDesde, unidadesHasta, nombre, precioDesde,
+		                precioHasta, idioma);
+		        criteria.setOrderBy(SortUtils.parseOrderBy(sort));
+		        criteria.setAscDesc(SortUtils.parseAscDesc(dir));
+
+		        CursorResults<MateriaPrimaDTO> resultados = materiaPrimaQueryService.findBy(criteria, prefijo, cursor,
+		                CursorUtils.normalizeLimit(limit), count);
+
+		        if (resultados == null) {
+		            logger.warn("No se encontraron resultados con los criterios: {}", criteria);
+		            return Response.status(Response.Status.NOT_FOUND)
+		                    .entity("No se encontraron materias primas con los criterios proporcionados.").build();
+		        }
+
+		        EntityTag etag = EntityTagUtils.ofMateriasPrimas(resultados);
+		        ResponseBuilder notModified = request.evaluatePreconditions(etag);
+		        if (notModified != null) {
+		            return localized(notModified.tag(etag), idioma).build();
+		        }
+
+		        return localized(Response.ok(resultados).tag(etag), idioma).build();
+		    } catch (IllegalArgumentException e) {
+		        logger.warn(e.getMessage());
+		        return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+		    } catch (Exception e) {
+		        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+		                .entity("Error al buscar materias primas: " + e.getMessage()).build();
+		    }
+		});
 	}
 
 
+	@GET
+	@Path("/suggest")
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Sugerir materias primas por nombre", description = "Este endpoint devuelve las materias primas cuyo nombre, en el idioma indicado en locale o, si no se indica, en Accept-Language, encaja con el texto indicado, ordenadas por relevancia, para autocompletar mientras se escribe. Cada palabra del texto debe ser el principio de alguna palabra del nombre; no se distinguen mayúsculas ni acentos. Se resuelve con el índice de nombres en memoria, sin consultar la base de datos.", responses = {
+			@ApiResponse(responseCode = "200", description = "Sugerencias encontradas", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = Sugerencia.class)))),
+			@ApiResponse(responseCode = "400", description = "Texto de búsqueda vacío o idioma no soportado"),
+			@ApiResponse(responseCode = "503", description = "El índice de nombres está desactivado o todavía no se ha cargado") })
+	public void suggest(
+			@Parameter(description = "Texto a buscar", required = true) @QueryParam("q") String q,
+			@Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+			@Parameter(description = "Número máximo de sugerencias (máximo 100)") @QueryParam("limit") Integer limit,
+			@Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			if (TextUtils.tokenize(q).isEmpty()) {
+				return Response.status(Status.BAD_REQUEST).entity("El texto de búsqueda es obligatorio.").build();
+			}
+			LocalizedNameIndex index = SearchIndexes.getMateriaPrimaIndex();
+			if (!SearchIndexes.ENABLED || !index.isReady()) {
+				logger.warn("Índice de nombres de materias primas no disponible");
+				return Response.status(Status.SERVICE_UNAVAILABLE)
+						.entity("El índice de nombres de materias primas no está disponible.").build();
+			}
+			List<Sugerencia> sugerencias = index.get(idioma).search(q, CursorUtils.normalizeLimit(limit));
+			logger.debug("{} sugerencias para \"{}\" en {}", sugerencias.size(), q, idioma);
+			return localized(Response.ok(sugerencias), idioma).build();
+		});
+	}
+
+	@GET
+	@Path("/export")
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Compressed
+	@Produces(NdjsonUtils.APPLICATION_NDJSON)
+	@Operation(summary = "Exportar materias primas", description = "Este endpoint devuelve todas las materias primas que cumplen los criterios en formato NDJSON (una materia prima por línea). Las filas se leen de la base de datos a medida que se envían, sin cargarlas en memoria.", responses = {
+			@ApiResponse(responseCode = "200", description = "Exportación de materias primas"),
+			@ApiResponse(responseCode = "400", description = "Idioma no soportado"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al exportar las materias primas") })
+	public void export(@QueryParam("id") Long id, @QueryParam("unidadesDesde") Integer unidadesDesde,
+			@QueryParam("unidadesHasta") Integer unidadesHasta, @QueryParam("nombre") String nombre,
+			@QueryParam("precioDesde") Double precioDesde, @QueryParam("precioHasta") Double precioHasta,
+			@Parameter(description = LOCALE_DESCRIPTION) @QueryParam("locale") String locale,
+			@Parameter(description = PREFIJO_DESCRIPTION) @QueryParam("prefijo") @DefaultValue("false") boolean prefijo,
+			@Context HttpHeaders headers, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getBusquedas().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			logger.info("Exportando materias primas: id={}, unidadesDesde={}, unidadesHasta={}, nombre={}, "
+					+ "precioDesde={}, precioHasta={}, locale={}", id, unidadesDesde, unidadesHasta, nombre, precioDesde,
+					precioHasta, idioma);
+
+			final MateriaPrimaCriteria criteria = buildCriteria(id, unidadesDesde, unidadesHasta, nombre, precioDesde,
+					precioHasta, idioma);
+
+			StreamingOutput stream = new StreamingOutput() {
+				@Override
+				public void write(OutputStream os) throws IOException, WebApplicationException {
+					Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+					NdjsonRowHandler<MateriaPrimaDTO> handler = new NdjsonRowHandler<MateriaPrimaDTO>(writer);
+					try {
+						materiaPrimaQueryService.export(criteria, prefijo, handler);
+						writer.flush();
+						logger.info("Exportadas {} materias primas.", handler.getRows());
+					} catch (DataException de) {
+						// Las cabeceras ya se han enviado: solo se puede cortar la respuesta
+						logger.error("Error al exportar materias primas tras {} filas", handler.getRows(), de);
+						throw new WebApplicationException(de);
+					}
+				}
+			};
+			return localized(Response.ok(stream), idioma).build();
+		});
+	}
+
 	@POST
+	@Idempotent
 	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
 	@Produces(MediaType.APPLICATION_JSON)
 
@@ -135,145 +378,187 @@ public class MateriaPrimaResource {
 			@ApiResponse(responseCode = "200", description = "Materia prima creada exitosamente", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaDTO.class))),
 			@ApiResponse(responseCode = "400", description = "Datos de entrada inválidos o incompletos"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar crear la materia prima") })
-	public Response createMateriaPrima(
+	public void createMateriaPrima(
 			@Parameter(description = "Nombre en español", required = true) @FormParam("nombre_es") String nombreEs,
 			@Parameter(description = "Nombre en inglés", required = true) @FormParam("nombre_en") String nombreEn,
 			@Parameter(description = "Nombre en gallego", required = true) @FormParam("nombre_gl") String nombreGl,
 			@Parameter(description = "Precio de la materia prima", required = true) @FormParam("precio") String precioStr,
 			@Parameter(description = "Unidades de la materia prima", required = true) @FormParam("unidades") String unidadesStr,
-			@Parameter(description = "ID de la unidad de medida", required = true) @FormParam("unidadMedida") String unidadMedidaStr) {
+			@Parameter(description = "ID de la unidad de medida", required = true) @FormParam("unidadMedida") String unidadMedidaStr,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando crear una nueva materia prima.");
 
-		try {
-			logger.info("Intentando crear una nueva materia prima.");
+				// Validar los datos de entrada
+				if (nombreEs == null || nombreEn == null || nombreGl == null || precioStr == null || unidadesStr == null
+						|| unidadMedidaStr == null) {
+					logger.warn("Datos de entrada inválidos o incompletos.");
+					return Response.status(Status.BAD_REQUEST).entity("Datos de entrada inválidos o incompletos.").build();
+				}
 
-			// Validar los datos de entrada
-			if (nombreEs == null || nombreEn == null || nombreGl == null || precioStr == null || unidadesStr == null
-					|| unidadMedidaStr == null) {
-				logger.warn("Datos de entrada inválidos o incompletos.");
-				return Response.status(Status.BAD_REQUEST).entity("Datos de entrada inválidos o incompletos.").build();
-			}
+				// Validar campos numéricos
+				double precio;
+				int unidades;
+				long idUnidadMedida;
+				try {
+					precio = Double.parseDouble(precioStr);
+					unidades = Integer.parseInt(unidadesStr);
+					idUnidadMedida = Long.parseLong(unidadMedidaStr);
+				} catch (NumberFormatException e) {
+					logger.warn("Formato numérico inválido en los datos de entrada.");
+					return Response.status(Status.BAD_REQUEST).entity("Formato numérico inválido en los datos de entrada.")
+							.build();
+				}
 
-			// Validar campos numéricos
-			double precio;
-			int unidades;
-			long idUnidadMedida;
-			try {
-				precio = Double.parseDouble(precioStr);
-				unidades = Integer.parseInt(unidadesStr);
-				idUnidadMedida = Long.parseLong(unidadMedidaStr);
-			} catch (NumberFormatException e) {
-				logger.warn("Formato numérico inválido en los datos de entrada.");
-				return Response.status(Status.BAD_REQUEST).entity("Formato numérico inválido en los datos de entrada.")
-						.build();
+				// Crear el DTO de la materia prima
+				MateriaPrimaDTO mp = new MateriaPrimaDTO();
+				mp.setNombre(nombreEs); // Usamos el nombre en español como nombre principal
+				mp.setPrecio(precio);
+				mp.setUnidades(unidades);
+				mp.setIdUnidadMedida(idUnidadMedida);
+
+				// Crear las traducciones
+				List<MateriaPrimaIdioma> traducciones = new ArrayList<>();
+
+				MateriaPrimaIdioma traduccionEs = new MateriaPrimaIdioma();
+				traduccionEs.setLocale("es");
+				traduccionEs.setNombre(nombreEs);
+				traduccionEs.setIdMateriaPrima(mp.getId());
+
+				MateriaPrimaIdioma traduccionEn = new MateriaPrimaIdioma();
+				traduccionEn.setLocale("en");
+				traduccionEn.setNombre(nombreEn);
+				traduccionEn.setIdMateriaPrima(mp.getId());
+
+				MateriaPrimaIdioma traduccionGl = new MateriaPrimaIdioma();
+				traduccionGl.setLocale("gl_ES");
+				traduccionGl.setNombre(nombreGl);
+				traduccionGl.setIdMateriaPrima(mp.getId());
+
+				traducciones.add(traduccionEs);
+				traducciones.add(traduccionEn);
+				traducciones.add(traduccionGl);
+
+				mp.setTraducciones(traducciones);
+
+				// Crear la materia prima en el servicio
+				Long id = materiaPrimaService.create(mp);
+				logger.info("Materia prima creada exitosamente con ID: {}", id);
+
+				// Retornar la respuesta con el DTO creado
+				return Response.status(Status.OK).entity(mp).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al crear la materia prima", pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al crear la materia prima: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al crear la materia prima", e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al crear la materia prima: " + e.getMessage()).build();
 			}
+		});
+	}
 
-			// Crear el DTO de la materia prima
-			MateriaPrimaDTO mp = new MateriaPrimaDTO();
-			mp.setNombre(nombreEs); // Usamos el nombre en español como nombre principal
-			mp.setPrecio(precio);
-			mp.setUnidades(unidades);
-			mp.setIdUnidadMedida(idUnidadMedida);
-
-			// Crear las traducciones
-			List<MateriaPrimaIdioma> traducciones = new ArrayList<>();
-
-			MateriaPrimaIdioma traduccionEs = new MateriaPrimaIdioma();
-			traduccionEs.setLocale("es");
-			traduccionEs.setNombre(nombreEs);
-			traduccionEs.setIdMateriaPrima(mp.getId());
-
-			MateriaPrimaIdioma traduccionEn = new MateriaPrimaIdioma();
-			traduccionEn.setLocale("en");
-			traduccionEn.setNombre(nombreEn);
-			traduccionEn.setIdMateriaPrima(mp.getId());
-
-			MateriaPrimaIdioma traduccionGl = new MateriaPrimaIdioma();
-			traduccionGl.setLocale("gl_ES");
-			traduccionGl.setNombre(nombreGl);
-			traduccionGl.setIdMateriaPrima(mp.getId());
-
-			traducciones.add(traduccionEs);
-			traducciones.add(traduccionEn);
-			traducciones.add(traduccionGl);
-
-			mp.setTraducciones(traducciones);
-
-			// Crear la materia prima en el servicio
-			Long id = materiaPrimaService.create(mp);
-			logger.info("Materia prima creada exitosamente con ID: " + id);
-
-			// Retornar la respuesta con el DTO creado
-			return Response.status(Status.OK).entity(mp).build();
-		} catch (PinguelaException pe) {
-			logger.error("Error al crear la materia prima", pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al crear la materia prima: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al crear la materia prima", e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al crear la materia prima: " + e.getMessage()).build();
-		}
+	@POST
+	@Path("/bulk")
+	@Idempotent
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Carga masiva de materias primas", description = "Crea o actualiza un array JSON de materias primas con sus traducciones. Las materias primas sin id se crean y las que tienen id se actualizan; un id que no existe detiene la carga como una materia prima inválida. El cuerpo se lee en streaming y se guarda en bloques de materiaprima.bulk.chunk filas, cada uno en su propia transacción; la respuesta incluye los ids guardados en el orden de entrada. Si la carga se detiene, los bloques anteriores quedan guardados y puede reanudarse a partir de la posición procesadas. Con Idempotency-Key el cuerpo no puede superar idempotency.maxBody bytes (413).", responses = {
+			@ApiResponse(responseCode = "200", description = "Todas las materias primas guardadas", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaBulkResult.class))),
+			@ApiResponse(responseCode = "400", description = "JSON inválido, materia prima incompleta o id inexistente; las anteriores a ella quedan guardadas", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaBulkResult.class))),
+			@ApiResponse(responseCode = "500", description = "Error al guardar un bloque; los bloques anteriores quedan guardados", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaBulkResult.class))) })
+	public void upsertBulk(
+			@RequestBody(description = "Materias primas a guardar", required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = MateriaPrimaDTO.class)))) InputStream body,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getImportaciones().submit(asyncResponse, () -> {
+			try (JsonArrayIterator<MateriaPrimaDTO> materiasPrimas = new JsonArrayIterator<MateriaPrimaDTO>(body,
+					MateriaPrimaDTO.class)) {
+				MateriaPrimaBulkResult result = materiaPrimaBulkService.upsert(materiasPrimas);
+				logger.info("Carga masiva de materias primas: {}", result);
+
+				Status status = Status.OK;
+				if (MateriaPrimaBulkResult.ESTADO_INVALIDO.equals(result.getEstado())) {
+					status = Status.BAD_REQUEST;
+				} else if (MateriaPrimaBulkResult.ESTADO_ERROR.equals(result.getEstado())) {
+					status = Status.INTERNAL_SERVER_ERROR;
+				}
+				return Response.status(status).entity(result).build();
+			} catch (IllegalArgumentException e) {
+				logger.warn("Carga masiva rechazada: {}", e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error en la carga masiva de materias primas", pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Error en la carga masiva de materias primas: " + pe.getMessage()).build();
+			}
+		});
 	}
 
 	@PUT
 	@Path("/update/{id}")
+	@Idempotent
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces(MediaType.APPLICATION_JSON)
 	@Operation(summary = "Actualizar una materia prima", description = "Este endpoint permite actualizar los detalles de una materia prima existente en el sistema.", responses = {
 			@ApiResponse(responseCode = "200", description = "Materia prima actualizada exitosamente", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaDTO.class))),
-			@ApiResponse(responseCode = "400", description = "Datos de entrada inválidos o incompletos"),
+			@ApiResponse(responseCode = "400", description = "Datos de entrada inválidos o incompletos, o idioma no soportado"),
 			@ApiResponse(responseCode = "404", description = "Materia prima no encontrada"),
+			@ApiResponse(responseCode = "412", description = "La materia prima ha cambiado desde el ETag indicado en If-Match"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar actualizar la materia prima") })
-	public Response updateMateriaPrima(
+	public void updateMateriaPrima(
 			@Parameter(description = "ID de la materia prima a actualizar", required = true) @PathParam("id") Long id,
-			@Parameter(description = "Objeto MateriaPrimaDTO con los nuevos datos", required = true) MateriaPrimaDTO materiaPrima) {
-
-		try {
-			logger.info("Intentando actualizar la materia prima con ID: " + id);
-
-			// Validar los datos de entrada
-			if (materiaPrima == null || materiaPrima.getNombre() == null || materiaPrima.getPrecio() == null
-					|| materiaPrima.getUnidades() == null || materiaPrima.getIdUnidadMedida() == null) {
-				logger.warn("Datos de entrada inválidos o incompletos.");
-				return Response.status(Status.BAD_REQUEST).entity("Datos de entrada inválidos o incompletos.").build();
-			}
-
-			// Buscar la materia prima existente
-			MateriaPrimaDTO mp = materiaPrimaService.findbyId(id, "es");
-			if (mp == null) {
-				logger.warn("Materia prima con ID " + id + " no encontrada.");
-				return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
-						.build();
+			@Parameter(description = "Objeto MateriaPrimaDTO con los nuevos datos", required = true) MateriaPrimaDTO materiaPrima,
+			@Parameter(description = "Idioma en el que se leyó la materia prima, para comprobar If-Match") @QueryParam("locale") String locale,
+			@Context HttpHeaders headers, @Context Request request, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			String idioma = null;
+			try {
+				idioma = LocaleUtils.negotiate(locale, headers.getAcceptableLanguages());
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
 			}
+			try {
+				logger.info("Intentando actualizar la materia prima con ID: {}", id);
 
-			// Actualizar los valores
-			mp.setNombre(materiaPrima.getNombre());
-			mp.setPrecio(materiaPrima.getPrecio());
-			mp.setUnidades(materiaPrima.getUnidades());
-			mp.setIdUnidadMedida(materiaPrima.getIdUnidadMedida());
+				// Validar los datos de entrada
+				if (materiaPrima == null || materiaPrima.getNombre() == null || materiaPrima.getPrecio() == null
+						|| materiaPrima.getUnidades() == null || materiaPrima.getIdUnidadMedida() == null) {
+					logger.warn("Datos de entrada inválidos o incompletos.");
+					return Response.status(Status.BAD_REQUEST).entity("Datos de entrada inválidos o incompletos.").build();
+				}
 
-			// Actualizar las traducciones
-			if (materiaPrima.getTraducciones() != null) {
-				for (MateriaPrimaIdioma traduccion : materiaPrima.getTraducciones()) {
-					traduccion.setIdMateriaPrima(mp.getId()); // Asignar el ID de la materia prima
+				// La materia prima actual se lee en el mismo idioma que la lectura del
+				// cliente, para que su ETag coincida con el de If-Match. Si ha cambiado
+				// desde entonces se rechaza la actualización; la comprobación se hace
+				// con la fila bloqueada, en la misma transacción que el UPDATE
+				MateriaPrimaDTO mp = materiaPrimaBulkService.update(id, materiaPrima, idioma,
+						actual -> request.evaluatePreconditions(EntityTagUtils.of(actual)) == null);
+				if (mp == null) {
+					logger.warn("Materia prima con ID {} no encontrada.", id);
+					return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
+							.build();
 				}
-				mp.setTraducciones(materiaPrima.getTraducciones());
+				logger.info("Materia prima con ID {} actualizada exitosamente.", id);
+
+				// Con el ETag y el idioma de la nueva versión el cliente puede
+				// encadenar otra actualización con If-Match sin volver a leerla
+				return localized(Response.status(Status.OK).entity(mp).tag(EntityTagUtils.of(mp)), idioma).build();
+			} catch (PreconditionFailedException e) {
+				logger.warn("La materia prima con ID {} ha sido modificada por otro cliente.", id);
+				return Response.status(Status.PRECONDITION_FAILED).entity(e.getMessage()).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al actualizar la materia prima con ID: {}", id, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Error al actualizar la materia prima: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al actualizar la materia prima con ID: {}", id, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Error inesperado al actualizar la materia prima: " + e.getMessage()).build();
 			}
-
-			// Guardar la actualización
-			materiaPrimaService.update(mp);
-			logger.info("Materia prima con ID " + id + " actualizada exitosamente.");
-
-			return Response.status(Status.OK).entity(mp).build();
-		} catch (PinguelaException pe) {
-			logger.error("Error al actualizar la materia prima con ID: " + id, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Error al actualizar la materia prima: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al actualizar la materia prima con ID: " + id, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Error inesperado al actualizar la materia prima: " + e.getMessage()).build();
-		}
+		});
 	}
 
 	@DELETE
@@ -283,32 +568,55 @@ public class MateriaPrimaResource {
 			@ApiResponse(responseCode = "200", description = "Materia prima eliminada exitosamente"),
 			@ApiResponse(responseCode = "404", description = "Materia prima no encontrada"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar eliminar la materia prima") })
-	public Response deleteMateriaPrima(
-			@Parameter(description = "ID de la materia prima a eliminar", required = true) @PathParam("id") Long id) {
-
-		try {
-			logger.info("Intentando eliminar la materia prima con ID: " + id);
-
-			// Intentar eliminar la materia prima directamente
-			boolean eliminado = materiaPrimaService.delete(id);
-
-			if (eliminado) {
-				logger.info("Materia prima con ID " + id + " eliminada exitosamente.");
-				return Response.status(Status.OK).entity("Materia prima con ID " + id + " eliminada exitosamente.")
-						.build();
-			} else {
-				logger.warn("Materia prima con ID " + id + " no encontrada.");
-				return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
-						.build();
+	public void deleteMateriaPrima(
+			@Parameter(description = "ID de la materia prima a eliminar", required = true) @PathParam("id") Long id,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando eliminar la materia prima con ID: {}", id);
+
+				// Intentar eliminar la materia prima directamente
+				boolean eliminado = materiaPrimaService.delete(id);
+
+				if (eliminado) {
+					logger.info("Materia prima con ID {} eliminada exitosamente.", id);
+					return Response.status(Status.OK).entity("Materia prima con ID " + id + " eliminada exitosamente.")
+							.build();
+				} else {
+					logger.warn("Materia prima con ID {} no encontrada.", id);
+					return Response.status(Status.NOT_FOUND).entity("Materia prima con ID " + id + " no encontrada.")
+							.build();
+				}
+			} catch (PinguelaException pe) {
+				logger.error("Error al eliminar la materia prima con ID: {}", id, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al eliminar la materia prima: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al eliminar la materia prima con ID: {}", id, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al eliminar la materia prima: " + e.getMessage()).build();
 			}
-		} catch (PinguelaException pe) {
-			logger.error("Error al eliminar la materia prima con ID: " + id, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al eliminar la materia prima: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al eliminar la materia prima con ID: " + id, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al eliminar la materia prima: " + e.getMessage()).build();
-		}
+		});
+	}
+
+	/**
+	 * Indica el idioma de la respuesta y que depende de Accept-Language, para
+	 * que las cachés intermedias no sirvan una respuesta en otro idioma.
+	 */
+	private static ResponseBuilder localized(ResponseBuilder builder, String idioma) {
+		return builder.language(LocaleUtils.toLanguageTag(idioma)).header(HttpHeaders.VARY, ACCEPT_LANGUAGE);
+	}
+
+	private MateriaPrimaCriteria buildCriteria(Long id, Integer unidadesDesde, Integer unidadesHasta, String nombre,
+			Double precioDesde, Double precioHasta, String locale) {
+		MateriaPrimaCriteria criteria = new MateriaPrimaCriteria();
+		criteria.setId(id);
+		criteria.setUnidadesDesde(unidadesDesde);
+		criteria.setUnidadesHasta(unidadesHasta);
+		criteria.setNombre(nombre);
+		criteria.setPrecioDesde(precioDesde);
+		criteria.setPrecioHasta(precioHasta);
+		criteria.setLocale(locale);
+		return criteria;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.pinguela.reflejovision.rest.api;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.pinguela.reflejovision.rest.metrics.MetricsRegistry;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+@Path("/metrics")
+@Singleton
+public class MetricsResource {
+
+	private MetricsRegistry metrics = null;
+
+	@Inject
+	public MetricsResource(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	@GET
+	@Produces(MetricsRegistry.CONTENT_TYPE)
+	@Operation(summary = "Métricas en formato Prometheus", description = "Devuelve, en el formato de texto de Prometheus, los histogramas de latencia (con cuantiles p50/p95/p99 estimados), los códigos de estado y las peticiones en curso de cada endpoint, y la duración de las llamadas a los servicios.", responses = {
+			@ApiResponse(responseCode = "200", description = "Métricas") })
+	public Response getMetrics() {
+		StreamingOutput stream = output -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			metrics.write(writer);
+			writer.flush();
+		};
+		return Response.ok(stream).build();
+	}
+
+}
@@ -1,45 +1,139 @@
 package com.pinguela.reflejovision.rest.api;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.luis.reflejovision.PinguelaException;
+import com.luis.reflejovision.dao.DataException;
 import com.luis.reflejovision.model.MateriaPrimaDTO;
 import com.luis.reflejovision.model.Producto;
 import com.luis.reflejovision.model.ProductoCriteria;
-import com.luis.reflejovision.model.Results;
 import com.luis.reflejovision.service.ProductoService;
 import com.luis.reflejovision.service.StockException;
-import com.luis.reflejovision.service.impl.ProductoServiceImpl;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.encoding.CborMessageBodyWriter;
+import com.pinguela.reflejovision.rest.encoding.Compressed;
+import com.pinguela.reflejovision.rest.idempotency.Idempotent;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.model.MultiGetResults;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.model.Sugerencia;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimited;
+import com.pinguela.reflejovision.rest.search.NameIndex;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.search.TextUtils;
+import com.pinguela.reflejovision.rest.service.ProductoNotFoundException;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+import com.pinguela.reflejovision.rest.util.EntityTagUtils;
+import com.pinguela.reflejovision.rest.util.LogSampler;
+import com.pinguela.reflejovision.rest.util.MultiGetUtils;
+import com.pinguela.reflejovision.rest.util.NdjsonRowHandler;
+import com.pinguela.reflejovision.rest.util.NdjsonUtils;
+import com.pinguela.reflejovision.rest.util.SortUtils;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 
 @Path("/producto")
+@Singleton
+@RateLimited
 public class ProductoResource {
 
 	private ProductoService productoService = null;
+	private ProductoQueryService productoQueryService = null;
+	private StockService stockService = null;
+	private AsyncExecutors asyncExecutors = null;
 	private static Logger logger = LogManager.getLogger(ProductoResource.class);
 
-	public ProductoResource() {
-		productoService = new ProductoServiceImpl();
+	private static final int MAX_MOVIMIENTOS = ConfigUtils.getInt("stock.batch.max", 1000);
+
+	private static final LogSampler FIND_BY_ID_LOG = LogSampler.forEndpoint("producto.findById");
+	private static final LogSampler SEARCH_LOG = LogSampler.forEndpoint("producto.search");
+
+	private static final String PREFIJO_DESCRIPTION = "Buscar el nombre por prefijos de palabra, sin distinguir mayúsculas ni acentos, con el índice en memoria. Por defecto, o si el índice no está disponible, el nombre se busca como subcadena";
+
+	@Inject
+	public ProductoResource(ProductoService productoService, ProductoQueryService productoQueryService,
+			StockService stockService, AsyncExecutors asyncExecutors) {
+		this.productoService = productoService;
+		this.productoQueryService = productoQueryService;
+		this.stockService = stockService;
+		this.asyncExecutors = asyncExecutors;
+	}
+
+	@GET
+	@Compressed
+	@Produces({ MediaType.APPLICATION_JSON, CborMessageBodyWriter.APPLICATION_CBOR })
+	@Operation(summary = "Obtener varios productos por ID", description = "Este endpoint permite obtener varios productos en una sola petición. Los resultados siguen el orden de los ids solicitados, con null en la posición de cada id que no existe; esos ids se devuelven además en noEncontrados.", responses = {
+			@ApiResponse(responseCode = "200", description = "Búsqueda realizada", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MultiGetResults.class))),
+			@ApiResponse(responseCode = "400", description = "Lista de ids vacía, inválida o demasiado larga"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar obtener los productos") })
+	public void findByIds(
+			@Parameter(description = "IDs de los productos separados por comas", required = true) @QueryParam("ids") String ids,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			List<Long> idList = null;
+			try {
+				idList = MultiGetUtils.parseIds(ids);
+			} catch (IllegalArgumentException e) {
+				logger.warn("Lista de ids inválida: {}", ids);
+				return Response.status(Status.BAD_REQUEST).entity(e.getMessage()).build();
+			}
+			try {
+				Map<Long, Producto> productos = productoQueryService.findByIds(MultiGetUtils.distinct(idList));
+				MultiGetResults<Producto> resultados = MultiGetUtils.toResults(idList, productos);
+				if (!resultados.getNoEncontrados().isEmpty()) {
+					logger.debug("Productos no encontrados: {}", resultados.getNoEncontrados());
+				}
+				return Response.ok(resultados).build();
+			} catch (Exception e) {
+				logger.error("Error al buscar los productos con IDs: {}", ids, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error al buscar los productos: " + e.getMessage()).build();
+			}
+		});
 	}
 
 	@GET
@@ -47,156 +141,310 @@ public class ProductoResource {
 	@Produces(MediaType.APPLICATION_JSON)
 	@Operation(summary = "Obtener una producto por ID", description = "Este endpoint permite obtener un producto del sistema por su ID.", responses = {
 			@ApiResponse(responseCode = "200", description = "producto encontrado", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = MateriaPrimaDTO.class))),
+			@ApiResponse(responseCode = "304", description = "El producto no ha cambiado desde el ETag indicado en If-None-Match"),
 			@ApiResponse(responseCode = "404", description = "producto no encontrado"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar obtener la producto") })
-	public Response findById(
-			@Parameter(description = "ID del producto a buscar", required = true) @PathParam("id") Long id) {
-
-		try {
-			logger.info("Buscando producto con ID: " + id);
-
-			Producto p = productoService.findById(id);
-
-			if (p == null) {
-				logger.warn("producto con ID " + id + " no encontrada.");
-				return Response.status(Status.NOT_FOUND).entity("producto con ID " + id + " no encontrada.").build();
+	public void findById(
+			@Parameter(description = "ID del producto a buscar", required = true) @PathParam("id") Long id,
+			@Context Request request, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				boolean traza = FIND_BY_ID_LOG.sample();
+				if (traza) {
+					logger.info("Buscando producto con ID: {}", id);
+				}
+
+				Producto p = productoService.findById(id);
+
+				if (p == null) {
+					logger.warn("producto con ID {} no encontrada.", id);
+					return Response.status(Status.NOT_FOUND).entity("producto con ID " + id + " no encontrada.").build();
+				}
+
+				EntityTag etag = EntityTagUtils.of(p);
+				ResponseBuilder notModified = request.evaluatePreconditions(etag);
+				if (notModified != null) {
+					logger.debug("producto con ID {} no modificado.", id);
+					return notModified.tag(etag).build();
+				}
+
+				if (traza) {
+					logger.info("producto con ID {} encontrado.", id);
+				}
+				return Response.status(Status.OK).entity(p).tag(etag).build();
+			} catch (PinguelaException pe) {
+				logger.error("Error al buscar la producto con ID: {}", id, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al buscar el producto: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al buscar la producto con ID: {}", id, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al buscar el producto: " + e.getMessage()).build();
 			}
-
-			logger.info("producto con ID " + id + " encontrado.");
-			return Response.status(Status.OK).entity(p).build();
-		} catch (PinguelaException pe) {
-			logger.error("Error al buscar la producto con ID: " + id, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al buscar el producto: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al buscar la producto con ID: " + id, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al buscar el producto: " + e.getMessage()).build();
-		}
+		});
 	}
 
 	@GET
 	@Path("/search")
-	@Produces(MediaType.APPLICATION_JSON)
-	@Operation(summary = "Buscar productos por criterios", description = "Este endpoint permite buscar productos aplicando filtros opcionales como ID, nombre, rango de precios, cantidad de unidades, y localización.", responses = {
-			@ApiResponse(responseCode = "200", description = "Productos encontrados", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = Results.class))),
-			@ApiResponse(responseCode = "400", description = "Criterios de búsqueda no proporcionados o inválidos"),
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Compressed
+	@Produces({ MediaType.APPLICATION_JSON, CborMessageBodyWriter.APPLICATION_CBOR })
+	@Operation(summary = "Buscar productos por criterios", description = "Este endpoint permite buscar productos aplicando filtros opcionales como ID, nombre, rango de precios, cantidad de unidades, y localización. Los resultados se paginan por cursor: la respuesta incluye nextCursor para pedir la página siguiente. El total solo se calcula si se indica count=true; en caso contrario no se incluye en la respuesta. Los resultados se ordenan por id salvo que se indique sort (id, nombre, precio o unidades) y dir (asc o desc); a igualdad se ordenan por id.", responses = {
+			@ApiResponse(responseCode = "200", description = "Productos encontrados", content = @Content(mediaType = MediaType.APPLICATION_JSON, schema = @Schema(implementation = CursorResults.class))),
+			@ApiResponse(responseCode = "304", description = "La página no ha cambiado desde el ETag indicado en If-None-Match"),
+			@ApiResponse(responseCode = "400", description = "Criterios de búsqueda, ordenación o cursor no proporcionados o inválidos"),
 			@ApiResponse(responseCode = "404", description = "No se encontraron productos con los criterios proporcionados"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al procesar la búsqueda") })
-	public Response findByCriteria(@QueryParam("id") Long id, @QueryParam("unidadesDesde") Integer unidadesDesde,
+	public void findByCriteria(@QueryParam("id") Long id, @QueryParam("unidadesDesde") Integer unidadesDesde,
 			@QueryParam("unidadesHasta") Integer unidadesHasta, @QueryParam("nombre") String nombre,
 			@QueryParam("precioDesde") Double precioDesde, @QueryParam("precioHasta") Double precioHasta,
-			@QueryParam("locale") String locale) {
-
-		try {
-			logger.info("Criterios recibidos: id=" + id + ", unidadesDesde=" + unidadesDesde + ", unidadesHasta="
-					+ unidadesHasta + ", nombre=" + nombre + ", precioDesde=" + precioDesde + ", precioHasta="
-					+ precioHasta + ", locale=" + locale);
-
-			ProductoCriteria criteria = new ProductoCriteria();
-			criteria.setId(id);
-			criteria.setUnidadesDesde(unidadesDesde);
-			criteria.setUnidadesHasta(unidadesHasta);
-			criteria.setNombre(nombre);
-			criteria.setPrecioDesde(precioDesde);
-			criteria.setPrecioHasta(precioHasta);
-			criteria.setLocale(locale);
-
-			Results<Producto> resultados = productoService.findBy(criteria, 1, 10);
-
-			if (resultados == null) {
-				logger.warn("No se encontraron resultados con los criterios: " + criteria);
-				return Response.status(Response.Status.NOT_FOUND)
-						.entity("No se encontraron productos con los criterios proporcionados.").build();
+			@QueryParam("locale") String locale,
+			@Parameter(description = PREFIJO_DESCRIPTION) @QueryParam("prefijo") @DefaultValue("false") boolean prefijo,
+			@Parameter(description = "Cursor devuelto en la página anterior") @QueryParam("cursor") String cursor,
+			@Parameter(description = "Tamaño de página (máximo 100)") @QueryParam("limit") Integer limit,
+			@Parameter(description = "Calcular el total de resultados") @QueryParam("count") @DefaultValue("false") boolean count,
+			@Parameter(description = "Campo de ordenación: id (por defecto), nombre, precio o unidades") @QueryParam("sort") String sort,
+			@Parameter(description = "Dirección de la ordenación: asc (por defecto) o desc") @QueryParam("dir") String dir,
+			@Context Request request, @Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getBusquedas().submit(asyncResponse, () -> {
+			try {
+				if (SEARCH_LOG.sample()) {
+					logger.info("Criterios recibidos: id={}, unidadesDesde={}, unidadesHasta={}, nombre={}, "
+							+ "precioDesde={}, precioHasta={}, locale={}, cursor={}, limit={}, sort={}, dir={}", id,
+							unidadesDesde, unidadesHasta, nombre, precioDesde, precioHasta, locale, cursor, limit, sort,
+							dir);
+				}
+
+				ProductoCriteria criteria = buildCriteria(id, unidadesDesde, unidadesHasta, nombre, precioDesde,
+						precioHasta, locale);
+				criteria.setOrderBy(SortUtils.parseOrderBy(sort));
+				criteria.setAscDesc(SortUtils.parseAscDesc(dir));
+
+				CursorResults<Producto> resultados = productoQueryService.findBy(criteria, prefijo, cursor,
+						CursorUtils.normalizeLimit(limit), count);
+
+				if (resultados == null) {
+					logger.warn("No se encontraron resultados con los criterios: {}", criteria);
+					return Response.status(Response.Status.NOT_FOUND)
+							.entity("No se encontraron productos con los criterios proporcionados.").build();
+				}
+
+				EntityTag etag = EntityTagUtils.ofProductos(resultados);
+				ResponseBuilder notModified = request.evaluatePreconditions(etag);
+				if (notModified != null) {
+					return notModified.tag(etag).build();
+				}
+
+				return Response.ok(resultados).tag(etag).build();
+			} catch (IllegalArgumentException e) {
+				logger.warn(e.getMessage());
+				return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+			} catch (Exception e) {
+				return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+						.entity("Error al buscar productos: " + e.getMessage()).build();
 			}
+		});
+	}
 
-			return Response.ok(resultados).build();
-		} catch (Exception e) {
-			return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-					.entity("Error al buscar productos: " + e.getMessage()).build();
-		}
+	@GET
+	@Path("/suggest")
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Sugerir productos por nombre", description = "Este endpoint devuelve los productos cuyo nombre encaja con el texto indicado, ordenados por relevancia, para autocompletar mientras se escribe. Cada palabra del texto debe ser el principio de alguna palabra del nombre; no se distinguen mayúsculas ni acentos. Se resuelve con el índice de nombres en memoria, sin consultar la base de datos.", responses = {
+			@ApiResponse(responseCode = "200", description = "Sugerencias encontradas", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = Sugerencia.class)))),
+			@ApiResponse(responseCode = "400", description = "Texto de búsqueda vacío"),
+			@ApiResponse(responseCode = "503", description = "El índice de nombres está desactivado o todavía no se ha cargado") })
+	public void suggest(
+			@Parameter(description = "Texto a buscar", required = true) @QueryParam("q") String q,
+			@Parameter(description = "Número máximo de sugerencias (máximo 100)") @QueryParam("limit") Integer limit,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			if (TextUtils.tokenize(q).isEmpty()) {
+				return Response.status(Status.BAD_REQUEST).entity("El texto de búsqueda es obligatorio.").build();
+			}
+			NameIndex index = SearchIndexes.getProductoIndex();
+			if (!SearchIndexes.ENABLED || !index.isReady()) {
+				logger.warn("Índice de nombres de productos no disponible");
+				return Response.status(Status.SERVICE_UNAVAILABLE)
+						.entity("El índice de nombres de productos no está disponible.").build();
+			}
+			List<Sugerencia> sugerencias = index.search(q, CursorUtils.normalizeLimit(limit));
+			logger.debug("{} sugerencias para \"{}\"", sugerencias.size(), q);
+			return Response.ok(sugerencias).build();
+		});
+	}
+
+	@GET
+	@Path("/export")
+	@RateLimited(RateLimited.BUSQUEDAS)
+	@Compressed
+	@Produces(NdjsonUtils.APPLICATION_NDJSON)
+	@Operation(summary = "Exportar productos", description = "Este endpoint devuelve todos los productos que cumplen los criterios en formato NDJSON (un producto por línea, sin consumos). Las filas se leen de la base de datos a medida que se envían, sin cargarlas en memoria.", responses = {
+			@ApiResponse(responseCode = "200", description = "Exportación de productos"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al exportar los productos") })
+	public void export(@QueryParam("id") Long id, @QueryParam("unidadesDesde") Integer unidadesDesde,
+			@QueryParam("unidadesHasta") Integer unidadesHasta, @QueryParam("nombre") String nombre,
+			@QueryParam("precioDesde") Double precioDesde, @QueryParam("precioHasta") Double precioHasta,
+			@QueryParam("locale") String locale,
+			@Parameter(description = PREFIJO_DESCRIPTION) @QueryParam("prefijo") @DefaultValue("false") boolean prefijo,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getBusquedas().submit(asyncResponse, () -> {
+			logger.info("Exportando productos: id={}, unidadesDesde={}, unidadesHasta={}, nombre={}, precioDesde={}, "
+					+ "precioHasta={}, locale={}", id, unidadesDesde, unidadesHasta, nombre, precioDesde, precioHasta,
+					locale);
+
+			final ProductoCriteria criteria = buildCriteria(id, unidadesDesde, unidadesHasta, nombre, precioDesde,
+					precioHasta, locale);
+
+			StreamingOutput stream = new StreamingOutput() {
+				@Override
+				public void write(OutputStream os) throws IOException, WebApplicationException {
+					Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+					NdjsonRowHandler<Producto> handler = new NdjsonRowHandler<Producto>(writer);
+					try {
+						productoQueryService.export(criteria, prefijo, handler);
+						writer.flush();
+						logger.info("Exportados {} productos.", handler.getRows());
+					} catch (DataException de) {
+						// Las cabeceras ya se han enviado: solo se puede cortar la respuesta
+						logger.error("Error al exportar productos tras {} filas", handler.getRows(), de);
+						throw new WebApplicationException(de);
+					}
+				}
+			};
+			return Response.ok(stream).build();
+		});
 	}
 
 	@POST
 	@Path("/create")
+	@Idempotent
 	@Consumes(MediaType.APPLICATION_JSON)
 	@Produces(MediaType.APPLICATION_JSON)
 	@Operation(summary = "Crear un nuevo producto", description = "Este endpoint permite crear un nuevo producto en el sistema.", responses = {
 			@ApiResponse(responseCode = "201", description = "Producto creado exitosamente"),
 			@ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar crear el producto") })
-	public Response createProducto(
-			@RequestBody(description = "Datos del producto a crear", required = true) Producto producto) {
-
-		try {
-			logger.info("Intentando crear un nuevo producto: " + producto);
-
-			// Validar los datos del producto
-			if (producto.getNombre() == null || producto.getNombre().isEmpty()) {
-				return Response.status(Status.BAD_REQUEST).entity("El nombre del producto es obligatorio.").build();
-			}
-			if (producto.getPrecio() == null || producto.getPrecio() <= 0) {
-				return Response.status(Status.BAD_REQUEST).entity("El precio del producto debe ser mayor que 0.")
-						.build();
+	public void createProducto(
+			@RequestBody(description = "Datos del producto a crear", required = true) Producto producto,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando crear un nuevo producto: {}", producto);
+
+				// Validar los datos del producto
+				if (producto.getNombre() == null || producto.getNombre().isEmpty()) {
+					return Response.status(Status.BAD_REQUEST).entity("El nombre del producto es obligatorio.").build();
+				}
+				if (producto.getPrecio() == null || producto.getPrecio() <= 0) {
+					return Response.status(Status.BAD_REQUEST).entity("El precio del producto debe ser mayor que 0.")
+							.build();
+				}
+
+				producto.setUnidades(0);
+
+				// Crear el producto utilizando el servicio
+				Long id = productoService.create(producto);
+
+				// Devolver la respuesta con el ID del producto creado
+				logger.info("Producto creado: {}", producto);
+				return Response.status(Status.CREATED).entity("Producto creado exitosamente con ID: " + id).build();
+
+			} catch (PinguelaException pe) {
+				logger.error("Error al crear el producto: {}", producto, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al crear el producto: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al crear el producto: {}", producto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al crear el producto: " + e.getMessage()).build();
 			}
-
-			producto.setUnidades(0);
-
-			// Crear el producto utilizando el servicio
-			Long id = productoService.create(producto);
-
-			// Devolver la respuesta con el ID del producto creado
-			logger.info("Producto creado: " + producto);
-			return Response.status(Status.CREATED).entity("Producto creado exitosamente con ID: " + id).build();
-
-		} catch (PinguelaException pe) {
-			logger.error("Error al crear el producto: " + producto, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al crear el producto: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al crear el producto: " + producto, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al crear el producto: " + e.getMessage()).build();
-		}
+		});
 	}
 
 	@PUT
 	@Path("/update-stock/{idProducto}/{variacionStock}/{locale}")
+	@Idempotent
 	@Produces(MediaType.APPLICATION_JSON)
 	@Operation(summary = "Actualizar stock de un producto", description = "Este endpoint permite actualizar la cantidad en stock de un producto.", responses = {
 			@ApiResponse(responseCode = "200", description = "Stock actualizado exitosamente"),
 			@ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+			@ApiResponse(responseCode = "404", description = "Producto no encontrado"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar actualizar el stock") })
-	public Response updateStock(@PathParam("idProducto") Long idProducto,
-			@PathParam("variacionStock") Integer variacionStock, @PathParam("locale") String locale) {
-
-		try {
-			logger.info("Intentando actualizar el stock del producto ID: " + idProducto);
-
-			// Validar los datos de entrada
-			if (idProducto == null) {
-				return Response.status(Status.BAD_REQUEST).entity("El ID del producto es obligatorio.").build();
+	public void updateStock(@PathParam("idProducto") Long idProducto,
+			@PathParam("variacionStock") Integer variacionStock, @PathParam("locale") String locale,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando actualizar el stock del producto ID: {}", idProducto);
+
+				// Validar los datos de entrada
+				if (idProducto == null) {
+					return Response.status(Status.BAD_REQUEST).entity("El ID del producto es obligatorio.").build();
+				}
+				if (variacionStock == null || variacionStock <= 0) {
+					return Response.status(Status.BAD_REQUEST).entity("La variación de stock debe ser mayor que 0.")
+							.build();
+				}
+
+				// Llamar al servicio con actualizacionAutomaticaMateriasPrimas = true
+				productoService.updateStock(idProducto, variacionStock, true, locale);
+
+				// Devolver la respuesta
+				return Response.ok().entity("Stock actualizado exitosamente para el producto ID: " + idProducto).build();
+
+			} catch (ProductoNotFoundException pnfe) {
+				logger.warn("Producto no encontrado al actualizar el stock: {}", idProducto);
+				return Response.status(Status.NOT_FOUND).entity(pnfe.getMessage()).build();
+			} catch (StockException se) {
+				logger.error("Error de stock al actualizar el producto: {}", idProducto, se);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Error al actualizar el stock: " + se.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al actualizar el stock del producto: {}", idProducto, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al actualizar el stock: " + e.getMessage()).build();
 			}
-			if (variacionStock == null || variacionStock <= 0) {
-				return Response.status(Status.BAD_REQUEST).entity("La variación de stock debe ser mayor que 0.")
+		});
+	}
+
+	@POST
+	@Path("/update-stock")
+	@Idempotent
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@Operation(summary = "Actualizar el stock de varios productos", description = "Este endpoint aplica un lote de movimientos de stock en una única transacción, descontando las materias primas consumidas. Devuelve el resultado de cada movimiento en el mismo orden.", responses = {
+			@ApiResponse(responseCode = "200", description = "Lote procesado; consultar el estado de cada movimiento", content = @Content(mediaType = MediaType.APPLICATION_JSON, array = @ArraySchema(schema = @Schema(implementation = StockMovementResult.class)))),
+			@ApiResponse(responseCode = "400", description = "Lote vacío o demasiado grande"),
+			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar actualizar el stock") })
+	public void updateStock(
+			@RequestBody(description = "Movimientos de stock a aplicar", required = true) List<StockMovement> movimientos,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			if (movimientos == null || movimientos.isEmpty()) {
+				return Response.status(Status.BAD_REQUEST).entity("Debe indicarse al menos un movimiento de stock.")
 						.build();
 			}
+			if (movimientos.size() > MAX_MOVIMIENTOS) {
+				return Response.status(Status.BAD_REQUEST)
+						.entity("No se pueden procesar más de " + MAX_MOVIMIENTOS + " movimientos por petición.").build();
+			}
 
-			// Llamar al servicio con actualizacionAutomaticaMateriasPrimas = true
-			productoService.updateStock(idProducto, variacionStock, true, locale);
-
-			// Devolver la respuesta
-			return Response.ok().entity("Stock actualizado exitosamente para el producto ID: " + idProducto).build();
-
-		} catch (StockException se) {
-			logger.error("Error de stock al actualizar el producto: " + idProducto, se);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Error al actualizar el stock: " + se.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al actualizar el stock del producto: " + idProducto, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al actualizar el stock: " + e.getMessage()).build();
-		}
+			try {
+				logger.info("Intentando aplicar un lote de {} movimientos de stock", movimientos.size());
+				List<StockMovementResult> resultados = stockService.updateStock(movimientos);
+				return Response.ok(resultados).build();
+
+			} catch (DataException de) {
+				logger.error("Error al aplicar el lote de movimientos de stock", de);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Error al actualizar el stock: " + de.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al aplicar el lote de movimientos de stock", e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al actualizar el stock: " + e.getMessage()).build();
+			}
+		});
 	}
 
 	@DELETE
@@ -206,31 +454,46 @@ public class ProductoResource {
 			@ApiResponse(responseCode = "200", description = "Producto eliminada exitosamente"),
 			@ApiResponse(responseCode = "404", description = "Producto no encontrada"),
 			@ApiResponse(responseCode = "500", description = "Error interno en el servidor al intentar eliminar el Producto") })
-	public Response deleteMateriaPrima(
-			@Parameter(description = "ID del Producto a eliminar", required = true) @PathParam("id") Long id) {
-
-		try {
-			logger.info("Intentando eliminar la producto con ID: " + id);
-
-			// Intentar eliminar la producto
-			boolean eliminado = productoService.delete(id);
-
-			if (eliminado) {
-				logger.info("Producto con ID " + id + " eliminada exitosamente.");
-				return Response.status(Status.OK).entity("producto con ID " + id + " eliminada exitosamente.").build();
-			} else {
-				logger.warn("Producto con ID " + id + " no encontrada.");
-				return Response.status(Status.NOT_FOUND).entity("producto con ID " + id + " no encontrada.").build();
+	public void deleteMateriaPrima(
+			@Parameter(description = "ID del Producto a eliminar", required = true) @PathParam("id") Long id,
+			@Suspended AsyncResponse asyncResponse) {
+		asyncExecutors.getGeneral().submit(asyncResponse, () -> {
+			try {
+				logger.info("Intentando eliminar la producto con ID: {}", id);
+
+				// Intentar eliminar la producto
+				boolean eliminado = productoService.delete(id);
+
+				if (eliminado) {
+					logger.info("Producto con ID {} eliminada exitosamente.", id);
+					return Response.status(Status.OK).entity("producto con ID " + id + " eliminada exitosamente.").build();
+				} else {
+					logger.warn("Producto con ID {} no encontrada.", id);
+					return Response.status(Status.NOT_FOUND).entity("producto con ID " + id + " no encontrada.").build();
+				}
+			} catch (PinguelaException pe) {
+				logger.error("Error al eliminar Producto con ID: {}", id, pe);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error interno al eliminar Producto: " + pe.getMessage()).build();
+			} catch (Exception e) {
+				logger.error("Error inesperado al eliminar Producto con ID: {}", id, e);
+				return Response.status(Status.INTERNAL_SERVER_ERROR)
+						.entity("Ha ocurrido un error inesperado al eliminar Producto: " + e.getMessage()).build();
 			}
-		} catch (PinguelaException pe) {
-			logger.error("Error al eliminar Producto con ID: " + id, pe);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error interno al eliminar Producto: " + pe.getMessage()).build();
-		} catch (Exception e) {
-			logger.error("Error inesperado al eliminar Producto con ID: " + id, e);
-			return Response.status(Status.INTERNAL_SERVER_ERROR)
-					.entity("Ha ocurrido un error inesperado al eliminar Producto: " + e.getMessage()).build();
-		}
+		});
+	}
+
+	private ProductoCriteria buildCriteria(Long id, Integer unidadesDesde, Integer unidadesHasta, String nombre,
+			Double precioDesde, Double precioHasta, String locale) {
+		ProductoCriteria criteria = new ProductoCriteria();
+		criteria.setId(id);
+		criteria.setUnidadesDesde(unidadesDesde);
+		criteria.setUnidadesHasta(unidadesHasta);
+		criteria.setNombre(nombre);
+		criteria.setPrecioDesde(precioDesde);
+		criteria.setPrecioHasta(precioHasta);
+		criteria.setLocale(locale);
+		return criteria;
 	}
 
-}
+}
\ No newline at end of file
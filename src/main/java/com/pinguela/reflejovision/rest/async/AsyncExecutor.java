@@ -0,0 +1,210 @@
+package com.pinguela.reflejovision.rest.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Ejecuta las llamadas bloqueantes de los recursos fuera de los hilos del
+ * contenedor y reanuda la {@link AsyncResponse} con el resultado.
+ * <p>
+ * Admite como máximo {@code threads} tareas en ejecución y {@code queue} en
+ * espera; cuando está lleno responde inmediatamente 503 con Retry-After en
+ * lugar de encolar sin límite. Si el JDK tiene hilos virtuales se usa un hilo
+ * virtual por tarea, limitando igualmente la concurrencia a {@code threads}.
+ * Con {@code threads <= 0} las tareas se ejecutan en el propio hilo del
+ * contenedor, como si el recurso fuese síncrono.
+ */
+public class AsyncExecutor {
+
+	private static Logger logger = LogManager.getLogger(AsyncExecutor.class);
+
+	private static final int RETRY_AFTER_SECONDS = 1;
+
+	/**
+	 * Cuerpo del 503 por timeout. La tarea sigue ejecutándose y puede aplicar
+	 * sus cambios, así que no se debe tratar como un fallo sin efectos.
+	 */
+	public static final String TIMEOUT_MESSAGE = "La petición ha superado el tiempo máximo de espera.";
+
+	private final String name;
+	private final int threads;
+	private final int queue;
+	private final long timeoutMs;
+	private final boolean virtual;
+
+	private final ExecutorService executor;
+	// Plazas totales (en ejecución + en espera): si no hay, se rechaza
+	private final Semaphore admision;
+	// Concurrencia real con hilos virtuales; con el pool la limita su tamaño
+	private final Semaphore concurrencia;
+
+	private final AtomicInteger activas = new AtomicInteger();
+	private final AtomicLong completadas = new AtomicLong();
+	private final AtomicLong rechazadas = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	public AsyncExecutor(String name, int threads, int queue, long timeoutMs, boolean virtualThreads) {
+		this.name = name;
+		this.threads = threads;
+		this.queue = queue;
+		this.timeoutMs = timeoutMs;
+		this.admision = new Semaphore(Math.max(0, threads + queue));
+
+		if (threads <= 0) {
+			this.executor = null;
+			this.concurrencia = null;
+			this.virtual = false;
+			logger.info("Executor {} desactivado: las peticiones se atienden en el hilo del contenedor", name);
+			return;
+		}
+
+		ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+		if (virtualExecutor != null) {
+			this.executor = virtualExecutor;
+			this.concurrencia = new Semaphore(threads);
+			this.virtual = true;
+		} else {
+			AtomicInteger n = new AtomicInteger();
+			this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), r -> {
+						Thread t = new Thread(r, "async-" + name + "-" + n.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					});
+			((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+			this.concurrencia = null;
+			this.virtual = false;
+		}
+		logger.info("Executor {}: {} hilos{}, {} en espera, timeout {} ms", name, threads,
+				virtual ? " virtuales" : "", queue, timeoutMs);
+	}
+
+	/**
+	 * Ejecuta la tarea en el executor y reanuda la respuesta con lo que devuelva.
+	 * Las excepciones se entregan a JAX-RS igual que si el recurso las lanzase.
+	 */
+	public void submit(AsyncResponse asyncResponse, Callable<Response> task) {
+		if (executor == null) {
+			try {
+				asyncResponse.resume(task.call());
+			} catch (Throwable t) {
+				asyncResponse.resume(t);
+			}
+			return;
+		}
+
+		if (!admision.tryAcquire()) {
+			rechazadas.incrementAndGet();
+			logger.warn("Executor {} saturado; se rechaza la petición", name);
+			asyncResponse.resume(unavailable("El servidor está saturado, inténtelo de nuevo más tarde."));
+			return;
+		}
+
+		if (timeoutMs > 0) {
+			asyncResponse.setTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+			asyncResponse.setTimeoutHandler(ar -> {
+				timeouts.incrementAndGet();
+				ar.resume(unavailable(TIMEOUT_MESSAGE));
+			});
+		}
+
+		try {
+			executor.execute(() -> run(asyncResponse, task));
+		} catch (RejectedExecutionException e) {
+			admision.release();
+			rechazadas.incrementAndGet();
+			asyncResponse.resume(unavailable("El servidor está saturado, inténtelo de nuevo más tarde."));
+		}
+	}
+
+	private void run(AsyncResponse asyncResponse, Callable<Response> task) {
+		try {
+			if (concurrencia != null) {
+				concurrencia.acquireUninterruptibly();
+			}
+			activas.incrementAndGet();
+			try {
+				if (!asyncResponse.isDone()) {
+					asyncResponse.resume(task.call());
+				}
+			} catch (Throwable t) {
+				asyncResponse.resume(t);
+			} finally {
+				activas.decrementAndGet();
+				completadas.incrementAndGet();
+				if (concurrencia != null) {
+					concurrencia.release();
+				}
+			}
+		} finally {
+			admision.release();
+		}
+	}
+
+	private Response unavailable(String mensaje) {
+		return Response.status(Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+				.entity(mensaje).build();
+	}
+
+	public void shutdown() {
+		if (executor == null) {
+			return;
+		}
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public AsyncExecutorStats getStats() {
+		AsyncExecutorStats stats = new AsyncExecutorStats();
+		stats.setName(name);
+		stats.setThreads(threads);
+		stats.setQueue(queue);
+		stats.setVirtual(virtual);
+		int activas = this.activas.get();
+		stats.setActivas(activas);
+		stats.setEnEspera(executor == null ? 0 : Math.max(0, threads + queue - admision.availablePermits() - activas));
+		stats.setCompletadas(completadas.get());
+		stats.setRechazadas(rechazadas.get());
+		stats.setTimeouts(timeouts.get());
+		return stats;
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor() por reflexión, para poder
+	 * compilar con Java 11 y usar hilos virtuales cuando el JDK los tenga.
+	 * 
+	 * @return El executor, o null si el JDK no tiene hilos virtuales.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.info("Hilos virtuales no disponibles en este JDK; se usa un pool de hilos");
+			return null;
+		}
+	}
+
+}
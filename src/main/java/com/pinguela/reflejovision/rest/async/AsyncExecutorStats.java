@@ -0,0 +1,90 @@
+package com.pinguela.reflejovision.rest.async;
+
+public class AsyncExecutorStats {
+
+	private String name = null;
+	private int threads = 0;
+	private int queue = 0;
+	private boolean virtual = false;
+	private int activas = 0;
+	private int enEspera = 0;
+	private long completadas = 0;
+	private long rechazadas = 0;
+	private long timeouts = 0;
+
+	public AsyncExecutorStats() {
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getQueue() {
+		return queue;
+	}
+
+	public void setQueue(int queue) {
+		this.queue = queue;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	public void setVirtual(boolean virtual) {
+		this.virtual = virtual;
+	}
+
+	public int getActivas() {
+		return activas;
+	}
+
+	public void setActivas(int activas) {
+		this.activas = activas;
+	}
+
+	public int getEnEspera() {
+		return enEspera;
+	}
+
+	public void setEnEspera(int enEspera) {
+		this.enEspera = enEspera;
+	}
+
+	public long getCompletadas() {
+		return completadas;
+	}
+
+	public void setCompletadas(long completadas) {
+		this.completadas = completadas;
+	}
+
+	public long getRechazadas() {
+		return rechazadas;
+	}
+
+	public void setRechazadas(long rechazadas) {
+		this.rechazadas = rechazadas;
+	}
+
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	public void setTimeouts(long timeouts) {
+		this.timeouts = timeouts;
+	}
+
+}
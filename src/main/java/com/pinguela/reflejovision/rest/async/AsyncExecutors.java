@@ -0,0 +1,70 @@
+package com.pinguela.reflejovision.rest.async;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Executors de los recursos. Las búsquedas y exportaciones, que pueden tardar,
+ * tienen su propio executor para que una ráfaga de ellas no deje sin hilos a
+ * las lecturas por id ni a las escrituras. Las cargas masivas, que pueden durar
+ * minutos, tienen un executor pequeño sin tiempo máximo.
+ */
+public class AsyncExecutors {
+
+	private final AsyncExecutor general;
+	private final AsyncExecutor busquedas;
+	private final AsyncExecutor importaciones;
+
+	public AsyncExecutors() {
+		// Con async.enabled=false los recursos se comportan de forma síncrona
+		boolean enabled = ConfigUtils.getBoolean("async.enabled", true);
+		long timeoutMs = ConfigUtils.getLong("async.timeout.ms", 30000);
+		boolean virtualThreads = ConfigUtils.getBoolean("async.virtualThreads", true);
+		general = new AsyncExecutor("general", enabled ? ConfigUtils.getInt("async.general.threads", 32) : 0,
+				ConfigUtils.getInt("async.general.queue", 200), timeoutMs, virtualThreads);
+		busquedas = new AsyncExecutor("busquedas", enabled ? ConfigUtils.getInt("async.busquedas.threads", 8) : 0,
+				ConfigUtils.getInt("async.busquedas.queue", 50), timeoutMs, virtualThreads);
+		importaciones = new AsyncExecutor("importaciones",
+				enabled ? ConfigUtils.getInt("async.importaciones.threads", 2) : 0,
+				ConfigUtils.getInt("async.importaciones.queue", 4),
+				ConfigUtils.getLong("async.importaciones.timeout.ms", 0), virtualThreads);
+	}
+
+	/**
+	 * @return Executor de las lecturas por id y las escrituras.
+	 */
+	public AsyncExecutor getGeneral() {
+		return general;
+	}
+
+	/**
+	 * @return Executor de las búsquedas y exportaciones.
+	 */
+	public AsyncExecutor getBusquedas() {
+		return busquedas;
+	}
+
+	/**
+	 * @return Executor de las cargas masivas.
+	 */
+	public AsyncExecutor getImportaciones() {
+		return importaciones;
+	}
+
+	public List<AsyncExecutorStats> getStats() {
+		List<AsyncExecutorStats> stats = new ArrayList<AsyncExecutorStats>();
+		stats.add(general.getStats());
+		stats.add(busquedas.getStats());
+		stats.add(importaciones.getStats());
+		return stats;
+	}
+
+	public void shutdown() {
+		general.shutdown();
+		busquedas.shutdown();
+		importaciones.shutdown();
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.pinguela.reflejovision.rest.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.pinguela.reflejovision.rest.dao.impl.MateriaPrimaIdiomaDAOImpl;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Registro de las cachés de la aplicación. Son únicas por aplicación para que
+ * todas las instancias de los servicios compartan las mismas entradas.
+ */
+public class CacheManager {
+
+	private static final LruCache<Long, Producto> productoCache = new LruCache<Long, Producto>("producto",
+			ConfigUtils.getInt("cache.producto.size", 1000), ConfigUtils.getLong("cache.producto.ttl", 300));
+
+	// Las materias primas se guardan una vez por id, no por idioma: el nombre
+	// se localiza en cada lectura desde la tabla de traducciones
+	private static final LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = new LruCache<Long, MateriaPrimaDTO>(
+			"materiaprima", ConfigUtils.getInt("cache.materiaprima.size", 1000),
+			ConfigUtils.getLong("cache.materiaprima.ttl", 300));
+
+	private static final TranslationTable translationTable = new TranslationTable(new MateriaPrimaIdiomaDAOImpl(),
+			SearchIndexes.ENABLED ? SearchIndexes.getMateriaPrimaIndex() : null);
+
+	private static final ConsumoTable consumoTable = new ConsumoTable();
+
+	public static final LruCache<Long, Producto> getProductoCache() {
+		return productoCache;
+	}
+
+	public static final LruCache<Long, MateriaPrimaDTO> getMateriaPrimaCache() {
+		return materiaPrimaCache;
+	}
+
+	public static final TranslationTable getTranslationTable() {
+		return translationTable;
+	}
+
+	public static final ConsumoTable getConsumoTable() {
+		return consumoTable;
+	}
+
+	public static final List<CacheStats> getStats() {
+		List<CacheStats> stats = new ArrayList<CacheStats>();
+		stats.add(productoCache.getStats());
+		stats.add(materiaPrimaCache.getStats());
+		stats.add(consumoTable.getStats());
+		return stats;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.pinguela.reflejovision.rest.cache;
+
+public class CacheStats {
+
+	private String name = null;
+	private int size = 0;
+	private int maxSize = 0;
+	private long ttlSeconds = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long expirations = 0;
+	private long invalidations = 0;
+
+	public CacheStats() {
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	public void setTtlSeconds(long ttlSeconds) {
+		this.ttlSeconds = ttlSeconds;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public void setHits(long hits) {
+		this.hits = hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(long misses) {
+		this.misses = misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void setEvictions(long evictions) {
+		this.evictions = evictions;
+	}
+
+	public long getExpirations() {
+		return expirations;
+	}
+
+	public void setExpirations(long expirations) {
+		this.expirations = expirations;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public void setInvalidations(long invalidations) {
+		this.invalidations = invalidations;
+	}
+
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+}
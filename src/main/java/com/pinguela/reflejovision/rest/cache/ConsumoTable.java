@@ -0,0 +1,202 @@
+package com.pinguela.reflejovision.rest.cache;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+import com.pinguela.reflejovision.rest.dao.impl.StockDAOImpl;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+
+/**
+ * Consumos de materias primas (lista de materiales) de cada producto en
+ * memoria, para que los descuentos de materias primas de las variaciones de
+ * stock y los endpoints de /consumo no consulten CONSUMO en cada petición.
+ * <p>
+ * Se carga completa al arrancar ({@link #preload()}) y los productos que
+ * falten se leen en su primer uso. Las escrituras de consumos y de productos
+ * deben llamar a {@link #invalidate(Long)}: como en {@link LruCache}, cada
+ * invalidación incrementa una generación y una lectura que empezó antes no se
+ * guarda, de modo que la tabla nunca se queda con los consumos anteriores a
+ * una escritura.
+ * <p>
+ * Las listas guardadas, y los ConsumoDTO que contienen, no se modifican
+ * nunca: quien tenga que cambiarlos debe copiarlos antes.
+ */
+public class ConsumoTable {
+
+	private static Logger logger = LogManager.getLogger(ConsumoTable.class);
+
+	private final StockDAO stockDAO;
+	private final Map<Long, List<ConsumoDTO>> consumos = new ConcurrentHashMap<Long, List<ConsumoDTO>>();
+
+	// Protegida por el monitor de la tabla
+	private long generation = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public ConsumoTable() {
+		this(new StockDAOImpl());
+	}
+
+	public ConsumoTable(StockDAO stockDAO) {
+		this.stockDAO = stockDAO;
+	}
+
+	/**
+	 * Carga los consumos de todos los productos que tienen alguno. Si mientras
+	 * tanto se invalida algún producto no se guarda nada, y los productos se
+	 * cargan en su primer uso.
+	 */
+	public void preload() throws DataException {
+		long loadGeneration = getGeneration();
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			Map<Long, List<ConsumoDTO>> todos = stockDAO.findAllConsumos(c);
+			commit = true;
+			Map<Long, List<ConsumoDTO>> nuevos = new HashMap<Long, List<ConsumoDTO>>();
+			for (Map.Entry<Long, List<ConsumoDTO>> e : todos.entrySet()) {
+				nuevos.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+			}
+			if (putAllIfUnchanged(nuevos, loadGeneration)) {
+				logger.info("Cargados los consumos de {} productos", todos.size());
+			} else {
+				logger.info("Consumos modificados durante la carga inicial; se cargarán en su primer uso");
+			}
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	/**
+	 * @return Consumos del producto, vacíos si no tiene ninguno o no existe.
+	 */
+	public List<ConsumoDTO> get(Long idProducto) throws DataException {
+		List<ConsumoDTO> consumosProducto = consumos.get(idProducto);
+		if (consumosProducto != null) {
+			hits.increment();
+			return consumosProducto;
+		}
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			consumosProducto = getAll(c, Collections.singletonList(idProducto)).get(idProducto);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error("Producto: {}", idProducto, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return consumosProducto;
+	}
+
+	/**
+	 * Consumos de los productos indicados. Los que no están en la tabla se leen
+	 * en una sola consulta sobre la conexión indicada, dentro de la transacción
+	 * de quien llama.
+	 *
+	 * @return Consumos por id de producto, con una entrada (vacía si no tiene
+	 *         consumos) para cada id indicado.
+	 */
+	public Map<Long, List<ConsumoDTO>> getAll(Connection c, Collection<Long> idsProducto) throws DataException {
+		Map<Long, List<ConsumoDTO>> found = new HashMap<Long, List<ConsumoDTO>>();
+		List<Long> missing = new ArrayList<Long>();
+		for (Long id : idsProducto) {
+			List<ConsumoDTO> consumosProducto = consumos.get(id);
+			if (consumosProducto != null) {
+				found.put(id, consumosProducto);
+			} else if (id != null) {
+				missing.add(id);
+			}
+		}
+		hits.add(found.size());
+		if (missing.isEmpty()) {
+			return found;
+		}
+
+		misses.add(missing.size());
+		long loadGeneration = getGeneration();
+		Map<Long, List<ConsumoDTO>> leidos = stockDAO.findConsumos(c, missing);
+		Map<Long, List<ConsumoDTO>> nuevos = new HashMap<Long, List<ConsumoDTO>>();
+		for (Long id : missing) {
+			List<ConsumoDTO> consumosProducto = leidos.get(id);
+			nuevos.put(id, consumosProducto == null ? Collections.<ConsumoDTO>emptyList()
+					: Collections.unmodifiableList(consumosProducto));
+		}
+		putAllIfUnchanged(nuevos, loadGeneration);
+		found.putAll(nuevos);
+		return found;
+	}
+
+	/**
+	 * @return Consumos del producto si están en la tabla, o null; nunca accede a
+	 *         base de datos.
+	 */
+	public List<ConsumoDTO> getIfPresent(Long idProducto) {
+		return idProducto == null ? null : consumos.get(idProducto);
+	}
+
+	public synchronized void invalidate(Long idProducto) {
+		generation++;
+		if (idProducto != null && consumos.remove(idProducto) != null) {
+			invalidations.increment();
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		invalidations.add(consumos.size());
+		consumos.clear();
+	}
+
+	public int size() {
+		return consumos.size();
+	}
+
+	public CacheStats getStats() {
+		CacheStats stats = new CacheStats();
+		stats.setName("consumo");
+		stats.setSize(consumos.size());
+		stats.setHits(hits.sum());
+		stats.setMisses(misses.sum());
+		stats.setInvalidations(invalidations.sum());
+		return stats;
+	}
+
+	private synchronized long getGeneration() {
+		return generation;
+	}
+
+	private synchronized boolean putAllIfUnchanged(Map<Long, List<ConsumoDTO>> values, long loadGeneration) {
+		if (loadGeneration != generation) {
+			return false;
+		}
+		consumos.putAll(values);
+		return true;
+	}
+
+}
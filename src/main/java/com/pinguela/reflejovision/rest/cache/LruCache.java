@@ -0,0 +1,201 @@
+package com.pinguela.reflejovision.rest.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+import com.luis.reflejovision.dao.DataException;
+
+/**
+ * Caché en memoria acotada por número de entradas, con expulsión LRU y
+ * caducidad (TTL) por entrada.
+ * <p>
+ * Cada invalidación incrementa una generación; una carga que empezó antes de
+ * una invalidación no se guarda, de modo que una lectura concurrente con una
+ * escritura nunca deja en caché el valor anterior a la escritura.
+ */
+public class LruCache<K, V> {
+
+	public interface Loader<K, V> {
+		public V load(K key) throws DataException;
+	}
+
+	private static class CacheEntry<V> {
+		private final V value;
+		private final long expiresAt;
+
+		private CacheEntry(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final String name;
+	private final int maxSize;
+	private final long ttlMillis;
+	private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+	// Protegidos por el monitor de la caché
+	private long generation = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long expirations = 0;
+	private long invalidations = 0;
+
+	/**
+	 * @param ttlSeconds Tiempo de vida de cada entrada; 0 para no caducar.
+	 */
+	public LruCache(String name, int maxSize, long ttlSeconds) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlSeconds * 1000L;
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > LruCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (ttlMillis > 0 && entry.expiresAt < System.currentTimeMillis()) {
+			entries.remove(key);
+			expirations++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Busca varias claves adquiriendo el monitor una sola vez.
+	 * 
+	 * @return Los valores encontrados; las claves que no están en caché (o han
+	 *         caducado) no aparecen.
+	 */
+	public synchronized Map<K, V> getAll(Collection<K> keys) {
+		Map<K, V> found = new HashMap<K, V>();
+		for (K key : keys) {
+			V value = get(key);
+			if (value != null) {
+				found.put(key, value);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Devuelve el valor en caché o, si no está, lo carga con el loader y lo
+	 * guarda. Los valores null no se guardan.
+	 */
+	public V get(K key, Loader<K, V> loader) throws DataException {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		long loadGeneration = getGeneration();
+		value = loader.load(key);
+		if (value != null) {
+			putIfUnchanged(key, value, loadGeneration);
+		}
+		return value;
+	}
+
+	public synchronized void put(K key, V value) {
+		entries.put(key, new CacheEntry<V>(value, System.currentTimeMillis() + ttlMillis));
+	}
+
+	/**
+	 * Guarda el valor solo si no ha habido invalidaciones desde la generación
+	 * indicada.
+	 * 
+	 * @return true si se ha guardado.
+	 */
+	public synchronized boolean putIfUnchanged(K key, V value, long loadGeneration) {
+		if (loadGeneration != generation) {
+			return false;
+		}
+		put(key, value);
+		return true;
+	}
+
+	/**
+	 * Como {@link #putIfUnchanged(Object, Object, long)} para varios valores a
+	 * la vez: se guardan todos o ninguno.
+	 * 
+	 * @return true si se han guardado.
+	 */
+	public synchronized boolean putAllIfUnchanged(Map<K, V> values, long loadGeneration) {
+		if (loadGeneration != generation) {
+			return false;
+		}
+		for (Map.Entry<K, V> e : values.entrySet()) {
+			put(e.getKey(), e.getValue());
+		}
+		return true;
+	}
+
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	public synchronized void invalidate(K key) {
+		generation++;
+		if (entries.remove(key) != null) {
+			invalidations++;
+		}
+	}
+
+	public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+		generation++;
+		Iterator<Map.Entry<K, CacheEntry<V>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<K, CacheEntry<V>> e = it.next();
+			if (predicate.test(e.getKey(), e.getValue().value)) {
+				it.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		invalidations += entries.size();
+		entries.clear();
+	}
+
+	public synchronized CacheStats getStats() {
+		CacheStats stats = new CacheStats();
+		stats.setName(name);
+		stats.setSize(entries.size());
+		stats.setMaxSize(maxSize);
+		stats.setTtlSeconds(ttlMillis / 1000L);
+		stats.setHits(hits);
+		stats.setMisses(misses);
+		stats.setEvictions(evictions);
+		stats.setExpirations(expirations);
+		stats.setInvalidations(invalidations);
+		return stats;
+	}
+
+}
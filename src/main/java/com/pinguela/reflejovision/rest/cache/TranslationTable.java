@@ -0,0 +1,206 @@
+package com.pinguela.reflejovision.rest.cache;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaIdiomaDAO;
+import com.pinguela.reflejovision.rest.dao.impl.MateriaPrimaIdiomaDAOImpl;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.search.LocalizedNameIndex;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * Traducciones de los nombres de todas las materias primas en memoria, para
+ * localizar las lecturas sin consultar MATERIAPRIMA_IDIOMA en cada petición.
+ * <p>
+ * Se carga completa al arrancar ({@link #preload()}); después se mantiene por
+ * materia prima: las escrituras recargan las afectadas ({@link #reload})
+ * y las lecturas que llegan a base de datos añaden las que falten
+ * ({@link #put}), por ejemplo las de las materias primas creadas después de
+ * la carga inicial.
+ * <p>
+ * Si se le indica un {@link LocalizedNameIndex}, lo mantiene con las mismas
+ * traducciones que guarda.
+ */
+public class TranslationTable {
+
+	private static Logger logger = LogManager.getLogger(TranslationTable.class);
+
+	private final MateriaPrimaIdiomaDAO materiaPrimaIdiomaDAO;
+	private final LocalizedNameIndex nameIndex;
+	// Las listas guardadas no se modifican nunca: se sustituyen enteras
+	private final Map<Long, List<MateriaPrimaIdioma>> traducciones = new ConcurrentHashMap<Long, List<MateriaPrimaIdioma>>();
+
+	public TranslationTable() {
+		this(new MateriaPrimaIdiomaDAOImpl(), null);
+	}
+
+	/**
+	 * @param nameIndex Índice de nombres a mantener, o null.
+	 */
+	public TranslationTable(MateriaPrimaIdiomaDAO materiaPrimaIdiomaDAO, LocalizedNameIndex nameIndex) {
+		this.materiaPrimaIdiomaDAO = materiaPrimaIdiomaDAO;
+		this.nameIndex = nameIndex;
+	}
+
+	/**
+	 * Carga las traducciones de todas las materias primas. No sustituye las que
+	 * ya estén en la tabla, que pueden ser más recientes que las leídas aquí.
+	 */
+	public void preload() throws DataException {
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			Map<Long, List<MateriaPrimaIdioma>> todas = materiaPrimaIdiomaDAO.findAll(c);
+			commit = true;
+			for (Map.Entry<Long, List<MateriaPrimaIdioma>> e : todas.entrySet()) {
+				traducciones.putIfAbsent(e.getKey(), Collections.unmodifiableList(e.getValue()));
+			}
+			if (nameIndex != null) {
+				nameIndex.replaceAll(new HashMap<Long, List<MateriaPrimaIdioma>>(traducciones));
+			}
+			logger.info("Cargadas las traducciones de {} materias primas", todas.size());
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	/**
+	 * Vuelve a leer de base de datos las traducciones de las materias primas
+	 * indicadas. Si la lectura falla se descartan de la tabla, y se recuperan en
+	 * la siguiente lectura que llegue a base de datos.
+	 */
+	public void reload(Collection<Long> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			Map<Long, List<MateriaPrimaIdioma>> leidas = materiaPrimaIdiomaDAO.findByMateriasPrimas(c, ids);
+			commit = true;
+			for (Long id : ids) {
+				List<MateriaPrimaIdioma> t = leidas.get(id);
+				if (t == null) {
+					remove(id);
+				} else {
+					traducciones.put(id, Collections.unmodifiableList(t));
+					if (nameIndex != null) {
+						nameIndex.put(id, t);
+					}
+				}
+			}
+		} catch (SQLException | DataException e) {
+			logger.warn("No se han podido recargar las traducciones de {}; se descartan", ids, e);
+			for (Long id : ids) {
+				remove(id);
+			}
+		} finally {
+			try {
+				JDBCUtils.close(c, commit);
+			} catch (DataException e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Guarda las traducciones leídas de base de datos junto con la materia
+	 * prima. Solo debe llamarse con datos que no pueden ser anteriores a la
+	 * última escritura (los que la caché acepta con putIfUnchanged).
+	 */
+	public void put(Long id, List<MateriaPrimaIdioma> t) {
+		if (id != null && t != null) {
+			List<MateriaPrimaIdioma> copia = new ArrayList<MateriaPrimaIdioma>(t.size());
+			for (MateriaPrimaIdioma mpi : t) {
+				copia.add(ModelUtils.copy(mpi));
+			}
+			traducciones.put(id, Collections.unmodifiableList(copia));
+			if (nameIndex != null) {
+				nameIndex.put(id, copia);
+			}
+		}
+	}
+
+	public void remove(Long id) {
+		traducciones.remove(id);
+		if (nameIndex != null) {
+			nameIndex.remove(id);
+		}
+	}
+
+	public int size() {
+		return traducciones.size();
+	}
+
+	/**
+	 * @return Nombre de la materia prima en el idioma indicado, o null si la
+	 *         tabla no la tiene o no tiene traducción a ese idioma.
+	 */
+	public String getNombre(Long id, String locale) {
+		List<MateriaPrimaIdioma> t = id == null ? null : traducciones.get(id);
+		if (t != null) {
+			for (MateriaPrimaIdioma mpi : t) {
+				if (mpi.getLocale() != null && mpi.getLocale().equalsIgnoreCase(locale)) {
+					return mpi.getNombre();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Rellena las traducciones de la materia prima desde la tabla y fija su
+	 * nombre en el idioma indicado, o null si no tiene traducción a ese idioma.
+	 * Si la tabla no tiene la materia prima se usan las traducciones que ya
+	 * traiga.
+	 *
+	 * @param mp Copia de la materia prima, que se modifica.
+	 */
+	public MateriaPrimaDTO localize(MateriaPrimaDTO mp, String locale) {
+		if (mp == null) {
+			return null;
+		}
+		List<MateriaPrimaIdioma> t = traducciones.get(mp.getId());
+		if (t != null) {
+			List<MateriaPrimaIdioma> copia = new ArrayList<MateriaPrimaIdioma>(t.size());
+			for (MateriaPrimaIdioma mpi : t) {
+				copia.add(ModelUtils.copy(mpi));
+			}
+			mp.setTraducciones(copia);
+		}
+
+		String nombre = null;
+		if (mp.getTraducciones() != null) {
+			for (MateriaPrimaIdioma mpi : mp.getTraducciones()) {
+				if (mpi.getLocale() != null && mpi.getLocale().equalsIgnoreCase(locale)) {
+					nombre = mpi.getNombre();
+				}
+			}
+		}
+		mp.setNombre(nombre);
+		return mp;
+	}
+
+}
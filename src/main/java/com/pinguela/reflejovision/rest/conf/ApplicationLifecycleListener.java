@@ -0,0 +1,144 @@
+package com.pinguela.reflejovision.rest.conf;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.internal.inject.InjectionManager;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyStore;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimiter;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Arranca y para con la aplicación los componentes que tienen hilos propios:
+ * el {@link StockLedger}, los {@link InventoryAggregates}, el
+ * {@link ChangeEventBus}, el {@link IdempotencyStore} y el {@link RateLimiter}, si están activos, los
+ * {@link AsyncExecutors} y los
+ * {@link ConnectionPools}. Al arrancar también precarga la {@link TranslationTable}, que construye el
+ * índice de nombres de las materias primas, y la {@link ConsumoTable}, y construye el índice de nombres
+ * de los productos.
+ */
+public class ApplicationLifecycleListener implements ContainerLifecycleListener {
+
+	private static Logger logger = LogManager.getLogger(ApplicationLifecycleListener.class);
+
+	@Override
+	public void onStartup(Container container) {
+		// Antes de la primera conexión, para que el pool ya tenga su configuración
+		ConnectionPools.init();
+		InjectionManager injectionManager = getInjectionManager(container);
+		TranslationTable translationTable = injectionManager.getInstance(TranslationTable.class);
+		if (translationTable != null && ConfigUtils.getBoolean("cache.traducciones.preload", true)) {
+			try {
+				translationTable.preload();
+			} catch (DataException e) {
+				// La tabla se completa con las lecturas que lleguen a base de datos
+				logger.error("No se han podido precargar las traducciones de las materias primas", e);
+			}
+		}
+		ConsumoTable consumoTable = injectionManager.getInstance(ConsumoTable.class);
+		if (consumoTable != null && ConfigUtils.getBoolean("cache.consumos.preload", true)) {
+			try {
+				consumoTable.preload();
+			} catch (DataException e) {
+				// Los consumos de cada producto se cargan en su primer uso
+				logger.error("No se han podido precargar los consumos de los productos", e);
+			}
+		}
+		ProductoQueryService productoQueryService = injectionManager.getInstance(ProductoQueryService.class);
+		if (productoQueryService != null && SearchIndexes.ENABLED) {
+			buildProductoIndex(productoQueryService);
+		}
+		StockLedger stockLedger = injectionManager.getInstance(StockLedger.class);
+		if (stockLedger != null) {
+			stockLedger.start();
+		}
+		// Después del ledger, cuyas unidades son las que cuentan los agregados
+		InventoryAggregates inventory = injectionManager.getInstance(InventoryAggregates.class);
+		if (inventory != null) {
+			inventory.start();
+		}
+		IdempotencyStore idempotencyStore = injectionManager.getInstance(IdempotencyStore.class);
+		if (idempotencyStore != null) {
+			idempotencyStore.start();
+		}
+		RateLimiter rateLimiter = injectionManager.getInstance(RateLimiter.class);
+		if (rateLimiter != null) {
+			rateLimiter.start();
+		}
+	}
+
+	/**
+	 * Carga en el índice los nombres de todos los productos. Hasta que termina
+	 * las búsquedas por nombre se resuelven en base de datos.
+	 */
+	private void buildProductoIndex(ProductoQueryService productoQueryService) {
+		Map<Long, String> nombres = new HashMap<Long, String>();
+		try {
+			productoQueryService.export(new ProductoCriteria(), false, p -> nombres.put(p.getId(), p.getNombre()));
+			SearchIndexes.getProductoIndex().replaceAll(nombres);
+			logger.info("Indexados los nombres de {} productos", nombres.size());
+		} catch (DataException | IOException e) {
+			logger.error("No se ha podido construir el índice de nombres de los productos", e);
+		}
+	}
+
+	@Override
+	public void onReload(Container container) {
+	}
+
+	@Override
+	public void onShutdown(Container container) {
+		InjectionManager injectionManager = getInjectionManager(container);
+		// Se cierran las conexiones SSE abiertas, que si no retrasan la parada del
+		// contenedor
+		ChangeEventBus eventBus = injectionManager.getInstance(ChangeEventBus.class);
+		if (eventBus != null) {
+			eventBus.shutdown();
+		}
+		// Primero los executors, para que no lleguen variaciones de stock después
+		// del último flush
+		AsyncExecutors asyncExecutors = injectionManager.getInstance(AsyncExecutors.class);
+		if (asyncExecutors != null) {
+			asyncExecutors.shutdown();
+		}
+		InventoryAggregates inventory = injectionManager.getInstance(InventoryAggregates.class);
+		if (inventory != null) {
+			inventory.stop();
+		}
+		StockLedger stockLedger = injectionManager.getInstance(StockLedger.class);
+		if (stockLedger != null) {
+			stockLedger.stop();
+		}
+		IdempotencyStore idempotencyStore = injectionManager.getInstance(IdempotencyStore.class);
+		if (idempotencyStore != null) {
+			idempotencyStore.stop();
+		}
+		RateLimiter rateLimiter = injectionManager.getInstance(RateLimiter.class);
+		if (rateLimiter != null) {
+			rateLimiter.stop();
+		}
+		ConnectionPools.shutdown();
+	}
+
+	private InjectionManager getInjectionManager(Container container) {
+		return container.getApplicationHandler().getInjectionManager();
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.pinguela.reflejovision.rest.conf;
+
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.CommonProperties;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import com.pinguela.reflejovision.rest.encoding.CborMessageBodyWriter;
+import com.pinguela.reflejovision.rest.encoding.CompressionFilter;
+import com.pinguela.reflejovision.rest.encoding.JacksonJsonProvider;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyFilter;
+import com.pinguela.reflejovision.rest.metrics.MetricsFilter;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimitFilter;
+
+import io.swagger.v3.jaxrs2.integration.resources.OpenApiResource;
+
+/**
+ * Configuración JAX-RS de la aplicación: recursos, OpenAPI, los servicios
+ * compartidos que se inyectan en los recursos, los límites de peticiones, la
+ * compresión de las respuestas, la Idempotency-Key de las escrituras, la
+ * representación CBOR y el proveedor JSON (JSON-B o Jackson, según
+ * json.provider).
+ */
+public class ReflejoVisionApplication extends ResourceConfig {
+
+	public static final String RESOURCES_PACKAGE = "com.pinguela.reflejovision.rest.api";
+
+	public ReflejoVisionApplication() {
+		this(new ServiceBinder());
+	}
+
+	/**
+	 * @param binder Binder con las implementaciones de los servicios; permite
+	 *               sustituirlas fuera del contenedor (benchmarks).
+	 */
+	public ReflejoVisionApplication(AbstractBinder binder) {
+		packages(RESOURCES_PACKAGE);
+		register(OpenApiResource.class);
+		register(binder);
+		register(ApplicationLifecycleListener.class);
+		register(MetricsFilter.class);
+		register(RateLimitFilter.class);
+		register(CompressionFilter.class);
+		register(IdempotencyFilter.class);
+		register(CborMessageBodyWriter.class);
+		if (JacksonJsonProvider.isEnabled()) {
+			property(CommonProperties.JSON_BINDING_FEATURE_DISABLE_SERVER, true);
+			register(JacksonJsonProvider.class);
+		}
+	}
+
+}
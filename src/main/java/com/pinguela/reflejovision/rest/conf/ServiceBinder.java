@@ -0,0 +1,199 @@
+package com.pinguela.reflejovision.rest.conf;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+
+import com.luis.reflejovision.service.ConsumoService;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.UsuarioService;
+import com.luis.reflejovision.service.impl.MateriaPrimaServiceImpl;
+import com.luis.reflejovision.service.impl.ProductoServiceImpl;
+import com.luis.reflejovision.service.impl.UsuarioServiceImpl;
+import com.pinguela.reflejovision.rest.async.AsyncExecutors;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyStore;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+import com.pinguela.reflejovision.rest.metrics.MetricsRegistry;
+import com.pinguela.reflejovision.rest.metrics.TimedServiceProxy;
+import com.pinguela.reflejovision.rest.ratelimit.ConcurrencyLimiter;
+import com.pinguela.reflejovision.rest.ratelimit.RateLimiter;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaQueryService;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.service.UsuarioQueryService;
+import com.pinguela.reflejovision.rest.service.UsuarioUpdateService;
+import com.pinguela.reflejovision.rest.service.impl.CachedConsumoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedMateriaPrimaBulkServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedMateriaPrimaQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedMateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedProductoQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.CachedStockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.EventMateriaPrimaBulkServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.EventMateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.EventProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.EventStockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.IndexedProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.InventoryMateriaPrimaBulkServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.InventoryMateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.InventoryProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.InventoryStockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerMateriaPrimaBulkServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerMateriaPrimaQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerMateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerProductoQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.LedgerStockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.MateriaPrimaBulkServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.MateriaPrimaQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.ProductoQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.StockProductoServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.StockServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.UsuarioQueryServiceImpl;
+import com.pinguela.reflejovision.rest.service.impl.UsuarioUpdateServiceImpl;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Registra en HK2 una única instancia por aplicación de cada servicio, de modo
+ * que ninguna petición construye servicios ni DAOs, y los executors en los que
+ * los recursos atienden las peticiones. Los servicios se registran envueltos en
+ * un {@link TimedServiceProxy} que mide sus llamadas.
+ * <p>
+ * Con {@code stock.engine=ledger} las variaciones de stock se aplican sobre un
+ * {@link StockLedger} en memoria con escritura diferida; con {@code jdbc} (por
+ * defecto) se aplican directamente en base de datos. En ambos casos los
+ * consumos de materias primas de los productos se toman de la
+ * {@link ConsumoTable}.
+ * <p>
+ * Con {@code search.index.enabled} (por defecto) las escrituras de productos
+ * mantienen el índice de nombres de {@link SearchIndexes}, con
+ * {@code inventory.enabled} (por defecto) los {@link InventoryAggregates} y con
+ * {@code events.enabled} (por defecto) publican sus cambios en el
+ * {@link ChangeEventBus}.
+ * <p>
+ * Con {@code idempotency.enabled} (por defecto) se registra el
+ * {@link IdempotencyStore} de las Idempotency-Key de las escrituras, y con
+ * {@code ratelimit.enabled} y {@code concurrency.enabled} (por defecto) el
+ * {@link RateLimiter} y el {@link ConcurrencyLimiter} de los recursos.
+ */
+public class ServiceBinder extends AbstractBinder {
+
+	public static final String STOCK_ENGINE_JDBC = "jdbc";
+	public static final String STOCK_ENGINE_LEDGER = "ledger";
+
+	@Override
+	protected void configure() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		bind(metrics).to(MetricsRegistry.class);
+		// Se registra para que se precargue al arrancar la aplicación
+		bind(CacheManager.getTranslationTable()).to(TranslationTable.class);
+		bind(CacheManager.getConsumoTable()).to(ConsumoTable.class);
+
+		ProductoService productoService = null;
+		MateriaPrimaService materiaPrimaService = null;
+		StockService stockService = null;
+		MateriaPrimaBulkService materiaPrimaBulkService = null;
+		ProductoQueryService productoQueryService = null;
+		MateriaPrimaQueryService materiaPrimaQueryService = null;
+		StockLedger stockLedger = null;
+		if (STOCK_ENGINE_LEDGER.equalsIgnoreCase(ConfigUtils.getString("stock.engine", STOCK_ENGINE_JDBC))) {
+			stockLedger = new StockLedger();
+			bind(stockLedger).to(StockLedger.class);
+			productoService = new CachedProductoServiceImpl(
+					new LedgerProductoServiceImpl(new ProductoServiceImpl(), stockLedger),
+					CacheManager.getProductoCache(), CacheManager.getMateriaPrimaCache(),
+					CacheManager.getConsumoTable());
+			materiaPrimaService = new CachedMateriaPrimaServiceImpl(
+					new LedgerMateriaPrimaServiceImpl(new MateriaPrimaServiceImpl(), stockLedger),
+					CacheManager.getMateriaPrimaCache(), CacheManager.getProductoCache(),
+					CacheManager.getTranslationTable());
+			stockService = new CachedStockServiceImpl(new LedgerStockServiceImpl(stockLedger),
+					CacheManager.getProductoCache(), CacheManager.getMateriaPrimaCache(),
+					CacheManager.getConsumoTable());
+			materiaPrimaBulkService = new CachedMateriaPrimaBulkServiceImpl(
+					new LedgerMateriaPrimaBulkServiceImpl(new MateriaPrimaBulkServiceImpl(), stockLedger),
+					CacheManager.getMateriaPrimaCache(), CacheManager.getProductoCache(),
+					CacheManager.getTranslationTable());
+			productoQueryService = new CachedProductoQueryServiceImpl(
+					new LedgerProductoQueryServiceImpl(new ProductoQueryServiceImpl(), stockLedger),
+					CacheManager.getProductoCache());
+			materiaPrimaQueryService = new CachedMateriaPrimaQueryServiceImpl(
+					new LedgerMateriaPrimaQueryServiceImpl(new MateriaPrimaQueryServiceImpl(), stockLedger),
+					CacheManager.getMateriaPrimaCache(), CacheManager.getTranslationTable());
+		} else {
+			// Las variaciones de stock de un producto se aplican como un lote de un
+			// movimiento, para que usen los consumos de la tabla
+			StockService jdbcStockService = new StockServiceImpl();
+			productoService = new CachedProductoServiceImpl(
+					new StockProductoServiceImpl(new ProductoServiceImpl(), jdbcStockService,
+							CacheManager.getTranslationTable()),
+					CacheManager.getProductoCache(), CacheManager.getMateriaPrimaCache(),
+					CacheManager.getConsumoTable());
+			materiaPrimaService = new CachedMateriaPrimaServiceImpl();
+			stockService = new CachedStockServiceImpl(jdbcStockService, CacheManager.getProductoCache(),
+					CacheManager.getMateriaPrimaCache(), CacheManager.getConsumoTable());
+			materiaPrimaBulkService = new CachedMateriaPrimaBulkServiceImpl();
+			productoQueryService = new CachedProductoQueryServiceImpl();
+			materiaPrimaQueryService = new CachedMateriaPrimaQueryServiceImpl();
+		}
+		if (SearchIndexes.ENABLED) {
+			productoService = new IndexedProductoServiceImpl(productoService, SearchIndexes.getProductoIndex());
+		}
+		if (InventoryAggregates.ENABLED) {
+			// Por fuera de las cachés, para actualizar los agregados solo con las
+			// escrituras que han terminado bien
+			InventoryAggregates inventory = new InventoryAggregates(stockLedger);
+			bind(inventory).to(InventoryAggregates.class);
+			productoService = new InventoryProductoServiceImpl(productoService, inventory,
+					CacheManager.getConsumoTable());
+			materiaPrimaService = new InventoryMateriaPrimaServiceImpl(materiaPrimaService, inventory);
+			stockService = new InventoryStockServiceImpl(stockService, inventory, CacheManager.getConsumoTable());
+			materiaPrimaBulkService = new InventoryMateriaPrimaBulkServiceImpl(materiaPrimaBulkService, inventory);
+		}
+		if (ChangeEventBus.ENABLED) {
+			ChangeEventBus eventBus = new ChangeEventBus();
+			bind(eventBus).to(ChangeEventBus.class);
+			productoService = new EventProductoServiceImpl(productoService, eventBus, CacheManager.getConsumoTable());
+			materiaPrimaService = new EventMateriaPrimaServiceImpl(materiaPrimaService, eventBus);
+			stockService = new EventStockServiceImpl(stockService, eventBus, CacheManager.getConsumoTable());
+			materiaPrimaBulkService = new EventMateriaPrimaBulkServiceImpl(materiaPrimaBulkService, eventBus);
+		}
+
+		// Todos los servicios se envuelven para medir la duración de sus llamadas
+		bindTimed(ProductoService.class, productoService, metrics);
+		bindTimed(MateriaPrimaService.class, materiaPrimaService, metrics);
+		bindTimed(StockService.class, stockService, metrics);
+		bindTimed(MateriaPrimaBulkService.class, materiaPrimaBulkService, metrics);
+		bindTimed(UsuarioService.class, new UsuarioServiceImpl(), metrics);
+		bindTimed(ConsumoService.class, new CachedConsumoServiceImpl(), metrics);
+
+		bindTimed(ProductoQueryService.class, productoQueryService, metrics);
+		bindTimed(MateriaPrimaQueryService.class, materiaPrimaQueryService, metrics);
+		bindTimed(UsuarioQueryService.class, new UsuarioQueryServiceImpl(), metrics);
+		bindTimed(UsuarioUpdateService.class, new UsuarioUpdateServiceImpl(), metrics);
+
+		bind(AsyncExecutors.class).to(AsyncExecutors.class).in(Singleton.class);
+		if (IdempotencyStore.ENABLED) {
+			bind(new IdempotencyStore()).to(IdempotencyStore.class);
+		}
+		if (RateLimiter.ENABLED) {
+			bind(new RateLimiter()).to(RateLimiter.class);
+		}
+		if (ConcurrencyLimiter.ENABLED) {
+			bind(new ConcurrencyLimiter()).to(ConcurrencyLimiter.class);
+		}
+	}
+
+	private <T> void bindTimed(Class<T> contract, T service, MetricsRegistry metrics) {
+		bind(TimedServiceProxy.wrap(contract, service, metrics)).to(contract);
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.Connection;
+
+import com.luis.reflejovision.dao.DataException;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyRecord;
+
+/**
+ * Copia persistente de las Idempotency-Key (idempotency.persistent=true), para
+ * que sobrevivan a un reinicio y se compartan entre instancias:
+ * 
+ * <pre>
+ * CREATE TABLE IDEMPOTENCY_KEY (
+ *     ID_KEY VARCHAR(255) NOT NULL PRIMARY KEY,
+ *     FINGERPRINT CHAR(64) NOT NULL,
+ *     STATUS INT NULL,
+ *     HEADERS TEXT NULL,
+ *     BODY MEDIUMBLOB NULL,
+ *     CREATED BIGINT NOT NULL,
+ *     EXPIRES BIGINT NOT NULL,
+ *     INDEX IDX_IDEMPOTENCY_KEY_EXPIRES (EXPIRES)
+ * );
+ * </pre>
+ * 
+ * CREATED y EXPIRES son milisegundos desde epoch.
+ */
+public interface IdempotencyDAO {
+
+	/**
+	 * Inserta el registro en curso.
+	 * 
+	 * @return false si la clave ya existe.
+	 */
+	public boolean insert(Connection c, IdempotencyRecord record) throws DataException;
+
+	/**
+	 * @return El registro de la clave, o null si no existe.
+	 */
+	public IdempotencyRecord findByKey(Connection c, String key) throws DataException;
+
+	/**
+	 * Guarda la respuesta de un registro en curso.
+	 */
+	public void complete(Connection c, IdempotencyRecord record) throws DataException;
+
+	public boolean delete(Connection c, String key) throws DataException;
+
+	/**
+	 * @return Número de registros caducados eliminados.
+	 */
+	public int deleteExpired(Connection c, long now) throws DataException;
+
+}
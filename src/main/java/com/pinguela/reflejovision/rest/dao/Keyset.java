@@ -0,0 +1,151 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+import com.pinguela.reflejovision.rest.util.SortUtils;
+
+/**
+ * Posición de la última fila devuelta en una búsqueda ordenada: el valor de la
+ * columna de ordenación y el id, que desempata las filas con el mismo valor.
+ * La página siguiente empieza en la primera fila posterior a esa tupla, de modo
+ * que el coste no depende de la profundidad de la página.
+ * <p>
+ * El cursor guarda además la ordenación con la que se obtuvo, para rechazar
+ * los cursores usados con otra. La ordenación por defecto (id ascendente)
+ * mantiene el cursor de {@link CursorUtils#encodeId}.
+ * <p>
+ * La columna de ordenación puede ser NULL. MySQL ordena los NULL antes que
+ * cualquier valor en orden ascendente y después en descendente, y las
+ * condiciones siguen ese mismo orden con IS NULL / IS NOT NULL.
+ */
+public class Keyset {
+
+	private final String orderBy;
+	private final boolean asc;
+	private final Object value;
+	private final Long id;
+
+	private Keyset(String orderBy, boolean asc, Object value, Long id) {
+		this.orderBy = orderBy;
+		this.asc = asc;
+		this.value = value;
+		this.id = id;
+	}
+
+	public static final String encode(String orderBy, boolean asc, Object value, Long id) {
+		orderBy = SortUtils.orderBy(orderBy);
+		if (isDefault(orderBy, asc)) {
+			return CursorUtils.encodeId(id);
+		}
+		String direccion = asc ? SortUtils.ASC : SortUtils.DESC;
+		if (value == null) {
+			// Sin la posición del valor, para no confundirlo con el texto "null"
+			return CursorUtils.encode(orderBy, direccion, String.valueOf(id));
+		}
+		return CursorUtils.encode(orderBy, direccion, String.valueOf(value), String.valueOf(id));
+	}
+
+	/**
+	 * @return La posición del cursor, o null si no se ha indicado cursor.
+	 * @throws IllegalArgumentException si el cursor no es válido o se obtuvo con
+	 *                                  otra ordenación.
+	 */
+	public static final Keyset decode(String cursor, String orderBy, Boolean ascDesc) {
+		orderBy = SortUtils.orderBy(orderBy);
+		boolean asc = SortUtils.isAsc(ascDesc);
+		List<String> values = CursorUtils.decode(cursor);
+		if (values == null) {
+			return null;
+		}
+		try {
+			if (isDefault(orderBy, asc) && values.size() == 1) {
+				Long id = Long.valueOf(values.get(0));
+				return new Keyset(orderBy, asc, id, id);
+			}
+			if ((values.size() == 3 || values.size() == 4) && orderBy.equals(values.get(0))
+					&& (asc ? SortUtils.ASC : SortUtils.DESC).equals(values.get(1))) {
+				if (values.size() == 3) {
+					return new Keyset(orderBy, asc, null, Long.valueOf(values.get(2)));
+				}
+				return new Keyset(orderBy, asc, parseValue(orderBy, values.get(2)), Long.valueOf(values.get(3)));
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+		}
+		throw new IllegalArgumentException("Cursor inválido para esta ordenación: " + cursor);
+	}
+
+	private static Object parseValue(String orderBy, String value) {
+		switch (orderBy) {
+		case ProductoCriteria.ORDER_BY_ID:
+			return Long.valueOf(value);
+		case ProductoCriteria.ORDER_BY_PRECIO:
+			return Double.valueOf(value);
+		case ProductoCriteria.ORDER_BY_UNIDADES:
+			return Integer.valueOf(value);
+		default:
+			return value;
+		}
+	}
+
+	private static boolean isDefault(String orderBy, boolean asc) {
+		return asc && ProductoCriteria.ORDER_BY_ID.equals(orderBy);
+	}
+
+	/**
+	 * Condición SQL de las filas posteriores a esta posición. Sus parámetros se
+	 * asignan con {@link #setParameters}.
+	 *
+	 * @param column   Columna de ordenación.
+	 * @param idColumn Columna del id.
+	 */
+	public String condition(String column, String idColumn) {
+		String op = asc ? " > " : " < ";
+		if (ProductoCriteria.ORDER_BY_ID.equals(orderBy)) {
+			return " " + idColumn + op + "? ";
+		}
+		if (value == null) {
+			// Los NULL van primero en ascendente: detrás solo quedan los NULL con
+			// id mayor y todos los valores. En descendente van al final
+			return asc ? " ((" + column + " IS NULL AND " + idColumn + op + "?) OR " + column + " IS NOT NULL) "
+					: " (" + column + " IS NULL AND " + idColumn + op + "?) ";
+		}
+		// Se escribe con OR en lugar de (col, id) > (?, ?) porque MySQL no
+		// siempre usa el índice con la comparación de tuplas
+		String condition = column + op + "? OR (" + column + " = ? AND " + idColumn + op + "?)";
+		// En descendente los NULL van detrás de todos los valores
+		return asc ? " (" + condition + ") " : " (" + condition + " OR " + column + " IS NULL) ";
+	}
+
+	public int setParameters(PreparedStatement preparedStatement, int i) throws SQLException {
+		if (!ProductoCriteria.ORDER_BY_ID.equals(orderBy) && value != null) {
+			// El valor se compara dos veces: mayor que, e igual con el id mayor
+			preparedStatement.setObject(i++, value);
+			preparedStatement.setObject(i++, value);
+		}
+		preparedStatement.setLong(i++, id);
+		return i;
+	}
+
+	public String getOrderBy() {
+		return orderBy;
+	}
+
+	public boolean isAsc() {
+		return asc;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return orderBy + (asc ? " ASC " : " DESC ") + value + ", " + id;
+	}
+
+}
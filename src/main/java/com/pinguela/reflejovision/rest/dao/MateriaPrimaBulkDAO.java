@@ -0,0 +1,32 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+
+/**
+ * Escritura masiva de materias primas con sentencias INSERT de varias filas.
+ */
+public interface MateriaPrimaBulkDAO {
+
+	/**
+	 * Guarda las materias primas y sus traducciones. Las que no tienen id se
+	 * crean y reciben el id generado; las que tienen id se actualizan, y deben
+	 * haberse comprobado antes con {@link #findExistentes(Connection, Collection)}
+	 * en la misma transacción. Las traducciones existentes de un idioma se
+	 * sobrescriben.
+	 */
+	public void upsert(Connection c, List<MateriaPrimaDTO> materiasPrimas) throws DataException;
+
+	/**
+	 * @return Los ids que corresponden a materias primas existentes. Sus filas
+	 *         quedan bloqueadas hasta el final de la transacción, para que no
+	 *         se borren antes de actualizarlas.
+	 */
+	public Set<Long> findExistentes(Connection c, Collection<Long> ids) throws DataException;
+
+}
@@ -0,0 +1,31 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+
+/**
+ * Lectura de las traducciones de los nombres de las materias primas. El locale
+ * de cada traducción es el nombre del idioma, igual que en
+ * MateriaPrimaService.findbyId.
+ */
+public interface MateriaPrimaIdiomaDAO {
+
+	/**
+	 * @return Las traducciones de todas las materias primas, por id de materia
+	 *         prima.
+	 */
+	public Map<Long, List<MateriaPrimaIdioma>> findAll(Connection c) throws DataException;
+
+	/**
+	 * @return Las traducciones de las materias primas indicadas, por id de
+	 *         materia prima. Las materias primas sin traducciones no aparecen.
+	 */
+	public Map<Long, List<MateriaPrimaIdioma>> findByMateriasPrimas(Connection c, Collection<Long> ids)
+			throws DataException;
+
+}
@@ -0,0 +1,49 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface MateriaPrimaQueryDAO {
+
+	/**
+	 * Busca materias primas por criterios paginando por keyset sobre la ordenación de
+	 * los criterios (orderBy y ascDesc; por defecto, id ascendente) y el id.
+	 * 
+	 * @param ids   Si no es null, restringe la búsqueda a esos ids (los que
+	 *              devuelve el índice de nombres). No puede estar vacía.
+	 * @param after Última fila devuelta en la página anterior, o null para la
+	 *              primera página.
+	 * @param count Si se debe calcular el total de resultados.
+	 */
+	public CursorResults<MateriaPrimaDTO> findBy(Connection c, MateriaPrimaCriteria criteria, Collection<Long> ids, Keyset after,
+			int limit, boolean count) throws DataException;
+
+	/**
+	 * Recorre todos los resultados que cumplen los criterios con un cursor
+	 * forward-only, entregándolos uno a uno al handler en orden de id.
+	 * 
+	 * @param ids Si no es null, restringe el recorrido a esos ids. No puede estar
+	 *            vacía.
+	 */
+	public void export(Connection c, MateriaPrimaCriteria criteria, Collection<Long> ids, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException;
+
+	/**
+	 * Busca las materias primas con los ids indicados en una sola consulta. Cada
+	 * materia prima se carga igual que en MateriaPrimaService.findbyId: con todas
+	 * sus traducciones y con el nombre en el idioma indicado.
+	 * 
+	 * @return Las materias primas encontradas indexadas por id; los ids que no
+	 *         existen no aparecen.
+	 */
+	public Map<Long, MateriaPrimaDTO> findByIds(Connection c, Collection<Long> ids, String locale)
+			throws DataException;
+
+}
@@ -0,0 +1,47 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface ProductoQueryDAO {
+
+	/**
+	 * Busca productos por criterios paginando por keyset sobre la ordenación de
+	 * los criterios (orderBy y ascDesc; por defecto, id ascendente) y el id.
+	 * 
+	 * @param ids   Si no es null, restringe la búsqueda a esos ids (los que
+	 *              devuelve el índice de nombres). No puede estar vacía.
+	 * @param after Última fila devuelta en la página anterior, o null para la
+	 *              primera página.
+	 * @param count Si se debe calcular el total de resultados.
+	 */
+	public CursorResults<Producto> findBy(Connection c, ProductoCriteria criteria, Collection<Long> ids, Keyset after,
+			int limit, boolean count) throws DataException;
+
+	/**
+	 * Recorre todos los resultados que cumplen los criterios con un cursor
+	 * forward-only, entregándolos uno a uno al handler en orden de id.
+	 * 
+	 * @param ids Si no es null, restringe el recorrido a esos ids. No puede estar
+	 *            vacía.
+	 */
+	public void export(Connection c, ProductoCriteria criteria, Collection<Long> ids, RowHandler<Producto> handler)
+			throws DataException, IOException;
+
+	/**
+	 * Busca los productos con los ids indicados, con sus consumos, en una sola
+	 * consulta.
+	 * 
+	 * @return Los productos encontrados indexados por id; los ids que no existen
+	 *         no aparecen.
+	 */
+	public Map<Long, Producto> findByIds(Connection c, Collection<Long> ids) throws DataException;
+
+}
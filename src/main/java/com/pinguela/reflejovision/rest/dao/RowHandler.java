@@ -0,0 +1,13 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.io.IOException;
+
+/**
+ * Recibe las filas de una consulta a medida que se leen del cursor JDBC, sin
+ * acumularlas en memoria.
+ */
+public interface RowHandler<T> {
+
+	public void process(T row) throws IOException;
+
+}
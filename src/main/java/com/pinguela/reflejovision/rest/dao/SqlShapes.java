@@ -0,0 +1,185 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Mantiene acotado el número de sentencias SQL distintas de los DAO para que
+ * las cachés de sentencias preparadas del driver y del servidor las reutilicen.
+ * <p>
+ * Las condiciones de las búsquedas ya dependen solo de qué criterios se han
+ * indicado, no de sus valores; lo que multiplicaba las sentencias eran las
+ * listas IN, con un ? por id. Aquí el número de ? se redondea a la potencia de
+ * dos siguiente (a múltiplos de 1024 a partir de 1024) y los huecos se
+ * rellenan repitiendo el último id, lo que no cambia el resultado.
+ * <p>
+ * Cada sentencia preparada con {@link #prepare} se cuenta por su texto. La
+ * proporción de sentencias distintas sobre preparaciones mide cuánto se
+ * repiten, no los aciertos de la caché del driver, que Connector/J no expone:
+ * esos se estiman con los contadores del servidor.
+ */
+public class SqlShapes {
+
+	private static Logger logger = LogManager.getLogger(SqlShapes.class);
+
+	/**
+	 * Sentencias distintas de las que se guarda el recuento; las demás solo se
+	 * suman al total.
+	 */
+	public static final int MAX_SHAPES = ConfigUtils.getInt("db.statements.maxShapes", 500);
+
+	private static final Map<String, AtomicLong> shapes = new ConcurrentHashMap<String, AtomicLong>();
+	private static final LongAdder prepares = new LongAdder();
+	private static final LongAdder untracked = new LongAdder();
+
+	private static final String SERVER_STATUS = " SHOW GLOBAL STATUS WHERE VARIABLE_NAME IN "
+			+ " ('Com_stmt_prepare', 'Com_stmt_execute', 'Prepared_stmt_count') ";
+
+	/**
+	 * @return Número de ? de una lista IN de n ids.
+	 */
+	public static final int inSize(int n) {
+		if (n <= 1) {
+			return 1;
+		}
+		if (n <= 1024) {
+			return Integer.highestOneBit(n - 1) << 1;
+		}
+		return (n + 1023) / 1024 * 1024;
+	}
+
+	/**
+	 * Añade los ? de una lista IN de n ids, sin los paréntesis.
+	 */
+	public static final StringBuilder appendIn(StringBuilder query, int n) {
+		return JDBCUtils.appendMultipleInsertParameters(query, "?", inSize(n));
+	}
+
+	/**
+	 * Asigna los ids de una lista IN añadida con {@link #appendIn}, repitiendo
+	 * el último en los huecos.
+	 *
+	 * @return El índice del siguiente parámetro.
+	 */
+	public static final int setIn(PreparedStatement preparedStatement, int i, Collection<Long> ids)
+			throws SQLException {
+		long last = 0;
+		for (Long id : ids) {
+			preparedStatement.setLong(i++, id);
+			last = id;
+		}
+		for (int n = ids.size(); n < inSize(ids.size()); n++) {
+			preparedStatement.setLong(i++, last);
+		}
+		return i;
+	}
+
+	public static final PreparedStatement prepare(Connection c, String sql) throws SQLException {
+		record(sql);
+		return c.prepareStatement(sql);
+	}
+
+	public static final PreparedStatement prepare(Connection c, String sql, int resultSetType,
+			int resultSetConcurrency) throws SQLException {
+		record(sql);
+		return c.prepareStatement(sql, resultSetType, resultSetConcurrency);
+	}
+
+	private static void record(String sql) {
+		prepares.increment();
+		AtomicLong count = shapes.get(sql);
+		if (count == null) {
+			if (shapes.size() >= MAX_SHAPES) {
+				untracked.increment();
+				return;
+			}
+			count = shapes.computeIfAbsent(sql, k -> new AtomicLong());
+		}
+		count.incrementAndGet();
+	}
+
+	/**
+	 * @param top    Número de sentencias más preparadas que se incluyen.
+	 * @param server Si se consultan también los contadores del servidor, lo que
+	 *               necesita una conexión del pool.
+	 */
+	public static final StatementStats getStats(int top, boolean server) {
+		StatementStats stats = new StatementStats();
+		stats.setShapes(shapes.size());
+		stats.setMaxShapes(MAX_SHAPES);
+		long total = prepares.sum();
+		stats.setPrepares(total);
+		stats.setUntracked(untracked.sum());
+		if (total > 0) {
+			stats.setShapesPerPrepare((double) stats.getShapes() / total);
+		}
+		List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>(shapes.entrySet());
+		entries.sort((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()));
+		for (Map.Entry<String, AtomicLong> entry : entries.subList(0, Math.min(top, entries.size()))) {
+			stats.getTopShapes().put(entry.getKey().trim(), entry.getValue().get());
+		}
+		stats.setServerPrepare(ConnectionPools.isServerPrepare());
+		stats.setCacheSize(ConnectionPools.getStatementCacheSize());
+		if (server) {
+			fillServerStats(stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * Contadores del servidor, globales: incluyen las sentencias del core y de
+	 * cualquier otro cliente de la base de datos.
+	 */
+	private static void fillServerStats(StatementStats stats) {
+		Connection c = null;
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			c = ConnectionPools.getConnection();
+			preparedStatement = c.prepareStatement(SERVER_STATUS);
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				String name = rs.getString(1);
+				long value = rs.getLong(2);
+				if ("Com_stmt_prepare".equalsIgnoreCase(name)) {
+					stats.setServerPrepares(value);
+				} else if ("Com_stmt_execute".equalsIgnoreCase(name)) {
+					stats.setServerExecutes(value);
+				} else {
+					stats.setServerPreparedStatements(value);
+				}
+			}
+			if (stats.getServerExecutes() != null && stats.getServerPrepares() != null
+					&& stats.getServerExecutes() > 0) {
+				stats.setServerReuseRate(
+						Math.max(0, 1 - (double) stats.getServerPrepares() / stats.getServerExecutes()));
+			}
+		} catch (SQLException e) {
+			logger.warn("No se han podido consultar los contadores de sentencias del servidor: {}", e.getMessage());
+		} finally {
+			try {
+				JDBCUtils.close(preparedStatement, rs);
+				JDBCUtils.close(c);
+			} catch (Exception e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StatementStats {
+
+	private int shapes = 0;
+	private int maxShapes = 0;
+	private long prepares = 0;
+	private long untracked = 0;
+	private Double shapesPerPrepare = null;
+	private boolean serverPrepare = false;
+	private int cacheSize = 0;
+	private Long serverPrepares = null;
+	private Long serverExecutes = null;
+	private Long serverPreparedStatements = null;
+	private Double serverReuseRate = null;
+	private Map<String, Long> topShapes = new LinkedHashMap<String, Long>();
+
+	public StatementStats() {
+	}
+
+	/**
+	 * @return Sentencias SQL distintas preparadas por la aplicación.
+	 */
+	public int getShapes() {
+		return shapes;
+	}
+
+	public void setShapes(int shapes) {
+		this.shapes = shapes;
+	}
+
+	public int getMaxShapes() {
+		return maxShapes;
+	}
+
+	public void setMaxShapes(int maxShapes) {
+		this.maxShapes = maxShapes;
+	}
+
+	public long getPrepares() {
+		return prepares;
+	}
+
+	public void setPrepares(long prepares) {
+		this.prepares = prepares;
+	}
+
+	/**
+	 * @return Preparaciones de sentencias que no caben en el recuento por
+	 *         sentencia (db.statements.maxShapes).
+	 */
+	public long getUntracked() {
+		return untracked;
+	}
+
+	public void setUntracked(long untracked) {
+		this.untracked = untracked;
+	}
+
+	/**
+	 * @return Sentencias distintas entre preparaciones: cuanto menor, más se
+	 *         repite cada sentencia. No es la tasa de aciertos de la caché de
+	 *         sentencias del driver; para eso, {@link #getServerReuseRate()}.
+	 */
+	public Double getShapesPerPrepare() {
+		return shapesPerPrepare;
+	}
+
+	public void setShapesPerPrepare(Double shapesPerPrepare) {
+		this.shapesPerPrepare = shapesPerPrepare;
+	}
+
+	public boolean isServerPrepare() {
+		return serverPrepare;
+	}
+
+	public void setServerPrepare(boolean serverPrepare) {
+		this.serverPrepare = serverPrepare;
+	}
+
+	/**
+	 * @return Sentencias preparadas en caché por conexión en el driver.
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	public Long getServerPrepares() {
+		return serverPrepares;
+	}
+
+	public void setServerPrepares(Long serverPrepares) {
+		this.serverPrepares = serverPrepares;
+	}
+
+	public Long getServerExecutes() {
+		return serverExecutes;
+	}
+
+	public void setServerExecutes(Long serverExecutes) {
+		this.serverExecutes = serverExecutes;
+	}
+
+	/**
+	 * @return Sentencias preparadas abiertas en el servidor.
+	 */
+	public Long getServerPreparedStatements() {
+		return serverPreparedStatements;
+	}
+
+	public void setServerPreparedStatements(Long serverPreparedStatements) {
+		this.serverPreparedStatements = serverPreparedStatements;
+	}
+
+	/**
+	 * @return Proporción de ejecuciones en el servidor que no han necesitado
+	 *         preparar la sentencia: 1 - Com_stmt_prepare / Com_stmt_execute.
+	 */
+	public Double getServerReuseRate() {
+		return serverReuseRate;
+	}
+
+	public void setServerReuseRate(Double serverReuseRate) {
+		this.serverReuseRate = serverReuseRate;
+	}
+
+	/**
+	 * @return Sentencias más preparadas y cuántas veces.
+	 */
+	public Map<String, Long> getTopShapes() {
+		return topShapes;
+	}
+
+	public void setTopShapes(Map<String, Long> topShapes) {
+		this.topShapes = topShapes;
+	}
+
+}
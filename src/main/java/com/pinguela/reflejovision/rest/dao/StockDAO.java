@@ -0,0 +1,94 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+
+/**
+ * Operaciones de stock por lotes: cada método resuelve todos los ids en una
+ * sola sentencia o en un único batch JDBC.
+ */
+public interface StockDAO {
+
+	/**
+	 * Bloquea (SELECT ... FOR UPDATE) los productos indicados hasta el final de la
+	 * transacción.
+	 * 
+	 * @return Unidades actuales de los productos que existen, por id.
+	 */
+	public Map<Long, Integer> lockProductos(Connection c, Collection<Long> ids) throws DataException;
+
+	/**
+	 * Bloquea las materias primas indicadas hasta el final de la transacción.
+	 * 
+	 * @return Unidades actuales de las materias primas que existen, por id.
+	 */
+	public Map<Long, Integer> lockMateriasPrimas(Connection c, Collection<Long> ids) throws DataException;
+
+	/**
+	 * Como {@link #lockProductos(Connection, Collection)}, pero sin bloquear.
+	 * 
+	 * @return Unidades actuales de los productos que existen, por id.
+	 */
+	public Map<Long, Integer> findUnidadesProductos(Connection c, Collection<Long> ids) throws DataException;
+
+	/**
+	 * Como {@link #lockMateriasPrimas(Connection, Collection)}, pero sin
+	 * bloquear.
+	 * 
+	 * @return Unidades actuales de las materias primas que existen, por id.
+	 */
+	public Map<Long, Integer> findUnidadesMateriasPrimas(Connection c, Collection<Long> ids) throws DataException;
+
+	/**
+	 * @return Consumos de materias primas de los productos indicados, por id de
+	 *         producto. Los productos sin consumos no aparecen.
+	 */
+	public Map<Long, List<ConsumoDTO>> findConsumos(Connection c, Collection<Long> idsProducto) throws DataException;
+
+	/**
+	 * @return Unidades de todos los productos, por id.
+	 */
+	public Map<Long, Integer> findAllUnidadesProductos(Connection c) throws DataException;
+
+	/**
+	 * @return Unidades de todas las materias primas, por id.
+	 */
+	public Map<Long, Integer> findAllUnidadesMateriasPrimas(Connection c) throws DataException;
+
+	/**
+	 * @return Consumos de todos los productos, por id de producto.
+	 */
+	public Map<Long, List<ConsumoDTO>> findAllConsumos(Connection c) throws DataException;
+
+	/**
+	 * @return Precio de todos los productos, por id.
+	 */
+	public Map<Long, Double> findAllPreciosProductos(Connection c) throws DataException;
+
+	/**
+	 * @return Precio de todas las materias primas, por id.
+	 */
+	public Map<Long, Double> findAllPreciosMateriasPrimas(Connection c) throws DataException;
+
+	/**
+	 * @return Precio de las materias primas indicadas que existen, por id.
+	 */
+	public Map<Long, Double> findPreciosMateriasPrimas(Connection c, Collection<Long> ids) throws DataException;
+
+	/**
+	 * Suma a cada producto su variación de stock.
+	 */
+	public void updateStockProductos(Connection c, Map<Long, Integer> variaciones) throws DataException;
+
+	/**
+	 * Resta a cada materia prima las unidades consumidas, ya redondeadas con
+	 * ConsumoUtils.unidadesConsumidas.
+	 */
+	public void updateStockMateriasPrimas(Connection c, Map<Long, Long> consumos) throws DataException;
+
+}
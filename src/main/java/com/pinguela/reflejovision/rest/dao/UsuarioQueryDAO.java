@@ -0,0 +1,38 @@
+package com.pinguela.reflejovision.rest.dao;
+
+import java.io.IOException;
+import java.sql.Connection;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Usuario;
+import com.luis.reflejovision.model.UsuarioCriteria;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface UsuarioQueryDAO {
+
+	/**
+	 * Busca usuarios por criterios paginando por keyset sobre el id.
+	 * 
+	 * @param afterId Último id devuelto en la página anterior, o null para la
+	 *                primera página.
+	 * @param count   Si se debe calcular el total de resultados.
+	 */
+	public CursorResults<Usuario> findBy(Connection c, UsuarioCriteria criteria, Long afterId, int limit,
+			boolean count) throws DataException;
+
+	/**
+	 * Recorre todos los resultados que cumplen los criterios con un cursor
+	 * forward-only, entregándolos uno a uno al handler en orden de id.
+	 */
+	public void export(Connection c, UsuarioCriteria criteria, RowHandler<Usuario> handler)
+			throws DataException, IOException;
+
+	/**
+	 * Bloquea la fila del usuario hasta el final de la transacción, para que
+	 * ninguna otra escritura lo modifique entre su lectura y su actualización.
+	 * 
+	 * @return Si el usuario existe.
+	 */
+	public boolean lock(Connection c, Long id) throws DataException;
+
+}
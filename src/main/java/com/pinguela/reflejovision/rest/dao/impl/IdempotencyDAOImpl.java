@@ -0,0 +1,162 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.pinguela.reflejovision.rest.dao.IdempotencyDAO;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.idempotency.IdempotencyRecord;
+
+public class IdempotencyDAOImpl implements IdempotencyDAO {
+
+	private static Logger logger = LogManager.getLogger(IdempotencyDAOImpl.class);
+
+	public IdempotencyDAOImpl() {
+	}
+
+	@Override
+	public boolean insert(Connection c, IdempotencyRecord record) throws DataException {
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c,
+					" INSERT INTO IDEMPOTENCY_KEY (ID_KEY, FINGERPRINT, CREATED, EXPIRES) VALUES (?, ?, ?, ?) ");
+			int i = 1;
+			preparedStatement.setString(i++, record.getKey());
+			preparedStatement.setString(i++, record.getFingerprint());
+			preparedStatement.setLong(i++, record.getCreated());
+			preparedStatement.setLong(i++, record.getExpires());
+			preparedStatement.executeUpdate();
+			return true;
+		} catch (SQLIntegrityConstraintViolationException e) {
+			return false;
+		} catch (SQLException e) {
+			logger.error("Clave: {}", record.getKey(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	@Override
+	public IdempotencyRecord findByKey(Connection c, String key) throws DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c,
+					" SELECT ID_KEY, FINGERPRINT, STATUS, HEADERS, BODY, CREATED, EXPIRES FROM IDEMPOTENCY_KEY WHERE ID_KEY = ? ");
+			preparedStatement.setString(1, key);
+			rs = preparedStatement.executeQuery();
+			if (!rs.next()) {
+				return null;
+			}
+			int i = 1;
+			IdempotencyRecord record = new IdempotencyRecord();
+			record.setKey(rs.getString(i++));
+			record.setFingerprint(rs.getString(i++));
+			int status = rs.getInt(i++);
+			record.setStatus(rs.wasNull() ? null : status);
+			record.setHeaders(parseHeaders(rs.getString(i++)));
+			record.setBody(rs.getBytes(i++));
+			record.setCreated(rs.getLong(i++));
+			record.setExpires(rs.getLong(i++));
+			return record;
+		} catch (SQLException e) {
+			logger.error("Clave: {}", key, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	@Override
+	public void complete(Connection c, IdempotencyRecord record) throws DataException {
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c,
+					" UPDATE IDEMPOTENCY_KEY SET STATUS = ?, HEADERS = ?, BODY = ?, EXPIRES = ? WHERE ID_KEY = ? ");
+			int i = 1;
+			preparedStatement.setInt(i++, record.getStatus());
+			preparedStatement.setString(i++, formatHeaders(record.getHeaders()));
+			if (record.getBody() == null) {
+				preparedStatement.setNull(i++, Types.BLOB);
+			} else {
+				preparedStatement.setBytes(i++, record.getBody());
+			}
+			preparedStatement.setLong(i++, record.getExpires());
+			preparedStatement.setString(i++, record.getKey());
+			preparedStatement.executeUpdate();
+		} catch (SQLException e) {
+			logger.error("Clave: {}", record.getKey(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	@Override
+	public boolean delete(Connection c, String key) throws DataException {
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " DELETE FROM IDEMPOTENCY_KEY WHERE ID_KEY = ? ");
+			preparedStatement.setString(1, key);
+			return preparedStatement.executeUpdate() > 0;
+		} catch (SQLException e) {
+			logger.error("Clave: {}", key, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	@Override
+	public int deleteExpired(Connection c, long now) throws DataException {
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " DELETE FROM IDEMPOTENCY_KEY WHERE EXPIRES < ? ");
+			preparedStatement.setLong(1, now);
+			return preparedStatement.executeUpdate();
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	/**
+	 * Una cabecera por línea, "Nombre: valor". Las cabeceras guardadas nunca
+	 * contienen saltos de línea.
+	 */
+	private static String formatHeaders(Map<String, String> headers) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			sb.append(header.getKey()).append(": ").append(header.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static Map<String, String> parseHeaders(String headers) {
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		if (headers != null) {
+			for (String line : headers.split("\n")) {
+				int i = line.indexOf(": ");
+				if (i > 0) {
+					map.put(line.substring(0, i), line.substring(i + 2));
+				}
+			}
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaBulkDAO;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+
+public class MateriaPrimaBulkDAOImpl implements MateriaPrimaBulkDAO {
+
+	private static Logger logger = LogManager.getLogger(MateriaPrimaBulkDAOImpl.class);
+
+	public MateriaPrimaBulkDAOImpl() {
+	}
+
+	@Override
+	public void upsert(Connection c, List<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		List<MateriaPrimaDTO> nuevas = new ArrayList<MateriaPrimaDTO>();
+		List<MateriaPrimaDTO> existentes = new ArrayList<MateriaPrimaDTO>();
+		for (MateriaPrimaDTO mp : materiasPrimas) {
+			if (mp.getId() == null) {
+				nuevas.add(mp);
+			} else {
+				existentes.add(mp);
+			}
+		}
+		insert(c, nuevas);
+		upsertExistentes(c, existentes);
+		upsertTraducciones(c, materiasPrimas);
+	}
+
+	@Override
+	public Set<Long> findExistentes(Connection c, Collection<Long> ids) throws DataException {
+		Set<Long> existentes = new HashSet<Long>();
+		if (ids.isEmpty()) {
+			return existentes;
+		}
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT ID FROM MATERIAPRIMA WHERE ID IN (");
+			SqlShapes.appendIn(query, ids.size()).append(") FOR UPDATE ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				existentes.add(rs.getLong(1));
+			}
+		} catch (SQLException e) {
+			logger.error("Ids: {}", ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return existentes;
+	}
+
+	/**
+	 * Inserta todas las materias primas en una sola sentencia. Connector/J
+	 * devuelve las claves generadas en el mismo orden que las filas.
+	 */
+	private void insert(Connection c, List<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		if (materiasPrimas.isEmpty()) {
+			return;
+		}
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(
+					" INSERT INTO MATERIAPRIMA(NOMBRE, PRECIO, UNIDADES, UNIDADMEDIDA_ID) VALUES ");
+			JDBCUtils.appendMultipleInsertParameters(query, "(?, ?, ?, ?)", materiasPrimas.size());
+
+			preparedStatement = c.prepareStatement(query.toString(), Statement.RETURN_GENERATED_KEYS);
+			int i = 1;
+			for (MateriaPrimaDTO mp : materiasPrimas) {
+				i = setParameters(preparedStatement, mp, i);
+			}
+			preparedStatement.executeUpdate();
+
+			rs = preparedStatement.getGeneratedKeys();
+			for (MateriaPrimaDTO mp : materiasPrimas) {
+				if (!rs.next()) {
+					throw new DataException("No se han devuelto las claves generadas de todas las materias primas");
+				}
+				mp.setId(rs.getLong(1));
+			}
+		} catch (SQLException e) {
+			logger.error("Materias primas nuevas: {}", materiasPrimas.size(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	/**
+	 * Actualiza todas las materias primas en una sola sentencia. Como sus ids
+	 * ya se han comprobado y bloqueado, el INSERT siempre toma la rama ON
+	 * DUPLICATE KEY UPDATE y no crea filas.
+	 */
+	private void upsertExistentes(Connection c, List<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		if (materiasPrimas.isEmpty()) {
+			return;
+		}
+		PreparedStatement preparedStatement = null;
+		try {
+			StringBuilder query = new StringBuilder(
+					" INSERT INTO MATERIAPRIMA(ID, NOMBRE, PRECIO, UNIDADES, UNIDADMEDIDA_ID) VALUES ");
+			JDBCUtils.appendMultipleInsertParameters(query, "(?, ?, ?, ?, ?)", materiasPrimas.size());
+			query.append(" ON DUPLICATE KEY UPDATE NOMBRE = VALUES(NOMBRE), PRECIO = VALUES(PRECIO), ")
+					.append(" UNIDADES = VALUES(UNIDADES), UNIDADMEDIDA_ID = VALUES(UNIDADMEDIDA_ID) ");
+
+			preparedStatement = c.prepareStatement(query.toString());
+			int i = 1;
+			for (MateriaPrimaDTO mp : materiasPrimas) {
+				preparedStatement.setLong(i++, mp.getId());
+				i = setParameters(preparedStatement, mp, i);
+			}
+			preparedStatement.executeUpdate();
+		} catch (SQLException e) {
+			logger.error("Materias primas existentes: {}", materiasPrimas.size(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	private void upsertTraducciones(Connection c, List<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		List<MateriaPrimaIdioma> traducciones = new ArrayList<MateriaPrimaIdioma>();
+		for (MateriaPrimaDTO mp : materiasPrimas) {
+			if (mp.getTraducciones() != null) {
+				for (MateriaPrimaIdioma traduccion : mp.getTraducciones()) {
+					traduccion.setIdMateriaPrima(mp.getId());
+					traducciones.add(traduccion);
+				}
+			}
+		}
+		if (traducciones.isEmpty()) {
+			return;
+		}
+
+		PreparedStatement preparedStatement = null;
+		try {
+			StringBuilder query = new StringBuilder(
+					" INSERT INTO MATERIAPRIMA_IDIOMA(NOMBRE, ID_MATERIAPRIMA, ID_IDIOMA) VALUES ");
+			JDBCUtils.appendMultipleInsertParameters(query, "(?, ?, ?)", traducciones.size());
+			query.append(" ON DUPLICATE KEY UPDATE NOMBRE = VALUES(NOMBRE) ");
+
+			preparedStatement = c.prepareStatement(query.toString());
+			int i = 1;
+			for (MateriaPrimaIdioma traduccion : traducciones) {
+				preparedStatement.setString(i++, traduccion.getNombre());
+				preparedStatement.setLong(i++, traduccion.getIdMateriaPrima());
+				preparedStatement.setString(i++, traduccion.getLocale());
+			}
+			preparedStatement.executeUpdate();
+		} catch (SQLException e) {
+			logger.error("Traducciones: {}", traducciones.size(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	private int setParameters(PreparedStatement preparedStatement, MateriaPrimaDTO mp, int i) throws SQLException {
+		preparedStatement.setString(i++, mp.getNombre());
+		preparedStatement.setDouble(i++, mp.getPrecio());
+		preparedStatement.setInt(i++, mp.getUnidades());
+		preparedStatement.setLong(i++, mp.getIdUnidadMedida());
+		return i;
+	}
+
+}
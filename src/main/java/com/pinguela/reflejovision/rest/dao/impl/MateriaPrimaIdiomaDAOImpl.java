@@ -0,0 +1,86 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaIdiomaDAO;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+
+public class MateriaPrimaIdiomaDAOImpl implements MateriaPrimaIdiomaDAO {
+
+	private static Logger logger = LogManager.getLogger(MateriaPrimaIdiomaDAOImpl.class);
+
+	private static final String SELECT = " SELECT MPI.ID_MATERIAPRIMA, I.NOMBRE, MPI.NOMBRE "
+			+ " FROM MATERIAPRIMA_IDIOMA MPI INNER JOIN IDIOMA I ON MPI.ID_IDIOMA = I.ID ";
+
+	public MateriaPrimaIdiomaDAOImpl() {
+	}
+
+	@Override
+	public Map<Long, List<MateriaPrimaIdioma>> findAll(Connection c) throws DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, SELECT, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			rs = preparedStatement.executeQuery();
+			return load(rs);
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	@Override
+	public Map<Long, List<MateriaPrimaIdioma>> findByMateriasPrimas(Connection c, Collection<Long> ids)
+			throws DataException {
+		if (ids.isEmpty()) {
+			return new HashMap<Long, List<MateriaPrimaIdioma>>();
+		}
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(SELECT).append(" WHERE MPI.ID_MATERIAPRIMA IN (");
+			SqlShapes.appendIn(query, ids.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+			rs = preparedStatement.executeQuery();
+			return load(rs);
+		} catch (SQLException e) {
+			logger.error("Ids: {}", ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private Map<Long, List<MateriaPrimaIdioma>> load(ResultSet rs) throws SQLException {
+		Map<Long, List<MateriaPrimaIdioma>> traducciones = new HashMap<Long, List<MateriaPrimaIdioma>>();
+		while (rs.next()) {
+			int i = 1;
+			MateriaPrimaIdioma traduccion = new MateriaPrimaIdioma();
+			traduccion.setIdMateriaPrima(rs.getLong(i++));
+			traduccion.setLocale(rs.getString(i++));
+			traduccion.setNombre(rs.getString(i++));
+			traducciones.computeIfAbsent(traduccion.getIdMateriaPrima(), id -> new ArrayList<MateriaPrimaIdioma>())
+					.add(traduccion);
+		}
+		return traducciones;
+	}
+
+}
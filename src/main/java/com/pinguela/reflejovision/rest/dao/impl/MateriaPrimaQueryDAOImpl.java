@@ -0,0 +1,298 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.dao.util.SQLUtils;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.pinguela.reflejovision.rest.dao.Keyset;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaQueryDAO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.util.SortUtils;
+
+public class MateriaPrimaQueryDAOImpl implements MateriaPrimaQueryDAO {
+
+	private static Logger logger = LogManager.getLogger(MateriaPrimaQueryDAOImpl.class);
+
+	private static final String SELECT = " SELECT MP.ID, MPI.NOMBRE, MP.PRECIO, MP.UNIDADES, MP.UNIDADMEDIDA_ID ";
+
+	private static final String FROM = " FROM MATERIAPRIMA MP "
+			+ " INNER JOIN MATERIAPRIMA_IDIOMA MPI ON MP.ID = MPI.ID_MATERIAPRIMA "
+			+ " INNER JOIN IDIOMA I ON MPI.ID_IDIOMA = I.ID ";
+
+	// Columnas por las que se puede ordenar. Para que la ordenación y el keyset
+	// no recorran la tabla, cada una debe tener un índice (en InnoDB el índice
+	// secundario ya incluye el id, que desempata)
+	private static final Map<String, String> COLUMNAS = new HashMap<String, String>();
+
+	static {
+		COLUMNAS.put(MateriaPrimaCriteria.ORDER_BY_ID, "MP.ID");
+		COLUMNAS.put(MateriaPrimaCriteria.ORDER_BY_NOMBRE, "MPI.NOMBRE");
+		COLUMNAS.put(MateriaPrimaCriteria.ORDER_BY_PRECIO, "MP.PRECIO");
+		COLUMNAS.put(MateriaPrimaCriteria.ORDER_BY_UNIDADES, "MP.UNIDADES");
+	}
+
+	public MateriaPrimaQueryDAOImpl() {
+	}
+
+	@Override
+	public CursorResults<MateriaPrimaDTO> findBy(Connection c, MateriaPrimaCriteria criteria, Collection<Long> ids, Keyset after,
+			int limit, boolean count) throws DataException {
+
+		CursorResults<MateriaPrimaDTO> results = new CursorResults<MateriaPrimaDTO>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			List<String> condiciones = buildConditions(criteria, ids);
+			String orderBy = SortUtils.orderBy(criteria.getOrderBy());
+			boolean asc = SortUtils.isAsc(criteria.getAscDesc());
+			String columna = COLUMNAS.getOrDefault(orderBy, "MP.ID");
+			if (after != null) {
+				condiciones.add(after.condition(columna, "MP.ID"));
+			}
+
+			StringBuilder query = new StringBuilder(SELECT).append(FROM);
+			appendWhere(query, condiciones);
+			// Se pide una fila más para saber si existe una página siguiente
+			String direccion = asc ? " ASC" : " DESC";
+			query.append(" ORDER BY ").append(columna).append(direccion);
+			if (!columna.equals("MP.ID")) {
+				query.append(", MP.ID").append(direccion);
+			}
+			query.append(" LIMIT ? ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+
+			int i = setParameters(preparedStatement, criteria, ids, 1);
+			if (after != null) {
+				i = after.setParameters(preparedStatement, i);
+			}
+			preparedStatement.setInt(i++, limit + 1);
+
+			rs = preparedStatement.executeQuery();
+
+			List<MateriaPrimaDTO> page = new ArrayList<MateriaPrimaDTO>();
+			boolean hayMas = false;
+			// El valor de ordenación de la última fila se lee del ResultSet y no del
+			// modelo, donde un NULL de PRECIO o UNIDADES se carga como 0
+			String etiqueta = columna.substring(columna.indexOf('.') + 1);
+			Object valorOrden = null;
+			while (rs.next()) {
+				if (page.size() == limit) {
+					hayMas = true;
+					break;
+				}
+				page.add(loadNext(rs));
+				valorOrden = rs.getObject(etiqueta);
+			}
+
+			results.setPage(page);
+			if (hayMas && !page.isEmpty()) {
+				MateriaPrimaDTO ultimo = page.get(page.size() - 1);
+				results.setNextCursor(Keyset.encode(orderBy, asc, valorOrden, ultimo.getId()));
+			}
+			if (count) {
+				results.setTotal(count(c, criteria, ids));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}, ids: {}, after: {}", criteria, ids, after, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(Connection c, MateriaPrimaCriteria criteria, Collection<Long> ids, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException {
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			StringBuilder query = new StringBuilder(SELECT).append(FROM);
+			appendWhere(query, buildConditions(criteria, ids));
+			query.append(" ORDER BY MP.ID ASC ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			// Con Connector/J un fetch size de Integer.MIN_VALUE lee las filas del
+			// socket de una en una en lugar de cargar todo el resultado en memoria
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			setParameters(preparedStatement, criteria, ids, 1);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				handler.process(loadNext(rs));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}, ids: {}", criteria, ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	@Override
+	public Map<Long, MateriaPrimaDTO> findByIds(Connection c, Collection<Long> ids, String locale)
+			throws DataException {
+
+		Map<Long, MateriaPrimaDTO> materiasPrimas = new HashMap<Long, MateriaPrimaDTO>();
+		if (ids.isEmpty()) {
+			return materiasPrimas;
+		}
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			// Una fila por traducción, como en MateriaPrimaDAO.findbyId
+			StringBuilder query = new StringBuilder(SELECT).append(", I.NOMBRE AS IDIOMA ").append(FROM)
+					.append(" WHERE MP.ID IN (");
+			SqlShapes.appendIn(query, ids.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				Long id = rs.getLong(1);
+				MateriaPrimaDTO mp = materiasPrimas.get(id);
+				if (mp == null) {
+					mp = loadNext(rs);
+					mp.setNombre(null);
+					mp.setTraducciones(new ArrayList<MateriaPrimaIdioma>());
+					materiasPrimas.put(id, mp);
+				}
+
+				MateriaPrimaIdioma traduccion = new MateriaPrimaIdioma();
+				traduccion.setIdMateriaPrima(id);
+				traduccion.setLocale(rs.getString("IDIOMA"));
+				traduccion.setNombre(rs.getString("NOMBRE"));
+				mp.getTraducciones().add(traduccion);
+
+				if (traduccion.getLocale() != null && traduccion.getLocale().equalsIgnoreCase(locale)) {
+					mp.setNombre(traduccion.getNombre());
+				}
+			}
+
+		} catch (SQLException e) {
+			logger.error("Ids: {}, locale: {}", ids, locale, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return materiasPrimas;
+	}
+
+	private int count(Connection c, MateriaPrimaCriteria criteria, Collection<Long> ids) throws SQLException, DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT COUNT(*) ").append(FROM);
+			appendWhere(query, buildConditions(criteria, ids));
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			setParameters(preparedStatement, criteria, ids, 1);
+			rs = preparedStatement.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private List<String> buildConditions(MateriaPrimaCriteria criteria, Collection<Long> ids) {
+		List<String> condiciones = new ArrayList<String>();
+		condiciones.add(" I.ID = ? ");
+		if (criteria.getId() != null) {
+			condiciones.add(" MP.ID = ? ");
+		}
+		if (criteria.getNombre() != null) {
+			condiciones.add(" MPI.NOMBRE LIKE ? ");
+		}
+		if (criteria.getPrecioDesde() != null) {
+			condiciones.add(" MP.PRECIO >= ? ");
+		}
+		if (criteria.getPrecioHasta() != null) {
+			condiciones.add(" MP.PRECIO <= ? ");
+		}
+		if (criteria.getUnidadesDesde() != null) {
+			condiciones.add(" MP.UNIDADES >= ? ");
+		}
+		if (criteria.getUnidadesHasta() != null) {
+			condiciones.add(" MP.UNIDADES <= ? ");
+		}
+		if (ids != null) {
+			StringBuilder in = new StringBuilder(" MP.ID IN (");
+			SqlShapes.appendIn(in, ids.size()).append(") ");
+			condiciones.add(in.toString());
+		}
+		return condiciones;
+	}
+
+	private void appendWhere(StringBuilder query, List<String> condiciones) {
+		if (!condiciones.isEmpty()) {
+			query.append(" WHERE ").append(String.join(" AND ", condiciones));
+		}
+	}
+
+	private int setParameters(PreparedStatement preparedStatement, MateriaPrimaCriteria criteria, Collection<Long> ids,
+			int i) throws SQLException {
+		preparedStatement.setString(i++, criteria.getLocale());
+		if (criteria.getId() != null) {
+			preparedStatement.setLong(i++, criteria.getId());
+		}
+		if (criteria.getNombre() != null) {
+			preparedStatement.setString(i++, SQLUtils.wrapLike(criteria.getNombre()));
+		}
+		if (criteria.getPrecioDesde() != null) {
+			preparedStatement.setDouble(i++, criteria.getPrecioDesde());
+		}
+		if (criteria.getPrecioHasta() != null) {
+			preparedStatement.setDouble(i++, criteria.getPrecioHasta());
+		}
+		if (criteria.getUnidadesDesde() != null) {
+			preparedStatement.setInt(i++, criteria.getUnidadesDesde());
+		}
+		if (criteria.getUnidadesHasta() != null) {
+			preparedStatement.setInt(i++, criteria.getUnidadesHasta());
+		}
+		if (ids != null) {
+			i = SqlShapes.setIn(preparedStatement, i, ids);
+		}
+		return i;
+	}
+
+	protected MateriaPrimaDTO loadNext(ResultSet rs) throws SQLException {
+		int i = 1;
+		MateriaPrimaDTO mp = new MateriaPrimaDTO();
+		mp.setId(rs.getLong(i++));
+		mp.setNombre(rs.getString(i++));
+		mp.setPrecio(rs.getDouble(i++));
+		mp.setUnidades(rs.getInt(i++));
+		mp.setIdUnidadMedida(rs.getLong(i++));
+		return mp;
+	}
+
+}
@@ -0,0 +1,325 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.dao.util.SQLUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.dao.Keyset;
+import com.pinguela.reflejovision.rest.dao.ProductoQueryDAO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.util.SortUtils;
+
+public class ProductoQueryDAOImpl implements ProductoQueryDAO {
+
+	private static Logger logger = LogManager.getLogger(ProductoQueryDAOImpl.class);
+
+	private static final String SELECT = " SELECT P.ID, P.NOMBRE, P.PRECIO, P.UNIDADES FROM PRODUCTO P ";
+
+	// Columnas por las que se puede ordenar. Para que la ordenación y el keyset
+	// no recorran la tabla, cada una debe tener un índice (en InnoDB el índice
+	// secundario ya incluye el id, que desempata)
+	private static final Map<String, String> COLUMNAS = new HashMap<String, String>();
+
+	static {
+		COLUMNAS.put(ProductoCriteria.ORDER_BY_ID, "P.ID");
+		COLUMNAS.put(ProductoCriteria.ORDER_BY_NOMBRE, "P.NOMBRE");
+		COLUMNAS.put(ProductoCriteria.ORDER_BY_PRECIO, "P.PRECIO");
+		COLUMNAS.put(ProductoCriteria.ORDER_BY_UNIDADES, "P.UNIDADES");
+	}
+
+	public ProductoQueryDAOImpl() {
+	}
+
+	@Override
+	public CursorResults<Producto> findBy(Connection c, ProductoCriteria criteria, Collection<Long> ids, Keyset after,
+			int limit, boolean count) throws DataException {
+
+		CursorResults<Producto> results = new CursorResults<Producto>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			List<String> condiciones = buildConditions(criteria, ids);
+			String orderBy = SortUtils.orderBy(criteria.getOrderBy());
+			boolean asc = SortUtils.isAsc(criteria.getAscDesc());
+			String columna = COLUMNAS.getOrDefault(orderBy, "P.ID");
+			if (after != null) {
+				condiciones.add(after.condition(columna, "P.ID"));
+			}
+
+			StringBuilder query = new StringBuilder(SELECT);
+			appendWhere(query, condiciones);
+			// Se pide una fila más para saber si existe una página siguiente
+			String direccion = asc ? " ASC" : " DESC";
+			query.append(" ORDER BY ").append(columna).append(direccion);
+			if (!columna.equals("P.ID")) {
+				query.append(", P.ID").append(direccion);
+			}
+			query.append(" LIMIT ? ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+
+			int i = setParameters(preparedStatement, criteria, ids, 1);
+			if (after != null) {
+				i = after.setParameters(preparedStatement, i);
+			}
+			preparedStatement.setInt(i++, limit + 1);
+
+			rs = preparedStatement.executeQuery();
+
+			Map<Long, Producto> productos = new LinkedHashMap<Long, Producto>();
+			boolean hayMas = false;
+			// El valor de ordenación de la última fila se lee del ResultSet y no del
+			// modelo, donde un NULL de PRECIO o UNIDADES se carga como 0
+			String etiqueta = columna.substring(columna.indexOf('.') + 1);
+			Object valorOrden = null;
+			while (rs.next()) {
+				if (productos.size() == limit) {
+					hayMas = true;
+					break;
+				}
+				Producto p = loadNext(rs);
+				productos.put(p.getId(), p);
+				valorOrden = rs.getObject(etiqueta);
+			}
+			JDBCUtils.close(preparedStatement, rs);
+			preparedStatement = null;
+			rs = null;
+
+			loadConsumos(c, productos);
+
+			List<Producto> page = new ArrayList<Producto>(productos.values());
+			results.setPage(page);
+			if (hayMas && !page.isEmpty()) {
+				Producto ultimo = page.get(page.size() - 1);
+				results.setNextCursor(Keyset.encode(orderBy, asc, valorOrden, ultimo.getId()));
+			}
+			if (count) {
+				results.setTotal(count(c, criteria, ids));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}, ids: {}, after: {}", criteria, ids, after, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(Connection c, ProductoCriteria criteria, Collection<Long> ids, RowHandler<Producto> handler)
+			throws DataException, IOException {
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			StringBuilder query = new StringBuilder(SELECT);
+			appendWhere(query, buildConditions(criteria, ids));
+			query.append(" ORDER BY P.ID ASC ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			// Con Connector/J un fetch size de Integer.MIN_VALUE lee las filas del
+			// socket de una en una en lugar de cargar todo el resultado en memoria
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			setParameters(preparedStatement, criteria, ids, 1);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				handler.process(loadNext(rs));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}, ids: {}", criteria, ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	@Override
+	public Map<Long, Producto> findByIds(Connection c, Collection<Long> ids) throws DataException {
+
+		Map<Long, Producto> productos = new HashMap<Long, Producto>();
+		if (ids.isEmpty()) {
+			return productos;
+		}
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			StringBuilder query = new StringBuilder(SELECT).append(" WHERE P.ID IN (");
+			SqlShapes.appendIn(query, ids.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				Producto p = loadNext(rs);
+				productos.put(p.getId(), p);
+			}
+			JDBCUtils.close(preparedStatement, rs);
+			preparedStatement = null;
+			rs = null;
+
+			loadConsumos(c, productos);
+
+		} catch (SQLException e) {
+			logger.error("Ids: {}", ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return productos;
+	}
+
+	private int count(Connection c, ProductoCriteria criteria, Collection<Long> ids) throws SQLException, DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT COUNT(*) FROM PRODUCTO P ");
+			appendWhere(query, buildConditions(criteria, ids));
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			setParameters(preparedStatement, criteria, ids, 1);
+			rs = preparedStatement.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	/**
+	 * Carga los consumos de todos los productos indicados en una sola
+	 * consulta, en lugar de una por producto.
+	 */
+	private void loadConsumos(Connection c, Map<Long, Producto> productos) throws SQLException, DataException {
+		if (productos.isEmpty()) {
+			return;
+		}
+		for (Producto p : productos.values()) {
+			p.setConsumos(new ArrayList<ConsumoDTO>());
+		}
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(
+					" SELECT C.ID_PRODUCTO, C.ID_MATERIAPRIMA, MP.NOMBRE, MP.UNIDADMEDIDA_ID, MP.PRECIO, C.UNIDADES_CONSUMO ")
+					.append(" FROM CONSUMO C INNER JOIN MATERIAPRIMA MP ON MP.ID = C.ID_MATERIAPRIMA ")
+					.append(" WHERE C.ID_PRODUCTO IN (");
+			SqlShapes.appendIn(query, productos.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, productos.keySet());
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				int i = 1;
+				ConsumoDTO consumo = new ConsumoDTO();
+				consumo.setIdProducto(rs.getLong(i++));
+				consumo.setIdMateriaPrima(rs.getLong(i++));
+				consumo.setNombreMateriaPrima(rs.getString(i++));
+				consumo.setIdUnidadMedidaMp(rs.getInt(i++));
+				consumo.setPrecioMateriaPrima(rs.getDouble(i++));
+				consumo.setUnidades(rs.getDouble(i++));
+				productos.get(consumo.getIdProducto()).getConsumos().add(consumo);
+			}
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private List<String> buildConditions(ProductoCriteria criteria, Collection<Long> ids) {
+		List<String> condiciones = new ArrayList<String>();
+		if (criteria.getId() != null) {
+			condiciones.add(" P.ID = ? ");
+		}
+		if (criteria.getNombre() != null) {
+			condiciones.add(" P.NOMBRE LIKE ? ");
+		}
+		if (criteria.getPrecioDesde() != null) {
+			condiciones.add(" P.PRECIO >= ? ");
+		}
+		if (criteria.getPrecioHasta() != null) {
+			condiciones.add(" P.PRECIO <= ? ");
+		}
+		if (criteria.getUnidadesDesde() != null) {
+			condiciones.add(" P.UNIDADES >= ? ");
+		}
+		if (criteria.getUnidadesHasta() != null) {
+			condiciones.add(" P.UNIDADES <= ? ");
+		}
+		if (ids != null) {
+			StringBuilder in = new StringBuilder(" P.ID IN (");
+			SqlShapes.appendIn(in, ids.size()).append(") ");
+			condiciones.add(in.toString());
+		}
+		return condiciones;
+	}
+
+	private void appendWhere(StringBuilder query, List<String> condiciones) {
+		if (!condiciones.isEmpty()) {
+			query.append(" WHERE ").append(String.join(" AND ", condiciones));
+		}
+	}
+
+	private int setParameters(PreparedStatement preparedStatement, ProductoCriteria criteria, Collection<Long> ids,
+			int i) throws SQLException {
+		if (criteria.getId() != null) {
+			preparedStatement.setLong(i++, criteria.getId());
+		}
+		if (criteria.getNombre() != null) {
+			preparedStatement.setString(i++, SQLUtils.wrapLike(criteria.getNombre()));
+		}
+		if (criteria.getPrecioDesde() != null) {
+			preparedStatement.setDouble(i++, criteria.getPrecioDesde());
+		}
+		if (criteria.getPrecioHasta() != null) {
+			preparedStatement.setDouble(i++, criteria.getPrecioHasta());
+		}
+		if (criteria.getUnidadesDesde() != null) {
+			preparedStatement.setInt(i++, criteria.getUnidadesDesde());
+		}
+		if (criteria.getUnidadesHasta() != null) {
+			preparedStatement.setInt(i++, criteria.getUnidadesHasta());
+		}
+		if (ids != null) {
+			i = SqlShapes.setIn(preparedStatement, i, ids);
+		}
+		return i;
+	}
+
+	protected Producto loadNext(ResultSet rs) throws SQLException {
+		int i = 1;
+		Producto p = new Producto();
+		p.setId(rs.getLong(i++));
+		p.setNombre(rs.getString(i++));
+		p.setPrecio(rs.getDouble(i++));
+		p.setUnidades(rs.getInt(i++));
+		return p;
+	}
+
+}
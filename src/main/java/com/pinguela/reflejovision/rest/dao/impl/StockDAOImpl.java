@@ -0,0 +1,280 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+
+public class StockDAOImpl implements StockDAO {
+
+	private static Logger logger = LogManager.getLogger(StockDAOImpl.class);
+
+	private static final String SELECT_CONSUMOS = " SELECT ID_PRODUCTO, ID_MATERIAPRIMA, UNIDADES_CONSUMO FROM CONSUMO ";
+
+	public StockDAOImpl() {
+	}
+
+	@Override
+	public Map<Long, Integer> lockProductos(Connection c, Collection<Long> ids) throws DataException {
+		return findUnidades(c, "PRODUCTO", ids, true);
+	}
+
+	@Override
+	public Map<Long, Integer> lockMateriasPrimas(Connection c, Collection<Long> ids) throws DataException {
+		return findUnidades(c, "MATERIAPRIMA", ids, true);
+	}
+
+	@Override
+	public Map<Long, Integer> findUnidadesProductos(Connection c, Collection<Long> ids) throws DataException {
+		return findUnidades(c, "PRODUCTO", ids, false);
+	}
+
+	@Override
+	public Map<Long, Integer> findUnidadesMateriasPrimas(Connection c, Collection<Long> ids) throws DataException {
+		return findUnidades(c, "MATERIAPRIMA", ids, false);
+	}
+
+	private Map<Long, Integer> findUnidades(Connection c, String tabla, Collection<Long> ids, boolean lock)
+			throws DataException {
+
+		Map<Long, Integer> unidades = new HashMap<Long, Integer>();
+		if (ids.isEmpty()) {
+			return unidades;
+		}
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT ID, UNIDADES FROM ").append(tabla)
+					.append(" WHERE ID IN (");
+			SqlShapes.appendIn(query, ids.size()).append(")");
+			if (lock) {
+				// Se bloquea en orden de id para que dos lotes concurrentes no se
+				// interbloqueen
+				query.append(" ORDER BY ID FOR UPDATE ");
+			}
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				unidades.put(rs.getLong(1), rs.getInt(2));
+			}
+		} catch (SQLException e) {
+			logger.error("Tabla: {}, ids: {}", tabla, ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return unidades;
+	}
+
+	@Override
+	public Map<Long, List<ConsumoDTO>> findConsumos(Connection c, Collection<Long> idsProducto)
+			throws DataException {
+
+		Map<Long, List<ConsumoDTO>> consumos = new HashMap<Long, List<ConsumoDTO>>();
+		if (idsProducto.isEmpty()) {
+			return consumos;
+		}
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(SELECT_CONSUMOS).append(" WHERE ID_PRODUCTO IN (");
+			SqlShapes.appendIn(query, idsProducto.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, idsProducto);
+			rs = preparedStatement.executeQuery();
+			loadConsumos(rs, consumos);
+		} catch (SQLException e) {
+			logger.error("Productos: {}", idsProducto, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return consumos;
+	}
+
+	@Override
+	public Map<Long, Integer> findAllUnidadesProductos(Connection c) throws DataException {
+		return findAllUnidades(c, "PRODUCTO");
+	}
+
+	@Override
+	public Map<Long, Integer> findAllUnidadesMateriasPrimas(Connection c) throws DataException {
+		return findAllUnidades(c, "MATERIAPRIMA");
+	}
+
+	private Map<Long, Integer> findAllUnidades(Connection c, String tabla) throws DataException {
+		Map<Long, Integer> unidades = new HashMap<Long, Integer>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " SELECT ID, UNIDADES FROM " + tabla + " ",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				unidades.put(rs.getLong(1), rs.getInt(2));
+			}
+		} catch (SQLException e) {
+			logger.error("Tabla: {}", tabla, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return unidades;
+	}
+
+	@Override
+	public Map<Long, Double> findAllPreciosProductos(Connection c) throws DataException {
+		return findAllPrecios(c, "PRODUCTO");
+	}
+
+	@Override
+	public Map<Long, Double> findAllPreciosMateriasPrimas(Connection c) throws DataException {
+		return findAllPrecios(c, "MATERIAPRIMA");
+	}
+
+	private Map<Long, Double> findAllPrecios(Connection c, String tabla) throws DataException {
+		Map<Long, Double> precios = new HashMap<Long, Double>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " SELECT ID, PRECIO FROM " + tabla + " ",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				precios.put(rs.getLong(1), rs.getDouble(2));
+			}
+		} catch (SQLException e) {
+			logger.error("Tabla: {}", tabla, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return precios;
+	}
+
+	@Override
+	public Map<Long, Double> findPreciosMateriasPrimas(Connection c, Collection<Long> ids) throws DataException {
+
+		Map<Long, Double> precios = new HashMap<Long, Double>();
+		if (ids.isEmpty()) {
+			return precios;
+		}
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT ID, PRECIO FROM MATERIAPRIMA WHERE ID IN (");
+			SqlShapes.appendIn(query, ids.size()).append(")");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			SqlShapes.setIn(preparedStatement, 1, ids);
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				precios.put(rs.getLong(1), rs.getDouble(2));
+			}
+		} catch (SQLException e) {
+			logger.error("Materias primas: {}", ids, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return precios;
+	}
+
+	@Override
+	public Map<Long, List<ConsumoDTO>> findAllConsumos(Connection c) throws DataException {
+		Map<Long, List<ConsumoDTO>> consumos = new HashMap<Long, List<ConsumoDTO>>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, SELECT_CONSUMOS, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			rs = preparedStatement.executeQuery();
+			loadConsumos(rs, consumos);
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return consumos;
+	}
+
+	private void loadConsumos(ResultSet rs, Map<Long, List<ConsumoDTO>> consumos) throws SQLException {
+		while (rs.next()) {
+			int i = 1;
+			ConsumoDTO consumo = new ConsumoDTO();
+			consumo.setIdProducto(rs.getLong(i++));
+			consumo.setIdMateriaPrima(rs.getLong(i++));
+			consumo.setUnidades(rs.getDouble(i++));
+			consumos.computeIfAbsent(consumo.getIdProducto(), k -> new ArrayList<ConsumoDTO>()).add(consumo);
+		}
+	}
+
+	@Override
+	public void updateStockProductos(Connection c, Map<Long, Integer> variaciones) throws DataException {
+		if (variaciones.isEmpty()) {
+			return;
+		}
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " UPDATE PRODUCTO SET UNIDADES = UNIDADES + ? WHERE ID = ? ");
+			for (Map.Entry<Long, Integer> variacion : variaciones.entrySet()) {
+				preparedStatement.setInt(1, variacion.getValue());
+				preparedStatement.setLong(2, variacion.getKey());
+				preparedStatement.addBatch();
+			}
+			preparedStatement.executeBatch();
+		} catch (SQLException e) {
+			logger.error("Variaciones: {}", variaciones, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+	@Override
+	public void updateStockMateriasPrimas(Connection c, Map<Long, Long> consumos) throws DataException {
+		if (consumos.isEmpty()) {
+			return;
+		}
+		PreparedStatement preparedStatement = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " UPDATE MATERIAPRIMA SET UNIDADES = UNIDADES - ? WHERE ID = ? ");
+			for (Map.Entry<Long, Long> consumo : consumos.entrySet()) {
+				preparedStatement.setLong(1, consumo.getValue());
+				preparedStatement.setLong(2, consumo.getKey());
+				preparedStatement.addBatch();
+			}
+			preparedStatement.executeBatch();
+		} catch (SQLException e) {
+			logger.error("Consumos: {}", consumos, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement);
+		}
+	}
+
+}
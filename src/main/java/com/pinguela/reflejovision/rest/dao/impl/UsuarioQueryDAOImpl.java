@@ -0,0 +1,213 @@
+package com.pinguela.reflejovision.rest.dao.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.dao.util.SQLUtils;
+import com.luis.reflejovision.model.Usuario;
+import com.luis.reflejovision.model.UsuarioCriteria;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.SqlShapes;
+import com.pinguela.reflejovision.rest.dao.UsuarioQueryDAO;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+
+public class UsuarioQueryDAOImpl implements UsuarioQueryDAO {
+
+	private static Logger logger = LogManager.getLogger(UsuarioQueryDAOImpl.class);
+
+	private static final String SELECT = " SELECT ID, USERNAME, NOMBRE, ID_ROL, CORREO FROM USUARIO ";
+
+	public UsuarioQueryDAOImpl() {
+	}
+
+	@Override
+	public CursorResults<Usuario> findBy(Connection c, UsuarioCriteria criteria, Long afterId, int limit,
+			boolean count) throws DataException {
+
+		CursorResults<Usuario> results = new CursorResults<Usuario>();
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			List<String> condiciones = buildConditions(criteria);
+			if (afterId != null) {
+				condiciones.add(" ID > ? ");
+			}
+
+			StringBuilder query = new StringBuilder(SELECT);
+			appendWhere(query, condiciones);
+			// Se pide una fila más para saber si existe una página siguiente
+			query.append(" ORDER BY ID ASC LIMIT ? ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+
+			int i = setParameters(preparedStatement, criteria, 1);
+			if (afterId != null) {
+				preparedStatement.setLong(i++, afterId);
+			}
+			preparedStatement.setInt(i++, limit + 1);
+
+			rs = preparedStatement.executeQuery();
+
+			List<Usuario> page = new ArrayList<Usuario>();
+			boolean hayMas = false;
+			while (rs.next()) {
+				if (page.size() == limit) {
+					hayMas = true;
+					break;
+				}
+				page.add(loadNext(rs));
+			}
+
+			results.setPage(page);
+			if (hayMas && !page.isEmpty()) {
+				results.setNextCursor(CursorUtils.encodeId(page.get(page.size() - 1).getId()));
+			}
+			if (count) {
+				results.setTotal(count(c, criteria));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}, afterId: {}", criteria, afterId, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(Connection c, UsuarioCriteria criteria, RowHandler<Usuario> handler)
+			throws DataException, IOException {
+
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+
+		try {
+			StringBuilder query = new StringBuilder(SELECT);
+			appendWhere(query, buildConditions(criteria));
+			query.append(" ORDER BY ID ASC ");
+
+			preparedStatement = SqlShapes.prepare(c, query.toString(), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			// Con Connector/J un fetch size de Integer.MIN_VALUE lee las filas del
+			// socket de una en una en lugar de cargar todo el resultado en memoria
+			preparedStatement.setFetchSize(Integer.MIN_VALUE);
+			setParameters(preparedStatement, criteria, 1);
+
+			rs = preparedStatement.executeQuery();
+			while (rs.next()) {
+				handler.process(loadNext(rs));
+			}
+
+		} catch (SQLException e) {
+			logger.error("Criteria: {}", criteria, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private int count(Connection c, UsuarioCriteria criteria) throws SQLException, DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			StringBuilder query = new StringBuilder(" SELECT COUNT(*) FROM USUARIO ");
+			appendWhere(query, buildConditions(criteria));
+
+			preparedStatement = SqlShapes.prepare(c, query.toString());
+			setParameters(preparedStatement, criteria, 1);
+			rs = preparedStatement.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private List<String> buildConditions(UsuarioCriteria criteria) {
+		List<String> condiciones = new ArrayList<String>();
+		if (criteria.getId() != null) {
+			condiciones.add(" ID = ? ");
+		}
+		if (criteria.getUsername() != null) {
+			condiciones.add(" USERNAME LIKE ? ");
+		}
+		if (criteria.getNombre() != null) {
+			condiciones.add(" NOMBRE LIKE ? ");
+		}
+		if (criteria.getRol() != null) {
+			condiciones.add(" ID_ROL = ? ");
+		}
+		if (criteria.getCorreo() != null) {
+			condiciones.add(" CORREO LIKE ? ");
+		}
+		return condiciones;
+	}
+
+	@Override
+	public boolean lock(Connection c, Long id) throws DataException {
+		PreparedStatement preparedStatement = null;
+		ResultSet rs = null;
+		try {
+			preparedStatement = SqlShapes.prepare(c, " SELECT ID FROM USUARIO WHERE ID = ? FOR UPDATE ");
+			preparedStatement.setLong(1, id);
+			rs = preparedStatement.executeQuery();
+			return rs.next();
+		} catch (SQLException e) {
+			logger.error("Id: {}", id, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(preparedStatement, rs);
+		}
+	}
+
+	private void appendWhere(StringBuilder query, List<String> condiciones) {
+		if (!condiciones.isEmpty()) {
+			query.append(" WHERE ").append(String.join(" AND ", condiciones));
+		}
+	}
+
+	private int setParameters(PreparedStatement preparedStatement, UsuarioCriteria criteria, int i)
+			throws SQLException {
+		if (criteria.getId() != null) {
+			preparedStatement.setLong(i++, criteria.getId());
+		}
+		if (criteria.getUsername() != null) {
+			preparedStatement.setString(i++, SQLUtils.wrapLike(criteria.getUsername()));
+		}
+		if (criteria.getNombre() != null) {
+			preparedStatement.setString(i++, SQLUtils.wrapLike(criteria.getNombre()));
+		}
+		if (criteria.getRol() != null) {
+			preparedStatement.setLong(i++, criteria.getRol());
+		}
+		if (criteria.getCorreo() != null) {
+			preparedStatement.setString(i++, SQLUtils.wrapLike(criteria.getCorreo()));
+		}
+		return i;
+	}
+
+	protected Usuario loadNext(ResultSet rs) throws SQLException {
+		int i = 1;
+		Usuario u = new Usuario();
+		u.setId(rs.getLong(i++));
+		u.setUsername(rs.getString(i++));
+		u.setNombre(rs.getString(i++));
+		u.setRol(rs.getLong(i++));
+		u.setCorreo(rs.getString(i++));
+		return u;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.pinguela.reflejovision.rest.encoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.luis.reflejovision.model.Results;
+import com.pinguela.reflejovision.rest.model.MultiGetResults;
+
+/**
+ * Escribe los resultados de las búsquedas y de las lecturas múltiples en CBOR
+ * (RFC 8949) cuando el cliente lo pide con Accept: application/cbor. Tiene los
+ * mismos campos que el JSON, pero los números se codifican en binario y no se
+ * repiten comillas ni separadores, así que ocupa bastante menos y se genera
+ * más rápido.
+ * <p>
+ * Como en JSON-B, los campos null no se escriben. El ETag, calculado sobre
+ * el contenido, es el mismo que el de la representación JSON: se envía débil,
+ * porque ambas son equivalentes pero no idénticas byte a byte.
+ */
+@Produces(CborMessageBodyWriter.APPLICATION_CBOR)
+public class CborMessageBodyWriter implements MessageBodyWriter<Object> {
+
+	public static final String APPLICATION_CBOR = "application/cbor";
+	public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+	// ObjectMapper es thread-safe una vez configurado: se comparte una instancia
+	private static final ObjectMapper mapper = new ObjectMapper(new CBORFactory())
+			.setSerializationInclusion(JsonInclude.Include.NON_NULL)
+			.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return Results.class.isAssignableFrom(type) || MultiGetResults.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+			throws IOException, WebApplicationException {
+		Object etag = httpHeaders.getFirst(HttpHeaders.ETAG);
+		if (etag instanceof EntityTag && !((EntityTag) etag).isWeak()) {
+			httpHeaders.putSingle(HttpHeaders.ETAG, new EntityTag(((EntityTag) etag).getValue(), true));
+		}
+		mapper.writeValue(entityStream, t);
+	}
+
+}
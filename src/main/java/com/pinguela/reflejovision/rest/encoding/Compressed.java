@@ -0,0 +1,18 @@
+package com.pinguela.reflejovision.rest.encoding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.ws.rs.NameBinding;
+
+/**
+ * Marca los métodos de recurso cuyas respuestas se comprimen con
+ * {@link CompressionFilter} si el cliente lo acepta.
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Compressed {
+}
@@ -0,0 +1,245 @@
+package com.pinguela.reflejovision.rest.encoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Comprime con gzip o deflate las respuestas de los métodos marcados con
+ * {@link Compressed}, según el Accept-Encoding de la petición.
+ * <p>
+ * Los primeros compression.threshold bytes del cuerpo se retienen en memoria:
+ * si la respuesta termina antes se envía sin comprimir, porque en cuerpos
+ * pequeños la cabecera de gzip y el coste de CPU no compensan. Al superar el
+ * umbral se fija Content-Encoding, todavía sin haber enviado nada, y el resto
+ * se comprime a medida que se escribe, de modo que las exportaciones siguen
+ * saliendo en streaming.
+ * <p>
+ * La representación comprimida no es idéntica byte a byte a la original, así
+ * que su ETag se envía débil; las peticiones condicionales con If-None-Match
+ * usan la comparación débil y siguen respondiendo 304.
+ */
+@Compressed
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionFilter implements ContainerResponseFilter, WriterInterceptor {
+
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+
+	private static final boolean ENABLED = ConfigUtils.getBoolean("compression.enabled", true);
+	private static final int THRESHOLD = ConfigUtils.getInt("compression.threshold", 1024);
+
+	private static final String ENCODING = CompressionFilter.class.getName() + ".encoding";
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		if (!ENABLED) {
+			return;
+		}
+		// La respuesta depende de Accept-Encoding aunque esta no se comprima, y
+		// de Accept en los métodos que también tienen representación CBOR
+		response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (response.hasEntity() && !response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			String encoding = negotiate(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+			if (encoding != null) {
+				request.setProperty(ENCODING, encoding);
+			}
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		String encoding = (String) context.getProperty(ENCODING);
+		if (encoding == null) {
+			context.proceed();
+			return;
+		}
+		ThresholdOutputStream out = new ThresholdOutputStream(context, encoding);
+		context.setOutputStream(out);
+		try {
+			context.proceed();
+		} finally {
+			out.finish();
+		}
+	}
+
+	/**
+	 * Elige la codificación con mayor q de las que acepta el cliente; a igual q,
+	 * gzip.
+	 *
+	 * @return gzip, deflate, o null para no comprimir.
+	 */
+	public static final String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+			return null;
+		}
+		double gzip = 0;
+		double deflate = 0;
+		double cualquiera = 0;
+		boolean gzipIndicado = false;
+		boolean deflateIndicado = false;
+		for (String parte : acceptEncoding.split(",")) {
+			String[] valores = parte.trim().split(";");
+			String codificacion = valores[0].trim().toLowerCase(Locale.ROOT);
+			double q = 1;
+			for (int i = 1; i < valores.length; i++) {
+				String parametro = valores[i].trim();
+				if (parametro.startsWith("q=")) {
+					try {
+						q = Double.parseDouble(parametro.substring(2));
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			if (GZIP.equals(codificacion) || "x-gzip".equals(codificacion)) {
+				gzip = q;
+				gzipIndicado = true;
+			} else if (DEFLATE.equals(codificacion)) {
+				deflate = q;
+				deflateIndicado = true;
+			} else if ("*".equals(codificacion)) {
+				cualquiera = q;
+			}
+		}
+		if (!gzipIndicado) {
+			gzip = cualquiera;
+		}
+		if (!deflateIndicado) {
+			deflate = cualquiera;
+		}
+		if (gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		return deflate > 0 ? DEFLATE : null;
+	}
+
+	/**
+	 * Retiene el cuerpo hasta alcanzar el umbral y a partir de ahí lo comprime.
+	 */
+	private static class ThresholdOutputStream extends OutputStream {
+
+		private final WriterInterceptorContext context;
+		private final OutputStream out;
+		private final String encoding;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream(THRESHOLD);
+		private DeflaterOutputStream compressor = null;
+
+		private ThresholdOutputStream(WriterInterceptorContext context, String encoding) {
+			this.context = context;
+			this.out = context.getOutputStream();
+			this.encoding = encoding;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (compressor == null) {
+				if (buffer.size() + len < THRESHOLD) {
+					buffer.write(b, off, len);
+					return;
+				}
+				startCompression();
+			}
+			compressor.write(b, off, len);
+		}
+
+		/**
+		 * Mientras se retiene el cuerpo no se vuelca nada: todavía no se sabe si
+		 * se va a comprimir.
+		 */
+		@Override
+		public void flush() throws IOException {
+			if (compressor != null) {
+				compressor.flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+
+		private void startCompression() throws IOException {
+			MultivaluedMap<String, Object> headers = context.getHeaders();
+			headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+			Object etag = headers.getFirst(HttpHeaders.ETAG);
+			if (etag instanceof EntityTag && !((EntityTag) etag).isWeak()) {
+				headers.putSingle(HttpHeaders.ETAG, new EntityTag(((EntityTag) etag).getValue(), true));
+			}
+
+			// syncFlush para que los flush de las exportaciones lleguen al cliente.
+			// El compresor se cierra sobre un envoltorio que no cierra la
+			// respuesta, para liberar el Deflater sin cerrar el stream de Jersey
+			OutputStream destino = new UncloseableOutputStream(out);
+			compressor = GZIP.equals(encoding) ? new GZIPOutputStream(destino, 8192, true)
+					: new DeflaterOutputStream(destino, true);
+			buffer.writeTo(compressor);
+			buffer = null;
+		}
+
+		private void finish() throws IOException {
+			if (compressor != null) {
+				compressor.close();
+				compressor = null;
+			} else if (buffer != null) {
+				buffer.writeTo(out);
+				buffer = null;
+			}
+		}
+
+	}
+
+	private static class UncloseableOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		private UncloseableOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.pinguela.reflejovision.rest.encoding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.NoContentException;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.model.Usuario;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Proveedor JSON alternativo a JSON-B (Yasson), basado en Jackson, que se
+ * activa con json.provider=jackson.
+ * <p>
+ * Los ObjectWriter y ObjectReader de Producto, MateriaPrimaDTO, Usuario y sus
+ * Results se construyen al cargar la clase, y los del resto de tipos la
+ * primera vez que se usan; después cada petición solo recorre el objeto. Los
+ * buffers de escritura salen de un pool compartido por todos los hilos y el
+ * JSON se escribe directamente en el stream de la respuesta, sin pasar por un
+ * String intermedio.
+ * <p>
+ * La salida es la misma que la de Yasson: propiedades en orden alfabético y
+ * sin los campos null. CursorResults fija su orden con @JsonbPropertyOrder,
+ * que aquí se repite con un mix-in. Los String, streams y ficheros no se
+ * tratan aquí: se escriben con los proveedores por defecto de Jersey, igual
+ * que con JSON-B.
+ */
+@Produces({ MediaType.APPLICATION_JSON, "application/*+json" })
+@Consumes({ MediaType.APPLICATION_JSON, "application/*+json" })
+public class JacksonJsonProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+
+	private static Logger logger = LogManager.getLogger(JacksonJsonProvider.class);
+
+	public static final String JSONB = "jsonb";
+	public static final String JACKSON = "jackson";
+
+	/**
+	 * Proveedor configurado en json.provider: jsonb (por defecto) o jackson.
+	 */
+	public static final String PROVIDER = ConfigUtils.getString("json.provider", JSONB);
+
+	private static final JsonMapper mapper = JsonMapper
+			.builder(JsonFactory.builder().recyclerPool(JsonRecyclerPools.sharedLockFreePool()).build())
+			.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+			.serializationInclusion(JsonInclude.Include.NON_NULL)
+			.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+			.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+			.addMixIn(CursorResults.class, CursorResultsOrder.class)
+			.build();
+
+	// ObjectWriter y ObjectReader son inmutables y thread-safe: uno por tipo
+	private static final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<Type, ObjectWriter>();
+	private static final Map<Type, ObjectReader> readers = new ConcurrentHashMap<Type, ObjectReader>();
+
+	static {
+		for (Class<?> type : new Class<?>[] { Producto.class, MateriaPrimaDTO.class, Usuario.class, Results.class }) {
+			writerFor(type);
+			readerFor(type);
+		}
+		for (TypeReference<?> type : new TypeReference<?>[] { new TypeReference<Results<Producto>>() {
+		}, new TypeReference<Results<MateriaPrimaDTO>>() {
+		}, new TypeReference<Results<Usuario>>() {
+		} }) {
+			writerFor(type.getType());
+		}
+	}
+
+	public static final boolean isEnabled() {
+		return JACKSON.equalsIgnoreCase(PROVIDER);
+	}
+
+	public static final JsonMapper getMapper() {
+		return mapper;
+	}
+
+	public static final ObjectWriter writerFor(Type type) {
+		return writers.computeIfAbsent(type, t -> mapper.writerFor(mapper.constructType(t)));
+	}
+
+	public static final ObjectReader readerFor(Type type) {
+		return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.constructType(t)));
+	}
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return !isUnsupported(type) && !StreamingOutput.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public void writeTo(Object t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+			throws IOException, WebApplicationException {
+		writerFor(genericType != null ? genericType : type).writeValue(entityStream, t);
+	}
+
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return !isUnsupported(type);
+	}
+
+	@Override
+	public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+			throws IOException, WebApplicationException {
+		ObjectReader reader = readerFor(genericType != null ? genericType : type);
+		try (JsonParser parser = reader.createParser(entityStream)) {
+			// Cuerpo vacío: Jersey lo convierte en 400, igual que con JSON-B
+			if (parser.nextToken() == null) {
+				throw new NoContentException("Se esperaba un cuerpo JSON");
+			}
+			return reader.readValue(parser);
+		} catch (JsonProcessingException e) {
+			logger.warn("JSON no válido para {}: {}", type.getSimpleName(), e.getOriginalMessage());
+			throw new BadRequestException("JSON no válido: " + e.getOriginalMessage(), e);
+		}
+	}
+
+	/**
+	 * Tipos que Jersey ya escribe y lee tal cual con sus proveedores por defecto.
+	 */
+	private static boolean isUnsupported(Class<?> type) {
+		return type == String.class || type == byte[].class || type == char[].class
+				|| InputStream.class.isAssignableFrom(type) || Reader.class.isAssignableFrom(type)
+				|| File.class.isAssignableFrom(type);
+	}
+
+	@JsonPropertyOrder({ "page", "total", "nextCursor" })
+	private static abstract class CursorResultsOrder {
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.pinguela.reflejovision.rest.events;
+
+/**
+ * Cambio de un producto o una materia prima publicado en /eventos. Los
+ * eventos de stock llevan las unidades resultantes cuando se conocen; los
+ * demás solo indican qué elemento hay que volver a leer.
+ */
+public class ChangeEvent {
+
+	public static final String TIPO_PRODUCTO = "producto";
+	public static final String TIPO_MATERIA_PRIMA = "materiaprima";
+
+	public static final String ACCION_CREATE = "create";
+	public static final String ACCION_UPDATE = "update";
+	public static final String ACCION_DELETE = "delete";
+	public static final String ACCION_STOCK = "stock";
+
+	private long id = 0;
+	private String tipo = null;
+	private Long idEntidad = null;
+	private String accion = null;
+	private Integer variacion = null;
+	private Integer unidades = null;
+	private String fecha = null;
+
+	public ChangeEvent() {
+	}
+
+	public ChangeEvent(String tipo, Long idEntidad, String accion, Integer variacion, Integer unidades) {
+		this.tipo = tipo;
+		this.idEntidad = idEntidad;
+		this.accion = accion;
+		this.variacion = variacion;
+		this.unidades = unidades;
+	}
+
+	/**
+	 * @return Id del evento, creciente; es el que se envía como id SSE y el que
+	 *         el cliente devuelve en Last-Event-ID.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public String getTipo() {
+		return tipo;
+	}
+
+	public void setTipo(String tipo) {
+		this.tipo = tipo;
+	}
+
+	public Long getIdEntidad() {
+		return idEntidad;
+	}
+
+	public void setIdEntidad(Long idEntidad) {
+		this.idEntidad = idEntidad;
+	}
+
+	public String getAccion() {
+		return accion;
+	}
+
+	public void setAccion(String accion) {
+		this.accion = accion;
+	}
+
+	/**
+	 * @return Variación de unidades de los eventos de stock; si se han fusionado
+	 *         varios, la suma de todas.
+	 */
+	public Integer getVariacion() {
+		return variacion;
+	}
+
+	public void setVariacion(Integer variacion) {
+		this.variacion = variacion;
+	}
+
+	/**
+	 * @return Unidades tras el cambio, o null si no se conocen.
+	 */
+	public Integer getUnidades() {
+		return unidades;
+	}
+
+	public void setUnidades(Integer unidades) {
+		this.unidades = unidades;
+	}
+
+	public String getFecha() {
+		return fecha;
+	}
+
+	public void setFecha(String fecha) {
+		this.fecha = fecha;
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeEvent [id=" + id + ", tipo=" + tipo + ", idEntidad=" + idEntidad + ", accion=" + accion
+				+ ", variacion=" + variacion + ", unidades=" + unidades + ", fecha=" + fecha + "]";
+	}
+
+}
@@ -0,0 +1,371 @@
+package com.pinguela.reflejovision.rest.events;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Difunde a los clientes de /eventos los cambios de productos y materias
+ * primas que publican los servicios de escritura.
+ * <p>
+ * Cada suscriptor tiene su propio buffer de eventos pendientes, de como mucho
+ * events.subscriber.buffer elementos distintos: un evento de un elemento que
+ * ya tiene otro pendiente lo sustituye (y suma las variaciones de stock), de
+ * modo que una ráfaga de cambios del mismo producto sale como un solo evento.
+ * Los envíos se retrasan events.coalesce.ms para agrupar las ráfagas y se
+ * hacen en hilos propios, así que publicar nunca espera a la red. Si un
+ * cliente lento llena su buffer se cierra su conexión: al reconectar con
+ * Last-Event-ID recupera los eventos que sigan en el buffer circular de los
+ * últimos events.replay.size eventos.
+ * <p>
+ * Los pendientes se mantienen en orden de id, así que el último id enviado
+ * cubre todos los anteriores. Los ids empiezan en el instante de arranque en
+ * milisegundos: un Last-Event-ID de una ejecución anterior es menor que el
+ * primer evento del buffer y recibe un evento reset, igual que uno que ya ha
+ * salido del buffer, para que el cliente vuelva a leer el estado completo.
+ */
+public class ChangeEventBus {
+
+	private static Logger logger = LogManager.getLogger(ChangeEventBus.class);
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("events.enabled", true);
+
+	/**
+	 * Nombre del evento que indica al cliente que se han perdido eventos.
+	 */
+	public static final String EVENT_RESET = "reset";
+
+	private final int replaySize;
+	private final int subscriberBuffer;
+	private final int maxSubscribers;
+	private final long coalesceMs;
+
+	// Protegidos por lock: el buffer circular, el último id y el reparto a los
+	// suscriptores, para que cada suscriptor reciba los eventos en orden de id
+	private final Object lock = new Object();
+	private final ArrayDeque<ChangeEvent> replay;
+	private long lastId;
+
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+	private final ScheduledThreadPoolExecutor dispatcher;
+
+	private final LongAdder publicados = new LongAdder();
+	private final LongAdder enviados = new LongAdder();
+	private final LongAdder fusionados = new LongAdder();
+	private final LongAdder desbordados = new LongAdder();
+	private final LongAdder reinicios = new LongAdder();
+
+	public ChangeEventBus() {
+		this(ConfigUtils.getInt("events.replay.size", 1000), ConfigUtils.getInt("events.subscriber.buffer", 256),
+				ConfigUtils.getInt("events.maxSubscribers", 500), ConfigUtils.getLong("events.coalesce.ms", 250),
+				ConfigUtils.getInt("events.dispatch.threads", 4), ConfigUtils.getLong("events.heartbeat.s", 20));
+	}
+
+	public ChangeEventBus(int replaySize, int subscriberBuffer, int maxSubscribers, long coalesceMs,
+			int dispatchThreads, long heartbeatSeconds) {
+		this.replaySize = Math.max(0, replaySize);
+		this.subscriberBuffer = Math.max(1, subscriberBuffer);
+		this.maxSubscribers = maxSubscribers;
+		this.coalesceMs = Math.max(0, coalesceMs);
+		this.replay = new ArrayDeque<ChangeEvent>(this.replaySize);
+		this.lastId = System.currentTimeMillis();
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.dispatcher = new ScheduledThreadPoolExecutor(Math.max(1, dispatchThreads), r -> {
+			Thread t = new Thread(r, "events-dispatch-" + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.dispatcher.setRemoveOnCancelPolicy(true);
+		if (heartbeatSeconds > 0) {
+			// Los comentarios periódicos mantienen abiertas las conexiones a través de
+			// proxies y detectan los clientes que se han ido sin cerrar
+			this.dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Publica un cambio. Solo encola el evento en los suscriptores interesados:
+	 * no bloquea ni accede a la red.
+	 */
+	public void publish(String tipo, Long idEntidad, String accion, Integer variacion, Integer unidades) {
+		if (idEntidad == null) {
+			return;
+		}
+		ChangeEvent event = new ChangeEvent(tipo, idEntidad, accion, variacion, unidades);
+		event.setFecha(Instant.now().toString());
+		synchronized (lock) {
+			event.setId(++lastId);
+			if (replaySize > 0) {
+				if (replay.size() == replaySize) {
+					replay.removeFirst();
+				}
+				replay.addLast(event);
+			}
+			for (Subscriber subscriber : subscribers) {
+				if (subscriber.accepts(event)) {
+					subscriber.offer(event);
+				}
+			}
+		}
+		publicados.increment();
+	}
+
+	/**
+	 * Registra un cliente. Si indica Last-Event-ID se le encolan antes los
+	 * eventos posteriores que sigan en el buffer, o un evento reset si alguno se
+	 * ha perdido o si son de más elementos de los que caben en su buffer (si no,
+	 * se desbordaría y volvería a reconectar con el mismo Last-Event-ID).
+	 *
+	 * @param tipos       Tipos de elemento que recibe; vacío para todos.
+	 * @param ids         Ids de elemento que recibe; vacío para todos.
+	 * @param lastEventId Último id recibido por el cliente, o null.
+	 * @return false si se ha alcanzado events.maxSubscribers; el sink no se
+	 *         cierra.
+	 */
+	public boolean subscribe(SseEventSink sink, Sse sse, Set<String> tipos, Set<Long> ids, Long lastEventId) {
+		Subscriber subscriber = new Subscriber(sink, sse, tipos, ids);
+		synchronized (lock) {
+			if (maxSubscribers > 0 && subscribers.size() >= maxSubscribers) {
+				return false;
+			}
+			if (lastEventId != null) {
+				long firstId = replay.isEmpty() ? lastId + 1 : replay.peekFirst().getId();
+				List<ChangeEvent> replayed = new ArrayList<ChangeEvent>();
+				Set<String> keys = new HashSet<String>();
+				for (ChangeEvent event : replay) {
+					if (event.getId() > lastEventId && subscriber.accepts(event)) {
+						replayed.add(event);
+						keys.add(key(event));
+					}
+				}
+				if (lastEventId + 1 < firstId || lastEventId > lastId || keys.size() > subscriberBuffer) {
+					reinicios.increment();
+					subscriber.reset = true;
+					subscriber.resetId = lastId;
+					subscriber.schedule(0);
+				} else {
+					for (ChangeEvent event : replayed) {
+						subscriber.offer(event);
+					}
+				}
+			}
+			subscribers.add(subscriber);
+		}
+		logger.debug("Nuevo suscriptor de eventos (tipos={}, ids={}, Last-Event-ID={})", tipos, ids, lastEventId);
+		return true;
+	}
+
+	/**
+	 * Cierra todas las suscripciones y para los hilos de envío.
+	 */
+	public void shutdown() {
+		dispatcher.shutdownNow();
+		for (Subscriber subscriber : subscribers) {
+			subscriber.close();
+		}
+	}
+
+	public ChangeEventStats getStats() {
+		ChangeEventStats stats = new ChangeEventStats();
+		synchronized (lock) {
+			stats.setUltimoId(lastId);
+			stats.setEventosEnBuffer(replay.size());
+		}
+		stats.setSuscriptores(subscribers.size());
+		stats.setPublicados(publicados.sum());
+		stats.setEnviados(enviados.sum());
+		stats.setFusionados(fusionados.sum());
+		stats.setDesbordados(desbordados.sum());
+		stats.setReinicios(reinicios.sum());
+		return stats;
+	}
+
+	private void heartbeat() {
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.sink.isClosed()) {
+				subscriber.close();
+			} else {
+				subscriber.heartbeat();
+			}
+		}
+	}
+
+	/**
+	 * Conexión de un cliente. Su estado mutable está protegido por su monitor;
+	 * los envíos se hacen fuera de él, en un solo hilo a la vez.
+	 */
+	private class Subscriber {
+
+		private final SseEventSink sink;
+		private final Sse sse;
+		private final Set<String> tipos;
+		private final Set<Long> ids;
+
+		// Pendientes por elemento, en orden de id
+		private final LinkedHashMap<String, ChangeEvent> pending = new LinkedHashMap<String, ChangeEvent>();
+		private boolean scheduled = false;
+		private boolean reset = false;
+		// Id del evento reset: el último publicado al suscribirse, para que el
+		// cliente no vuelva a enviar el Last-Event-ID perdido al reconectar
+		private long resetId = 0;
+		private boolean ping = false;
+		private boolean closed = false;
+
+		private Subscriber(SseEventSink sink, Sse sse, Set<String> tipos, Set<Long> ids) {
+			this.sink = sink;
+			this.sse = sse;
+			this.tipos = tipos;
+			this.ids = ids;
+		}
+
+		private boolean accepts(ChangeEvent event) {
+			return (tipos.isEmpty() || tipos.contains(event.getTipo()))
+					&& (ids.isEmpty() || ids.contains(event.getIdEntidad()));
+		}
+
+		private synchronized void offer(ChangeEvent event) {
+			if (closed) {
+				return;
+			}
+			String key = key(event);
+			// Se saca y se vuelve a meter para que quede al final, en orden de id
+			ChangeEvent previous = pending.remove(key);
+			if (previous != null) {
+				fusionados.increment();
+				event = merge(previous, event);
+			} else if (pending.size() >= subscriberBuffer) {
+				desbordados.increment();
+				logger.warn("Suscriptor de eventos desbordado ({} pendientes); se cierra su conexión", pending.size());
+				closed = true;
+				pending.clear();
+				dispatcher.execute(this::close);
+				return;
+			}
+			pending.put(key, event);
+			schedule(coalesceMs);
+		}
+
+		private synchronized void heartbeat() {
+			if (!closed) {
+				ping = true;
+				schedule(0);
+			}
+		}
+
+		/**
+		 * Programa un envío si no hay ya uno programado o en curso; el que está en
+		 * curso vuelve a mirar los pendientes antes de terminar.
+		 */
+		private synchronized void schedule(long delayMs) {
+			if (scheduled || closed) {
+				return;
+			}
+			scheduled = true;
+			try {
+				dispatcher.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// La aplicación se está parando
+				scheduled = false;
+			}
+		}
+
+		private void drain() {
+			while (true) {
+				List<ChangeEvent> batch = null;
+				boolean sendReset = false;
+				boolean sendPing = false;
+				synchronized (this) {
+					if (closed || (pending.isEmpty() && !reset && !ping)) {
+						scheduled = false;
+						return;
+					}
+					batch = new ArrayList<ChangeEvent>(pending.values());
+					pending.clear();
+					sendReset = reset;
+					sendPing = ping && batch.isEmpty() && !reset;
+					reset = false;
+					ping = false;
+				}
+				try {
+					if (sendReset) {
+						send(sse.newEventBuilder().id(String.valueOf(resetId)).name(EVENT_RESET)
+								.data(String.class, EVENT_RESET)
+								.comment("Se han perdido eventos: hay que volver a leer el estado").build());
+					}
+					if (sendPing) {
+						send(sse.newEventBuilder().comment("ping").build());
+					}
+					Iterator<ChangeEvent> it = batch.iterator();
+					while (it.hasNext()) {
+						ChangeEvent event = it.next();
+						send(sse.newEventBuilder().id(String.valueOf(event.getId()))
+								.mediaType(MediaType.APPLICATION_JSON_TYPE).data(ChangeEvent.class, event).build());
+						enviados.increment();
+					}
+				} catch (Exception e) {
+					logger.debug("Suscriptor de eventos desconectado: {}", e.getMessage());
+					close();
+					return;
+				}
+			}
+		}
+
+		private void send(OutboundSseEvent event) throws Exception {
+			sink.send(event).toCompletableFuture().get();
+		}
+
+		private void close() {
+			synchronized (this) {
+				closed = true;
+				pending.clear();
+			}
+			subscribers.remove(this);
+			try {
+				sink.close();
+			} catch (Exception e) {
+				logger.debug(e.getMessage(), e);
+			}
+		}
+
+	}
+
+	private static String key(ChangeEvent event) {
+		return event.getTipo() + ":" + event.getIdEntidad();
+	}
+
+	private static ChangeEvent merge(ChangeEvent previous, ChangeEvent event) {
+		if (ChangeEvent.ACCION_STOCK.equals(previous.getAccion()) && ChangeEvent.ACCION_STOCK.equals(event.getAccion())
+				&& previous.getVariacion() != null && event.getVariacion() != null) {
+			ChangeEvent merged = new ChangeEvent(event.getTipo(), event.getIdEntidad(), event.getAccion(),
+					previous.getVariacion() + event.getVariacion(), event.getUnidades());
+			merged.setId(event.getId());
+			merged.setFecha(event.getFecha());
+			return merged;
+		}
+		return event;
+	}
+
+}
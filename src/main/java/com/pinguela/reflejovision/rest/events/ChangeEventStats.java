@@ -0,0 +1,96 @@
+package com.pinguela.reflejovision.rest.events;
+
+public class ChangeEventStats {
+
+	private int suscriptores = 0;
+	private long ultimoId = 0;
+	private int eventosEnBuffer = 0;
+	private long publicados = 0;
+	private long enviados = 0;
+	private long fusionados = 0;
+	private long desbordados = 0;
+	private long reinicios = 0;
+
+	public ChangeEventStats() {
+	}
+
+	public int getSuscriptores() {
+		return suscriptores;
+	}
+
+	public void setSuscriptores(int suscriptores) {
+		this.suscriptores = suscriptores;
+	}
+
+	public long getUltimoId() {
+		return ultimoId;
+	}
+
+	public void setUltimoId(long ultimoId) {
+		this.ultimoId = ultimoId;
+	}
+
+	/**
+	 * @return Eventos guardados para responder a Last-Event-ID.
+	 */
+	public int getEventosEnBuffer() {
+		return eventosEnBuffer;
+	}
+
+	public void setEventosEnBuffer(int eventosEnBuffer) {
+		this.eventosEnBuffer = eventosEnBuffer;
+	}
+
+	public long getPublicados() {
+		return publicados;
+	}
+
+	public void setPublicados(long publicados) {
+		this.publicados = publicados;
+	}
+
+	public long getEnviados() {
+		return enviados;
+	}
+
+	public void setEnviados(long enviados) {
+		this.enviados = enviados;
+	}
+
+	/**
+	 * @return Eventos que no se han enviado porque un evento posterior del mismo
+	 *         elemento los ha sustituido antes de salir.
+	 */
+	public long getFusionados() {
+		return fusionados;
+	}
+
+	public void setFusionados(long fusionados) {
+		this.fusionados = fusionados;
+	}
+
+	/**
+	 * @return Suscripciones cerradas porque el cliente no leía los eventos al
+	 *         ritmo al que se producían.
+	 */
+	public long getDesbordados() {
+		return desbordados;
+	}
+
+	public void setDesbordados(long desbordados) {
+		this.desbordados = desbordados;
+	}
+
+	/**
+	 * @return Suscripciones con un Last-Event-ID que ya no estaba en el buffer, a
+	 *         las que se ha enviado un evento reset.
+	 */
+	public long getReinicios() {
+		return reinicios;
+	}
+
+	public void setReinicios(long reinicios) {
+		this.reinicios = reinicios;
+	}
+
+}
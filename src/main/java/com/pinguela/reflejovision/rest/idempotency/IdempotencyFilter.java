@@ -0,0 +1,325 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.pinguela.reflejovision.rest.async.AsyncExecutor;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Aplica la cabecera Idempotency-Key a los métodos marcados con
+ * {@link Idempotent}.
+ * <p>
+ * Antes de llegar al recurso se reserva la clave en el
+ * {@link IdempotencyStore} junto con un hash del método, la URI y el cuerpo
+ * entero. Para calcularlo el cuerpo se lee en memoria, por lo que con la
+ * cabecera no se admiten cuerpos de más de idempotency.maxBody bytes (413).
+ * Un reintento con la misma clave
+ * recibe la respuesta guardada sin ejecutar el recurso, con la cabecera
+ * Idempotent-Replayed; si la primera petición aún no ha terminado recibe 409,
+ * y si la clave se usó con otra petición, 422.
+ * <p>
+ * Se guardan el status, las cabeceras de la representación y el cuerpo sin
+ * comprimir: el interceptor va por dentro de la compresión. Si el cuerpo supera
+ * idempotency.maxBody bytes o falla su escritura se guardan solo el status y
+ * las cabeceras, porque el recurso ya se ha ejecutado y un reintento no debe
+ * repetirlo. Las respuestas 5xx no se guardan, sino que liberan la clave para
+ * que el reintento se ejecute; salvo el 503 por timeout del
+ * {@link AsyncExecutor}, cuya tarea sigue en curso.
+ * Peticiones sin la cabecera se atienden como siempre.
+ */
+@Idempotent
+@Priority(Priorities.USER)
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	private static Logger logger = LogManager.getLogger(IdempotencyFilter.class);
+
+	public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+	public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+	private static final int MAX_KEY_LENGTH = 255;
+	private static final int MAX_BODY = ConfigUtils.getInt("idempotency.maxBody", 1024 * 1024);
+
+	/**
+	 * Cabeceras de la respuesta que se guardan y se repiten.
+	 */
+	private static final String[] STORED_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LANGUAGE,
+			HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED };
+
+	private static final String KEY = IdempotencyFilter.class.getName() + ".key";
+	private static final String FINGERPRINT = IdempotencyFilter.class.getName() + ".fingerprint";
+	private static final String STATUS = IdempotencyFilter.class.getName() + ".status";
+	private static final String HEADERS = IdempotencyFilter.class.getName() + ".headers";
+
+	private Provider<IdempotencyStore> store = null;
+
+	@Inject
+	public IdempotencyFilter(Provider<IdempotencyStore> store) {
+		this.store = store;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request) throws IOException {
+		String key = request.getHeaderString(IDEMPOTENCY_KEY);
+		IdempotencyStore idempotencyStore = store.get();
+		if (key == null || idempotencyStore == null) {
+			return;
+		}
+		key = key.trim();
+		if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+			request.abortWith(error(Status.BAD_REQUEST,
+					"La cabecera " + IDEMPOTENCY_KEY + " debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres."));
+			return;
+		}
+
+		byte[] body = null;
+		if (request.hasEntity()) {
+			// Si el cuerpo no se leyera entero, dos peticiones que solo difieren
+			// al final tendrían el mismo hash
+			if (request.getLength() > MAX_BODY) {
+				request.abortWith(tooLarge());
+				return;
+			}
+			body = readUpTo(request.getEntityStream(), MAX_BODY + 1);
+			if (body.length > MAX_BODY) {
+				request.abortWith(tooLarge());
+				return;
+			}
+			request.setEntityStream(new ByteArrayInputStream(body));
+		}
+
+		String fingerprint = fingerprint(request, body);
+		IdempotencyRecord existing = idempotencyStore.begin(key, fingerprint);
+		if (existing == null) {
+			request.setProperty(KEY, key);
+			request.setProperty(FINGERPRINT, fingerprint);
+		} else if (!existing.getFingerprint().equals(fingerprint)) {
+			logger.warn("Idempotency-Key {} reutilizada con otra petición: {} {}", key, request.getMethod(),
+					request.getUriInfo().getPath());
+			request.abortWith(error(422, "La " + IDEMPOTENCY_KEY + " ya se ha usado con otra petición."));
+		} else if (!existing.isCompleted()) {
+			logger.info("Idempotency-Key {} en curso: se rechaza el reintento", key);
+			request.abortWith(conflict());
+		} else {
+			logger.info("Idempotency-Key {}: se repite la respuesta {}", key, existing.getStatus());
+			request.abortWith(replay(existing));
+		}
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		String key = (String) request.getProperty(KEY);
+		if (key == null) {
+			return;
+		}
+		if (AsyncExecutor.TIMEOUT_MESSAGE.equals(response.getEntity())) {
+			// La petición sigue en curso: la marca queda hasta idempotency.inflight.s
+			// para que un reintento no la ejecute otra vez
+			request.removeProperty(KEY);
+			logger.warn("Timeout con la Idempotency-Key {}: se mantiene en curso", key);
+			return;
+		}
+		if (response.getStatus() >= 500) {
+			request.removeProperty(KEY);
+			store.get().release(key);
+			return;
+		}
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		for (String name : STORED_HEADERS) {
+			String value = response.getHeaderString(name);
+			if (value != null && value.indexOf('\n') < 0) {
+				headers.put(name, value);
+			}
+		}
+		if (response.hasEntity()) {
+			// Se guarda al terminar de escribir el cuerpo
+			request.setProperty(STATUS, response.getStatus());
+			request.setProperty(HEADERS, headers);
+		} else {
+			request.removeProperty(KEY);
+			store.get().complete(key, (String) request.getProperty(FINGERPRINT), response.getStatus(), headers,
+					null);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		String key = (String) context.getProperty(KEY);
+		Integer status = (Integer) context.getProperty(STATUS);
+		if (key == null || status == null) {
+			context.proceed();
+			return;
+		}
+		context.removeProperty(KEY);
+		CapturingOutputStream capture = new CapturingOutputStream(context.getOutputStream(), MAX_BODY);
+		context.setOutputStream(capture);
+		boolean written = false;
+		try {
+			context.proceed();
+			written = true;
+		} finally {
+			Map<String, String> headers = (Map<String, String>) context.getProperty(HEADERS);
+			byte[] body = null;
+			if (written && !capture.isOverflow()) {
+				body = capture.toByteArray();
+			} else {
+				// El recurso ya se ha ejecutado: la clave no se libera, para que un
+				// reintento no lo repita, pero se repetirá sin cuerpo
+				logger.warn("{} con la Idempotency-Key {}: se guarda la respuesta sin cuerpo",
+						written ? "Respuesta de más de " + MAX_BODY + " bytes" : "Error al escribir la respuesta",
+						key);
+				headers = new LinkedHashMap<String, String>(headers);
+				headers.remove(HttpHeaders.CONTENT_TYPE);
+			}
+			store.get().complete(key, (String) context.getProperty(FINGERPRINT), status, headers, body);
+		}
+	}
+
+	/**
+	 * Hash SHA-256 del método, la URI y el cuerpo, si lo hay.
+	 */
+	private static String fingerprint(ContainerRequestContext request, byte[] body) {
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) ' ');
+		digest.update(request.getUriInfo().getRequestUri().getRawPath().getBytes(StandardCharsets.UTF_8));
+		String query = request.getUriInfo().getRequestUri().getRawQuery();
+		if (query != null) {
+			digest.update((byte) '?');
+			digest.update(query.getBytes(StandardCharsets.UTF_8));
+		}
+		if (body != null) {
+			digest.update((byte) '\n');
+			digest.update(body);
+		}
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private static byte[] readUpTo(InputStream in, int max) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n = 0;
+		while (out.size() < max && (n = in.read(buffer, 0, Math.min(buffer.length, max - out.size()))) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static Response replay(IdempotencyRecord record) {
+		ResponseBuilder builder = Response.status(record.getStatus());
+		for (Map.Entry<String, String> header : record.getHeaders().entrySet()) {
+			builder.header(header.getKey(), header.getValue());
+		}
+		if (record.getBody() != null) {
+			builder.entity(record.getBody());
+		}
+		return builder.header(IDEMPOTENT_REPLAYED, "true").build();
+	}
+
+	private static Response error(Status status, String mensaje) {
+		return error(status.getStatusCode(), mensaje);
+	}
+
+	private static Response error(int status, String mensaje) {
+		return Response.status(status).entity(mensaje).type(MediaType.TEXT_PLAIN_TYPE).build();
+	}
+
+	private static Response tooLarge() {
+		return error(Status.REQUEST_ENTITY_TOO_LARGE, "Con la cabecera " + IDEMPOTENCY_KEY
+				+ " el cuerpo no puede superar " + MAX_BODY + " bytes; envíalo sin ella o en varias peticiones.");
+	}
+
+	private static Response conflict() {
+		return Response.status(Status.CONFLICT)
+				.entity("Hay una petición en curso con la misma " + IDEMPOTENCY_KEY + "; reinténtalo más tarde.")
+				.type(MediaType.TEXT_PLAIN_TYPE).header(HttpHeaders.RETRY_AFTER, 1).build();
+	}
+
+	/**
+	 * Copia en memoria lo que se escribe, hasta un máximo, sin retener la
+	 * escritura.
+	 */
+	private static class CapturingOutputStream extends FilterOutputStream {
+
+		private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		private final int max;
+		private boolean overflow = false;
+
+		private CapturingOutputStream(OutputStream out, int max) {
+			super(out);
+			this.max = max;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			capture(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			capture(b, off, len);
+		}
+
+		private void capture(byte[] b, int off, int len) {
+			if (overflow) {
+				return;
+			}
+			if (copy.size() + len > max) {
+				overflow = true;
+				copy.reset();
+			} else {
+				copy.write(b, off, len);
+			}
+		}
+
+		private boolean isOverflow() {
+			return overflow;
+		}
+
+		private byte[] toByteArray() {
+			return copy.toByteArray();
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estado de una Idempotency-Key: en curso mientras la primera petición se
+ * ejecuta (sin status) y, al terminar, la respuesta que se devuelve a los
+ * reintentos. Un registro terminado no se modifica.
+ */
+public class IdempotencyRecord {
+
+	private String key = null;
+	private String fingerprint = null;
+	private Integer status = null;
+	private Map<String, String> headers = Collections.emptyMap();
+	private byte[] body = null;
+	private long created = 0;
+	private long expires = 0;
+
+	public IdempotencyRecord() {
+	}
+
+	public IdempotencyRecord(String key, String fingerprint, long created, long expires) {
+		this.key = key;
+		this.fingerprint = fingerprint;
+		this.created = created;
+		this.expires = expires;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * @return Hash del método, la URI y el cuerpo de la primera petición.
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * @return Status de la respuesta, o null mientras la petición está en curso.
+	 */
+	public Integer getStatus() {
+		return status;
+	}
+
+	public void setStatus(Integer status) {
+		this.status = status;
+	}
+
+	public boolean isCompleted() {
+		return status != null;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public void setHeaders(Map<String, String> headers) {
+		this.headers = headers == null ? Collections.<String, String>emptyMap()
+				: Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	public void setBody(byte[] body) {
+		this.body = body;
+	}
+
+	/**
+	 * @return Instante de creación en milisegundos.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
+	/**
+	 * @return Instante de caducidad en milisegundos.
+	 */
+	public long getExpires() {
+		return expires;
+	}
+
+	public void setExpires(long expires) {
+		this.expires = expires;
+	}
+
+	@Override
+	public String toString() {
+		return "IdempotencyRecord [key=" + key + ", status=" + status + ", created=" + created + ", expires="
+				+ expires + "]";
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+public class IdempotencyStats {
+
+	private boolean persistente = false;
+	private int entradas = 0;
+	private int enCursoActuales = 0;
+	private long nuevas = 0;
+	private long repetidas = 0;
+	private long enCurso = 0;
+	private long distintas = 0;
+	private long liberadas = 0;
+	private long erroresPersistencia = 0;
+
+	public IdempotencyStats() {
+	}
+
+	public boolean isPersistente() {
+		return persistente;
+	}
+
+	public void setPersistente(boolean persistente) {
+		this.persistente = persistente;
+	}
+
+	/**
+	 * @return Claves en memoria, en curso o con respuesta.
+	 */
+	public int getEntradas() {
+		return entradas;
+	}
+
+	public void setEntradas(int entradas) {
+		this.entradas = entradas;
+	}
+
+	public int getEnCursoActuales() {
+		return enCursoActuales;
+	}
+
+	public void setEnCursoActuales(int enCursoActuales) {
+		this.enCursoActuales = enCursoActuales;
+	}
+
+	/**
+	 * @return Peticiones con una clave nueva, que se han ejecutado.
+	 */
+	public long getNuevas() {
+		return nuevas;
+	}
+
+	public void setNuevas(long nuevas) {
+		this.nuevas = nuevas;
+	}
+
+	/**
+	 * @return Reintentos respondidos con la respuesta guardada.
+	 */
+	public long getRepetidas() {
+		return repetidas;
+	}
+
+	public void setRepetidas(long repetidas) {
+		this.repetidas = repetidas;
+	}
+
+	/**
+	 * @return Reintentos rechazados (409) porque la primera petición no había
+	 *         terminado.
+	 */
+	public long getEnCurso() {
+		return enCurso;
+	}
+
+	public void setEnCurso(long enCurso) {
+		this.enCurso = enCurso;
+	}
+
+	/**
+	 * @return Peticiones rechazadas (422) por reutilizar una clave con otra
+	 *         petición.
+	 */
+	public long getDistintas() {
+		return distintas;
+	}
+
+	public void setDistintas(long distintas) {
+		this.distintas = distintas;
+	}
+
+	/**
+	 * @return Claves liberadas sin respuesta porque la petición falló (5xx).
+	 */
+	public long getLiberadas() {
+		return liberadas;
+	}
+
+	public void setLiberadas(long liberadas) {
+		this.liberadas = liberadas;
+	}
+
+	public long getErroresPersistencia() {
+		return erroresPersistencia;
+	}
+
+	public void setErroresPersistencia(long erroresPersistencia) {
+		this.erroresPersistencia = erroresPersistencia;
+	}
+
+}
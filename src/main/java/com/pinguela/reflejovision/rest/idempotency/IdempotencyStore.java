@@ -0,0 +1,336 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.pinguela.reflejovision.rest.dao.IdempotencyDAO;
+import com.pinguela.reflejovision.rest.dao.impl.IdempotencyDAOImpl;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Idempotency-Key de las peticiones de escritura: una marca mientras la
+ * primera petición con la clave está en curso y después su respuesta, que se
+ * devuelve a los reintentos durante idempotency.ttl.s segundos.
+ * <p>
+ * En memoria se guardan como mucho idempotency.maxEntries claves, en orden de
+ * creación: al superarlo se descartan las más antiguas. Una marca en curso de
+ * más de idempotency.inflight.s segundos se da por abandonada (la petición
+ * murió sin responder) y la clave se puede volver a usar.
+ * <p>
+ * Con idempotency.persistent=true las claves se guardan además en la tabla
+ * IDEMPOTENCY_KEY ({@link IdempotencyDAO}): la marca se reserva con un INSERT,
+ * de modo que dos instancias no ejecutan la misma clave a la vez, y las
+ * respuestas sobreviven a un reinicio. Si la base de datos falla se sigue solo
+ * con la memoria.
+ */
+public class IdempotencyStore {
+
+	private static Logger logger = LogManager.getLogger(IdempotencyStore.class);
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("idempotency.enabled", true);
+
+	private final IdempotencyDAO idempotencyDAO;
+	private final long ttlMs;
+	private final long inFlightMs;
+	private final long purgeSeconds;
+
+	// Protegido por el monitor del store; en orden de creación, así que las
+	// primeras claves son las primeras en caducar
+	private final LinkedHashMap<String, IdempotencyRecord> records;
+
+	private ScheduledExecutorService scheduler = null;
+
+	private final LongAdder nuevas = new LongAdder();
+	private final LongAdder repetidas = new LongAdder();
+	private final LongAdder enCurso = new LongAdder();
+	private final LongAdder distintas = new LongAdder();
+	private final LongAdder liberadas = new LongAdder();
+	private final LongAdder erroresPersistencia = new LongAdder();
+
+	public IdempotencyStore() {
+		this(ConfigUtils.getBoolean("idempotency.persistent", false) ? new IdempotencyDAOImpl() : null,
+				ConfigUtils.getInt("idempotency.maxEntries", 10000), ConfigUtils.getLong("idempotency.ttl.s", 86400),
+				ConfigUtils.getLong("idempotency.inflight.s", 300), ConfigUtils.getLong("idempotency.purge.s", 3600));
+	}
+
+	/**
+	 * @param idempotencyDAO DAO de la tabla IDEMPOTENCY_KEY, o null para
+	 *                       guardar las claves solo en memoria.
+	 */
+	public IdempotencyStore(IdempotencyDAO idempotencyDAO, final int maxEntries, long ttlSeconds,
+			long inFlightSeconds, long purgeSeconds) {
+		this.idempotencyDAO = idempotencyDAO;
+		this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.inFlightMs = TimeUnit.SECONDS.toMillis(inFlightSeconds);
+		this.purgeSeconds = purgeSeconds;
+		this.records = new LinkedHashMap<String, IdempotencyRecord>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Arranca el borrado periódico de las claves caducadas de la tabla.
+	 */
+	public synchronized void start() {
+		if (scheduler == null && idempotencyDAO != null && purgeSeconds > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "idempotency-purge");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleWithFixedDelay(this::purgeExpired, purgeSeconds, purgeSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Reserva la clave para una petición nueva.
+	 *
+	 * @return null si la clave queda reservada y la petición debe ejecutarse, o
+	 *         el registro existente: en curso si otra petición con la clave no
+	 *         ha terminado, o terminado con la respuesta que hay que repetir.
+	 *         Quien llama debe comparar su fingerprint.
+	 */
+	public IdempotencyRecord begin(String key, String fingerprint) {
+		long now = System.currentTimeMillis();
+		IdempotencyRecord marker = new IdempotencyRecord(key, fingerprint, now, now + ttlMs);
+		synchronized (this) {
+			purge(now);
+			IdempotencyRecord existing = records.get(key);
+			if (existing != null && !isAbandoned(existing, now)) {
+				return count(existing, fingerprint);
+			}
+			records.remove(key);
+			records.put(key, marker);
+		}
+
+		if (idempotencyDAO != null) {
+			try {
+				IdempotencyRecord stored = claim(marker, now);
+				if (stored != null) {
+					synchronized (this) {
+						if (records.get(key) == marker) {
+							if (stored.isCompleted()) {
+								records.put(key, stored);
+							} else {
+								records.remove(key);
+							}
+						}
+					}
+					return count(stored, fingerprint);
+				}
+			} catch (DataException e) {
+				erroresPersistencia.increment();
+				logger.warn("No se ha podido reservar la Idempotency-Key {} en base de datos; solo se guarda en memoria",
+						key, e);
+			}
+		}
+		nuevas.increment();
+		return null;
+	}
+
+	/**
+	 * Guarda la respuesta de la petición que reservó la clave.
+	 */
+	public void complete(String key, String fingerprint, int status, Map<String, String> headers, byte[] body) {
+		long now = System.currentTimeMillis();
+		IdempotencyRecord record = new IdempotencyRecord(key, fingerprint, now, now + ttlMs);
+		record.setStatus(status);
+		record.setHeaders(headers);
+		record.setBody(body);
+		synchronized (this) {
+			IdempotencyRecord marker = records.get(key);
+			if (marker != null) {
+				record.setCreated(marker.getCreated());
+			}
+			records.put(key, record);
+		}
+		if (idempotencyDAO != null) {
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = ConnectionPools.getConnection();
+				c.setAutoCommit(false);
+				idempotencyDAO.complete(c, record);
+				commit = true;
+			} catch (SQLException | DataException e) {
+				erroresPersistencia.increment();
+				logger.warn("No se ha podido guardar en base de datos la respuesta de la Idempotency-Key {}", key, e);
+			} finally {
+				closeQuietly(c, commit);
+			}
+		}
+	}
+
+	/**
+	 * Libera la clave sin guardar respuesta, para que un reintento vuelva a
+	 * ejecutar la petición: solo cuando esta ha fallado sin aplicar cambios
+	 * (5xx).
+	 */
+	public void release(String key) {
+		synchronized (this) {
+			records.remove(key);
+		}
+		liberadas.increment();
+		if (idempotencyDAO != null) {
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = ConnectionPools.getConnection();
+				c.setAutoCommit(false);
+				idempotencyDAO.delete(c, key);
+				commit = true;
+			} catch (SQLException | DataException e) {
+				erroresPersistencia.increment();
+				logger.warn("No se ha podido liberar en base de datos la Idempotency-Key {}", key, e);
+			} finally {
+				closeQuietly(c, commit);
+			}
+		}
+	}
+
+	public IdempotencyStats getStats() {
+		IdempotencyStats stats = new IdempotencyStats();
+		int pendientes = 0;
+		synchronized (this) {
+			stats.setEntradas(records.size());
+			for (IdempotencyRecord record : records.values()) {
+				if (!record.isCompleted()) {
+					pendientes++;
+				}
+			}
+		}
+		stats.setPersistente(idempotencyDAO != null);
+		stats.setEnCursoActuales(pendientes);
+		stats.setNuevas(nuevas.sum());
+		stats.setRepetidas(repetidas.sum());
+		stats.setEnCurso(enCurso.sum());
+		stats.setDistintas(distintas.sum());
+		stats.setLiberadas(liberadas.sum());
+		stats.setErroresPersistencia(erroresPersistencia.sum());
+		return stats;
+	}
+
+	/**
+	 * Reserva la clave en la tabla. Si ya existe una reserva abandonada o
+	 * caducada se sustituye.
+	 *
+	 * @return null si la clave queda reservada, o el registro existente.
+	 */
+	private IdempotencyRecord claim(IdempotencyRecord marker, long now) throws DataException {
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			// El INSERT que gana reserva la clave para las demás instancias en cuanto
+			// se confirma, al cerrar la conexión
+			c.setAutoCommit(false);
+			for (int intento = 0; intento < 2; intento++) {
+				if (idempotencyDAO.insert(c, marker)) {
+					commit = true;
+					return null;
+				}
+				IdempotencyRecord stored = idempotencyDAO.findByKey(c, marker.getKey());
+				if (stored != null && stored.getExpires() >= now && !isAbandoned(stored, now)) {
+					commit = true;
+					return stored;
+				}
+				if (stored != null) {
+					idempotencyDAO.delete(c, marker.getKey());
+					c.commit();
+				}
+			}
+			// Otra petición ha reservado la clave entre el DELETE y el INSERT
+			commit = true;
+			IdempotencyRecord stored = idempotencyDAO.findByKey(c, marker.getKey());
+			return stored != null ? stored : marker;
+		} catch (SQLException e) {
+			logger.error("Clave: {}", marker.getKey(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	private IdempotencyRecord count(IdempotencyRecord existing, String fingerprint) {
+		if (!existing.getFingerprint().equals(fingerprint)) {
+			distintas.increment();
+		} else if (existing.isCompleted()) {
+			repetidas.increment();
+		} else {
+			enCurso.increment();
+		}
+		return existing;
+	}
+
+	private boolean isAbandoned(IdempotencyRecord record, long now) {
+		return !record.isCompleted() && inFlightMs > 0 && record.getCreated() + inFlightMs < now;
+	}
+
+	/**
+	 * Descarta las claves caducadas del principio del mapa. Las respuestas se
+	 * guardan con la caducidad del momento en que terminan, así que el orden no
+	 * es exacto: una clave caducada detrás de otra que no lo está se descarta
+	 * por tamaño o en una llamada posterior.
+	 */
+	private void purge(long now) {
+		Iterator<IdempotencyRecord> it = records.values().iterator();
+		while (it.hasNext()) {
+			IdempotencyRecord record = it.next();
+			if (record.getExpires() >= now) {
+				break;
+			}
+			it.remove();
+		}
+	}
+
+	private void purgeExpired() {
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			int eliminadas = idempotencyDAO.deleteExpired(c, System.currentTimeMillis());
+			commit = true;
+			logger.debug("Eliminadas {} Idempotency-Key caducadas", eliminadas);
+		} catch (SQLException | DataException e) {
+			erroresPersistencia.increment();
+			logger.warn("No se han podido eliminar las Idempotency-Key caducadas", e);
+		} finally {
+			closeQuietly(c, commit);
+		}
+	}
+
+	private static void closeQuietly(Connection c, boolean commit) {
+		try {
+			JDBCUtils.close(c, commit);
+		} catch (DataException e) {
+			logger.warn(e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.ws.rs.NameBinding;
+
+/**
+ * Marca los métodos de escritura que admiten la cabecera Idempotency-Key: los
+ * reintentos con la misma clave reciben la respuesta de la primera petición
+ * sin volver a ejecutarla ({@link IdempotencyFilter}).
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Idempotent {
+}
@@ -0,0 +1,435 @@
+package com.pinguela.reflejovision.rest.inventory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+import com.pinguela.reflejovision.rest.dao.impl.StockDAOImpl;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+import com.pinguela.reflejovision.rest.util.ConsumoUtils;
+
+/**
+ * Agregados de inventario de productos y materias primas en memoria: número de
+ * elementos, unidades y valor (precio * unidades) totales, y el conjunto de
+ * elementos con menos unidades que el umbral de bajo stock.
+ * <p>
+ * Los servicios de escritura los mantienen con cada alta, modificación, baja
+ * o variación de stock, sin recorrer las tablas. Una conciliación periódica
+ * (inventory.reconcile.s) los vuelve a calcular desde MySQL para corregir las
+ * desviaciones, por ejemplo las de escrituras hechas fuera de la aplicación;
+ * los elementos escritos mientras se lee la base de datos conservan su valor
+ * en memoria, que es más reciente que el leído.
+ * <p>
+ * Con el {@link StockLedger} activo las unidades son las del ledger: antes de
+ * conciliar se escriben sus variaciones pendientes.
+ */
+public class InventoryAggregates {
+
+	private static Logger logger = LogManager.getLogger(InventoryAggregates.class);
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("inventory.enabled", true);
+
+	public static final String PRODUCTO = "producto";
+	public static final String MATERIA_PRIMA = "materiaprima";
+
+	private final StockDAO stockDAO;
+	private final StockLedger stockLedger;
+	private final long reconcileIntervalSeconds;
+
+	private final Aggregate productos;
+	private final Aggregate materiasPrimas;
+
+	// Solo una conciliación a la vez
+	private final Object reconcileLock = new Object();
+	private ScheduledExecutorService scheduler = null;
+
+	/**
+	 * @param stockLedger Ledger de stock activo, o null.
+	 */
+	public InventoryAggregates(StockLedger stockLedger) {
+		this(new StockDAOImpl(), stockLedger, ConfigUtils.getLong("inventory.reconcile.s", 300),
+				ConfigUtils.getInt("inventory.lowStock.producto", 10),
+				ConfigUtils.getInt("inventory.lowStock.materiaprima", 10));
+	}
+
+	public InventoryAggregates(StockDAO stockDAO, StockLedger stockLedger, long reconcileIntervalSeconds,
+			int umbralProductos, int umbralMateriasPrimas) {
+		this.stockDAO = stockDAO;
+		this.stockLedger = stockLedger;
+		this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+		this.productos = new Aggregate(PRODUCTO, umbralProductos);
+		this.materiasPrimas = new Aggregate(MATERIA_PRIMA, umbralMateriasPrimas);
+	}
+
+	/**
+	 * Calcula los agregados desde base de datos y arranca la conciliación
+	 * periódica. Si el cálculo falla se reintenta en la siguiente conciliación.
+	 */
+	public synchronized void start() {
+		reconcileQuietly();
+		if (scheduler == null && reconcileIntervalSeconds > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "inventory-reconcile");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalSeconds,
+					reconcileIntervalSeconds, TimeUnit.SECONDS);
+			logger.info("Agregados de inventario iniciados (conciliación cada {} s)", reconcileIntervalSeconds);
+		}
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	public void putProducto(Long id, Double precio, Integer unidades) {
+		productos.put(id, precio, unidades == null ? 0 : unidades);
+	}
+
+	public void removeProducto(Long id) {
+		productos.remove(id);
+	}
+
+	public void addUnidadesProducto(Long id, int variacion) {
+		productos.addUnidades(id, variacion);
+	}
+
+	public void putMateriaPrima(Long id, Double precio, Integer unidades) {
+		materiasPrimas.put(id, precio, unidades == null ? 0 : unidades);
+	}
+
+	public void removeMateriaPrima(Long id) {
+		materiasPrimas.remove(id);
+	}
+
+	/**
+	 * Resta a las materias primas las unidades que consumen las unidades
+	 * fabricadas de un producto.
+	 */
+	public void descontarMateriasPrimas(List<ConsumoDTO> consumos, int variacion) {
+		for (ConsumoDTO consumo : consumos) {
+			if (consumo.getUnidades() != null) {
+				materiasPrimas.addUnidades(consumo.getIdMateriaPrima(),
+						-ConsumoUtils.unidadesConsumidas(variacion, consumo));
+			}
+		}
+	}
+
+	/**
+	 * Vuelve a leer de base de datos el precio y las unidades de las materias
+	 * primas indicadas, para las escrituras que no pasan por los servicios de
+	 * una en una (las cargas masivas). Si falla, las corrige la siguiente
+	 * conciliación.
+	 */
+	public void refreshMateriasPrimas(Collection<Long> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			Map<Long, Double> precios = stockDAO.findPreciosMateriasPrimas(c, ids);
+			Map<Long, Integer> unidades = stockDAO.findUnidadesMateriasPrimas(c, ids);
+			commit = true;
+			for (Long id : ids) {
+				if (precios.containsKey(id) && unidades.containsKey(id)) {
+					materiasPrimas.put(id, precios.get(id), unidades.get(id));
+				} else {
+					materiasPrimas.remove(id);
+				}
+			}
+		} catch (SQLException | DataException e) {
+			logger.warn("No se han podido recargar {} materias primas; se corregirán en la siguiente conciliación",
+					ids.size(), e);
+		} finally {
+			try {
+				JDBCUtils.close(c, commit);
+			} catch (DataException e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Vuelve a calcular los agregados desde base de datos y corrige los
+	 * elementos que no coinciden.
+	 */
+	public void reconcile() throws DataException {
+		synchronized (reconcileLock) {
+			if (stockLedger != null) {
+				stockLedger.flush();
+			}
+			productos.beginReconcile();
+			materiasPrimas.beginReconcile();
+			boolean ok = false;
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = ConnectionPools.getConnection();
+				c.setAutoCommit(false);
+				Map<Long, Double> preciosProductos = stockDAO.findAllPreciosProductos(c);
+				Map<Long, Integer> unidadesProductos = stockDAO.findAllUnidadesProductos(c);
+				Map<Long, Double> preciosMateriasPrimas = stockDAO.findAllPreciosMateriasPrimas(c);
+				Map<Long, Integer> unidadesMateriasPrimas = stockDAO.findAllUnidadesMateriasPrimas(c);
+				commit = true;
+				productos.finishReconcile(preciosProductos, unidadesProductos);
+				materiasPrimas.finishReconcile(preciosMateriasPrimas, unidadesMateriasPrimas);
+				ok = true;
+			} catch (SQLException e) {
+				logger.error(e.getMessage(), e);
+				throw new DataException(e);
+			} finally {
+				try {
+					JDBCUtils.close(c, commit);
+				} finally {
+					if (!ok) {
+						productos.abortReconcile();
+						materiasPrimas.abortReconcile();
+					}
+				}
+			}
+		}
+	}
+
+	private void reconcileQuietly() {
+		try {
+			reconcile();
+		} catch (Exception e) {
+			logger.error("Error al conciliar los agregados de inventario; se reintentará en la siguiente conciliación",
+					e);
+		}
+	}
+
+	/**
+	 * @param limit Número máximo de ids de bajo stock de cada tipo.
+	 */
+	public List<InventorySummary> getSummaries(int limit) {
+		List<InventorySummary> summaries = new ArrayList<InventorySummary>(2);
+		summaries.add(productos.getSummary(limit));
+		summaries.add(materiasPrimas.getSummary(limit));
+		return summaries;
+	}
+
+	/**
+	 * Agregados de un tipo de entidad. Todo su estado está protegido por su
+	 * monitor: las escrituras solo actualizan un elemento, así que lo retienen
+	 * muy poco tiempo.
+	 */
+	private static class Aggregate {
+
+		private static final double EPSILON = 1e-6;
+
+		private final String tipo;
+		private final int umbral;
+
+		// {precio, unidades} por id
+		private final Map<Long, double[]> items = new HashMap<Long, double[]>();
+		private final TreeSet<Long> bajoStock = new TreeSet<Long>();
+		private double unidades = 0;
+		private double valor = 0;
+		private boolean cargado = false;
+
+		// Ids escritos y eliminados durante la conciliación en curso, o null
+		private Set<Long> modificados = null;
+		private Set<Long> eliminados = null;
+
+		private long conciliaciones = 0;
+		private long erroresConciliacion = 0;
+		private Instant ultimaConciliacion = null;
+		private int desviaciones = 0;
+		private double desviacionValor = 0;
+
+		private Aggregate(String tipo, int umbral) {
+			this.tipo = tipo;
+			this.umbral = umbral;
+		}
+
+		private synchronized void put(Long id, Double precio, double unidadesItem) {
+			if (id == null) {
+				return;
+			}
+			if (modificados != null) {
+				modificados.add(id);
+				eliminados.remove(id);
+			}
+			subtract(id, items.get(id));
+			add(id, new double[] { precio == null ? 0 : precio, unidadesItem });
+		}
+
+		private synchronized void remove(Long id) {
+			if (id == null) {
+				return;
+			}
+			if (modificados != null) {
+				modificados.remove(id);
+				eliminados.add(id);
+			}
+			subtract(id, items.remove(id));
+		}
+
+		/**
+		 * Las variaciones de elementos que no están cargados se ignoran: los
+		 * incorpora la siguiente conciliación.
+		 */
+		private synchronized void addUnidades(Long id, double variacion) {
+			double[] item = id == null ? null : items.get(id);
+			if (item == null) {
+				return;
+			}
+			if (modificados != null) {
+				modificados.add(id);
+			}
+			subtract(id, item);
+			add(id, new double[] { item[0], item[1] + variacion });
+		}
+
+		private void add(Long id, double[] item) {
+			items.put(id, item);
+			unidades += item[1];
+			valor += item[0] * item[1];
+			if (item[1] < umbral) {
+				bajoStock.add(id);
+			} else {
+				bajoStock.remove(id);
+			}
+		}
+
+		private void subtract(Long id, double[] item) {
+			if (item != null) {
+				unidades -= item[1];
+				valor -= item[0] * item[1];
+				bajoStock.remove(id);
+			}
+		}
+
+		private synchronized void beginReconcile() {
+			modificados = new HashSet<Long>();
+			eliminados = new HashSet<Long>();
+		}
+
+		private synchronized void abortReconcile() {
+			modificados = null;
+			eliminados = null;
+			erroresConciliacion++;
+		}
+
+		/**
+		 * Sustituye los elementos por los leídos, salvo los escritos desde
+		 * {@link #beginReconcile()}, y recalcula los totales desde cero para
+		 * eliminar también el error acumulado de las sumas.
+		 */
+		private synchronized void finishReconcile(Map<Long, Double> precios, Map<Long, Integer> unidadesLeidas) {
+			double valorAnterior = valor;
+			Map<Long, double[]> anteriores = new HashMap<Long, double[]>(items);
+			int corregidos = 0;
+
+			items.clear();
+			for (Map.Entry<Long, Integer> leido : unidadesLeidas.entrySet()) {
+				Long id = leido.getKey();
+				if (eliminados.contains(id)) {
+					continue;
+				}
+				double[] actual = anteriores.get(id);
+				if (modificados.contains(id) && actual != null) {
+					items.put(id, actual);
+					continue;
+				}
+				Double precio = precios.get(id);
+				double[] item = new double[] { precio == null ? 0 : precio, leido.getValue() };
+				if (actual == null || Math.abs(actual[0] - item[0]) > EPSILON
+						|| Math.abs(actual[1] - item[1]) > EPSILON) {
+					corregidos++;
+				}
+				items.put(id, item);
+			}
+			for (Map.Entry<Long, double[]> anterior : anteriores.entrySet()) {
+				if (!items.containsKey(anterior.getKey())) {
+					if (modificados.contains(anterior.getKey())) {
+						// Creado después de leer la tabla
+						items.put(anterior.getKey(), anterior.getValue());
+					} else if (!eliminados.contains(anterior.getKey())) {
+						corregidos++;
+					}
+				}
+			}
+
+			unidades = 0;
+			valor = 0;
+			bajoStock.clear();
+			Iterator<Map.Entry<Long, double[]>> it = items.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Long, double[]> e = it.next();
+				add(e.getKey(), e.getValue());
+			}
+
+			modificados = null;
+			eliminados = null;
+			conciliaciones++;
+			ultimaConciliacion = Instant.now();
+			desviaciones = cargado ? corregidos : 0;
+			desviacionValor = cargado ? valor - valorAnterior : 0;
+			if (cargado && corregidos > 0) {
+				logger.warn("Conciliación de {}: {} elementos corregidos, desviación de valor {}", tipo, corregidos,
+						desviacionValor);
+			} else if (!cargado) {
+				logger.info("Agregados de {} cargados: {} elementos, {} con bajo stock", tipo, items.size(),
+						bajoStock.size());
+			}
+			cargado = true;
+		}
+
+		private synchronized InventorySummary getSummary(int limit) {
+			InventorySummary summary = new InventorySummary();
+			summary.setTipo(tipo);
+			summary.setCargado(cargado);
+			summary.setElementos(items.size());
+			summary.setUnidades(unidades);
+			summary.setValor(valor);
+			summary.setUmbralBajoStock(umbral);
+			summary.setBajoStock(bajoStock.size());
+			List<Long> ids = new ArrayList<Long>(Math.min(limit, bajoStock.size()));
+			for (Long id : bajoStock) {
+				if (ids.size() >= limit) {
+					break;
+				}
+				ids.add(id);
+			}
+			summary.setIdsBajoStock(ids);
+			summary.setConciliaciones(conciliaciones);
+			summary.setErroresConciliacion(erroresConciliacion);
+			summary.setUltimaConciliacion(ultimaConciliacion == null ? null : ultimaConciliacion.toString());
+			summary.setDesviaciones(desviaciones);
+			summary.setDesviacionValor(desviacionValor);
+			return summary;
+		}
+
+	}
+
+}
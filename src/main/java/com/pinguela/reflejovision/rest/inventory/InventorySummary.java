@@ -0,0 +1,135 @@
+package com.pinguela.reflejovision.rest.inventory;
+
+import java.util.List;
+
+/**
+ * Agregados de inventario de un tipo de entidad (productos o materias primas).
+ * <p>
+ * idsBajoStock tiene como mucho el número de ids pedido, en orden de id;
+ * bajoStock es siempre el total. desviaciones y desviacionValor son las
+ * correcciones de la última conciliación con la base de datos.
+ */
+public class InventorySummary {
+
+	private String tipo = null;
+	private boolean cargado = false;
+	private int elementos = 0;
+	private double unidades = 0;
+	private double valor = 0;
+	private int umbralBajoStock = 0;
+	private int bajoStock = 0;
+	private List<Long> idsBajoStock = null;
+	private long conciliaciones = 0;
+	private String ultimaConciliacion = null;
+	private int desviaciones = 0;
+	private double desviacionValor = 0;
+	private long erroresConciliacion = 0;
+
+	public InventorySummary() {
+	}
+
+	public String getTipo() {
+		return tipo;
+	}
+
+	public void setTipo(String tipo) {
+		this.tipo = tipo;
+	}
+
+	public boolean isCargado() {
+		return cargado;
+	}
+
+	public void setCargado(boolean cargado) {
+		this.cargado = cargado;
+	}
+
+	public int getElementos() {
+		return elementos;
+	}
+
+	public void setElementos(int elementos) {
+		this.elementos = elementos;
+	}
+
+	public double getUnidades() {
+		return unidades;
+	}
+
+	public void setUnidades(double unidades) {
+		this.unidades = unidades;
+	}
+
+	public double getValor() {
+		return valor;
+	}
+
+	public void setValor(double valor) {
+		this.valor = valor;
+	}
+
+	public int getUmbralBajoStock() {
+		return umbralBajoStock;
+	}
+
+	public void setUmbralBajoStock(int umbralBajoStock) {
+		this.umbralBajoStock = umbralBajoStock;
+	}
+
+	public int getBajoStock() {
+		return bajoStock;
+	}
+
+	public void setBajoStock(int bajoStock) {
+		this.bajoStock = bajoStock;
+	}
+
+	public List<Long> getIdsBajoStock() {
+		return idsBajoStock;
+	}
+
+	public void setIdsBajoStock(List<Long> idsBajoStock) {
+		this.idsBajoStock = idsBajoStock;
+	}
+
+	public long getConciliaciones() {
+		return conciliaciones;
+	}
+
+	public void setConciliaciones(long conciliaciones) {
+		this.conciliaciones = conciliaciones;
+	}
+
+	public String getUltimaConciliacion() {
+		return ultimaConciliacion;
+	}
+
+	public void setUltimaConciliacion(String ultimaConciliacion) {
+		this.ultimaConciliacion = ultimaConciliacion;
+	}
+
+	public int getDesviaciones() {
+		return desviaciones;
+	}
+
+	public void setDesviaciones(int desviaciones) {
+		this.desviaciones = desviaciones;
+	}
+
+	public double getDesviacionValor() {
+		return desviacionValor;
+	}
+
+	public void setDesviacionValor(double desviacionValor) {
+		this.desviacionValor = desviacionValor;
+	}
+
+	public long getErroresConciliacion() {
+		return erroresConciliacion;
+	}
+
+	public void setErroresConciliacion(long erroresConciliacion) {
+		this.erroresConciliacion = erroresConciliacion;
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.pinguela.reflejovision.rest.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas fijas, compatible con el tipo histogram
+ * de Prometheus. Cada observación solo incrementa dos LongAdder, por lo que se
+ * puede registrar desde cualquier hilo sin bloqueos.
+ */
+public class Histogram {
+
+	/** Límites superiores de las cubetas, en segundos. */
+	public static final double[] BUCKETS = { 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1,
+			2.5, 5, 10 };
+
+	// La última cubeta es +Inf
+	private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+	private final LongAdder sumNanos = new LongAdder();
+
+	public Histogram() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	public void observeNanos(long nanos) {
+		double seconds = nanos / 1e9;
+		int i = 0;
+		while (i < BUCKETS.length && seconds > BUCKETS[i]) {
+			i++;
+		}
+		counts[i].increment();
+		sumNanos.add(nanos);
+	}
+
+	/**
+	 * @return Número de observaciones de cada cubeta (no acumulado); la última
+	 *         corresponde a +Inf.
+	 */
+	public long[] getCounts() {
+		long[] snapshot = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			snapshot[i] = counts[i].sum();
+		}
+		return snapshot;
+	}
+
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+
+	/**
+	 * Estima un cuantil interpolando linealmente dentro de su cubeta, igual que
+	 * histogram_quantile() en Prometheus.
+	 * 
+	 * @param counts Recuento por cubeta obtenido con {@link #getCounts()}.
+	 * @return El cuantil en segundos, o NaN si no hay observaciones.
+	 */
+	public static double quantile(long[] counts, double q) {
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		if (total == 0) {
+			return Double.NaN;
+		}
+		double rank = q * total;
+		long acumulado = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (acumulado + counts[i] >= rank && counts[i] > 0) {
+				if (i == BUCKETS.length) {
+					// Por encima de la última cubeta solo se sabe el límite inferior
+					return BUCKETS[BUCKETS.length - 1];
+				}
+				double inferior = i == 0 ? 0 : BUCKETS[i - 1];
+				return inferior + (BUCKETS[i] - inferior) * (rank - acumulado) / counts[i];
+			}
+			acumulado += counts[i];
+		}
+		return BUCKETS[BUCKETS.length - 1];
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.pinguela.reflejovision.rest.metrics;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Registra en {@link MetricsRegistry} la latencia, el código de estado y las
+ * peticiones en curso de cada método de recurso.
+ * <p>
+ * Los filtros de respuesta se ejecutan antes de serializar el cuerpo, así que
+ * cuando hay entidad la petición se da por terminada en
+ * {@link #aroundWriteTo(WriterInterceptorContext)}, que además mide por
+ * separado el tiempo de serialización. En las respuestas por partes (SSE) la
+ * petición termina con la primera escritura y las siguientes no se cuentan.
+ */
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	private static final String START = MetricsFilter.class.getName() + ".start";
+	private static final String RESOURCE = MetricsFilter.class.getName() + ".resource";
+	private static final String METHOD = MetricsFilter.class.getName() + ".method";
+	private static final String STATUS = MetricsFilter.class.getName() + ".status";
+
+	private static final String NINGUNO = "none";
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	private MetricsRegistry metrics = null;
+
+	@Inject
+	public MetricsFilter(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request) throws IOException {
+		String resource = NINGUNO;
+		String method = NINGUNO;
+		if (resourceInfo != null && resourceInfo.getResourceMethod() != null) {
+			resource = resourceInfo.getResourceClass().getSimpleName();
+			method = resourceInfo.getResourceMethod().getName();
+		}
+		request.setProperty(RESOURCE, resource);
+		request.setProperty(METHOD, method);
+		request.setProperty(START, System.nanoTime());
+		metrics.requestStarted(resource, method);
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		Long start = (Long) request.getProperty(START);
+		if (start == null) {
+			// La petición no llegó a un recurso (p. ej. 404 de enrutado)
+			return;
+		}
+		if (response.hasEntity()) {
+			request.setProperty(STATUS, response.getStatus());
+		} else {
+			finish(request.getProperty(RESOURCE), request.getProperty(METHOD), response.getStatus(), start);
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Long start = (Long) context.getProperty(START);
+		Integer status = (Integer) context.getProperty(STATUS);
+		if (start == null || status == null) {
+			context.proceed();
+			return;
+		}
+		long escritura = System.nanoTime();
+		try {
+			context.proceed();
+		} finally {
+			Object resource = context.getProperty(RESOURCE);
+			Object method = context.getProperty(METHOD);
+			metrics.responseWritten((String) resource, (String) method, System.nanoTime() - escritura);
+			finish(resource, method, status, start);
+			context.removeProperty(STATUS);
+		}
+	}
+
+	private void finish(Object resource, Object method, int status, long start) {
+		metrics.requestFinished((String) resource, (String) method, status, System.nanoTime() - start);
+	}
+
+}
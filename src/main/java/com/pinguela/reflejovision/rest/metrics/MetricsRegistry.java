@@ -0,0 +1,218 @@
+package com.pinguela.reflejovision.rest.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de la aplicación: latencias y códigos de estado por endpoint,
+ * peticiones en curso y tiempo de las llamadas a servicios. Se exportan en el
+ * formato de texto de Prometheus.
+ */
+public class MetricsRegistry {
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+	private final HistogramFamily httpDuration = new HistogramFamily("reflejovision_http_request_duration_seconds",
+			"Duración de las peticiones HTTP, incluida la serialización de la respuesta", "resource", "method");
+	private final HistogramFamily httpSerialization = new HistogramFamily(
+			"reflejovision_http_response_serialization_seconds",
+			"Tiempo de escritura (serialización) del cuerpo de la respuesta", "resource", "method");
+	private final CounterFamily httpRequests = new CounterFamily("reflejovision_http_requests_total",
+			"Peticiones HTTP atendidas por código de estado", "resource", "method", "status");
+	private final GaugeFamily httpInFlight = new GaugeFamily("reflejovision_http_requests_in_flight",
+			"Peticiones HTTP en curso", "resource", "method");
+	private final HistogramFamily serviceDuration = new HistogramFamily(
+			"reflejovision_service_call_duration_seconds", "Duración de las llamadas a los servicios", "service",
+			"method");
+	private final CounterFamily serviceErrors = new CounterFamily("reflejovision_service_call_errors_total",
+			"Llamadas a los servicios terminadas con excepción", "service", "method");
+
+	public MetricsRegistry() {
+	}
+
+	public void requestStarted(String resource, String method) {
+		httpInFlight.get(resource, method).incrementAndGet();
+	}
+
+	public void requestFinished(String resource, String method, int status, long nanos) {
+		httpInFlight.get(resource, method).decrementAndGet();
+		httpRequests.get(resource, method, String.valueOf(status)).increment();
+		httpDuration.get(resource, method).observeNanos(nanos);
+	}
+
+	public void responseWritten(String resource, String method, long nanos) {
+		httpSerialization.get(resource, method).observeNanos(nanos);
+	}
+
+	public void serviceCall(String service, String method, long nanos, boolean error) {
+		serviceDuration.get(service, method).observeNanos(nanos);
+		if (error) {
+			serviceErrors.get(service, method).increment();
+		}
+	}
+
+	public void write(Writer writer) throws IOException {
+		httpDuration.write(writer);
+		httpSerialization.write(writer);
+		httpRequests.write(writer);
+		httpInFlight.write(writer);
+		serviceDuration.write(writer);
+		serviceErrors.write(writer);
+	}
+
+	/**
+	 * Familia de métricas con las mismas etiquetas; cada combinación de valores
+	 * tiene su propia serie.
+	 */
+	private abstract static class Family<T> {
+
+		final String name;
+		final String help;
+		final String[] labelNames;
+		private final Map<List<String>, T> series = new ConcurrentHashMap<List<String>, T>();
+
+		Family(String name, String help, String... labelNames) {
+			this.name = name;
+			this.help = help;
+			this.labelNames = labelNames;
+		}
+
+		abstract T create();
+
+		T get(String... labelValues) {
+			List<String> key = Arrays.asList(labelValues);
+			T serie = series.get(key);
+			return serie != null ? serie : series.computeIfAbsent(key, k -> create());
+		}
+
+		/**
+		 * @return Las series ordenadas por etiquetas, para que la salida sea
+		 *         estable entre lecturas.
+		 */
+		Map<List<String>, T> sorted() {
+			Map<List<String>, T> sorted = new TreeMap<List<String>, T>(
+					(a, b) -> String.join("\u0000", a).compareTo(String.join("\u0000", b)));
+			sorted.putAll(series);
+			return sorted;
+		}
+
+		void writeHeader(Writer writer, String type) throws IOException {
+			writer.write("# HELP " + name + " " + help + "\n");
+			writer.write("# TYPE " + name + " " + type + "\n");
+		}
+
+		String labels(List<String> values, String... extra) {
+			StringBuilder sb = new StringBuilder("{");
+			for (int i = 0; i < labelNames.length; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(labelNames[i]).append("=\"").append(escape(values.get(i))).append('"');
+			}
+			for (int i = 0; i < extra.length; i += 2) {
+				sb.append(',').append(extra[i]).append("=\"").append(extra[i + 1]).append('"');
+			}
+			return sb.append('}').toString();
+		}
+
+		abstract void write(Writer writer) throws IOException;
+	}
+
+	private static class CounterFamily extends Family<LongAdder> {
+
+		CounterFamily(String name, String help, String... labelNames) {
+			super(name, help, labelNames);
+		}
+
+		@Override
+		LongAdder create() {
+			return new LongAdder();
+		}
+
+		@Override
+		void write(Writer writer) throws IOException {
+			writeHeader(writer, "counter");
+			for (Map.Entry<List<String>, LongAdder> serie : sorted().entrySet()) {
+				writer.write(name + labels(serie.getKey()) + " " + serie.getValue().sum() + "\n");
+			}
+		}
+	}
+
+	private static class GaugeFamily extends Family<AtomicLong> {
+
+		GaugeFamily(String name, String help, String... labelNames) {
+			super(name, help, labelNames);
+		}
+
+		@Override
+		AtomicLong create() {
+			return new AtomicLong();
+		}
+
+		@Override
+		void write(Writer writer) throws IOException {
+			writeHeader(writer, "gauge");
+			for (Map.Entry<List<String>, AtomicLong> serie : sorted().entrySet()) {
+				writer.write(name + labels(serie.getKey()) + " " + serie.getValue().get() + "\n");
+			}
+		}
+	}
+
+	private static class HistogramFamily extends Family<Histogram> {
+
+		HistogramFamily(String name, String help, String... labelNames) {
+			super(name, help, labelNames);
+		}
+
+		@Override
+		Histogram create() {
+			return new Histogram();
+		}
+
+		/**
+		 * Además del histograma escribe los cuantiles estimados p50/p95/p99 como
+		 * gauge {@code <name>_quantile}, para poder consultarlos sin PromQL.
+		 */
+		@Override
+		void write(Writer writer) throws IOException {
+			writeHeader(writer, "histogram");
+			Map<List<String>, long[]> snapshots = new LinkedHashMap<List<String>, long[]>();
+			for (Map.Entry<List<String>, Histogram> serie : sorted().entrySet()) {
+				long[] counts = serie.getValue().getCounts();
+				snapshots.put(serie.getKey(), counts);
+				long acumulado = 0;
+				for (int i = 0; i < counts.length; i++) {
+					acumulado += counts[i];
+					String le = i < Histogram.BUCKETS.length ? String.valueOf(Histogram.BUCKETS[i]) : "+Inf";
+					writer.write(name + "_bucket" + labels(serie.getKey(), "le", le) + " " + acumulado + "\n");
+				}
+				writer.write(name + "_sum" + labels(serie.getKey()) + " " + serie.getValue().getSumSeconds() + "\n");
+				writer.write(name + "_count" + labels(serie.getKey()) + " " + acumulado + "\n");
+			}
+
+			writer.write("# HELP " + name + "_quantile Cuantiles estimados de " + name + "\n");
+			writer.write("# TYPE " + name + "_quantile gauge\n");
+			for (Map.Entry<List<String>, long[]> snapshot : snapshots.entrySet()) {
+				for (double q : QUANTILES) {
+					writer.write(name + "_quantile" + labels(snapshot.getKey(), "quantile", String.valueOf(q)) + " "
+							+ Histogram.quantile(snapshot.getValue(), q) + "\n");
+				}
+			}
+		}
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+}
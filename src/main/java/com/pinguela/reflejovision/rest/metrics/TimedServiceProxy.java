@@ -0,0 +1,47 @@
+package com.pinguela.reflejovision.rest.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Proxy que mide la duración de cada llamada a un servicio, para distinguir en
+ * las métricas el tiempo de servicio (base de datos) del resto de la petición.
+ */
+public class TimedServiceProxy implements InvocationHandler {
+
+	private final Object target;
+	private final String service;
+	private final MetricsRegistry metrics;
+
+	private TimedServiceProxy(Object target, String service, MetricsRegistry metrics) {
+		this.target = target;
+		this.service = service;
+		this.metrics = metrics;
+	}
+
+	public static final <T> T wrap(Class<T> contract, T target, MetricsRegistry metrics) {
+		return contract.cast(Proxy.newProxyInstance(contract.getClassLoader(), new Class<?>[] { contract },
+				new TimedServiceProxy(target, contract.getSimpleName(), metrics)));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			return method.invoke(target, args);
+		}
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			Object result = method.invoke(target, args);
+			error = false;
+			return result;
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			metrics.serviceCall(service, method.getName(), System.nanoTime() - start, error);
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.pinguela.reflejovision.rest.model;
+
+import java.util.List;
+
+import javax.json.bind.annotation.JsonbPropertyOrder;
+
+/**
+ * Página de resultados obtenida por cursor (keyset). Además de la página
+ * devuelve el cursor opaco con el que pedir la siguiente, o null si no hay
+ * más resultados. El total solo se calcula si se solicita; en caso contrario
+ * es null y no aparece en el JSON, de modo que un cliente que calcule el
+ * número de páginas a partir de él no recibe un valor inventado.
+ * <p>
+ * Tiene las mismas propiedades que los Results del core, pero no hereda de
+ * ellos porque allí el total es un int.
+ */
+@JsonbPropertyOrder({ "page", "total", "nextCursor" })
+public class CursorResults<E> {
+
+	private List<E> page = null;
+	private Integer total = null;
+	private String nextCursor = null;
+
+	public CursorResults() {
+	}
+
+	public List<E> getPage() {
+		return page;
+	}
+
+	public void setPage(List<E> page) {
+		this.page = page;
+	}
+
+	/**
+	 * @return El total de resultados, o null si no se ha solicitado.
+	 */
+	public Integer getTotal() {
+		return total;
+	}
+
+	public void setTotal(Integer total) {
+		this.total = total;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.pinguela.reflejovision.rest.model;
+
+/**
+ * Unidades de un producto que se pueden fabricar con el stock actual de las
+ * materias primas que consume, y la materia prima que lo limita.
+ * <p>
+ * Si el producto no consume ninguna materia prima no hay límite: unidades e
+ * idMateriaPrimaLimitante son null.
+ */
+public class Fabricables {
+
+	private Long idProducto = null;
+	private Integer unidades = null;
+	private Long idMateriaPrimaLimitante = null;
+
+	public Fabricables() {
+	}
+
+	public Long getIdProducto() {
+		return idProducto;
+	}
+
+	public void setIdProducto(Long idProducto) {
+		this.idProducto = idProducto;
+	}
+
+	public Integer getUnidades() {
+		return unidades;
+	}
+
+	public void setUnidades(Integer unidades) {
+		this.unidades = unidades;
+	}
+
+	public Long getIdMateriaPrimaLimitante() {
+		return idMateriaPrimaLimitante;
+	}
+
+	public void setIdMateriaPrimaLimitante(Long idMateriaPrimaLimitante) {
+		this.idMateriaPrimaLimitante = idMateriaPrimaLimitante;
+	}
+
+}
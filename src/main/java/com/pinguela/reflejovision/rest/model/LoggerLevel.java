@@ -0,0 +1,40 @@
+package com.pinguela.reflejovision.rest.model;
+
+/**
+ * Nivel efectivo de un logger de log4j2.
+ */
+public class LoggerLevel {
+
+	private String logger = null;
+	private String level = null;
+
+	public LoggerLevel() {
+	}
+
+	public LoggerLevel(String logger, String level) {
+		this.logger = logger;
+		this.level = level;
+	}
+
+	public String getLogger() {
+		return logger;
+	}
+
+	public void setLogger(String logger) {
+		this.logger = logger;
+	}
+
+	public String getLevel() {
+		return level;
+	}
+
+	public void setLevel(String level) {
+		this.level = level;
+	}
+
+	@Override
+	public String toString() {
+		return "LoggerLevel [logger=" + logger + ", level=" + level + "]";
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.pinguela.reflejovision.rest.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de una carga masiva de materias primas. La carga se confirma por
+ * bloques: si falla, las materias primas de {@link #getIds()} ya están
+ * guardadas y el cliente puede reanudar la carga a partir de la posición
+ * {@link #getProcesadas()}.
+ */
+public class MateriaPrimaBulkResult {
+
+	public static final String ESTADO_OK = "OK";
+	public static final String ESTADO_INVALIDO = "INVALIDO";
+	public static final String ESTADO_ERROR = "ERROR";
+
+	private String estado = ESTADO_OK;
+	private String mensaje = null;
+	private List<Long> ids = new ArrayList<Long>();
+
+	public MateriaPrimaBulkResult() {
+	}
+
+	public String getEstado() {
+		return estado;
+	}
+
+	public void setEstado(String estado) {
+		this.estado = estado;
+	}
+
+	public String getMensaje() {
+		return mensaje;
+	}
+
+	public void setMensaje(String mensaje) {
+		this.mensaje = mensaje;
+	}
+
+	/**
+	 * @return Ids de las materias primas guardadas, en el orden de entrada.
+	 */
+	public List<Long> getIds() {
+		return ids;
+	}
+
+	public void setIds(List<Long> ids) {
+		this.ids = ids;
+	}
+
+	public int getProcesadas() {
+		return ids == null ? 0 : ids.size();
+	}
+
+	@Override
+	public String toString() {
+		return "MateriaPrimaBulkResult [estado=" + estado + ", mensaje=" + mensaje + ", procesadas="
+				+ getProcesadas() + "]";
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.pinguela.reflejovision.rest.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de una búsqueda por lista de ids. {@link #getResultados()} sigue el
+ * orden de los ids solicitados y tiene null en la posición de cada id que no
+ * existe; {@link #getNoEncontrados()} repite esos ids para que el cliente no
+ * tenga que recorrer los resultados buscando huecos.
+ */
+public class MultiGetResults<E> {
+
+	private List<E> resultados = new ArrayList<E>();
+	private List<Long> noEncontrados = new ArrayList<Long>();
+
+	public MultiGetResults() {
+	}
+
+	public List<E> getResultados() {
+		return resultados;
+	}
+
+	public void setResultados(List<E> resultados) {
+		this.resultados = resultados;
+	}
+
+	public List<Long> getNoEncontrados() {
+		return noEncontrados;
+	}
+
+	public void setNoEncontrados(List<Long> noEncontrados) {
+		this.noEncontrados = noEncontrados;
+	}
+
+}
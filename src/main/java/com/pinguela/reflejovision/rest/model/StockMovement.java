@@ -0,0 +1,40 @@
+package com.pinguela.reflejovision.rest.model;
+
+/**
+ * Movimiento de stock de un producto dentro de una actualización por lotes.
+ */
+public class StockMovement {
+
+	private Long idProducto = null;
+	private Integer variacionStock = null;
+
+	public StockMovement() {
+	}
+
+	public StockMovement(Long idProducto, Integer variacionStock) {
+		this.idProducto = idProducto;
+		this.variacionStock = variacionStock;
+	}
+
+	public Long getIdProducto() {
+		return idProducto;
+	}
+
+	public void setIdProducto(Long idProducto) {
+		this.idProducto = idProducto;
+	}
+
+	public Integer getVariacionStock() {
+		return variacionStock;
+	}
+
+	public void setVariacionStock(Integer variacionStock) {
+		this.variacionStock = variacionStock;
+	}
+
+	@Override
+	public String toString() {
+		return "StockMovement [idProducto=" + idProducto + ", variacionStock=" + variacionStock + "]";
+	}
+
+}
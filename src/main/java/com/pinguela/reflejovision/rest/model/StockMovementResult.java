@@ -0,0 +1,96 @@
+package com.pinguela.reflejovision.rest.model;
+
+/**
+ * Resultado de aplicar un movimiento de stock de un lote. Los movimientos con
+ * estado distinto de {@link #ESTADO_OK} no se aplican, pero no impiden que se
+ * apliquen los demás.
+ */
+public class StockMovementResult {
+
+	public static final String ESTADO_OK = "OK";
+	public static final String ESTADO_INVALIDO = "INVALIDO";
+	public static final String ESTADO_NO_ENCONTRADO = "NO_ENCONTRADO";
+	public static final String ESTADO_STOCK_INSUFICIENTE = "STOCK_INSUFICIENTE";
+
+	private Long idProducto = null;
+	private Integer variacionStock = null;
+	private String estado = null;
+	private String mensaje = null;
+	private Integer unidades = null;
+	private Long idMateriaPrima = null;
+
+	public StockMovementResult() {
+	}
+
+	public StockMovementResult(StockMovement movimiento, String estado, String mensaje) {
+		if (movimiento != null) {
+			this.idProducto = movimiento.getIdProducto();
+			this.variacionStock = movimiento.getVariacionStock();
+		}
+		this.estado = estado;
+		this.mensaje = mensaje;
+	}
+
+	public Long getIdProducto() {
+		return idProducto;
+	}
+
+	public void setIdProducto(Long idProducto) {
+		this.idProducto = idProducto;
+	}
+
+	public Integer getVariacionStock() {
+		return variacionStock;
+	}
+
+	public void setVariacionStock(Integer variacionStock) {
+		this.variacionStock = variacionStock;
+	}
+
+	public String getEstado() {
+		return estado;
+	}
+
+	public void setEstado(String estado) {
+		this.estado = estado;
+	}
+
+	public String getMensaje() {
+		return mensaje;
+	}
+
+	public void setMensaje(String mensaje) {
+		this.mensaje = mensaje;
+	}
+
+	/**
+	 * @return Unidades del producto tras aplicar el movimiento, o null si no se
+	 *         ha aplicado.
+	 */
+	public Integer getUnidades() {
+		return unidades;
+	}
+
+	public void setUnidades(Integer unidades) {
+		this.unidades = unidades;
+	}
+
+	/**
+	 * @return Materia prima sin stock suficiente si el estado es
+	 *         {@link #ESTADO_STOCK_INSUFICIENTE}, o null si no se conoce.
+	 */
+	public Long getIdMateriaPrima() {
+		return idMateriaPrima;
+	}
+
+	public void setIdMateriaPrima(Long idMateriaPrima) {
+		this.idMateriaPrima = idMateriaPrima;
+	}
+
+	@Override
+	public String toString() {
+		return "StockMovementResult [idProducto=" + idProducto + ", variacionStock=" + variacionStock + ", estado="
+				+ estado + ", mensaje=" + mensaje + ", unidades=" + unidades + ", idMateriaPrima=" + idMateriaPrima + "]";
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.pinguela.reflejovision.rest.model;
+
+/**
+ * Resultado de una búsqueda por nombre en el índice en memoria: el id y el
+ * nombre de la entidad, sin el resto de sus datos, y la relevancia con la que
+ * se ha ordenado.
+ */
+public class Sugerencia {
+
+	private Long id = null;
+	private String nombre = null;
+	private double relevancia = 0;
+
+	public Sugerencia() {
+	}
+
+	public Sugerencia(Long id, String nombre, double relevancia) {
+		this.id = id;
+		this.nombre = nombre;
+		this.relevancia = relevancia;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getNombre() {
+		return nombre;
+	}
+
+	public void setNombre(String nombre) {
+		this.nombre = nombre;
+	}
+
+	public double getRelevancia() {
+		return relevancia;
+	}
+
+	public void setRelevancia(double relevancia) {
+		this.relevancia = relevancia;
+	}
+
+}
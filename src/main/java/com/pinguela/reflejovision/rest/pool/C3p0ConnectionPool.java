@@ -0,0 +1,114 @@
+package com.pinguela.reflejovision.rest.pool;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * El pool c3p0 que crea {@link JDBCUtils} en el core, con los parámetros de
+ * reflejovision-cfg.properties en lugar de los fijos del core. Es el mismo
+ * pool que usan los servicios del core, así que la aplicación y el core
+ * comparten las conexiones.
+ */
+public class C3p0ConnectionPool implements ConnectionPool {
+
+	private static Logger logger = LogManager.getLogger(C3p0ConnectionPool.class);
+
+	public static final String NAME = "c3p0";
+
+	private final ComboPooledDataSource dataSource;
+
+	/**
+	 * El pool del core, tal como lo ha configurado JDBCUtils.
+	 */
+	public C3p0ConnectionPool() {
+		this.dataSource = getCoreDataSource();
+	}
+
+	/**
+	 * El pool del core, reconfigurado. Si ya tiene conexiones, c3p0 las
+	 * sustituye por otras con la nueva configuración a medida que se devuelven.
+	 *
+	 * @param acquireTimeoutMs Espera máxima por una conexión libre; 0 = sin
+	 *                         límite.
+	 * @param driverProperties Propiedades del driver que se añaden a la URL de
+	 *                         conexión (caché de sentencias).
+	 * @param idleTestSeconds  Cada cuántos segundos se comprueban las conexiones
+	 *                         inactivas; 0 = nunca.
+	 */
+	public C3p0ConnectionPool(int minSize, int maxSize, int acquireTimeoutMs, Map<String, String> driverProperties,
+			int idleTestSeconds, boolean testOnCheckout) {
+		this();
+		dataSource.setMinPoolSize(minSize);
+		dataSource.setMaxPoolSize(maxSize);
+		dataSource.setCheckoutTimeout(acquireTimeoutMs);
+		// Las sentencias se guardan en la caché del driver, no en la de c3p0,
+		// que en esta versión serializa los cierres de sentencias
+		dataSource.setMaxStatementsPerConnection(0);
+		String url = dataSource.getJdbcUrl();
+		if (url != null && !driverProperties.isEmpty()) {
+			StringBuilder sb = new StringBuilder(url);
+			for (Map.Entry<String, String> property : driverProperties.entrySet()) {
+				if (!url.contains(property.getKey() + "=")) {
+					sb.append(sb.indexOf("?") < 0 ? '?' : '&').append(property.getKey()).append('=')
+							.append(property.getValue());
+				}
+			}
+			dataSource.setJdbcUrl(sb.toString());
+		}
+		dataSource.setIdleConnectionTestPeriod(idleTestSeconds);
+		dataSource.setTestConnectionOnCheckout(testOnCheckout);
+	}
+
+	/**
+	 * JDBCUtils no expone su pool: se obtiene del campo estático por reflexión.
+	 */
+	private static ComboPooledDataSource getCoreDataSource() {
+		try {
+			Field field = JDBCUtils.class.getDeclaredField("cpds");
+			field.setAccessible(true);
+			return (ComboPooledDataSource) field.get(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException("No se ha podido acceder al pool de JDBCUtils", e);
+		}
+	}
+
+	@Override
+	public String getImplementation() {
+		return NAME;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	@Override
+	public void fillStats(ConnectionPoolStats stats) {
+		stats.setImplementation(NAME);
+		stats.setMinSize(dataSource.getMinPoolSize());
+		stats.setMaxSize(dataSource.getMaxPoolSize());
+		try {
+			stats.setActive(dataSource.getNumBusyConnectionsDefaultUser());
+			stats.setIdle(dataSource.getNumIdleConnectionsDefaultUser());
+			stats.setWaitingThreads(dataSource.getNumThreadsAwaitingCheckoutDefaultUser());
+		} catch (SQLException e) {
+			logger.warn("No se ha podido consultar el estado del pool c3p0: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * El pool pertenece al core: no se cierra desde la aplicación.
+	 */
+	@Override
+	public void close() {
+	}
+
+}
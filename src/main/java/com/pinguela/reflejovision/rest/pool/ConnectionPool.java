@@ -0,0 +1,30 @@
+package com.pinguela.reflejovision.rest.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Pool de conexiones a la base de datos.
+ */
+public interface ConnectionPool {
+
+	/**
+	 * @return Nombre de la implementación (c3p0, hikari).
+	 */
+	public String getImplementation();
+
+	/**
+	 * Obtiene una conexión, esperando como máximo db.pool.acquireTimeout.ms si
+	 * no hay ninguna libre.
+	 */
+	public Connection getConnection() throws SQLException;
+
+	/**
+	 * Rellena en stats el tamaño configurado del pool y sus conexiones activas,
+	 * inactivas y los hilos en espera.
+	 */
+	public void fillStats(ConnectionPoolStats stats);
+
+	public void close();
+
+}
@@ -0,0 +1,133 @@
+package com.pinguela.reflejovision.rest.pool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ConnectionPoolStats {
+
+	private String name = null;
+	private String implementation = null;
+	private int minSize = 0;
+	private int maxSize = 0;
+	private int active = 0;
+	private int idle = 0;
+	private int waitingThreads = 0;
+	private long acquisitions = 0;
+	private long acquireErrors = 0;
+	private Double acquireAvgMs = null;
+	private Double acquireP50Ms = null;
+	private Double acquireP99Ms = null;
+	private Map<String, Long> acquireHistogram = new LinkedHashMap<String, Long>();
+
+	public ConnectionPoolStats() {
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getImplementation() {
+		return implementation;
+	}
+
+	public void setImplementation(String implementation) {
+		this.implementation = implementation;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public void setActive(int active) {
+		this.active = active;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	public void setIdle(int idle) {
+		this.idle = idle;
+	}
+
+	public int getWaitingThreads() {
+		return waitingThreads;
+	}
+
+	public void setWaitingThreads(int waitingThreads) {
+		this.waitingThreads = waitingThreads;
+	}
+
+	public long getAcquisitions() {
+		return acquisitions;
+	}
+
+	public void setAcquisitions(long acquisitions) {
+		this.acquisitions = acquisitions;
+	}
+
+	public long getAcquireErrors() {
+		return acquireErrors;
+	}
+
+	public void setAcquireErrors(long acquireErrors) {
+		this.acquireErrors = acquireErrors;
+	}
+
+	public Double getAcquireAvgMs() {
+		return acquireAvgMs;
+	}
+
+	public void setAcquireAvgMs(Double acquireAvgMs) {
+		this.acquireAvgMs = acquireAvgMs;
+	}
+
+	public Double getAcquireP50Ms() {
+		return acquireP50Ms;
+	}
+
+	public void setAcquireP50Ms(Double acquireP50Ms) {
+		this.acquireP50Ms = acquireP50Ms;
+	}
+
+	public Double getAcquireP99Ms() {
+		return acquireP99Ms;
+	}
+
+	public void setAcquireP99Ms(Double acquireP99Ms) {
+		this.acquireP99Ms = acquireP99Ms;
+	}
+
+	/**
+	 * @return Número de adquisiciones por cubeta de tiempo (límite superior en
+	 *         segundos, no acumulado).
+	 */
+	public Map<String, Long> getAcquireHistogram() {
+		return acquireHistogram;
+	}
+
+	public void setAcquireHistogram(Map<String, Long> acquireHistogram) {
+		this.acquireHistogram = acquireHistogram;
+	}
+
+}
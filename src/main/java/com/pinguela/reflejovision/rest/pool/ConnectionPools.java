@@ -0,0 +1,164 @@
+package com.pinguela.reflejovision.rest.pool;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.pinguela.reflejovision.rest.metrics.Histogram;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Pool de conexiones de los DAO y servicios de la aplicación, elegido con
+ * db.pool:
+ * <ul>
+ * <li>c3p0: el pool de {@link JDBCUtils}, compartido con el core, con el
+ * tamaño, la espera máxima, la caché de sentencias y la comprobación de
+ * conexiones inactivas de db.pool.*.</li>
+ * <li>hikari: un pool HikariCP propio con esos mismos parámetros. Los servicios
+ * del core (lecturas por id y escrituras de productos, materias primas y
+ * usuarios) siguen usando el pool de JDBCUtils, también configurado con
+ * db.pool.*, porque el core no permite sustituirlo.</li>
+ * </ul>
+ * Cada obtención de conexión de la aplicación se cronometra: si el tiempo de
+ * adquisición crece con las conexiones activas en el máximo y hilos en espera,
+ * el cuello de botella es el pool; si las adquisiciones son rápidas y las
+ * peticiones lentas, es la base de datos.
+ */
+public class ConnectionPools {
+
+	private static Logger logger = LogManager.getLogger(ConnectionPools.class);
+
+	public static final String POOL = ConfigUtils.getString("db.pool", C3p0ConnectionPool.NAME);
+
+	private static final int MIN_SIZE = ConfigUtils.getInt("db.pool.minSize", 5);
+	private static final int MAX_SIZE = ConfigUtils.getInt("db.pool.maxSize", 20);
+	private static final int ACQUIRE_TIMEOUT_MS = ConfigUtils.getInt("db.pool.acquireTimeout.ms", 0);
+	private static final int STATEMENT_CACHE = ConfigUtils.getInt("db.pool.statementCache", 250);
+	private static final int STATEMENT_SQL_LIMIT = ConfigUtils.getInt("db.pool.statementSqlLimit", 2048);
+	private static final boolean SERVER_PREPARE = ConfigUtils.getBoolean("db.pool.serverPrepare", true);
+	private static final int IDLE_TEST_SECONDS = ConfigUtils.getInt("db.pool.idleTest.s", 300);
+	private static final boolean TEST_ON_CHECKOUT = ConfigUtils.getBoolean("db.pool.testOnCheckout", true);
+
+	private static final ConnectionPool corePool = new C3p0ConnectionPool(MIN_SIZE, MAX_SIZE, ACQUIRE_TIMEOUT_MS,
+			getDriverProperties(), IDLE_TEST_SECONDS, TEST_ON_CHECKOUT);
+	private static final ConnectionPool pool = createPool();
+
+	private static final Histogram acquireTime = new Histogram();
+	private static final LongAdder acquireErrors = new LongAdder();
+
+	private static ConnectionPool createPool() {
+		if (HikariConnectionPool.NAME.equalsIgnoreCase(POOL)) {
+			logger.info("Pool de conexiones de la aplicación: HikariCP ({}-{} conexiones)", MIN_SIZE, MAX_SIZE);
+			return new HikariConnectionPool(MIN_SIZE, MAX_SIZE, ACQUIRE_TIMEOUT_MS, getDriverProperties(),
+					IDLE_TEST_SECONDS);
+		}
+		if (!C3p0ConnectionPool.NAME.equalsIgnoreCase(POOL)) {
+			logger.warn("Pool de conexiones no soportado: {}. Se usa c3p0", POOL);
+		}
+		logger.info("Pool de conexiones de la aplicación: c3p0 de JDBCUtils ({}-{} conexiones)", MIN_SIZE, MAX_SIZE);
+		return corePool;
+	}
+
+	/**
+	 * Propiedades de Connector/J para la caché de sentencias: con
+	 * serverPrepare las sentencias se preparan en el servidor, y con caché cada
+	 * conexión guarda las statementCache últimas (de hasta statementSqlLimit
+	 * caracteres) en lugar de cerrarlas, de modo que al volver a prepararlas no
+	 * hay que analizarlas de nuevo. Afectan también a las consultas del core.
+	 */
+	private static Map<String, String> getDriverProperties() {
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		if (STATEMENT_CACHE > 0) {
+			properties.put("cachePrepStmts", "true");
+			properties.put("prepStmtCacheSize", String.valueOf(STATEMENT_CACHE));
+			properties.put("prepStmtCacheSqlLimit", String.valueOf(STATEMENT_SQL_LIMIT));
+		}
+		if (SERVER_PREPARE) {
+			properties.put("useServerPrepStmts", "true");
+		}
+		return properties;
+	}
+
+	public static final boolean isServerPrepare() {
+		return SERVER_PREPARE;
+	}
+
+	public static final int getStatementCacheSize() {
+		return STATEMENT_CACHE;
+	}
+
+	/**
+	 * Fuerza la configuración de los pools. Se llama al arrancar, antes de la
+	 * primera conexión, para que c3p0 no llegue a abrir conexiones con la
+	 * configuración del core.
+	 */
+	public static final void init() {
+		logger.debug("Pools de conexiones inicializados: {}", pool.getImplementation());
+	}
+
+	public static final Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		try {
+			return pool.getConnection();
+		} catch (SQLException e) {
+			acquireErrors.increment();
+			throw e;
+		} finally {
+			acquireTime.observeNanos(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return El estado del pool de la aplicación y, si es otro, el del core.
+	 */
+	public static final List<ConnectionPoolStats> getStats() {
+		List<ConnectionPoolStats> stats = new ArrayList<ConnectionPoolStats>();
+		ConnectionPoolStats rest = new ConnectionPoolStats();
+		rest.setName("rest");
+		pool.fillStats(rest);
+		fillAcquireStats(rest);
+		stats.add(rest);
+		if (pool != corePool) {
+			// Las adquisiciones del core no pasan por aquí: no se cronometran
+			ConnectionPoolStats core = new ConnectionPoolStats();
+			core.setName("core");
+			corePool.fillStats(core);
+			stats.add(core);
+		}
+		return stats;
+	}
+
+	private static void fillAcquireStats(ConnectionPoolStats stats) {
+		long[] counts = acquireTime.getCounts();
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			String bucket = i < Histogram.BUCKETS.length ? BigDecimal.valueOf(Histogram.BUCKETS[i]).toPlainString()
+					: "+Inf";
+			stats.getAcquireHistogram().put(bucket, counts[i]);
+		}
+		stats.setAcquisitions(total);
+		stats.setAcquireErrors(acquireErrors.sum());
+		if (total > 0) {
+			stats.setAcquireAvgMs(acquireTime.getSumSeconds() * 1000 / total);
+			stats.setAcquireP50Ms(Histogram.quantile(counts, 0.5) * 1000);
+			stats.setAcquireP99Ms(Histogram.quantile(counts, 0.99) * 1000);
+		}
+	}
+
+	public static final void shutdown() {
+		if (pool != corePool) {
+			pool.close();
+		}
+	}
+
+}
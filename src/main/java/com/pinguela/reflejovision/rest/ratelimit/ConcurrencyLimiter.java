@@ -0,0 +1,94 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Límite de peticiones en curso de cada grupo de endpoints
+ * (concurrency.&lt;grupo&gt;.max; 0 = sin límite). Con las lecturas y las
+ * búsquedas limitadas por debajo del tamaño del pool de conexiones, una ráfaga
+ * de búsquedas no deja sin conexiones a las escrituras.
+ */
+public class ConcurrencyLimiter {
+
+	private static Logger logger = LogManager.getLogger(ConcurrencyLimiter.class);
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("concurrency.enabled", true);
+
+	private final Map<String, Grupo> grupos = new LinkedHashMap<String, Grupo>();
+
+	public ConcurrencyLimiter() {
+		this(ConfigUtils.getInt("concurrency." + RateLimited.LECTURAS + ".max", 0),
+				ConfigUtils.getInt("concurrency." + RateLimited.BUSQUEDAS + ".max", 0),
+				ConfigUtils.getInt("concurrency." + RateLimited.ESCRITURAS + ".max", 0));
+	}
+
+	public ConcurrencyLimiter(int lecturas, int busquedas, int escrituras) {
+		grupos.put(RateLimited.LECTURAS, new Grupo(RateLimited.LECTURAS, lecturas));
+		grupos.put(RateLimited.BUSQUEDAS, new Grupo(RateLimited.BUSQUEDAS, busquedas));
+		grupos.put(RateLimited.ESCRITURAS, new Grupo(RateLimited.ESCRITURAS, escrituras));
+		logger.info("Peticiones concurrentes: {} lecturas, {} busquedas, {} escrituras (0 = sin límite)", lecturas,
+				busquedas, escrituras);
+	}
+
+	/**
+	 * @return true si la petición puede continuar; en ese caso hay que llamar a
+	 *         {@link #release(String)} cuando termine.
+	 */
+	public boolean tryAcquire(String grupo) {
+		Grupo g = grupos.get(grupo);
+		if (g == null || g.permisos == null) {
+			return true;
+		}
+		if (!g.permisos.tryAcquire()) {
+			g.rechazadas.increment();
+			return false;
+		}
+		return true;
+	}
+
+	public void release(String grupo) {
+		Grupo g = grupos.get(grupo);
+		if (g != null && g.permisos != null) {
+			g.permisos.release();
+		}
+	}
+
+	public List<ConcurrencyStats> getStats() {
+		List<ConcurrencyStats> stats = new ArrayList<ConcurrencyStats>();
+		for (Grupo g : grupos.values()) {
+			ConcurrencyStats s = new ConcurrencyStats();
+			s.setGrupo(g.nombre);
+			s.setMax(g.max);
+			s.setActivas(g.permisos == null ? 0 : g.max - g.permisos.availablePermits());
+			s.setRechazadas(g.rechazadas.sum());
+			stats.add(s);
+		}
+		return stats;
+	}
+
+	private static final class Grupo {
+
+		private final String nombre;
+		private final int max;
+		private final Semaphore permisos;
+		private final LongAdder rechazadas = new LongAdder();
+
+		private Grupo(String nombre, int max) {
+			this.nombre = nombre;
+			this.max = Math.max(0, max);
+			this.permisos = max > 0 ? new Semaphore(max) : null;
+		}
+
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+public class ConcurrencyStats {
+
+	private String grupo = null;
+	private int max = 0;
+	private int activas = 0;
+	private long rechazadas = 0;
+
+	public ConcurrencyStats() {
+	}
+
+	public String getGrupo() {
+		return grupo;
+	}
+
+	public void setGrupo(String grupo) {
+		this.grupo = grupo;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	public void setMax(int max) {
+		this.max = max;
+	}
+
+	public int getActivas() {
+		return activas;
+	}
+
+	public void setActivas(int activas) {
+		this.activas = activas;
+	}
+
+	public long getRechazadas() {
+		return rechazadas;
+	}
+
+	public void setRechazadas(long rechazadas) {
+		this.rechazadas = rechazadas;
+	}
+
+}
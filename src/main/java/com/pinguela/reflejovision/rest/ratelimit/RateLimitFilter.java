@@ -0,0 +1,239 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.glassfish.jersey.server.CloseableService;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Aplica a los métodos marcados con {@link RateLimited} el límite de peticiones
+ * por cliente del {@link RateLimiter} (429 con Retry-After) y el de peticiones
+ * en curso de su grupo del {@link ConcurrencyLimiter} (503 con Retry-After).
+ * Las peticiones rechazadas no llegan al recurso ni a los servicios.
+ * <p>
+ * El cliente es el valor de la cabecera ratelimit.clientHeader (X-Api-Key) si
+ * es una de las claves de ratelimit.apiKeys y, si no, su dirección IP; la de
+ * X-Forwarded-For solo con ratelimit.trustForwardedFor=true, detrás de un proxy
+ * propio. Una clave desconocida no da un bucket nuevo: si no, bastaría con
+ * cambiarla en cada petición para no tener límite.
+ * <p>
+ * Cada endpoint usa el límite ratelimit.&lt;Recurso&gt;.&lt;método&gt; (por
+ * ejemplo ratelimit.UsuarioResource.findBy.rate) si está configurado, y si no
+ * el de su grupo. Como en {@link com.pinguela.reflejovision.rest.metrics.MetricsFilter},
+ * la petición termina al escribir el cuerpo si lo tiene, y hasta entonces
+ * ocupa su plaza en el grupo. La plaza se libera también al cerrar la petición
+ * ({@link CloseableService}), para no perderla si una excepción no mapeada
+ * evita los filtros de respuesta o la escritura.
+ */
+@RateLimited
+@Priority(Priorities.AUTHORIZATION)
+public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+	private static Logger logger = LogManager.getLogger(RateLimitFilter.class);
+
+	private static final String CLIENT_HEADER = ConfigUtils.getString("ratelimit.clientHeader", "X-Api-Key");
+	private static final Set<String> API_KEYS = parseApiKeys(ConfigUtils.getString("ratelimit.apiKeys", ""));
+	private static final boolean TRUST_FORWARDED_FOR = ConfigUtils.getBoolean("ratelimit.trustForwardedFor", false);
+	private static final String FORWARDED_FOR = "X-Forwarded-For";
+	private static final String DESCONOCIDO = "desconocido";
+
+	private static final int RETRY_AFTER_SECONDS = 1;
+
+	private static final String GRUPO = RateLimitFilter.class.getName() + ".grupo";
+	private static final String WRITING = RateLimitFilter.class.getName() + ".writing";
+
+	@Context
+	private ResourceInfo resourceInfo;
+
+	@Context
+	private HttpServletRequest servletRequest;
+
+	@Context
+	private CloseableService closeableService;
+
+	private Provider<RateLimiter> rateLimiter = null;
+	private Provider<ConcurrencyLimiter> concurrencyLimiter = null;
+
+	private final ConcurrentHashMap<Method, Endpoint> endpoints = new ConcurrentHashMap<Method, Endpoint>();
+
+	@Inject
+	public RateLimitFilter(Provider<RateLimiter> rateLimiter, Provider<ConcurrencyLimiter> concurrencyLimiter) {
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request) throws IOException {
+		if (resourceInfo == null || resourceInfo.getResourceMethod() == null) {
+			return;
+		}
+		Endpoint endpoint = endpoints.computeIfAbsent(resourceInfo.getResourceMethod(),
+				m -> new Endpoint(resourceInfo.getResourceClass(), m, request.getMethod()));
+
+		RateLimiter limiter = rateLimiter.get();
+		if (limiter != null && endpoint.limit != null) {
+			long espera = limiter.acquire(getCliente(request), endpoint.limit);
+			if (espera > 0) {
+				long segundos = RateLimiter.getRetryAfterSeconds(espera);
+				logger.debug("Límite {} superado; reintentar en {} s", endpoint.limit.getNombre(), segundos);
+				request.abortWith(Response.status(429).header(HttpHeaders.RETRY_AFTER, segundos)
+						.entity("Demasiadas peticiones, inténtelo de nuevo en " + segundos + " segundos.")
+						.type(MediaType.TEXT_PLAIN_TYPE).build());
+				return;
+			}
+		}
+
+		ConcurrencyLimiter concurrency = concurrencyLimiter.get();
+		if (concurrency != null) {
+			if (!concurrency.tryAcquire(endpoint.grupo)) {
+				logger.debug("Sin plazas en el grupo {}", endpoint.grupo);
+				request.abortWith(Response.status(Status.SERVICE_UNAVAILABLE)
+						.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+						.entity("El servidor está saturado, inténtelo de nuevo más tarde.")
+						.type(MediaType.TEXT_PLAIN_TYPE).build());
+				return;
+			}
+			Plaza plaza = new Plaza(concurrency, endpoint.grupo);
+			request.setProperty(GRUPO, plaza);
+			closeableService.add(plaza);
+		}
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+		Plaza plaza = (Plaza) request.getProperty(GRUPO);
+		if (plaza == null) {
+			return;
+		}
+		if (response.hasEntity()) {
+			// La plaza se libera al terminar de escribir el cuerpo
+			request.setProperty(WRITING, Boolean.TRUE);
+		} else {
+			request.removeProperty(GRUPO);
+			plaza.close();
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		Plaza plaza = (Plaza) context.getProperty(GRUPO);
+		if (plaza == null || context.getProperty(WRITING) == null) {
+			context.proceed();
+			return;
+		}
+		context.removeProperty(GRUPO);
+		try {
+			context.proceed();
+		} finally {
+			plaza.close();
+		}
+	}
+
+	private String getCliente(ContainerRequestContext request) {
+		String cliente = request.getHeaderString(CLIENT_HEADER);
+		if (cliente != null && API_KEYS.contains(cliente.trim())) {
+			return "k:" + cliente.trim();
+		}
+		if (TRUST_FORWARDED_FOR) {
+			String forwardedFor = request.getHeaderString(FORWARDED_FOR);
+			if (forwardedFor != null && !forwardedFor.trim().isEmpty()) {
+				int coma = forwardedFor.indexOf(',');
+				return "ip:" + (coma < 0 ? forwardedFor : forwardedFor.substring(0, coma)).trim();
+			}
+		}
+		try {
+			String ip = servletRequest == null ? null : servletRequest.getRemoteAddr();
+			return "ip:" + (ip == null ? DESCONOCIDO : ip);
+		} catch (RuntimeException e) {
+			// Fuera de un contenedor de servlets (benchmarks) no hay dirección remota
+			return "ip:" + DESCONOCIDO;
+		}
+	}
+
+	private static Set<String> parseApiKeys(String apiKeys) {
+		Set<String> claves = Arrays.stream(apiKeys.split(",")).map(String::trim).filter(k -> !k.isEmpty())
+				.collect(Collectors.toSet());
+		return Collections.unmodifiableSet(claves);
+	}
+
+	/**
+	 * Plaza ocupada en un grupo del {@link ConcurrencyLimiter}. Se libera una
+	 * sola vez, la primera en que se cierre: al terminar la respuesta o al
+	 * cerrar la petición.
+	 */
+	private static final class Plaza implements Closeable {
+
+		private final ConcurrencyLimiter limiter;
+		private final String grupo;
+		private final AtomicBoolean liberada = new AtomicBoolean(false);
+
+		private Plaza(ConcurrencyLimiter limiter, String grupo) {
+			this.limiter = limiter;
+			this.grupo = grupo;
+		}
+
+		@Override
+		public void close() {
+			if (liberada.compareAndSet(false, true)) {
+				limiter.release(grupo);
+			}
+		}
+
+	}
+
+	/**
+	 * Grupo y límite de un método de recurso, calculados en su primera petición.
+	 */
+	private static final class Endpoint {
+
+		private final String grupo;
+		private final RateLimiter.Limit limit;
+
+		private Endpoint(Class<?> resourceClass, Method method, String httpMethod) {
+			RateLimited rateLimited = method.getAnnotation(RateLimited.class);
+			if (rateLimited == null) {
+				rateLimited = resourceClass.getAnnotation(RateLimited.class);
+			}
+			String grupo = rateLimited == null ? "" : rateLimited.value();
+			if (grupo.isEmpty()) {
+				grupo = HttpMethod.GET.equals(httpMethod) || HttpMethod.HEAD.equals(httpMethod) ? RateLimited.LECTURAS
+						: RateLimited.ESCRITURAS;
+			}
+			this.grupo = grupo;
+			RateLimiter.Limit limit = RateLimiter.getLimit(resourceClass.getSimpleName() + "." + method.getName());
+			this.limit = limit != null ? limit : RateLimiter.getLimit(grupo);
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.ws.rs.NameBinding;
+
+/**
+ * Marca los recursos y métodos a los que {@link RateLimitFilter} aplica el
+ * límite de peticiones por cliente y el de peticiones concurrentes de su grupo.
+ * En un método sustituye a la del recurso.
+ */
+@NameBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface RateLimited {
+
+	String LECTURAS = "lecturas";
+	String BUSQUEDAS = "busquedas";
+	String ESCRITURAS = "escrituras";
+
+	/**
+	 * @return Grupo del método; vacío para deducirlo del método HTTP: GET y HEAD
+	 *         son lecturas y el resto escrituras.
+	 */
+	String value() default "";
+
+}
@@ -0,0 +1,206 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Límite de peticiones por cliente con un token bucket por cliente y límite:
+ * cada límite admite {@code rate} peticiones por segundo con ráfagas de hasta
+ * {@code burst}.
+ * <p>
+ * Cada bucket es un único {@link AtomicLong} con el instante en que el bucket
+ * vuelve a estar lleno (la forma GCRA del token bucket), de modo que admitir
+ * una petición es una lectura y un compareAndSet, sin bloqueos. Los buckets
+ * llenos equivalen a uno nuevo y se eliminan cada ratelimit.sweep.s segundos o
+ * cuando se supera ratelimit.maxClients; si aun así no cabe un cliente nuevo,
+ * sus peticiones se admiten sin límite hasta que haya sitio.
+ */
+public class RateLimiter {
+
+	private static Logger logger = LogManager.getLogger(RateLimiter.class);
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("ratelimit.enabled", true);
+
+	private final int maxClients;
+	private final long sweepSeconds;
+
+	private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	private ScheduledExecutorService scheduler = null;
+
+	private final LongAdder admitidas = new LongAdder();
+	private final LongAdder rechazadas = new LongAdder();
+	private final LongAdder sinSeguimiento = new LongAdder();
+
+	public RateLimiter() {
+		this(ConfigUtils.getInt("ratelimit.maxClients", 100000), ConfigUtils.getLong("ratelimit.sweep.s", 60));
+	}
+
+	public RateLimiter(int maxClients, long sweepSeconds) {
+		this.maxClients = maxClients;
+		this.sweepSeconds = sweepSeconds;
+	}
+
+	/**
+	 * Límite de ratelimit.&lt;nombre&gt;.rate peticiones por segundo y
+	 * ratelimit.&lt;nombre&gt;.burst de ráfaga.
+	 *
+	 * @return El límite, o null si no está configurado o su rate es 0.
+	 */
+	public static Limit getLimit(String nombre) {
+		int rate = ConfigUtils.getInt("ratelimit." + nombre + ".rate", 0);
+		if (rate <= 0) {
+			return null;
+		}
+		return new Limit(nombre, rate, Math.max(1, ConfigUtils.getInt("ratelimit." + nombre + ".burst", rate)));
+	}
+
+	public synchronized void start() {
+		if (scheduler == null && sweepSeconds > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "ratelimit-sweep");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleWithFixedDelay(this::sweep, sweepSeconds, sweepSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * Consume una petición del bucket del cliente.
+	 *
+	 * @return 0 si la petición se admite, o los nanosegundos que el cliente
+	 *         tiene que esperar para que se admita.
+	 */
+	public long acquire(String cliente, Limit limit) {
+		return acquire(cliente, limit, System.nanoTime());
+	}
+
+	/**
+	 * {@link #acquire(String, Limit)} en el instante indicado, en la escala de
+	 * {@link System#nanoTime()}.
+	 */
+	long acquire(String cliente, Limit limit, long now) {
+		String key = limit.getNombre() + ':' + cliente;
+		AtomicLong bucket = buckets.get(key);
+		if (bucket == null) {
+			if (buckets.size() >= maxClients) {
+				sweep(now);
+				if (buckets.size() >= maxClients) {
+					sinSeguimiento.increment();
+					return 0;
+				}
+			}
+			AtomicLong nuevo = new AtomicLong(now);
+			bucket = buckets.putIfAbsent(key, nuevo);
+			if (bucket == null) {
+				bucket = nuevo;
+			}
+		}
+		while (true) {
+			long lleno = bucket.get();
+			long siguiente = Math.max(lleno - now, 0) + now + limit.intervalNanos;
+			long espera = siguiente - now - limit.toleranceNanos;
+			if (espera > 0) {
+				rechazadas.increment();
+				return espera;
+			}
+			if (bucket.compareAndSet(lleno, siguiente)) {
+				admitidas.increment();
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Segundos de la cabecera Retry-After para una espera: redondeados hacia
+	 * arriba y como mínimo 1, para que el cliente no reintente antes de tiempo.
+	 */
+	public static long getRetryAfterSeconds(long esperaNanos) {
+		long segundo = TimeUnit.SECONDS.toNanos(1);
+		return Math.max(1, (esperaNanos + segundo - 1) / segundo);
+	}
+
+	public RateLimiterStats getStats() {
+		RateLimiterStats stats = new RateLimiterStats();
+		stats.setClientes(buckets.size());
+		stats.setAdmitidas(admitidas.sum());
+		stats.setRechazadas(rechazadas.sum());
+		stats.setSinSeguimiento(sinSeguimiento.sum());
+		return stats;
+	}
+
+	/**
+	 * Elimina los buckets llenos. Una petición que acaba de obtener uno de ellos
+	 * lo consume aunque ya no esté en el mapa: como mucho se pierde esa petición
+	 * de la cuenta del cliente.
+	 */
+	private void sweep() {
+		sweep(System.nanoTime());
+	}
+
+	private void sweep(long now) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			int antes = buckets.size();
+			buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+			logger.debug("Eliminados {} buckets llenos de {}", antes - buckets.size(), antes);
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	/**
+	 * Límite de un grupo de endpoints o de un endpoint concreto.
+	 */
+	public static final class Limit {
+
+		private final String nombre;
+		private final int rate;
+		private final int burst;
+		private final long intervalNanos;
+		private final long toleranceNanos;
+
+		Limit(String nombre, int rate, int burst) {
+			this.nombre = nombre;
+			this.rate = rate;
+			this.burst = burst;
+			this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+			this.toleranceNanos = intervalNanos * burst;
+		}
+
+		public String getNombre() {
+			return nombre;
+		}
+
+		public int getRate() {
+			return rate;
+		}
+
+		public int getBurst() {
+			return burst;
+		}
+
+	}
+
+}
@@ -0,0 +1,45 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+public class RateLimiterStats {
+
+	private int clientes = 0;
+	private long admitidas = 0;
+	private long rechazadas = 0;
+	private long sinSeguimiento = 0;
+
+	public RateLimiterStats() {
+	}
+
+	public int getClientes() {
+		return clientes;
+	}
+
+	public void setClientes(int clientes) {
+		this.clientes = clientes;
+	}
+
+	public long getAdmitidas() {
+		return admitidas;
+	}
+
+	public void setAdmitidas(long admitidas) {
+		this.admitidas = admitidas;
+	}
+
+	public long getRechazadas() {
+		return rechazadas;
+	}
+
+	public void setRechazadas(long rechazadas) {
+		this.rechazadas = rechazadas;
+	}
+
+	public long getSinSeguimiento() {
+		return sinSeguimiento;
+	}
+
+	public void setSinSeguimiento(long sinSeguimiento) {
+		this.sinSeguimiento = sinSeguimiento;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.pinguela.reflejovision.rest.search;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+
+/**
+ * Un {@link NameIndex} por idioma sobre las traducciones de los nombres de las
+ * materias primas.
+ */
+public class LocalizedNameIndex {
+
+	private final Map<String, NameIndex> indices = new ConcurrentHashMap<String, NameIndex>();
+	private volatile boolean ready = false;
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return El índice del idioma indicado; vacío si no hay ninguna traducción
+	 *         a ese idioma.
+	 */
+	public NameIndex get(String locale) {
+		return indices.computeIfAbsent(key(locale), k -> new NameIndex());
+	}
+
+	/**
+	 * Sustituye las traducciones de una materia prima en todos los idiomas.
+	 */
+	public synchronized void put(Long id, Collection<MateriaPrimaIdioma> traducciones) {
+		Map<String, String> nombres = new HashMap<String, String>();
+		for (MateriaPrimaIdioma t : traducciones) {
+			if (t.getLocale() != null) {
+				nombres.put(key(t.getLocale()), t.getNombre());
+			}
+		}
+		for (Map.Entry<String, NameIndex> e : indices.entrySet()) {
+			if (!nombres.containsKey(e.getKey())) {
+				e.getValue().remove(id);
+			}
+		}
+		for (Map.Entry<String, String> e : nombres.entrySet()) {
+			get(e.getKey()).put(id, e.getValue());
+		}
+	}
+
+	public synchronized void remove(Long id) {
+		for (NameIndex index : indices.values()) {
+			index.remove(id);
+		}
+	}
+
+	/**
+	 * Sustituye todo el contenido de los índices a partir de las traducciones de
+	 * todas las materias primas.
+	 */
+	public synchronized void replaceAll(Map<Long, List<MateriaPrimaIdioma>> todas) {
+		Map<String, Map<Long, String>> porIdioma = new HashMap<String, Map<Long, String>>();
+		for (Map.Entry<Long, List<MateriaPrimaIdioma>> e : todas.entrySet()) {
+			for (MateriaPrimaIdioma t : e.getValue()) {
+				if (t.getLocale() != null) {
+					porIdioma.computeIfAbsent(key(t.getLocale()), k -> new HashMap<Long, String>()).put(e.getKey(),
+							t.getNombre());
+				}
+			}
+		}
+		for (Map.Entry<String, NameIndex> e : indices.entrySet()) {
+			if (!porIdioma.containsKey(e.getKey())) {
+				e.getValue().replaceAll(new HashMap<Long, String>());
+			}
+		}
+		for (Map.Entry<String, Map<Long, String>> e : porIdioma.entrySet()) {
+			get(e.getKey()).replaceAll(e.getValue());
+		}
+		ready = true;
+	}
+
+	private static String key(String locale) {
+		return locale == null ? "" : locale.toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.pinguela.reflejovision.rest.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.pinguela.reflejovision.rest.model.Sugerencia;
+
+/**
+ * Índice invertido en memoria sobre los nombres de una entidad. Cada nombre se
+ * divide en términos normalizados con {@link TextUtils}; una consulta encaja
+ * con un nombre si cada uno de sus términos es prefijo de algún término del
+ * nombre, de modo que "alg bla" encuentra "Algodón blanco" mientras se escribe.
+ * <p>
+ * Los términos se guardan ordenados, así que los que empiezan por un prefijo
+ * se obtienen con un rango del mapa en lugar de recorrer todos los nombres.
+ * Las lecturas son mucho más frecuentes que las escrituras: se protege con un
+ * cerrojo de lectura/escritura.
+ */
+public class NameIndex {
+
+	private static class Documento {
+		private final String nombre;
+		private final String[] terminos;
+
+		private Documento(String nombre, List<String> terminos) {
+			this.nombre = nombre;
+			this.terminos = terminos.toArray(new String[terminos.size()]);
+		}
+	}
+
+	private static class Candidato {
+		private final Long id;
+		private final Documento documento;
+		private final double relevancia;
+
+		private Candidato(Long id, Documento documento, double relevancia) {
+			this.id = id;
+			this.documento = documento;
+			this.relevancia = relevancia;
+		}
+	}
+
+	// Mayor relevancia primero; a igual relevancia, el nombre más corto y
+	// después el id menor, para que el orden sea estable
+	private static final Comparator<Candidato> ORDEN = Comparator.comparingDouble((Candidato c) -> -c.relevancia)
+			.thenComparingInt(c -> c.documento.nombre.length()).thenComparing(c -> c.id);
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Map<Long, Documento> documentos = new HashMap<Long, Documento>();
+	private TreeMap<String, Set<Long>> terminos = new TreeMap<String, Set<Long>>();
+	private volatile boolean ready = false;
+
+	/**
+	 * @return true cuando el índice se ha construido completo con
+	 *         {@link #replaceAll(Map)}; antes solo contiene los nombres escritos
+	 *         desde el arranque.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documentos.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Añade o sustituye el nombre de una entidad; con nombre null la elimina.
+	 */
+	public void put(Long id, String nombre) {
+		if (nombre == null) {
+			remove(id);
+			return;
+		}
+		Documento documento = new Documento(nombre, TextUtils.tokenize(nombre));
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+			documentos.put(id, documento);
+			for (String termino : documento.terminos) {
+				terminos.computeIfAbsent(termino, t -> new HashSet<Long>()).add(id);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(Long id) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sustituye todo el contenido del índice. Se construye fuera del cerrojo
+	 * para no bloquear las búsquedas mientras tanto.
+	 */
+	public void replaceAll(Map<Long, String> nombres) {
+		Map<Long, Documento> nuevosDocumentos = new HashMap<Long, Documento>(nombres.size() * 2);
+		TreeMap<String, Set<Long>> nuevosTerminos = new TreeMap<String, Set<Long>>();
+		for (Map.Entry<Long, String> e : nombres.entrySet()) {
+			if (e.getValue() == null) {
+				continue;
+			}
+			Documento documento = new Documento(e.getValue(), TextUtils.tokenize(e.getValue()));
+			nuevosDocumentos.put(e.getKey(), documento);
+			for (String termino : documento.terminos) {
+				nuevosTerminos.computeIfAbsent(termino, t -> new HashSet<Long>()).add(e.getKey());
+			}
+		}
+		lock.writeLock().lock();
+		try {
+			documentos = nuevosDocumentos;
+			terminos = nuevosTerminos;
+			ready = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Los ids de todos los nombres que encajan con la consulta, en orden
+	 *         ascendente.
+	 */
+	public List<Long> match(String query) {
+		List<String> consulta = parse(query);
+		if (consulta.isEmpty()) {
+			return Collections.emptyList();
+		}
+		lock.readLock().lock();
+		try {
+			List<Long> ids = new ArrayList<Long>(candidatos(consulta));
+			Collections.sort(ids);
+			return ids;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Los nombres que mejor encajan con la consulta, de más a menos
+	 *         relevante: pesa más encajar con un término completo que con un
+	 *         prefijo, y que el nombre empiece por el término buscado.
+	 */
+	public List<Sugerencia> search(String query, int limit) {
+		List<String> consulta = parse(query);
+		if (consulta.isEmpty() || limit <= 0) {
+			return Collections.emptyList();
+		}
+
+		// Montículo con los limit mejores: en la cabeza está el peor de ellos
+		PriorityQueue<Candidato> mejores = new PriorityQueue<Candidato>(limit + 1, ORDEN.reversed());
+		lock.readLock().lock();
+		try {
+			for (Long id : candidatos(consulta)) {
+				Documento documento = documentos.get(id);
+				mejores.add(new Candidato(id, documento, relevancia(consulta, documento.terminos)));
+				if (mejores.size() > limit) {
+					mejores.poll();
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Candidato> ordenados = new ArrayList<Candidato>(mejores);
+		ordenados.sort(ORDEN);
+		List<Sugerencia> sugerencias = new ArrayList<Sugerencia>(ordenados.size());
+		for (Candidato c : ordenados) {
+			sugerencias.add(new Sugerencia(c.id, c.documento.nombre, c.relevancia));
+		}
+		return sugerencias;
+	}
+
+	private static List<String> parse(String query) {
+		// Los términos repetidos en la consulta no cambian el resultado
+		return new ArrayList<String>(new LinkedHashSet<String>(TextUtils.tokenize(query)));
+	}
+
+	/**
+	 * Intersección, para cada término de la consulta, de los ids de los términos
+	 * del índice que empiezan por él. Debe llamarse con el cerrojo de lectura.
+	 */
+	private Set<Long> candidatos(List<String> consulta) {
+		Set<Long> resultado = null;
+		for (String t : consulta) {
+			Set<Long> ids = new HashSet<Long>();
+			for (Set<Long> postings : terminos.subMap(t, true, t + Character.MAX_VALUE, true).values()) {
+				if (resultado == null) {
+					ids.addAll(postings);
+				} else {
+					for (Long id : postings) {
+						if (resultado.contains(id)) {
+							ids.add(id);
+						}
+					}
+				}
+			}
+			resultado = ids;
+			if (resultado.isEmpty()) {
+				break;
+			}
+		}
+		return resultado;
+	}
+
+	private static double relevancia(List<String> consulta, String[] terminos) {
+		double total = 0;
+		for (String t : consulta) {
+			double mejor = 0;
+			for (int i = 0; i < terminos.length; i++) {
+				String termino = terminos[i];
+				if (termino.startsWith(t)) {
+					// Término completo 1; prefijo entre 0,5 y 1 según lo que cubre
+					double r = termino.length() == t.length() ? 1 : 0.5 + 0.5 * t.length() / termino.length();
+					if (i == 0) {
+						r += 0.25;
+					}
+					mejor = Math.max(mejor, r);
+				}
+			}
+			total += mejor;
+		}
+		return total / consulta.size();
+	}
+
+	private void removeLocked(Long id) {
+		Documento anterior = documentos.remove(id);
+		if (anterior == null) {
+			return;
+		}
+		for (String termino : anterior.terminos) {
+			Set<Long> ids = terminos.get(termino);
+			if (ids != null) {
+				ids.remove(id);
+				if (ids.isEmpty()) {
+					terminos.remove(termino);
+				}
+			}
+		}
+	}
+
+}
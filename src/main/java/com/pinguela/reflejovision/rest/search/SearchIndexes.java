@@ -0,0 +1,31 @@
+package com.pinguela.reflejovision.rest.search;
+
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+/**
+ * Registro de los índices de nombres de la aplicación. Son únicos por
+ * aplicación, igual que las cachés, para que los servicios que los mantienen y
+ * los que los consultan compartan el mismo contenido.
+ * <p>
+ * Con search.index.enabled=false las búsquedas por nombre vuelven a resolverse
+ * con LIKE en base de datos. Cuando un nombre encaja con más de
+ * search.index.maxIds entidades también se usa LIKE, para no enviar a MySQL
+ * una lista IN demasiado larga.
+ */
+public class SearchIndexes {
+
+	public static final boolean ENABLED = ConfigUtils.getBoolean("search.index.enabled", true);
+	public static final int MAX_IDS = ConfigUtils.getInt("search.index.maxIds", 5000);
+
+	private static final NameIndex productoIndex = new NameIndex();
+	private static final LocalizedNameIndex materiaPrimaIndex = new LocalizedNameIndex();
+
+	public static final NameIndex getProductoIndex() {
+		return productoIndex;
+	}
+
+	public static final LocalizedNameIndex getMateriaPrimaIndex() {
+		return materiaPrimaIndex;
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.pinguela.reflejovision.rest.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de texto para el índice de nombres: minúsculas y sin tildes ni
+ * diéresis, de forma que "Algodón", "algodon" y "ALGODÓN" son el mismo
+ * término. La ñ se pliega a n, igual que en las collations _ci de MySQL.
+ */
+public class TextUtils {
+
+	private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	public static final String fold(String text) {
+		if (text == null) {
+			return "";
+		}
+		String sinMarcas = MARCAS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+		return sinMarcas.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return Los términos normalizados del texto, en orden y con repetidos.
+	 */
+	public static final List<String> tokenize(String text) {
+		List<String> terminos = new ArrayList<String>();
+		for (String t : SEPARADORES.split(fold(text))) {
+			if (!t.isEmpty()) {
+				terminos.add(t);
+			}
+		}
+		return terminos;
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+
+public interface MateriaPrimaBulkService {
+
+	/**
+	 * Guarda las materias primas a medida que se leen del iterador, en bloques
+	 * de materiaprima.bulk.chunk filas con una transacción por bloque, de modo
+	 * que la carga completa nunca está en memoria. Las materias primas sin id se
+	 * crean y las que tienen id se actualizan.
+	 * <p>
+	 * La carga se detiene en la primera materia prima inválida o con un id que
+	 * no existe (o si el iterador lanza IllegalArgumentException) o en el
+	 * primer error de base de datos; las materias primas anteriores quedan
+	 * guardadas y el estado del resultado
+	 * indica el motivo.
+	 */
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException;
+
+	/**
+	 * Actualiza el nombre, precio, unidades, unidad de medida y, si se indican,
+	 * las traducciones de una materia prima, solo si su versión actual cumple la
+	 * precondición (If-Match). La fila se bloquea antes de leerla y la lectura,
+	 * la comprobación y el UPDATE van en la misma transacción, de modo que
+	 * ninguna otra escritura puede colarse entre la comprobación y la
+	 * actualización.
+	 * 
+	 * @param locale       Idioma en el que se lee la materia prima actual.
+	 * @param precondicion Recibe la materia prima tal como está en base de
+	 *                     datos, leída igual que en MateriaPrimaService.findbyId.
+	 * @return La materia prima actualizada, o null si no existe.
+	 * @throws PreconditionFailedException si no se cumple la precondición; en
+	 *                                     ese caso no se modifica nada.
+	 */
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException;
+
+}
@@ -0,0 +1,45 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface MateriaPrimaQueryService {
+
+	/**
+	 * @param prefijo Si cada palabra del nombre buscado debe ser prefijo de alguna
+	 *                palabra del nombre, sin distinguir mayúsculas ni acentos
+	 *                (se resuelve con el índice en memoria). Si es false el
+	 *                nombre se busca como subcadena con LIKE.
+	 * @param cursor  Cursor opaco devuelto en la página anterior, o null para la
+	 *                primera página.
+	 * @throws IllegalArgumentException si el cursor no es válido.
+	 */
+	public CursorResults<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, boolean prefijo, String cursor,
+			int limit, boolean count) throws DataException;
+
+	/**
+	 * Entrega al handler todos los resultados que cumplen los criterios sin
+	 * materializarlos en memoria.
+	 * 
+	 * @param prefijo Como en {@link #findBy}.
+	 */
+	public void export(MateriaPrimaCriteria criteria, boolean prefijo, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException;
+
+	/**
+	 * Busca varias materias primas por id de una vez, con el nombre en el idioma
+	 * indicado.
+	 * 
+	 * @return Las materias primas encontradas indexadas por id; los ids que no
+	 *         existen no aparecen.
+	 */
+	public Map<Long, MateriaPrimaDTO> findByIds(Collection<Long> ids, String locale) throws DataException;
+
+}
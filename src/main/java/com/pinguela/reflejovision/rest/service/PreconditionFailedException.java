@@ -0,0 +1,18 @@
+package com.pinguela.reflejovision.rest.service;
+
+import com.luis.reflejovision.service.ServiceException;
+
+/**
+ * Actualización condicional rechazada porque la entidad ha cambiado desde que
+ * el cliente la leyó (su ETag ya no coincide con If-Match). Los recursos la
+ * devuelven como 412.
+ */
+public class PreconditionFailedException extends ServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PreconditionFailedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.pinguela.reflejovision.rest.service;
+
+import com.luis.reflejovision.service.StockException;
+
+/**
+ * Variación de stock de un producto que no existe. Extiende
+ * {@link StockException} para poder lanzarse desde
+ * ProductoService.updateStock; los recursos la devuelven como 404.
+ */
+public class ProductoNotFoundException extends StockException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ProductoNotFoundException(Long idProducto) {
+		super("Producto " + idProducto + " no encontrado.");
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Producto;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface ProductoQueryService {
+
+	/**
+	 * @param prefijo Si cada palabra del nombre buscado debe ser prefijo de alguna
+	 *                palabra del nombre, sin distinguir mayúsculas ni acentos
+	 *                (se resuelve con el índice en memoria). Si es false el
+	 *                nombre se busca como subcadena con LIKE.
+	 * @param cursor  Cursor opaco devuelto en la página anterior, o null para la
+	 *                primera página.
+	 * @throws IllegalArgumentException si el cursor no es válido.
+	 */
+	public CursorResults<Producto> findBy(ProductoCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException;
+
+	/**
+	 * Entrega al handler todos los resultados que cumplen los criterios sin
+	 * materializarlos en memoria.
+	 * 
+	 * @param prefijo Como en {@link #findBy}.
+	 */
+	public void export(ProductoCriteria criteria, boolean prefijo, RowHandler<Producto> handler)
+			throws DataException, IOException;
+
+	/**
+	 * Busca varios productos por id de una vez.
+	 * 
+	 * @return Los productos encontrados indexados por id; los ids que no existen
+	 *         no aparecen.
+	 */
+	public Map<Long, Producto> findByIds(Collection<Long> ids) throws DataException;
+
+}
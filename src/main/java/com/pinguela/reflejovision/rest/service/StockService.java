@@ -0,0 +1,31 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.util.List;
+
+import com.luis.reflejovision.dao.DataException;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+
+public interface StockService {
+
+	/**
+	 * Aplica un lote de movimientos de stock en una única transacción,
+	 * descontando automáticamente las materias primas que consumen los productos.
+	 * Los movimientos se evalúan en orden: un movimiento inválido, de un producto
+	 * inexistente o que dejaría alguna materia prima en negativo no se aplica,
+	 * pero el resto del lote sí.
+	 * 
+	 * @return Un resultado por movimiento, en el mismo orden.
+	 */
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException;
+
+	/**
+	 * Calcula cuántas unidades del producto se pueden fabricar con el stock
+	 * actual de las materias primas que consume, sin reservarlas.
+	 * 
+	 * @return Unidades fabricables, o null si el producto no existe.
+	 */
+	public Fabricables findFabricables(Long idProducto) throws DataException;
+
+}
@@ -0,0 +1,27 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.io.IOException;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.UsuarioCriteria;
+import com.luis.reflejovision.model.Usuario;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+public interface UsuarioQueryService {
+
+	/**
+	 * @param cursor Cursor opaco devuelto en la página anterior, o null para la
+	 *               primera página.
+	 * @throws IllegalArgumentException si el cursor no es válido.
+	 */
+	public CursorResults<Usuario> findBy(UsuarioCriteria criteria, String cursor, int limit, boolean count)
+			throws DataException;
+
+	/**
+	 * Entrega al handler todos los resultados que cumplen los criterios sin
+	 * materializarlos en memoria.
+	 */
+	public void export(UsuarioCriteria criteria, RowHandler<Usuario> handler) throws DataException, IOException;
+
+}
@@ -0,0 +1,25 @@
+package com.pinguela.reflejovision.rest.service;
+
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Usuario;
+
+public interface UsuarioUpdateService {
+
+	/**
+	 * Actualiza el usuario con los campos no nulos de cambios, solo si su
+	 * versión actual cumple la precondición (If-Match). La fila se bloquea antes
+	 * de leerla y la lectura, la comprobación y el UPDATE van en la misma
+	 * transacción, de modo que ninguna otra escritura puede colarse entre la
+	 * comprobación y la actualización.
+	 * 
+	 * @param precondicion Recibe el usuario tal como está en base de datos.
+	 * @return El usuario actualizado, o null si no existe.
+	 * @throws PreconditionFailedException si no se cumple la precondición; en
+	 *                                     ese caso no se modifica nada.
+	 */
+	public Usuario update(Long id, Usuario cambios, Predicate<Usuario> precondicion)
+			throws DataException, PreconditionFailedException;
+
+}
@@ -0,0 +1,104 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.service.ConsumoService;
+import com.luis.reflejovision.service.impl.ConsumoServiceImpl;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * ConsumoService que lee los consumos de la {@link ConsumoTable}. Los
+ * consumos de la tabla solo llevan los ids y las unidades: el nombre de la
+ * materia prima lo añade el recurso en el idioma de la petición.
+ * <p>
+ * Las escrituras invalidan los consumos del producto en la tabla y el
+ * producto en caché, que los incluye.
+ */
+public class CachedConsumoServiceImpl implements ConsumoService {
+
+	private ConsumoService consumoService = null;
+	private ConsumoTable consumoTable = null;
+	private LruCache<Long, Producto> productoCache = null;
+
+	public CachedConsumoServiceImpl() {
+		this(new ConsumoServiceImpl(), CacheManager.getConsumoTable(), CacheManager.getProductoCache());
+	}
+
+	public CachedConsumoServiceImpl(ConsumoService consumoService, ConsumoTable consumoTable,
+			LruCache<Long, Producto> productoCache) {
+		this.consumoService = consumoService;
+		this.consumoTable = consumoTable;
+		this.productoCache = productoCache;
+	}
+
+	@Override
+	public List<ConsumoDTO> findByProducto(Long idProducto) throws DataException {
+		if (idProducto == null) {
+			return consumoService.findByProducto(idProducto);
+		}
+		List<ConsumoDTO> consumos = consumoTable.get(idProducto);
+		List<ConsumoDTO> copia = new ArrayList<ConsumoDTO>(consumos.size());
+		for (ConsumoDTO consumo : consumos) {
+			copia.add(ModelUtils.copy(consumo));
+		}
+		return copia;
+	}
+
+	@Override
+	public void create(ConsumoDTO consumo) throws DataException {
+		try {
+			consumoService.create(consumo);
+		} finally {
+			invalidate(consumo.getIdProducto());
+		}
+	}
+
+	@Override
+	public void create(Long idProducto, List<ConsumoDTO> consumos) throws DataException {
+		try {
+			consumoService.create(idProducto, consumos);
+		} finally {
+			invalidate(idProducto);
+		}
+	}
+
+	@Override
+	public boolean update(ConsumoDTO consumo) throws DataException {
+		try {
+			return consumoService.update(consumo);
+		} finally {
+			invalidate(consumo.getIdProducto());
+		}
+	}
+
+	@Override
+	public boolean delete(Long idProducto, Long idMateriaPrima) throws DataException {
+		try {
+			return consumoService.delete(idProducto, idMateriaPrima);
+		} finally {
+			invalidate(idProducto);
+		}
+	}
+
+	@Override
+	public boolean deleteByProducto(Long idProducto) throws DataException {
+		try {
+			return consumoService.deleteByProducto(idProducto);
+		} finally {
+			invalidate(idProducto);
+		}
+	}
+
+	private void invalidate(Long idProducto) {
+		consumoTable.invalidate(idProducto);
+		productoCache.invalidate(idProducto);
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+
+/**
+ * MateriaPrimaBulkService que, al terminar la carga, invalida en caché las
+ * materias primas actualizadas y los productos que las consumen, y recarga sus
+ * traducciones. Se recorre cada caché una sola vez, no una vez por materia
+ * prima.
+ */
+public class CachedMateriaPrimaBulkServiceImpl implements MateriaPrimaBulkService {
+
+	private MateriaPrimaBulkService bulkService = null;
+	private LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = null;
+	private LruCache<Long, Producto> productoCache = null;
+	private TranslationTable translationTable = null;
+
+	public CachedMateriaPrimaBulkServiceImpl() {
+		this(new MateriaPrimaBulkServiceImpl(), CacheManager.getMateriaPrimaCache(), CacheManager.getProductoCache(),
+				CacheManager.getTranslationTable());
+	}
+
+	public CachedMateriaPrimaBulkServiceImpl(MateriaPrimaBulkService bulkService,
+			LruCache<Long, MateriaPrimaDTO> materiaPrimaCache, LruCache<Long, Producto> productoCache,
+			TranslationTable translationTable) {
+		this.bulkService = bulkService;
+		this.materiaPrimaCache = materiaPrimaCache;
+		this.productoCache = productoCache;
+		this.translationTable = translationTable;
+	}
+
+	@Override
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		ExistingIdsIterator iterator = new ExistingIdsIterator(materiasPrimas);
+		try {
+			return bulkService.upsert(iterator);
+		} finally {
+			invalidate(iterator.getIds());
+		}
+	}
+
+	@Override
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException {
+		try {
+			return bulkService.update(id, cambios, locale, precondicion);
+		} finally {
+			invalidate(Collections.singleton(id));
+		}
+	}
+
+	private void invalidate(final Set<Long> ids) {
+		if (!ids.isEmpty()) {
+			materiaPrimaCache.invalidateIf((key, mp) -> ids.contains(key));
+			productoCache.invalidateIf((key, p) -> consumeAny(p, ids));
+			// Las traducciones de las materias primas creadas se añaden a la tabla
+			// en su primera lectura
+			translationTable.reload(ids);
+		}
+	}
+
+	private static boolean consumeAny(Producto p, Set<Long> idsMateriaPrima) {
+		if (p.getConsumos() == null) {
+			return false;
+		}
+		for (ConsumoDTO consumo : p.getConsumos()) {
+			if (idsMateriaPrima.contains(consumo.getIdMateriaPrima())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
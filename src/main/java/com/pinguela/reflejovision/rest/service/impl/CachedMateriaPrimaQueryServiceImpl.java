@@ -0,0 +1,91 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaQueryService;
+import com.pinguela.reflejovision.rest.util.LocaleUtils;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * MateriaPrimaQueryService que resuelve las búsquedas por lista de ids desde la
+ * caché de materias primas por id que comparte con
+ * {@link CachedMateriaPrimaServiceImpl}: solo los ids que no están en caché se
+ * consultan, todos en una misma consulta, y el nombre se localiza desde la
+ * {@link TranslationTable}. Las búsquedas por criterios y la exportación no
+ * pasan por la caché.
+ */
+public class CachedMateriaPrimaQueryServiceImpl implements MateriaPrimaQueryService {
+
+	private MateriaPrimaQueryService materiaPrimaQueryService = null;
+	private LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = null;
+	private TranslationTable translationTable = null;
+
+	public CachedMateriaPrimaQueryServiceImpl() {
+		this(new MateriaPrimaQueryServiceImpl(), CacheManager.getMateriaPrimaCache(),
+				CacheManager.getTranslationTable());
+	}
+
+	public CachedMateriaPrimaQueryServiceImpl(MateriaPrimaQueryService materiaPrimaQueryService,
+			LruCache<Long, MateriaPrimaDTO> materiaPrimaCache, TranslationTable translationTable) {
+		this.materiaPrimaQueryService = materiaPrimaQueryService;
+		this.materiaPrimaCache = materiaPrimaCache;
+		this.translationTable = translationTable;
+	}
+
+	@Override
+	public CursorResults<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException {
+		return materiaPrimaQueryService.findBy(criteria, prefijo, cursor, limit, count);
+	}
+
+	@Override
+	public void export(MateriaPrimaCriteria criteria, boolean prefijo, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException {
+		materiaPrimaQueryService.export(criteria, prefijo, handler);
+	}
+
+	@Override
+	public Map<Long, MateriaPrimaDTO> findByIds(Collection<Long> ids, String locale) throws DataException {
+		Map<Long, MateriaPrimaDTO> cached = materiaPrimaCache.getAll(ids);
+
+		List<Long> pendientes = new ArrayList<Long>();
+		for (Long id : ids) {
+			if (!cached.containsKey(id)) {
+				pendientes.add(id);
+			}
+		}
+
+		Map<Long, MateriaPrimaDTO> materiasPrimas = new HashMap<Long, MateriaPrimaDTO>();
+		for (MateriaPrimaDTO mp : cached.values()) {
+			materiasPrimas.put(mp.getId(), translationTable.localize(ModelUtils.copy(mp), locale));
+		}
+		if (!pendientes.isEmpty()) {
+			long loadGeneration = materiaPrimaCache.getGeneration();
+			Map<Long, MateriaPrimaDTO> cargadas = materiaPrimaQueryService.findByIds(pendientes,
+					LocaleUtils.DEFAULT_LOCALE);
+			if (materiaPrimaCache.putAllIfUnchanged(cargadas, loadGeneration)) {
+				for (MateriaPrimaDTO mp : cargadas.values()) {
+					translationTable.put(mp.getId(), mp.getTraducciones());
+				}
+			}
+			for (MateriaPrimaDTO mp : cargadas.values()) {
+				materiasPrimas.put(mp.getId(), translationTable.localize(ModelUtils.copy(mp), locale));
+			}
+		}
+		return materiasPrimas;
+	}
+
+}
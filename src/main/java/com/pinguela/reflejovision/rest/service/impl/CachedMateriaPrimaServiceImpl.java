@@ -0,0 +1,115 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Collections;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.luis.reflejovision.service.impl.MateriaPrimaServiceImpl;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.util.LocaleUtils;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * MateriaPrimaService con caché de lectura por id. La caché guarda una sola
+ * entrada por materia prima; el nombre en el idioma pedido se toma de la
+ * {@link TranslationTable} en cada lectura. Las escrituras invalidan la materia
+ * prima, recargan sus traducciones e invalidan los productos en caché que la
+ * consumen, ya que sus consumos incluyen su nombre y precio.
+ */
+public class CachedMateriaPrimaServiceImpl implements MateriaPrimaService {
+
+	private MateriaPrimaService materiaPrimaService = null;
+	private LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = null;
+	private LruCache<Long, Producto> productoCache = null;
+	private TranslationTable translationTable = null;
+
+	public CachedMateriaPrimaServiceImpl() {
+		this(new MateriaPrimaServiceImpl(), CacheManager.getMateriaPrimaCache(), CacheManager.getProductoCache(),
+				CacheManager.getTranslationTable());
+	}
+
+	public CachedMateriaPrimaServiceImpl(MateriaPrimaService materiaPrimaService,
+			LruCache<Long, MateriaPrimaDTO> materiaPrimaCache, LruCache<Long, Producto> productoCache,
+			TranslationTable translationTable) {
+		this.materiaPrimaService = materiaPrimaService;
+		this.materiaPrimaCache = materiaPrimaCache;
+		this.productoCache = productoCache;
+		this.translationTable = translationTable;
+	}
+
+	@Override
+	public MateriaPrimaDTO findbyId(Long id, String locale) throws DataException {
+		if (id == null) {
+			return materiaPrimaService.findbyId(id, locale);
+		}
+		MateriaPrimaDTO mp = materiaPrimaCache.get(id);
+		if (mp == null) {
+			long loadGeneration = materiaPrimaCache.getGeneration();
+			// Se carga en el idioma por defecto: la consulta trae igualmente las
+			// traducciones a todos los idiomas
+			mp = materiaPrimaService.findbyId(id, LocaleUtils.DEFAULT_LOCALE);
+			if (mp == null) {
+				return null;
+			}
+			if (materiaPrimaCache.putIfUnchanged(id, mp, loadGeneration)) {
+				translationTable.put(id, mp.getTraducciones());
+			}
+		}
+		return translationTable.localize(ModelUtils.copy(mp), locale);
+	}
+
+	@Override
+	public Results<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, int pos, int pageSize)
+			throws DataException {
+		return materiaPrimaService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(MateriaPrimaDTO mp) throws DataException {
+		return materiaPrimaService.create(mp);
+	}
+
+	@Override
+	public boolean update(MateriaPrimaDTO mp) throws DataException {
+		try {
+			return materiaPrimaService.update(mp);
+		} finally {
+			invalidate(mp.getId());
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		try {
+			return materiaPrimaService.delete(id);
+		} finally {
+			invalidate(id);
+		}
+	}
+
+	private void invalidate(final Long id) {
+		materiaPrimaCache.invalidate(id);
+		productoCache.invalidateIf((key, p) -> consume(p, id));
+		translationTable.reload(Collections.singleton(id));
+	}
+
+	private static boolean consume(Producto p, Long idMateriaPrima) {
+		if (p.getConsumos() == null) {
+			return false;
+		}
+		for (ConsumoDTO consumo : p.getConsumos()) {
+			if (idMateriaPrima.equals(consumo.getIdMateriaPrima())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
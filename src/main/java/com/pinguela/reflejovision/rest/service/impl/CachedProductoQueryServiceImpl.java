@@ -0,0 +1,79 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * ProductoQueryService que resuelve las búsquedas por lista de ids desde la
+ * caché de productos que comparte con {@link CachedProductoServiceImpl}: solo
+ * los ids que no están en caché se consultan, todos en una misma consulta. Las
+ * búsquedas por criterios y la exportación no pasan por la caché.
+ */
+public class CachedProductoQueryServiceImpl implements ProductoQueryService {
+
+	private ProductoQueryService productoQueryService = null;
+	private LruCache<Long, Producto> productoCache = null;
+
+	public CachedProductoQueryServiceImpl() {
+		this(new ProductoQueryServiceImpl(), CacheManager.getProductoCache());
+	}
+
+	public CachedProductoQueryServiceImpl(ProductoQueryService productoQueryService,
+			LruCache<Long, Producto> productoCache) {
+		this.productoQueryService = productoQueryService;
+		this.productoCache = productoCache;
+	}
+
+	@Override
+	public CursorResults<Producto> findBy(ProductoCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count)
+			throws DataException {
+		return productoQueryService.findBy(criteria, prefijo, cursor, limit, count);
+	}
+
+	@Override
+	public void export(ProductoCriteria criteria, boolean prefijo, RowHandler<Producto> handler) throws DataException, IOException {
+		productoQueryService.export(criteria, prefijo, handler);
+	}
+
+	@Override
+	public Map<Long, Producto> findByIds(Collection<Long> ids) throws DataException {
+		Map<Long, Producto> cached = productoCache.getAll(ids);
+
+		List<Long> pendientes = new ArrayList<Long>();
+		for (Long id : ids) {
+			if (!cached.containsKey(id)) {
+				pendientes.add(id);
+			}
+		}
+
+		Map<Long, Producto> productos = new HashMap<Long, Producto>();
+		for (Producto p : cached.values()) {
+			productos.put(p.getId(), ModelUtils.copy(p));
+		}
+		if (!pendientes.isEmpty()) {
+			long loadGeneration = productoCache.getGeneration();
+			Map<Long, Producto> cargados = productoQueryService.findByIds(pendientes);
+			productoCache.putAllIfUnchanged(cargados, loadGeneration);
+			for (Producto p : cargados.values()) {
+				productos.put(p.getId(), ModelUtils.copy(p));
+			}
+		}
+		return productos;
+	}
+
+}
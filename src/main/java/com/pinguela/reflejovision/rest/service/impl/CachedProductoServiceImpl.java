@@ -0,0 +1,117 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.luis.reflejovision.service.impl.ProductoServiceImpl;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+/**
+ * ProductoService con caché de lectura por id. Las escrituras invalidan el
+ * producto afectado y sus consumos en la {@link ConsumoTable} y, en las
+ * actualizaciones de stock, las materias primas que consume.
+ */
+public class CachedProductoServiceImpl implements ProductoService {
+
+	private ProductoService productoService = null;
+	private LruCache<Long, Producto> productoCache = null;
+	private LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = null;
+	private ConsumoTable consumoTable = null;
+
+	public CachedProductoServiceImpl() {
+		this(new ProductoServiceImpl(), CacheManager.getProductoCache(), CacheManager.getMateriaPrimaCache(),
+				CacheManager.getConsumoTable());
+	}
+
+	public CachedProductoServiceImpl(ProductoService productoService, LruCache<Long, Producto> productoCache,
+			LruCache<Long, MateriaPrimaDTO> materiaPrimaCache, ConsumoTable consumoTable) {
+		this.productoService = productoService;
+		this.productoCache = productoCache;
+		this.materiaPrimaCache = materiaPrimaCache;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		if (id == null) {
+			return productoService.findById(id);
+		}
+		return ModelUtils.copy(productoCache.get(id, productoService::findById));
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		return productoService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		Long id = productoService.create(p);
+		consumoTable.invalidate(id);
+		return id;
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		// update sustituye también los consumos del producto
+		try {
+			return productoService.update(p);
+		} finally {
+			productoCache.invalidate(p.getId());
+			consumoTable.invalidate(p.getId());
+		}
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+
+		try {
+			productoService.updateStock(id, variacionStock, actualizacionAutomaticaMateriasPrimas, locale);
+		} finally {
+			productoCache.invalidate(id);
+			if (Boolean.TRUE.equals(actualizacionAutomaticaMateriasPrimas)) {
+				// El descuento de materias primas acaba de usar los consumos de la
+				// tabla, así que normalmente están en ella
+				invalidateMateriasPrimas(consumoTable.getIfPresent(id));
+			}
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		try {
+			return productoService.delete(id);
+		} finally {
+			productoCache.invalidate(id);
+			consumoTable.invalidate(id);
+		}
+	}
+
+	private void invalidateMateriasPrimas(List<ConsumoDTO> consumos) {
+		if (consumos == null) {
+			materiaPrimaCache.clear();
+			return;
+		}
+		final Set<Long> ids = new HashSet<Long>();
+		for (ConsumoDTO consumo : consumos) {
+			ids.add(consumo.getIdMateriaPrima());
+		}
+		if (!ids.isEmpty()) {
+			materiaPrimaCache.invalidateIf((key, mp) -> ids.contains(key));
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.LruCache;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.service.StockService;
+
+/**
+ * StockService que invalida en caché los productos del lote y las materias
+ * primas que consumen según la {@link ConsumoTable}.
+ */
+public class CachedStockServiceImpl implements StockService {
+
+	private StockService stockService = null;
+	private LruCache<Long, Producto> productoCache = null;
+	private LruCache<Long, MateriaPrimaDTO> materiaPrimaCache = null;
+	private ConsumoTable consumoTable = null;
+
+	public CachedStockServiceImpl() {
+		this(new StockServiceImpl(), CacheManager.getProductoCache(), CacheManager.getMateriaPrimaCache(),
+				CacheManager.getConsumoTable());
+	}
+
+	public CachedStockServiceImpl(StockService stockService, LruCache<Long, Producto> productoCache,
+			LruCache<Long, MateriaPrimaDTO> materiaPrimaCache, ConsumoTable consumoTable) {
+		this.stockService = stockService;
+		this.productoCache = productoCache;
+		this.materiaPrimaCache = materiaPrimaCache;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException {
+
+		Set<Long> idsProducto = new HashSet<Long>();
+		for (StockMovement movimiento : movimientos) {
+			if (movimiento != null && movimiento.getIdProducto() != null) {
+				idsProducto.add(movimiento.getIdProducto());
+			}
+		}
+
+		// Las materias primas consumidas se obtienen de la tabla de consumos; si
+		// falta algún producto no se conocen todas y se vacía la caché de materias
+		// primas
+		Set<Long> idsMateriaPrima = new HashSet<Long>();
+		boolean consumosConocidos = true;
+		for (Long id : idsProducto) {
+			List<ConsumoDTO> consumos = consumoTable.getIfPresent(id);
+			if (consumos == null) {
+				consumosConocidos = false;
+				break;
+			}
+			for (ConsumoDTO consumo : consumos) {
+				idsMateriaPrima.add(consumo.getIdMateriaPrima());
+			}
+		}
+
+		try {
+			return stockService.updateStock(movimientos);
+		} finally {
+			productoCache.invalidateIf((id, p) -> idsProducto.contains(id));
+			if (!consumosConocidos) {
+				materiaPrimaCache.clear();
+			} else if (!idsMateriaPrima.isEmpty()) {
+				materiaPrimaCache.invalidateIf((key, mp) -> idsMateriaPrima.contains(key));
+			}
+		}
+	}
+
+	@Override
+	public Fabricables findFabricables(Long idProducto) throws DataException {
+		return stockService.findFabricables(idProducto);
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.events.ChangeEvent;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+
+/**
+ * MateriaPrimaBulkService que, al terminar la carga, publica en el
+ * {@link ChangeEventBus} un evento de cada materia prima guardada, también
+ * cuando la carga se detiene a medias.
+ */
+public class EventMateriaPrimaBulkServiceImpl implements MateriaPrimaBulkService {
+
+	private MateriaPrimaBulkService bulkService = null;
+	private ChangeEventBus eventBus = null;
+
+	public EventMateriaPrimaBulkServiceImpl(MateriaPrimaBulkService bulkService, ChangeEventBus eventBus) {
+		this.bulkService = bulkService;
+		this.eventBus = eventBus;
+	}
+
+	@Override
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		MateriaPrimaBulkResult result = bulkService.upsert(materiasPrimas);
+		if (result != null && result.getIds() != null) {
+			for (Long id : result.getIds()) {
+				eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, id, ChangeEvent.ACCION_UPDATE, null, null);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException {
+		MateriaPrimaDTO mp = bulkService.update(id, cambios, locale, precondicion);
+		if (mp != null) {
+			eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, id, ChangeEvent.ACCION_UPDATE, null, mp.getUnidades());
+		}
+		return mp;
+	}
+
+}
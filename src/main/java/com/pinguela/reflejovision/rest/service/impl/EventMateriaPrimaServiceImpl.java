@@ -0,0 +1,62 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.pinguela.reflejovision.rest.events.ChangeEvent;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+
+/**
+ * MateriaPrimaService que publica en el {@link ChangeEventBus} cada alta,
+ * modificación o baja que termina bien.
+ */
+public class EventMateriaPrimaServiceImpl implements MateriaPrimaService {
+
+	private MateriaPrimaService materiaPrimaService = null;
+	private ChangeEventBus eventBus = null;
+
+	public EventMateriaPrimaServiceImpl(MateriaPrimaService materiaPrimaService, ChangeEventBus eventBus) {
+		this.materiaPrimaService = materiaPrimaService;
+		this.eventBus = eventBus;
+	}
+
+	@Override
+	public MateriaPrimaDTO findbyId(Long id, String locale) throws DataException {
+		return materiaPrimaService.findbyId(id, locale);
+	}
+
+	@Override
+	public Results<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, int pos, int pageSize)
+			throws DataException {
+		return materiaPrimaService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(MateriaPrimaDTO mp) throws DataException {
+		Long id = materiaPrimaService.create(mp);
+		eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, id, ChangeEvent.ACCION_CREATE, null, mp.getUnidades());
+		return id;
+	}
+
+	@Override
+	public boolean update(MateriaPrimaDTO mp) throws DataException {
+		boolean updated = materiaPrimaService.update(mp);
+		if (updated) {
+			eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, mp.getId(), ChangeEvent.ACCION_UPDATE, null,
+					mp.getUnidades());
+		}
+		return updated;
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		boolean deleted = materiaPrimaService.delete(id);
+		if (deleted) {
+			eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, id, ChangeEvent.ACCION_DELETE, null, null);
+		}
+		return deleted;
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.events.ChangeEvent;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+
+/**
+ * ProductoService que publica en el {@link ChangeEventBus} cada escritura que
+ * termina bien. Las variaciones con descuento de materias primas publican
+ * también un evento de stock de cada materia prima consumida.
+ */
+public class EventProductoServiceImpl implements ProductoService {
+
+	private static Logger logger = LogManager.getLogger(EventProductoServiceImpl.class);
+
+	private ProductoService productoService = null;
+	private ChangeEventBus eventBus = null;
+	private ConsumoTable consumoTable = null;
+
+	public EventProductoServiceImpl(ProductoService productoService, ChangeEventBus eventBus,
+			ConsumoTable consumoTable) {
+		this.productoService = productoService;
+		this.eventBus = eventBus;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return productoService.findById(id);
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		return productoService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		Long id = productoService.create(p);
+		eventBus.publish(ChangeEvent.TIPO_PRODUCTO, id, ChangeEvent.ACCION_CREATE, null, p.getUnidades());
+		return id;
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		boolean updated = productoService.update(p);
+		if (updated) {
+			eventBus.publish(ChangeEvent.TIPO_PRODUCTO, p.getId(), ChangeEvent.ACCION_UPDATE, null, p.getUnidades());
+		}
+		return updated;
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+		productoService.updateStock(id, variacionStock, actualizacionAutomaticaMateriasPrimas, locale);
+		eventBus.publish(ChangeEvent.TIPO_PRODUCTO, id, ChangeEvent.ACCION_STOCK, variacionStock, null);
+		if (Boolean.TRUE.equals(actualizacionAutomaticaMateriasPrimas)) {
+			try {
+				for (ConsumoDTO consumo : consumoTable.get(id)) {
+					eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, consumo.getIdMateriaPrima(),
+							ChangeEvent.ACCION_STOCK, null, null);
+				}
+			} catch (DataException e) {
+				logger.warn("Producto {}: no se han podido publicar los eventos de sus materias primas", id, e);
+			}
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		boolean deleted = productoService.delete(id);
+		if (deleted) {
+			eventBus.publish(ChangeEvent.TIPO_PRODUCTO, id, ChangeEvent.ACCION_DELETE, null, null);
+		}
+		return deleted;
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.events.ChangeEvent;
+import com.pinguela.reflejovision.rest.events.ChangeEventBus;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.service.StockService;
+
+/**
+ * StockService que publica en el {@link ChangeEventBus} un evento de stock de
+ * cada movimiento aplicado, con las unidades resultantes, y uno de cada
+ * materia prima consumida por el lote.
+ */
+public class EventStockServiceImpl implements StockService {
+
+	private static Logger logger = LogManager.getLogger(EventStockServiceImpl.class);
+
+	private StockService stockService = null;
+	private ChangeEventBus eventBus = null;
+	private ConsumoTable consumoTable = null;
+
+	public EventStockServiceImpl(StockService stockService, ChangeEventBus eventBus, ConsumoTable consumoTable) {
+		this.stockService = stockService;
+		this.eventBus = eventBus;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException {
+		List<StockMovementResult> resultados = stockService.updateStock(movimientos);
+		Set<Long> idsMateriaPrima = new LinkedHashSet<Long>();
+		for (StockMovementResult resultado : resultados) {
+			if (!StockMovementResult.ESTADO_OK.equals(resultado.getEstado())) {
+				continue;
+			}
+			eventBus.publish(ChangeEvent.TIPO_PRODUCTO, resultado.getIdProducto(), ChangeEvent.ACCION_STOCK,
+					resultado.getVariacionStock(), resultado.getUnidades());
+			try {
+				for (ConsumoDTO consumo : consumoTable.get(resultado.getIdProducto())) {
+					idsMateriaPrima.add(consumo.getIdMateriaPrima());
+				}
+			} catch (DataException e) {
+				logger.warn("Producto {}: no se han podido publicar los eventos de sus materias primas",
+						resultado.getIdProducto(), e);
+			}
+		}
+		// Un solo evento por materia prima aunque la consuman varios movimientos
+		for (Long idMateriaPrima : idsMateriaPrima) {
+			eventBus.publish(ChangeEvent.TIPO_MATERIA_PRIMA, idMateriaPrima, ChangeEvent.ACCION_STOCK, null, null);
+		}
+		return resultados;
+	}
+
+	@Override
+	public Fabricables findFabricables(Long idProducto) throws DataException {
+		return stockService.findFabricables(idProducto);
+	}
+
+}
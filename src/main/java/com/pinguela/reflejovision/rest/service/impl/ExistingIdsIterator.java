@@ -0,0 +1,41 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+
+/**
+ * Iterador que anota los ids de las materias primas que ya traen id (las que
+ * una carga masiva puede actualizar) a medida que se leen, sin materializar la
+ * carga.
+ */
+class ExistingIdsIterator implements Iterator<MateriaPrimaDTO> {
+
+	private final Iterator<MateriaPrimaDTO> iterator;
+	private final Set<Long> ids = new HashSet<Long>();
+
+	ExistingIdsIterator(Iterator<MateriaPrimaDTO> iterator) {
+		this.iterator = iterator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	@Override
+	public MateriaPrimaDTO next() {
+		MateriaPrimaDTO mp = iterator.next();
+		if (mp != null && mp.getId() != null) {
+			ids.add(mp.getId());
+		}
+		return mp;
+	}
+
+	Set<Long> getIds() {
+		return ids;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.search.NameIndex;
+
+/**
+ * ProductoService que mantiene el índice de nombres de los productos con las
+ * escrituras que cambian el nombre: altas, actualizaciones y bajas. El índice
+ * solo se actualiza si la escritura termina bien.
+ */
+public class IndexedProductoServiceImpl implements ProductoService {
+
+	private ProductoService productoService = null;
+	private NameIndex nameIndex = null;
+
+	public IndexedProductoServiceImpl(ProductoService productoService, NameIndex nameIndex) {
+		this.productoService = productoService;
+		this.nameIndex = nameIndex;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return productoService.findById(id);
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		return productoService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		Long id = productoService.create(p);
+		if (id != null) {
+			nameIndex.put(id, p.getNombre());
+		}
+		return id;
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		boolean updated = productoService.update(p);
+		if (updated && p.getNombre() != null) {
+			nameIndex.put(p.getId(), p.getNombre());
+		}
+		return updated;
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+		productoService.updateStock(id, variacionStock, actualizacionAutomaticaMateriasPrimas, locale);
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		boolean deleted = productoService.delete(id);
+		if (deleted) {
+			nameIndex.remove(id);
+		}
+		return deleted;
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+
+/**
+ * MateriaPrimaBulkService que, al terminar la carga, vuelve a leer en una sola
+ * consulta las materias primas guardadas para actualizar los
+ * {@link InventoryAggregates}, también cuando la carga se detiene a medias.
+ */
+public class InventoryMateriaPrimaBulkServiceImpl implements MateriaPrimaBulkService {
+
+	private MateriaPrimaBulkService bulkService = null;
+	private InventoryAggregates inventory = null;
+
+	public InventoryMateriaPrimaBulkServiceImpl(MateriaPrimaBulkService bulkService, InventoryAggregates inventory) {
+		this.bulkService = bulkService;
+		this.inventory = inventory;
+	}
+
+	@Override
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		MateriaPrimaBulkResult result = bulkService.upsert(materiasPrimas);
+		if (result != null && result.getIds() != null) {
+			inventory.refreshMateriasPrimas(result.getIds());
+		}
+		return result;
+	}
+
+	@Override
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException {
+		MateriaPrimaDTO mp = bulkService.update(id, cambios, locale, precondicion);
+		if (mp != null) {
+			inventory.putMateriaPrima(mp.getId(), mp.getPrecio(), mp.getUnidades());
+		}
+		return mp;
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+
+/**
+ * MateriaPrimaService que mantiene los {@link InventoryAggregates} con cada
+ * alta, modificación o baja que termina bien.
+ */
+public class InventoryMateriaPrimaServiceImpl implements MateriaPrimaService {
+
+	private MateriaPrimaService materiaPrimaService = null;
+	private InventoryAggregates inventory = null;
+
+	public InventoryMateriaPrimaServiceImpl(MateriaPrimaService materiaPrimaService, InventoryAggregates inventory) {
+		this.materiaPrimaService = materiaPrimaService;
+		this.inventory = inventory;
+	}
+
+	@Override
+	public MateriaPrimaDTO findbyId(Long id, String locale) throws DataException {
+		return materiaPrimaService.findbyId(id, locale);
+	}
+
+	@Override
+	public Results<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, int pos, int pageSize)
+			throws DataException {
+		return materiaPrimaService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(MateriaPrimaDTO mp) throws DataException {
+		Long id = materiaPrimaService.create(mp);
+		inventory.putMateriaPrima(id, mp.getPrecio(), mp.getUnidades());
+		return id;
+	}
+
+	@Override
+	public boolean update(MateriaPrimaDTO mp) throws DataException {
+		boolean updated = materiaPrimaService.update(mp);
+		if (updated) {
+			inventory.putMateriaPrima(mp.getId(), mp.getPrecio(), mp.getUnidades());
+		}
+		return updated;
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		boolean deleted = materiaPrimaService.delete(id);
+		if (deleted) {
+			inventory.removeMateriaPrima(id);
+		}
+		return deleted;
+	}
+
+}
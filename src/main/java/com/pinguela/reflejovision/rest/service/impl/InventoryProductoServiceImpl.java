@@ -0,0 +1,90 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+
+/**
+ * ProductoService que mantiene los {@link InventoryAggregates} con cada
+ * escritura que termina bien. Las variaciones con descuento de materias primas
+ * también las descuentan de los agregados, con los consumos de la
+ * {@link ConsumoTable}.
+ */
+public class InventoryProductoServiceImpl implements ProductoService {
+
+	private static Logger logger = LogManager.getLogger(InventoryProductoServiceImpl.class);
+
+	private ProductoService productoService = null;
+	private InventoryAggregates inventory = null;
+	private ConsumoTable consumoTable = null;
+
+	public InventoryProductoServiceImpl(ProductoService productoService, InventoryAggregates inventory,
+			ConsumoTable consumoTable) {
+		this.productoService = productoService;
+		this.inventory = inventory;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return productoService.findById(id);
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		return productoService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		Long id = productoService.create(p);
+		inventory.putProducto(id, p.getPrecio(), p.getUnidades());
+		return id;
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		boolean updated = productoService.update(p);
+		if (updated) {
+			inventory.putProducto(p.getId(), p.getPrecio(), p.getUnidades());
+		}
+		return updated;
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+		productoService.updateStock(id, variacionStock, actualizacionAutomaticaMateriasPrimas, locale);
+		if (variacionStock == null) {
+			return;
+		}
+		inventory.addUnidadesProducto(id, variacionStock);
+		if (Boolean.TRUE.equals(actualizacionAutomaticaMateriasPrimas)) {
+			try {
+				inventory.descontarMateriasPrimas(consumoTable.get(id), variacionStock);
+			} catch (DataException e) {
+				// La variación ya está aplicada; los agregados los corrige la siguiente
+				// conciliación
+				logger.warn("Producto {}: no se han podido descontar las materias primas de los agregados", id, e);
+			}
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		boolean deleted = productoService.delete(id);
+		if (deleted) {
+			inventory.removeProducto(id);
+		}
+		return deleted;
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.inventory.InventoryAggregates;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.service.StockService;
+
+/**
+ * StockService que aplica a los {@link InventoryAggregates} los movimientos
+ * del lote que se han aplicado, descontando las materias primas con los
+ * consumos de la {@link ConsumoTable}.
+ */
+public class InventoryStockServiceImpl implements StockService {
+
+	private static Logger logger = LogManager.getLogger(InventoryStockServiceImpl.class);
+
+	private StockService stockService = null;
+	private InventoryAggregates inventory = null;
+	private ConsumoTable consumoTable = null;
+
+	public InventoryStockServiceImpl(StockService stockService, InventoryAggregates inventory,
+			ConsumoTable consumoTable) {
+		this.stockService = stockService;
+		this.inventory = inventory;
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException {
+		List<StockMovementResult> resultados = stockService.updateStock(movimientos);
+		for (StockMovementResult resultado : resultados) {
+			if (!StockMovementResult.ESTADO_OK.equals(resultado.getEstado())) {
+				continue;
+			}
+			inventory.addUnidadesProducto(resultado.getIdProducto(), resultado.getVariacionStock());
+			try {
+				inventory.descontarMateriasPrimas(consumoTable.get(resultado.getIdProducto()),
+						resultado.getVariacionStock());
+			} catch (DataException e) {
+				// El lote ya está aplicado; los agregados los corrige la siguiente
+				// conciliación
+				logger.warn("Producto {}: no se han podido descontar las materias primas de los agregados",
+						resultado.getIdProducto(), e);
+			}
+		}
+		return resultados;
+	}
+
+	@Override
+	public Fabricables findFabricables(Long idProducto) throws DataException {
+		return stockService.findFabricables(idProducto);
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+
+/**
+ * MateriaPrimaBulkService que mantiene coherente el {@link StockLedger}: las
+ * variaciones pendientes se escriben antes de la carga y las materias primas
+ * actualizadas se descartan del ledger después, para que vuelvan a leerse de
+ * base de datos con las unidades cargadas.
+ */
+public class LedgerMateriaPrimaBulkServiceImpl implements MateriaPrimaBulkService {
+
+	private MateriaPrimaBulkService bulkService = null;
+	private StockLedger stockLedger = null;
+
+	public LedgerMateriaPrimaBulkServiceImpl(MateriaPrimaBulkService bulkService, StockLedger stockLedger) {
+		this.bulkService = bulkService;
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		stockLedger.flush();
+		ExistingIdsIterator iterator = new ExistingIdsIterator(materiasPrimas);
+		try {
+			return bulkService.upsert(iterator);
+		} finally {
+			for (Long id : iterator.getIds()) {
+				stockLedger.evictMateriaPrima(id);
+			}
+		}
+	}
+
+	@Override
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException {
+		stockLedger.flush();
+		try {
+			return bulkService.update(id, cambios, locale, precondicion);
+		} finally {
+			stockLedger.evictMateriaPrima(id);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaQueryService;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.util.SortUtils;
+
+/**
+ * MateriaPrimaQueryService que devuelve las unidades del {@link StockLedger},
+ * que pueden ir por delante de la base de datos hasta el siguiente flush, igual
+ * que {@link LedgerMateriaPrimaServiceImpl}.
+ */
+public class LedgerMateriaPrimaQueryServiceImpl implements MateriaPrimaQueryService {
+
+	private MateriaPrimaQueryService materiaPrimaQueryService = null;
+	private StockLedger stockLedger = null;
+
+	public LedgerMateriaPrimaQueryServiceImpl(MateriaPrimaQueryService materiaPrimaQueryService,
+			StockLedger stockLedger) {
+		this.materiaPrimaQueryService = materiaPrimaQueryService;
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public CursorResults<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException {
+		CursorResults<MateriaPrimaDTO> results = materiaPrimaQueryService.findBy(criteria, prefijo, cursor, limit, count);
+		if (results != null && results.getPage() != null) {
+			for (MateriaPrimaDTO mp : results.getPage()) {
+				overlay(mp);
+			}
+			// La página se ordenó en SQL con las unidades de base de datos; se
+			// reordena con las del ledger. Las páginas siguientes se siguen
+			// calculando con las de base de datos hasta el flush
+			if (MateriaPrimaCriteria.ORDER_BY_UNIDADES.equals(criteria.getOrderBy())) {
+				results.getPage().sort(SortUtils.materiaPrimaComparator(criteria.getOrderBy(), SortUtils.isAsc(criteria.getAscDesc())));
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public void export(MateriaPrimaCriteria criteria, boolean prefijo, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException {
+		materiaPrimaQueryService.export(criteria, prefijo, mp -> handler.process(overlay(mp)));
+	}
+
+	@Override
+	public Map<Long, MateriaPrimaDTO> findByIds(Collection<Long> ids, String locale) throws DataException {
+		Map<Long, MateriaPrimaDTO> materiasPrimas = materiaPrimaQueryService.findByIds(ids, locale);
+		for (MateriaPrimaDTO mp : materiasPrimas.values()) {
+			overlay(mp);
+		}
+		return materiasPrimas;
+	}
+
+	private MateriaPrimaDTO overlay(MateriaPrimaDTO mp) {
+		if (mp != null) {
+			Integer unidades = stockLedger.getUnidadesMateriaPrima(mp.getId());
+			if (unidades != null) {
+				mp.setUnidades(unidades);
+			}
+		}
+		return mp;
+	}
+
+}
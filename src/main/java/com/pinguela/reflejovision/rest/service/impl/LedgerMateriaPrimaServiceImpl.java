@@ -0,0 +1,76 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.MateriaPrimaService;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+
+/**
+ * MateriaPrimaService que devuelve las unidades del {@link StockLedger} y lo
+ * mantiene coherente cuando una materia prima se modifica o se elimina.
+ */
+public class LedgerMateriaPrimaServiceImpl implements MateriaPrimaService {
+
+	private MateriaPrimaService materiaPrimaService = null;
+	private StockLedger stockLedger = null;
+
+	public LedgerMateriaPrimaServiceImpl(MateriaPrimaService materiaPrimaService, StockLedger stockLedger) {
+		this.materiaPrimaService = materiaPrimaService;
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public MateriaPrimaDTO findbyId(Long id, String locale) throws DataException {
+		return overlay(materiaPrimaService.findbyId(id, locale));
+	}
+
+	@Override
+	public Results<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, int pos, int pageSize)
+			throws DataException {
+		Results<MateriaPrimaDTO> results = materiaPrimaService.findBy(criteria, pos, pageSize);
+		if (results != null && results.getPage() != null) {
+			for (MateriaPrimaDTO mp : results.getPage()) {
+				overlay(mp);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public Long create(MateriaPrimaDTO mp) throws DataException {
+		return materiaPrimaService.create(mp);
+	}
+
+	@Override
+	public boolean update(MateriaPrimaDTO mp) throws DataException {
+		stockLedger.flush();
+		try {
+			return materiaPrimaService.update(mp);
+		} finally {
+			stockLedger.evictMateriaPrima(mp.getId());
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		stockLedger.flush();
+		try {
+			return materiaPrimaService.delete(id);
+		} finally {
+			stockLedger.evictMateriaPrima(id);
+		}
+	}
+
+	private MateriaPrimaDTO overlay(MateriaPrimaDTO mp) {
+		if (mp != null) {
+			Integer unidades = stockLedger.getUnidadesMateriaPrima(mp.getId());
+			if (unidades != null) {
+				mp.setUnidades(unidades);
+			}
+		}
+		return mp;
+	}
+
+}
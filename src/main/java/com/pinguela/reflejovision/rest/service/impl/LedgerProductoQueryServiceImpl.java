@@ -0,0 +1,74 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+import com.pinguela.reflejovision.rest.util.SortUtils;
+
+/**
+ * ProductoQueryService que devuelve las unidades del {@link StockLedger}, que
+ * pueden ir por delante de la base de datos hasta el siguiente flush, igual que
+ * {@link LedgerProductoServiceImpl}.
+ */
+public class LedgerProductoQueryServiceImpl implements ProductoQueryService {
+
+	private ProductoQueryService productoQueryService = null;
+	private StockLedger stockLedger = null;
+
+	public LedgerProductoQueryServiceImpl(ProductoQueryService productoQueryService, StockLedger stockLedger) {
+		this.productoQueryService = productoQueryService;
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public CursorResults<Producto> findBy(ProductoCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count)
+			throws DataException {
+		CursorResults<Producto> results = productoQueryService.findBy(criteria, prefijo, cursor, limit, count);
+		if (results != null && results.getPage() != null) {
+			for (Producto p : results.getPage()) {
+				overlay(p);
+			}
+			// La página se ordenó en SQL con las unidades de base de datos; se
+			// reordena con las del ledger. Las páginas siguientes se siguen
+			// calculando con las de base de datos hasta el flush
+			if (ProductoCriteria.ORDER_BY_UNIDADES.equals(criteria.getOrderBy())) {
+				results.getPage().sort(SortUtils.productoComparator(criteria.getOrderBy(), SortUtils.isAsc(criteria.getAscDesc())));
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public void export(ProductoCriteria criteria, boolean prefijo, RowHandler<Producto> handler) throws DataException, IOException {
+		productoQueryService.export(criteria, prefijo, p -> handler.process(overlay(p)));
+	}
+
+	@Override
+	public Map<Long, Producto> findByIds(Collection<Long> ids) throws DataException {
+		Map<Long, Producto> productos = productoQueryService.findByIds(ids);
+		for (Producto p : productos.values()) {
+			overlay(p);
+		}
+		return productos;
+	}
+
+	private Producto overlay(Producto p) {
+		if (p != null) {
+			Integer unidades = stockLedger.getUnidadesProducto(p.getId());
+			if (unidades != null) {
+				p.setUnidades(unidades);
+			}
+		}
+		return p;
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.service.ProductoNotFoundException;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+
+/**
+ * ProductoService que aplica las variaciones de stock sobre el
+ * {@link StockLedger} en lugar de bloquear filas en base de datos. Las lecturas
+ * devuelven las unidades del ledger, que pueden ir por delante de la base de
+ * datos hasta el siguiente flush.
+ */
+public class LedgerProductoServiceImpl implements ProductoService {
+
+	private ProductoService productoService = null;
+	private StockLedger stockLedger = null;
+
+	public LedgerProductoServiceImpl(ProductoService productoService, StockLedger stockLedger) {
+		this.productoService = productoService;
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return overlay(productoService.findById(id));
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		Results<Producto> results = productoService.findBy(criteria, pos, pageSize);
+		if (results != null && results.getPage() != null) {
+			for (Producto p : results.getPage()) {
+				overlay(p);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		return productoService.create(p);
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		// update fija las unidades: primero se escribe lo pendiente y después se
+		// descarta el producto del ledger para recargarlo con el nuevo valor
+		stockLedger.flush();
+		try {
+			return productoService.update(p);
+		} finally {
+			stockLedger.evictProducto(p.getId());
+		}
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+		if (stockLedger.updateStockProducto(id, variacionStock,
+				Boolean.TRUE.equals(actualizacionAutomaticaMateriasPrimas)) == null) {
+			throw new ProductoNotFoundException(id);
+		}
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		stockLedger.flush();
+		try {
+			return productoService.delete(id);
+		} finally {
+			stockLedger.evictProducto(id);
+		}
+	}
+
+	private Producto overlay(Producto p) {
+		if (p != null) {
+			Integer unidades = stockLedger.getUnidadesProducto(p.getId());
+			if (unidades != null) {
+				p.setUnidades(unidades);
+			}
+		}
+		return p;
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.stock.StockLedger;
+
+/**
+ * StockService sobre el {@link StockLedger}: cada movimiento se valida y aplica
+ * en memoria, y todos se escriben en base de datos en el siguiente flush.
+ */
+public class LedgerStockServiceImpl implements StockService {
+
+	private StockLedger stockLedger = null;
+
+	public LedgerStockServiceImpl(StockLedger stockLedger) {
+		this.stockLedger = stockLedger;
+	}
+
+	@Override
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException {
+
+		List<StockMovementResult> resultados = new ArrayList<StockMovementResult>(movimientos.size());
+		for (StockMovement movimiento : movimientos) {
+			if (movimiento == null || movimiento.getIdProducto() == null || movimiento.getVariacionStock() == null
+					|| movimiento.getVariacionStock() <= 0) {
+				resultados.add(new StockMovementResult(movimiento, StockMovementResult.ESTADO_INVALIDO,
+						"El ID del producto es obligatorio y la variación de stock debe ser mayor que 0."));
+				continue;
+			}
+			try {
+				Integer unidades = stockLedger.updateStockProducto(movimiento.getIdProducto(),
+						movimiento.getVariacionStock(), true);
+				if (unidades == null) {
+					resultados.add(new StockMovementResult(movimiento, StockMovementResult.ESTADO_NO_ENCONTRADO,
+							"Producto " + movimiento.getIdProducto() + " no encontrado."));
+				} else {
+					StockMovementResult resultado = new StockMovementResult(movimiento,
+							StockMovementResult.ESTADO_OK, null);
+					resultado.setUnidades(unidades);
+					resultados.add(resultado);
+				}
+			} catch (StockException se) {
+				resultados.add(new StockMovementResult(movimiento, StockMovementResult.ESTADO_STOCK_INSUFICIENTE,
+						se.getMessage()));
+			}
+		}
+		return resultados;
+	}
+
+	@Override
+	public Fabricables findFabricables(Long idProducto) throws DataException {
+		return stockLedger.getFabricables(idProducto);
+	}
+
+}
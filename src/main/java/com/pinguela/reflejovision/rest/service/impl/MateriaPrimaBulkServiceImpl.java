@@ -0,0 +1,220 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.MateriaPrimaDAO;
+import com.luis.reflejovision.dao.impl.MateriaPrimaDAOImpl;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaBulkDAO;
+import com.pinguela.reflejovision.rest.dao.impl.MateriaPrimaBulkDAOImpl;
+import com.pinguela.reflejovision.rest.model.MateriaPrimaBulkResult;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaBulkService;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+
+public class MateriaPrimaBulkServiceImpl implements MateriaPrimaBulkService {
+
+	private static Logger logger = LogManager.getLogger(MateriaPrimaBulkServiceImpl.class);
+
+	/**
+	 * Idioma de la traducción que se crea a partir del nombre cuando una
+	 * materia prima no trae traducciones.
+	 */
+	private static final String LOCALE_POR_DEFECTO = "es";
+
+	private MateriaPrimaBulkDAO bulkDAO = null;
+	private MateriaPrimaDAO materiaPrimaDAO = null;
+	private int chunkSize;
+
+	public MateriaPrimaBulkServiceImpl() {
+		bulkDAO = new MateriaPrimaBulkDAOImpl();
+		materiaPrimaDAO = new MateriaPrimaDAOImpl();
+		chunkSize = Math.max(1, ConfigUtils.getInt("materiaprima.bulk.chunk", 500));
+	}
+
+	@Override
+	public MateriaPrimaBulkResult upsert(Iterator<MateriaPrimaDTO> materiasPrimas) throws DataException {
+		MateriaPrimaBulkResult result = new MateriaPrimaBulkResult();
+		List<MateriaPrimaDTO> chunk = new ArrayList<MateriaPrimaDTO>(chunkSize);
+		String invalido = null;
+		try {
+			try {
+				while (materiasPrimas.hasNext()) {
+					MateriaPrimaDTO mp = materiasPrimas.next();
+					String error = validate(mp);
+					if (error != null) {
+						invalido = "Materia prima " + (result.getProcesadas() + chunk.size()) + ": " + error;
+						break;
+					}
+					chunk.add(mp);
+					if (chunk.size() == chunkSize) {
+						invalido = writeChunk(chunk, result);
+						if (invalido != null) {
+							break;
+						}
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				invalido = e.getMessage();
+			}
+			// Las pendientes se guardan también si la carga se detiene por una
+			// materia prima inválida, para que el cliente pueda reanudar desde ella.
+			// Un id inexistente entre ellas está antes que la inválida
+			String desconocido = writeChunk(chunk, result);
+			if (desconocido != null) {
+				invalido = desconocido;
+			}
+			if (invalido != null) {
+				result.setEstado(MateriaPrimaBulkResult.ESTADO_INVALIDO);
+				result.setMensaje(invalido);
+			}
+		} catch (DataException e) {
+			logger.error("Carga masiva interrumpida tras {} materias primas", result.getProcesadas(), e);
+			result.setEstado(MateriaPrimaBulkResult.ESTADO_ERROR);
+			// El detalle (SQL, datos del servidor) queda solo en el log
+			result.setMensaje("Error al guardar las materias primas a partir de la posición " + result.getProcesadas());
+		}
+		return result;
+	}
+
+	/**
+	 * Lee y escribe la materia prima con los mismos DAO que MateriaPrimaService,
+	 * pero en una única transacción con la fila bloqueada.
+	 */
+	@Override
+	public MateriaPrimaDTO update(Long id, MateriaPrimaDTO cambios, String locale, Predicate<MateriaPrimaDTO> precondicion)
+			throws DataException, PreconditionFailedException {
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+
+			// El bloqueo va antes de la lectura, para que esta vea la última versión
+			// confirmada y nadie la cambie hasta el commit
+			if (bulkDAO.findExistentes(c, Collections.singletonList(id)).isEmpty()) {
+				commit = true;
+				return null;
+			}
+			MateriaPrimaDTO mp = materiaPrimaDAO.findbyId(c, id, locale);
+			if (!precondicion.test(mp)) {
+				throw new PreconditionFailedException("La materia prima con ID " + id + " ha sido modificada.");
+			}
+
+			mp.setNombre(cambios.getNombre());
+			mp.setPrecio(cambios.getPrecio());
+			mp.setUnidades(cambios.getUnidades());
+			mp.setIdUnidadMedida(cambios.getIdUnidadMedida());
+			if (cambios.getTraducciones() != null) {
+				for (MateriaPrimaIdioma traduccion : cambios.getTraducciones()) {
+					traduccion.setIdMateriaPrima(id);
+				}
+				mp.setTraducciones(cambios.getTraducciones());
+			}
+			materiaPrimaDAO.update(c, mp);
+			commit = true;
+			return mp;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	/**
+	 * Guarda el bloque en una transacción. Si una materia prima trae un id que
+	 * no existe se guardan solo las anteriores a ella, igual que con una
+	 * materia prima inválida.
+	 * 
+	 * @return El motivo por el que se ha detenido el bloque, o null si se ha
+	 *         guardado entero.
+	 */
+	private String writeChunk(List<MateriaPrimaDTO> chunk, MateriaPrimaBulkResult result) throws DataException {
+		if (chunk.isEmpty()) {
+			return null;
+		}
+		String invalido = null;
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+
+			List<Long> ids = new ArrayList<Long>();
+			for (MateriaPrimaDTO mp : chunk) {
+				if (mp.getId() != null) {
+					ids.add(mp.getId());
+				}
+			}
+			if (!ids.isEmpty()) {
+				Set<Long> existentes = bulkDAO.findExistentes(c, ids);
+				for (int i = 0; i < chunk.size(); i++) {
+					Long id = chunk.get(i).getId();
+					if (id != null && !existentes.contains(id)) {
+						invalido = "Materia prima " + (result.getProcesadas() + i) + ": no existe ninguna materia prima con id "
+								+ id;
+						chunk.subList(i, chunk.size()).clear();
+						break;
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				bulkDAO.upsert(c, chunk);
+			}
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		for (MateriaPrimaDTO mp : chunk) {
+			result.getIds().add(mp.getId());
+		}
+		chunk.clear();
+		return invalido;
+	}
+
+	/**
+	 * @return El motivo por el que la materia prima no es válida, o null si lo
+	 *         es.
+	 */
+	private String validate(MateriaPrimaDTO mp) {
+		if (mp == null || mp.getNombre() == null || mp.getPrecio() == null || mp.getUnidades() == null
+				|| mp.getIdUnidadMedida() == null) {
+			return "nombre, precio, unidades e idUnidadMedida son obligatorios";
+		}
+		if (mp.getTraducciones() == null || mp.getTraducciones().isEmpty()) {
+			List<MateriaPrimaIdioma> traducciones = new ArrayList<MateriaPrimaIdioma>(1);
+			MateriaPrimaIdioma traduccion = new MateriaPrimaIdioma();
+			traduccion.setLocale(LOCALE_POR_DEFECTO);
+			traduccion.setNombre(mp.getNombre());
+			traducciones.add(traduccion);
+			mp.setTraducciones(traducciones);
+		} else {
+			for (MateriaPrimaIdioma traduccion : mp.getTraducciones()) {
+				if (traduccion == null || traduccion.getLocale() == null || traduccion.getNombre() == null) {
+					return "las traducciones deben indicar locale y nombre";
+				}
+			}
+		}
+		return null;
+	}
+
+}
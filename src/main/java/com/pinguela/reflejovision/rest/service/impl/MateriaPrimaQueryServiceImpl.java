@@ -0,0 +1,159 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.pinguela.reflejovision.rest.dao.Keyset;
+import com.pinguela.reflejovision.rest.dao.MateriaPrimaQueryDAO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.impl.MateriaPrimaQueryDAOImpl;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.search.LocalizedNameIndex;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.search.TextUtils;
+import com.pinguela.reflejovision.rest.service.MateriaPrimaQueryService;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+public class MateriaPrimaQueryServiceImpl implements MateriaPrimaQueryService {
+
+	private static Logger logger = LogManager.getLogger(MateriaPrimaQueryServiceImpl.class);
+	private MateriaPrimaQueryDAO queryDAO = null;
+	private LocalizedNameIndex nameIndex = null;
+
+	public MateriaPrimaQueryServiceImpl() {
+		this(SearchIndexes.getMateriaPrimaIndex());
+	}
+
+	public MateriaPrimaQueryServiceImpl(LocalizedNameIndex nameIndex) {
+		queryDAO = new MateriaPrimaQueryDAOImpl();
+		this.nameIndex = nameIndex;
+	}
+
+	@Override
+	public CursorResults<MateriaPrimaDTO> findBy(MateriaPrimaCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException {
+
+		Keyset after = Keyset.decode(cursor, criteria.getOrderBy(), criteria.getAscDesc());
+
+		List<Long> ids = matchNombre(criteria, prefijo);
+		if (ids != null) {
+			if (ids.isEmpty()) {
+				CursorResults<MateriaPrimaDTO> results = new CursorResults<MateriaPrimaDTO>();
+				results.setPage(new ArrayList<MateriaPrimaDTO>());
+				if (count) {
+					results.setTotal(0);
+				}
+				return results;
+			}
+			criteria = withoutNombre(criteria);
+		}
+
+		Connection c = null;
+		boolean commit = false;
+		CursorResults<MateriaPrimaDTO> results = null;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			results = queryDAO.findBy(c, criteria, ids, after, CursorUtils.normalizeLimit(limit), count);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(MateriaPrimaCriteria criteria, boolean prefijo, RowHandler<MateriaPrimaDTO> handler)
+			throws DataException, IOException {
+
+		List<Long> ids = matchNombre(criteria, prefijo);
+		if (ids != null) {
+			if (ids.isEmpty()) {
+				return;
+			}
+			criteria = withoutNombre(criteria);
+		}
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			queryDAO.export(c, criteria, ids, handler);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	@Override
+	public Map<Long, MateriaPrimaDTO> findByIds(Collection<Long> ids, String locale) throws DataException {
+
+		Connection c = null;
+		boolean commit = false;
+		Map<Long, MateriaPrimaDTO> results = null;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			results = queryDAO.findByIds(c, ids, locale);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return results;
+	}
+
+	/**
+	 * Resuelve el filtro por nombre por prefijos con el índice en memoria en
+	 * lugar de con LIKE: cada término del nombre buscado debe ser prefijo de
+	 * algún término del nombre, sin distinguir mayúsculas ni acentos.
+	 * 
+	 * @return Los ids que encajan, o null si el filtro debe aplicarse en base de
+	 *         datos (no hay filtro por nombre, no se ha pedido la búsqueda por
+	 *         prefijos, el índice está desactivado o aún no se ha cargado, o
+	 *         encajan demasiados).
+	 */
+	private List<Long> matchNombre(MateriaPrimaCriteria criteria, boolean prefijo) {
+		if (!prefijo || criteria.getNombre() == null || !SearchIndexes.ENABLED || !nameIndex.isReady()
+				|| TextUtils.tokenize(criteria.getNombre()).isEmpty()) {
+			return null;
+		}
+		List<Long> ids = nameIndex.get(criteria.getLocale()).match(criteria.getNombre());
+		if (ids.size() > SearchIndexes.MAX_IDS) {
+			logger.debug("{} materias primas encajan con \"{}\"; se busca en base de datos", ids.size(),
+					criteria.getNombre());
+			return null;
+		}
+		return ids;
+	}
+
+	private static MateriaPrimaCriteria withoutNombre(MateriaPrimaCriteria criteria) {
+		MateriaPrimaCriteria copia = ModelUtils.copy(criteria);
+		copia.setNombre(null);
+		return copia;
+	}
+
+}
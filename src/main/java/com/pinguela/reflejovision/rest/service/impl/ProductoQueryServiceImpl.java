@@ -0,0 +1,157 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Producto;
+import com.pinguela.reflejovision.rest.dao.Keyset;
+import com.pinguela.reflejovision.rest.dao.ProductoQueryDAO;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.impl.ProductoQueryDAOImpl;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.search.NameIndex;
+import com.pinguela.reflejovision.rest.search.SearchIndexes;
+import com.pinguela.reflejovision.rest.search.TextUtils;
+import com.pinguela.reflejovision.rest.service.ProductoQueryService;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+import com.pinguela.reflejovision.rest.util.ModelUtils;
+
+public class ProductoQueryServiceImpl implements ProductoQueryService {
+
+	private static Logger logger = LogManager.getLogger(ProductoQueryServiceImpl.class);
+	private ProductoQueryDAO queryDAO = null;
+	private NameIndex nameIndex = null;
+
+	public ProductoQueryServiceImpl() {
+		this(SearchIndexes.getProductoIndex());
+	}
+
+	public ProductoQueryServiceImpl(NameIndex nameIndex) {
+		queryDAO = new ProductoQueryDAOImpl();
+		this.nameIndex = nameIndex;
+	}
+
+	@Override
+	public CursorResults<Producto> findBy(ProductoCriteria criteria, boolean prefijo, String cursor, int limit,
+			boolean count) throws DataException {
+
+		Keyset after = Keyset.decode(cursor, criteria.getOrderBy(), criteria.getAscDesc());
+
+		List<Long> ids = matchNombre(criteria, prefijo);
+		if (ids != null) {
+			if (ids.isEmpty()) {
+				CursorResults<Producto> results = new CursorResults<Producto>();
+				results.setPage(new ArrayList<Producto>());
+				if (count) {
+					results.setTotal(0);
+				}
+				return results;
+			}
+			criteria = withoutNombre(criteria);
+		}
+
+		Connection c = null;
+		boolean commit = false;
+		CursorResults<Producto> results = null;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			results = queryDAO.findBy(c, criteria, ids, after, CursorUtils.normalizeLimit(limit), count);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(ProductoCriteria criteria, boolean prefijo, RowHandler<Producto> handler) throws DataException, IOException {
+
+		List<Long> ids = matchNombre(criteria, prefijo);
+		if (ids != null) {
+			if (ids.isEmpty()) {
+				return;
+			}
+			criteria = withoutNombre(criteria);
+		}
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			queryDAO.export(c, criteria, ids, handler);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	@Override
+	public Map<Long, Producto> findByIds(Collection<Long> ids) throws DataException {
+
+		Connection c = null;
+		boolean commit = false;
+		Map<Long, Producto> results = null;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			results = queryDAO.findByIds(c, ids);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return results;
+	}
+
+	/**
+	 * Resuelve el filtro por nombre por prefijos con el índice en memoria en
+	 * lugar de con LIKE: cada término del nombre buscado debe ser prefijo de
+	 * algún término del nombre, sin distinguir mayúsculas ni acentos.
+	 * 
+	 * @return Los ids que encajan, o null si el filtro debe aplicarse en base de
+	 *         datos (no hay filtro por nombre, no se ha pedido la búsqueda por
+	 *         prefijos, el índice está desactivado o aún no se ha cargado, o
+	 *         encajan demasiados).
+	 */
+	private List<Long> matchNombre(ProductoCriteria criteria, boolean prefijo) {
+		if (!prefijo || criteria.getNombre() == null || !SearchIndexes.ENABLED || !nameIndex.isReady()
+				|| TextUtils.tokenize(criteria.getNombre()).isEmpty()) {
+			return null;
+		}
+		List<Long> ids = nameIndex.match(criteria.getNombre());
+		if (ids.size() > SearchIndexes.MAX_IDS) {
+			logger.debug("{} productos encajan con \"{}\"; se busca en base de datos", ids.size(), criteria.getNombre());
+			return null;
+		}
+		return ids;
+	}
+
+	private static ProductoCriteria withoutNombre(ProductoCriteria criteria) {
+		ProductoCriteria copia = ModelUtils.copy(criteria);
+		copia.setNombre(null);
+		return copia;
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.util.Collections;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.model.Results;
+import com.luis.reflejovision.service.ProductoService;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.cache.TranslationTable;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.service.ProductoNotFoundException;
+import com.pinguela.reflejovision.rest.service.StockService;
+
+/**
+ * ProductoService que aplica las variaciones de stock con descuento de materias
+ * primas como un lote de un solo movimiento del {@link StockService}, que toma
+ * los consumos del producto de la {@link ConsumoTable} en lugar de volver a
+ * leerlos de CONSUMO en cada variación. Un producto inexistente lanza
+ * {@link ProductoNotFoundException}, y la falta de stock nombra la materia
+ * prima en el idioma de la petición, desde la {@link TranslationTable}. El
+ * resto de operaciones se delegan.
+ */
+public class StockProductoServiceImpl implements ProductoService {
+
+	private ProductoService productoService = null;
+	private StockService stockService = null;
+	private TranslationTable translationTable = null;
+
+	public StockProductoServiceImpl(ProductoService productoService, StockService stockService,
+			TranslationTable translationTable) {
+		this.productoService = productoService;
+		this.stockService = stockService;
+		this.translationTable = translationTable;
+	}
+
+	@Override
+	public Producto findById(Long id) throws DataException {
+		return productoService.findById(id);
+	}
+
+	@Override
+	public Results<Producto> findBy(ProductoCriteria criteria, int pos, int pageSize) throws DataException {
+		return productoService.findBy(criteria, pos, pageSize);
+	}
+
+	@Override
+	public Long create(Producto p) throws DataException {
+		return productoService.create(p);
+	}
+
+	@Override
+	public boolean update(Producto p) throws DataException {
+		return productoService.update(p);
+	}
+
+	@Override
+	public void updateStock(Long id, Integer variacionStock, Boolean actualizacionAutomaticaMateriasPrimas,
+			String locale) throws DataException, StockException {
+
+		if (!Boolean.TRUE.equals(actualizacionAutomaticaMateriasPrimas)) {
+			productoService.updateStock(id, variacionStock, actualizacionAutomaticaMateriasPrimas, locale);
+			return;
+		}
+		StockMovement movimiento = new StockMovement(id, variacionStock);
+		StockMovementResult resultado = stockService.updateStock(Collections.singletonList(movimiento)).get(0);
+		if (StockMovementResult.ESTADO_NO_ENCONTRADO.equals(resultado.getEstado())) {
+			throw new ProductoNotFoundException(id);
+		}
+		if (StockMovementResult.ESTADO_STOCK_INSUFICIENTE.equals(resultado.getEstado())) {
+			throw new StockException(stockInsuficiente(resultado.getIdMateriaPrima(), locale));
+		}
+		if (!StockMovementResult.ESTADO_OK.equals(resultado.getEstado())) {
+			throw new StockException(resultado.getMensaje());
+		}
+	}
+
+	private String stockInsuficiente(Long idMateriaPrima, String locale) {
+		String nombre = translationTable.getNombre(idMateriaPrima, locale);
+		return "No hay suficiente stock de la materia prima "
+				+ (nombre == null ? idMateriaPrima : nombre + " (" + idMateriaPrima + ")") + ".";
+	}
+
+	@Override
+	public boolean delete(Long id) throws DataException {
+		return productoService.delete(id);
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+import com.pinguela.reflejovision.rest.dao.impl.StockDAOImpl;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.model.StockMovement;
+import com.pinguela.reflejovision.rest.model.StockMovementResult;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.service.StockService;
+import com.pinguela.reflejovision.rest.util.ConsumoUtils;
+
+/**
+ * StockService sobre base de datos. Los consumos de los productos se toman de
+ * la {@link ConsumoTable}; solo se leen de CONSUMO los que no estén en ella.
+ */
+public class StockServiceImpl implements StockService {
+
+	private static Logger logger = LogManager.getLogger(StockServiceImpl.class);
+	private StockDAO stockDAO = null;
+	private ConsumoTable consumoTable = null;
+
+	public StockServiceImpl() {
+		this(CacheManager.getConsumoTable());
+	}
+
+	public StockServiceImpl(ConsumoTable consumoTable) {
+		this.stockDAO = new StockDAOImpl();
+		this.consumoTable = consumoTable;
+	}
+
+	@Override
+	public List<StockMovementResult> updateStock(List<StockMovement> movimientos) throws DataException {
+
+		List<StockMovementResult> resultados = new ArrayList<StockMovementResult>(movimientos.size());
+
+		Set<Long> idsProducto = new LinkedHashSet<Long>();
+		for (StockMovement movimiento : movimientos) {
+			if (isValid(movimiento)) {
+				idsProducto.add(movimiento.getIdProducto());
+			}
+		}
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+
+			Map<Long, Integer> unidadesProducto = stockDAO.lockProductos(c, idsProducto);
+			Map<Long, List<ConsumoDTO>> consumos = consumoTable.getAll(c, unidadesProducto.keySet());
+
+			Set<Long> idsMateriaPrima = new LinkedHashSet<Long>();
+			for (List<ConsumoDTO> consumosProducto : consumos.values()) {
+				for (ConsumoDTO consumo : consumosProducto) {
+					idsMateriaPrima.add(consumo.getIdMateriaPrima());
+				}
+			}
+			Map<Long, Integer> unidadesMateriaPrima = stockDAO.lockMateriasPrimas(c, idsMateriaPrima);
+
+			// Variaciones y descuentos agregados de todo el lote; ordenados por id
+			// para que las actualizaciones bloqueen siempre en el mismo orden
+			Map<Long, Integer> variaciones = new TreeMap<Long, Integer>();
+			Map<Long, Long> descuentos = new TreeMap<Long, Long>();
+			// Stock de materias primas restante a medida que se aceptan movimientos
+			Map<Long, Long> disponibles = new HashMap<Long, Long>();
+			for (Map.Entry<Long, Integer> mp : unidadesMateriaPrima.entrySet()) {
+				disponibles.put(mp.getKey(), mp.getValue().longValue());
+			}
+
+			for (StockMovement movimiento : movimientos) {
+				resultados.add(apply(movimiento, unidadesProducto, consumos, disponibles, variaciones, descuentos));
+			}
+
+			stockDAO.updateStockProductos(c, variaciones);
+			stockDAO.updateStockMateriasPrimas(c, descuentos);
+
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return resultados;
+	}
+
+	@Override
+	public Fabricables findFabricables(Long idProducto) throws DataException {
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			List<Long> ids = Collections.singletonList(idProducto);
+			Fabricables fabricables = null;
+			if (stockDAO.findUnidadesProductos(c, ids).containsKey(idProducto)) {
+				List<ConsumoDTO> consumosProducto = consumoTable.getAll(c, ids).get(idProducto);
+				Set<Long> idsMateriaPrima = new LinkedHashSet<Long>();
+				for (ConsumoDTO consumo : consumosProducto) {
+					idsMateriaPrima.add(consumo.getIdMateriaPrima());
+				}
+				fabricables = ConsumoUtils.fabricables(idProducto, consumosProducto,
+						stockDAO.findUnidadesMateriasPrimas(c, idsMateriaPrima));
+			}
+			commit = true;
+			return fabricables;
+		} catch (SQLException e) {
+			logger.error("Producto: {}", idProducto, e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+	private StockMovementResult apply(StockMovement movimiento, Map<Long, Integer> unidadesProducto,
+			Map<Long, List<ConsumoDTO>> consumos, Map<Long, Long> disponibles, Map<Long, Integer> variaciones,
+			Map<Long, Long> descuentos) {
+
+		if (!isValid(movimiento)) {
+			return new StockMovementResult(movimiento, StockMovementResult.ESTADO_INVALIDO,
+					"El ID del producto es obligatorio y la variación de stock debe ser mayor que 0.");
+		}
+		Long idProducto = movimiento.getIdProducto();
+		if (!unidadesProducto.containsKey(idProducto)) {
+			return new StockMovementResult(movimiento, StockMovementResult.ESTADO_NO_ENCONTRADO,
+					"Producto " + idProducto + " no encontrado.");
+		}
+
+		int variacion = movimiento.getVariacionStock();
+		List<ConsumoDTO> consumosProducto = consumos.getOrDefault(idProducto, Collections.<ConsumoDTO>emptyList());
+
+		// Se comprueba todo el movimiento antes de aplicar nada
+		for (ConsumoDTO consumo : consumosProducto) {
+			Long disponible = disponibles.get(consumo.getIdMateriaPrima());
+			if (disponible == null || disponible - ConsumoUtils.unidadesConsumidas(variacion, consumo) < 0) {
+				StockMovementResult resultado = new StockMovementResult(movimiento,
+						StockMovementResult.ESTADO_STOCK_INSUFICIENTE,
+						"No hay suficiente stock de la materia prima " + consumo.getIdMateriaPrima() + ".");
+				resultado.setIdMateriaPrima(consumo.getIdMateriaPrima());
+				return resultado;
+			}
+		}
+
+		for (ConsumoDTO consumo : consumosProducto) {
+			long cantidad = ConsumoUtils.unidadesConsumidas(variacion, consumo);
+			disponibles.merge(consumo.getIdMateriaPrima(), -cantidad, Long::sum);
+			descuentos.merge(consumo.getIdMateriaPrima(), cantidad, Long::sum);
+		}
+		variaciones.merge(idProducto, variacion, Integer::sum);
+		int unidades = unidadesProducto.merge(idProducto, variacion, Integer::sum);
+
+		StockMovementResult resultado = new StockMovementResult(movimiento, StockMovementResult.ESTADO_OK, null);
+		resultado.setUnidades(unidades);
+		return resultado;
+	}
+
+	private boolean isValid(StockMovement movimiento) {
+		return movimiento != null && movimiento.getIdProducto() != null && movimiento.getVariacionStock() != null
+				&& movimiento.getVariacionStock() > 0;
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.UsuarioCriteria;
+import com.luis.reflejovision.model.Usuario;
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+import com.pinguela.reflejovision.rest.dao.UsuarioQueryDAO;
+import com.pinguela.reflejovision.rest.dao.impl.UsuarioQueryDAOImpl;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.service.UsuarioQueryService;
+import com.pinguela.reflejovision.rest.util.CursorUtils;
+
+public class UsuarioQueryServiceImpl implements UsuarioQueryService {
+
+	private static Logger logger = LogManager.getLogger(UsuarioQueryServiceImpl.class);
+	private UsuarioQueryDAO queryDAO = null;
+
+	public UsuarioQueryServiceImpl() {
+		queryDAO = new UsuarioQueryDAOImpl();
+	}
+
+	@Override
+	public CursorResults<Usuario> findBy(UsuarioCriteria criteria, String cursor, int limit, boolean count)
+			throws DataException {
+
+		Long afterId = CursorUtils.decodeId(cursor);
+
+		Connection c = null;
+		boolean commit = false;
+		CursorResults<Usuario> results = null;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			results = queryDAO.findBy(c, criteria, afterId, CursorUtils.normalizeLimit(limit), count);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+		return results;
+	}
+
+	@Override
+	public void export(UsuarioCriteria criteria, RowHandler<Usuario> handler) throws DataException, IOException {
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+			queryDAO.export(c, criteria, handler);
+			commit = true;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.pinguela.reflejovision.rest.service.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.UsuarioDAO;
+import com.luis.reflejovision.dao.impl.UsuarioDAOImpl;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.Usuario;
+import com.pinguela.reflejovision.rest.dao.UsuarioQueryDAO;
+import com.pinguela.reflejovision.rest.dao.impl.UsuarioQueryDAOImpl;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.service.PreconditionFailedException;
+import com.pinguela.reflejovision.rest.service.UsuarioUpdateService;
+
+/**
+ * Lee y escribe el usuario con los mismos DAO que UsuarioService, pero en una
+ * única transacción con la fila bloqueada.
+ */
+public class UsuarioUpdateServiceImpl implements UsuarioUpdateService {
+
+	private static Logger logger = LogManager.getLogger(UsuarioUpdateServiceImpl.class);
+
+	private UsuarioQueryDAO queryDAO = null;
+	private UsuarioDAO usuarioDAO = null;
+
+	public UsuarioUpdateServiceImpl() {
+		queryDAO = new UsuarioQueryDAOImpl();
+		usuarioDAO = new UsuarioDAOImpl();
+	}
+
+	@Override
+	public Usuario update(Long id, Usuario cambios, Predicate<Usuario> precondicion)
+			throws DataException, PreconditionFailedException {
+
+		Connection c = null;
+		boolean commit = false;
+		try {
+			c = ConnectionPools.getConnection();
+			c.setAutoCommit(false);
+
+			// El bloqueo va antes de la lectura, para que esta vea la última versión
+			// confirmada y nadie la cambie hasta el commit
+			if (!queryDAO.lock(c, id)) {
+				commit = true;
+				return null;
+			}
+			Usuario usuario = usuarioDAO.findbyId(c, id);
+			if (!precondicion.test(usuario)) {
+				throw new PreconditionFailedException("El usuario con ID " + id + " ha sido modificado.");
+			}
+
+			if (cambios.getContrasena() != null) {
+				usuario.setContrasena(cambios.getContrasena());
+			}
+			if (cambios.getUsername() != null) {
+				usuario.setUsername(cambios.getUsername());
+			}
+			if (cambios.getNombre() != null) {
+				usuario.setNombre(cambios.getNombre());
+			}
+			if (cambios.getRol() != null) {
+				usuario.setRol(cambios.getRol());
+			}
+			if (cambios.getCorreo() != null) {
+				usuario.setCorreo(cambios.getCorreo());
+			}
+			usuarioDAO.update(c, usuario);
+			commit = true;
+			return usuario;
+		} catch (SQLException e) {
+			logger.error(e.getMessage(), e);
+			throw new DataException(e);
+		} finally {
+			JDBCUtils.close(c, commit);
+		}
+	}
+
+}
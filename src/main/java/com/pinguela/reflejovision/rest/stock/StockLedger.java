@@ -0,0 +1,517 @@
+package com.pinguela.reflejovision.rest.stock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.dao.util.JDBCUtils;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.cache.CacheManager;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+import com.pinguela.reflejovision.rest.dao.impl.StockDAOImpl;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+import com.pinguela.reflejovision.rest.pool.ConnectionPools;
+import com.pinguela.reflejovision.rest.util.ConfigUtils;
+import com.pinguela.reflejovision.rest.util.ConsumoUtils;
+
+/**
+ * Stock de productos y materias primas en memoria. Las unidades se guardan en
+ * contadores atómicos por id, de modo que las comprobaciones de stock no
+ * acceden a base de datos ni bloquean filas. Las variaciones se acumulan por id
+ * y un hilo las escribe periódicamente en MySQL agrupadas en dos batches
+ * (write-behind). Los consumos de materias primas de cada producto se toman de
+ * la {@link ConsumoTable}.
+ * <p>
+ * El estado se reconstruye desde las tablas al arrancar. Los productos y
+ * materias primas creados después se cargan en su primer uso. Mientras está
+ * activo, el ledger es el dueño de las unidades: las escrituras que las fijan
+ * directamente (update de producto o materia prima) deben ir precedidas de
+ * {@link #flush()} y seguidas de {@link #evictProducto(Long)} o
+ * {@link #evictMateriaPrima(Long)}.
+ */
+public class StockLedger {
+
+	private static Logger logger = LogManager.getLogger(StockLedger.class);
+
+	private final StockDAO stockDAO;
+	private final ConsumoTable consumoTable;
+	private final long flushIntervalMs;
+
+	private final Map<Long, AtomicLong> productos = new ConcurrentHashMap<Long, AtomicLong>();
+	private final Map<Long, AtomicLong> materiasPrimas = new ConcurrentHashMap<Long, AtomicLong>();
+
+	// Variaciones aún no escritas en base de datos
+	private final Map<Long, AtomicLong> pendientesProductos = new ConcurrentHashMap<Long, AtomicLong>();
+	private final Map<Long, AtomicLong> pendientesMateriasPrimas = new ConcurrentHashMap<Long, AtomicLong>();
+
+	// Serializa los flushes con las cargas desde base de datos, para que una
+	// carga nunca lea un valor al que le falte una variación ya drenada pero
+	// aún no confirmada
+	private final Object dbLock = new Object();
+
+	// Las variaciones se aplican a los contadores y se anotan en pendientes con
+	// el cerrojo de lectura, sobre contadores que siguen en el mapa; las cargas
+	// leen pendientes e instalan el contador con el de escritura. Así una carga
+	// nunca ve una variación aplicada a un contador descartado y aún no anotada
+	private final ReadWriteLock contadoresLock = new ReentrantReadWriteLock();
+
+	private volatile boolean cargado = false;
+	private ScheduledExecutorService scheduler = null;
+
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong filasEscritas = new AtomicLong();
+	private final AtomicLong erroresFlush = new AtomicLong();
+
+	public StockLedger() {
+		this(new StockDAOImpl(), CacheManager.getConsumoTable(), ConfigUtils.getLong("stock.ledger.flush.ms", 200));
+	}
+
+	public StockLedger(StockDAO stockDAO, ConsumoTable consumoTable, long flushIntervalMs) {
+		this.stockDAO = stockDAO;
+		this.consumoTable = consumoTable;
+		this.flushIntervalMs = flushIntervalMs;
+	}
+
+	/**
+	 * Carga el stock desde base de datos y arranca el hilo de escritura. Si la
+	 * carga falla se reintenta en la primera operación.
+	 */
+	public synchronized void start() {
+		try {
+			ensureLoaded();
+		} catch (DataException e) {
+			logger.error("No se ha podido cargar el stock; se reintentará en la primera operación", e);
+		}
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "stock-ledger-flush");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+					TimeUnit.MILLISECONDS);
+			logger.info("Ledger de stock iniciado (flush cada {} ms)", flushIntervalMs);
+		}
+	}
+
+	/**
+	 * Detiene el hilo de escritura y escribe las variaciones pendientes.
+	 */
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+		}
+		flushQuietly();
+		logger.info("Ledger de stock detenido");
+	}
+
+	/**
+	 * Suma la variación al stock del producto y, si se indica, descuenta las
+	 * materias primas que consume. La comprobación de stock de materias primas es
+	 * todo o nada: si alguna no tiene suficiente no se modifica ninguna.
+	 *
+	 * @return Unidades del producto tras la variación, o null si el producto no
+	 *         existe.
+	 * @throws StockException si alguna materia prima quedaría en negativo.
+	 */
+	public Integer updateStockProducto(Long id, int variacion, boolean descontarMateriasPrimas)
+			throws DataException, StockException {
+
+		ensureLoaded();
+		while (true) {
+			// Las cargas desde base de datos se hacen antes de tomar el cerrojo
+			AtomicLong unidades = getOrLoadProducto(id);
+			if (unidades == null) {
+				return null;
+			}
+			List<ConsumoDTO> consumosProducto = descontarMateriasPrimas ? consumoTable.get(id)
+					: Collections.<ConsumoDTO>emptyList();
+			AtomicLong[] contadoresMp = new AtomicLong[consumosProducto.size()];
+			for (int i = 0; i < contadoresMp.length; i++) {
+				Long idMateriaPrima = consumosProducto.get(i).getIdMateriaPrima();
+				contadoresMp[i] = getOrLoadMateriaPrima(idMateriaPrima);
+				if (contadoresMp[i] == null) {
+					throw new StockException("No hay suficiente stock de la materia prima " + idMateriaPrima);
+				}
+			}
+
+			contadoresLock.readLock().lock();
+			try {
+				if (!isCurrent(id, unidades, consumosProducto, contadoresMp)) {
+					// Algún contador se ha descartado (evict) entre la carga y el
+					// cerrojo: se vuelve a empezar con los nuevos
+					continue;
+				}
+				descontarMateriasPrimas(consumosProducto, contadoresMp, variacion);
+				long resultado = unidades.addAndGet(variacion);
+				pendientesProductos.computeIfAbsent(id, k -> new AtomicLong()).addAndGet(variacion);
+				return (int) resultado;
+			} finally {
+				contadoresLock.readLock().unlock();
+			}
+		}
+	}
+
+	private boolean isCurrent(Long id, AtomicLong unidades, List<ConsumoDTO> consumosProducto,
+			AtomicLong[] contadoresMp) {
+		if (productos.get(id) != unidades) {
+			return false;
+		}
+		for (int i = 0; i < contadoresMp.length; i++) {
+			if (materiasPrimas.get(consumosProducto.get(i).getIdMateriaPrima()) != contadoresMp[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Se llama con el cerrojo de lectura de los contadores. Cada consumo se
+	 * redondea a unidades enteras con
+	 * {@link ConsumoUtils#unidadesConsumidas(int, ConsumoDTO)}, igual que en la
+	 * comprobación sin ledger y en el UPDATE.
+	 */
+	private void descontarMateriasPrimas(List<ConsumoDTO> consumosProducto, AtomicLong[] contadoresMp,
+			int variacion) throws StockException {
+
+		AtomicLong[] descontadas = new AtomicLong[contadoresMp.length];
+		boolean ok = false;
+		try {
+			for (int i = 0; i < descontadas.length; i++) {
+				ConsumoDTO consumo = consumosProducto.get(i);
+				if (!subtractIfAvailable(contadoresMp[i], ConsumoUtils.unidadesConsumidas(variacion, consumo))) {
+					throw new StockException(
+							"No hay suficiente stock de la materia prima " + consumo.getIdMateriaPrima());
+				}
+				descontadas[i] = contadoresMp[i];
+			}
+			ok = true;
+		} finally {
+			for (int i = 0; i < descontadas.length && descontadas[i] != null; i++) {
+				ConsumoDTO consumo = consumosProducto.get(i);
+				long cantidad = ConsumoUtils.unidadesConsumidas(variacion, consumo);
+				if (ok) {
+					pendientesMateriasPrimas.computeIfAbsent(consumo.getIdMateriaPrima(), k -> new AtomicLong())
+							.addAndGet(cantidad);
+				} else {
+					// Alguna materia prima no tenía suficiente: se devuelven las
+					// unidades ya descontadas de las anteriores
+					descontadas[i].addAndGet(cantidad);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resta la cantidad solo si el valor no queda negativo. Las cantidades
+	 * negativas (devoluciones) siempre se aplican.
+	 * 
+	 * @return Si se ha restado la cantidad.
+	 */
+	private static boolean subtractIfAvailable(AtomicLong contador, long cantidad) {
+		while (true) {
+			long actual = contador.get();
+			long siguiente = actual - cantidad;
+			if (cantidad > 0 && siguiente < 0) {
+				return false;
+			}
+			if (contador.compareAndSet(actual, siguiente)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Calcula las unidades del producto que se pueden fabricar con el stock de
+	 * materias primas del ledger.
+	 *
+	 * @return Unidades fabricables, o null si el producto no existe.
+	 */
+	public Fabricables getFabricables(Long idProducto) throws DataException {
+		ensureLoaded();
+		if (getOrLoadProducto(idProducto) == null) {
+			return null;
+		}
+		List<ConsumoDTO> consumosProducto = consumoTable.get(idProducto);
+		Map<Long, Long> disponibles = new HashMap<Long, Long>();
+		for (ConsumoDTO consumo : consumosProducto) {
+			AtomicLong mp = getOrLoadMateriaPrima(consumo.getIdMateriaPrima());
+			if (mp != null) {
+				disponibles.put(consumo.getIdMateriaPrima(), mp.get());
+			}
+		}
+		return ConsumoUtils.fabricables(idProducto, consumosProducto, disponibles);
+	}
+
+	/**
+	 * @return Unidades del producto según el ledger, o null si no está cargado.
+	 */
+	public Integer getUnidadesProducto(Long id) {
+		AtomicLong unidades = productos.get(id);
+		return unidades == null ? null : (int) unidades.get();
+	}
+
+	/**
+	 * @return Unidades de la materia prima según el ledger, o null si no está
+	 *         cargada.
+	 */
+	public Integer getUnidadesMateriaPrima(Long id) {
+		AtomicLong unidades = materiasPrimas.get(id);
+		return unidades == null ? null : (int) unidades.get();
+	}
+
+	/**
+	 * Escribe en base de datos las variaciones acumuladas desde el último flush,
+	 * agrupadas por id, en una única transacción. Si falla se vuelven a dejar
+	 * pendientes.
+	 */
+	public void flush() throws DataException {
+		synchronized (dbLock) {
+			Map<Long, Integer> variaciones = new TreeMap<Long, Integer>();
+			for (Map.Entry<Long, AtomicLong> pendiente : pendientesProductos.entrySet()) {
+				long variacion = pendiente.getValue().getAndSet(0);
+				if (variacion != 0) {
+					variaciones.put(pendiente.getKey(), (int) variacion);
+				}
+			}
+			Map<Long, Long> descuentos = new TreeMap<Long, Long>();
+			for (Map.Entry<Long, AtomicLong> pendiente : pendientesMateriasPrimas.entrySet()) {
+				long descuento = pendiente.getValue().getAndSet(0);
+				if (descuento != 0) {
+					descuentos.put(pendiente.getKey(), descuento);
+				}
+			}
+			if (variaciones.isEmpty() && descuentos.isEmpty()) {
+				return;
+			}
+
+			Connection c = null;
+			boolean commit = false;
+			boolean escrito = false;
+			try {
+				c = getConnection();
+				c.setAutoCommit(false);
+				stockDAO.updateStockProductos(c, variaciones);
+				stockDAO.updateStockMateriasPrimas(c, descuentos);
+				commit = true;
+			} catch (SQLException e) {
+				logger.error(e.getMessage(), e);
+				throw new DataException(e);
+			} finally {
+				try {
+					JDBCUtils.close(c, commit);
+					escrito = commit;
+				} finally {
+					if (escrito) {
+						flushes.incrementAndGet();
+						filasEscritas.addAndGet(variaciones.size() + descuentos.size());
+					} else {
+						erroresFlush.incrementAndGet();
+						restorePendientes(variaciones, descuentos);
+					}
+				}
+			}
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (Exception e) {
+			logger.error("Error al escribir el stock pendiente; se reintentará en el siguiente flush", e);
+		}
+	}
+
+	private void restorePendientes(Map<Long, Integer> variaciones, Map<Long, Long> descuentos) {
+		for (Map.Entry<Long, Integer> variacion : variaciones.entrySet()) {
+			pendientesProductos.computeIfAbsent(variacion.getKey(), k -> new AtomicLong())
+					.addAndGet(variacion.getValue());
+		}
+		for (Map.Entry<Long, Long> descuento : descuentos.entrySet()) {
+			pendientesMateriasPrimas.computeIfAbsent(descuento.getKey(), k -> new AtomicLong())
+					.addAndGet(descuento.getValue());
+		}
+	}
+
+	/**
+	 * Escribe lo pendiente y descarta el producto, que se volverá a cargar en su
+	 * siguiente uso. Sus consumos los invalida en la {@link ConsumoTable} quien
+	 * los modifica.
+	 */
+	public void evictProducto(Long id) throws DataException {
+		synchronized (dbLock) {
+			flush();
+			productos.remove(id);
+		}
+	}
+
+	/**
+	 * Escribe lo pendiente y descarta la materia prima, que se volverá a cargar en
+	 * su siguiente uso.
+	 */
+	public void evictMateriaPrima(Long id) throws DataException {
+		synchronized (dbLock) {
+			flush();
+			materiasPrimas.remove(id);
+		}
+	}
+
+	public StockLedgerStats getStats() {
+		StockLedgerStats stats = new StockLedgerStats();
+		stats.setCargado(cargado);
+		stats.setProductos(productos.size());
+		stats.setMateriasPrimas(materiasPrimas.size());
+		int pendientes = 0;
+		for (AtomicLong pendiente : pendientesProductos.values()) {
+			if (pendiente.get() != 0) {
+				pendientes++;
+			}
+		}
+		for (AtomicLong pendiente : pendientesMateriasPrimas.values()) {
+			if (pendiente.get() != 0) {
+				pendientes++;
+			}
+		}
+		stats.setPendientes(pendientes);
+		stats.setFlushes(flushes.get());
+		stats.setFilasEscritas(filasEscritas.get());
+		stats.setErroresFlush(erroresFlush.get());
+		return stats;
+	}
+
+	/**
+	 * Conexión de las cargas y los flushes; los tests la sustituyen.
+	 */
+	Connection getConnection() throws SQLException {
+		return ConnectionPools.getConnection();
+	}
+
+	private void ensureLoaded() throws DataException {
+		if (cargado) {
+			return;
+		}
+		synchronized (dbLock) {
+			if (cargado) {
+				return;
+			}
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = getConnection();
+				c.setAutoCommit(false);
+				for (Map.Entry<Long, Integer> p : stockDAO.findAllUnidadesProductos(c).entrySet()) {
+					productos.put(p.getKey(), new AtomicLong(p.getValue()));
+				}
+				for (Map.Entry<Long, Integer> mp : stockDAO.findAllUnidadesMateriasPrimas(c).entrySet()) {
+					materiasPrimas.put(mp.getKey(), new AtomicLong(mp.getValue()));
+				}
+				commit = true;
+				cargado = true;
+				logger.info("Stock cargado: {} productos, {} materias primas", productos.size(), materiasPrimas.size());
+			} catch (SQLException e) {
+				logger.error(e.getMessage(), e);
+				throw new DataException(e);
+			} finally {
+				JDBCUtils.close(c, commit);
+			}
+		}
+	}
+
+	private AtomicLong getOrLoadProducto(Long id) throws DataException {
+		AtomicLong unidades = productos.get(id);
+		if (unidades != null) {
+			return unidades;
+		}
+		synchronized (dbLock) {
+			unidades = productos.get(id);
+			if (unidades != null) {
+				return unidades;
+			}
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = getConnection();
+				c.setAutoCommit(false);
+				Integer enBD = stockDAO.lockProductos(c, Collections.singletonList(id)).get(id);
+				if (enBD != null) {
+					contadoresLock.writeLock().lock();
+					try {
+						AtomicLong pendiente = pendientesProductos.get(id);
+						unidades = new AtomicLong(enBD + (pendiente == null ? 0 : pendiente.get()));
+						productos.put(id, unidades);
+					} finally {
+						contadoresLock.writeLock().unlock();
+					}
+				}
+				commit = true;
+			} catch (SQLException e) {
+				logger.error("Producto: {}", id, e);
+				throw new DataException(e);
+			} finally {
+				JDBCUtils.close(c, commit);
+			}
+			return unidades;
+		}
+	}
+
+	private AtomicLong getOrLoadMateriaPrima(Long id) throws DataException {
+		AtomicLong unidades = materiasPrimas.get(id);
+		if (unidades != null) {
+			return unidades;
+		}
+		synchronized (dbLock) {
+			unidades = materiasPrimas.get(id);
+			if (unidades != null) {
+				return unidades;
+			}
+			Connection c = null;
+			boolean commit = false;
+			try {
+				c = getConnection();
+				c.setAutoCommit(false);
+				Integer enBD = stockDAO.lockMateriasPrimas(c, Collections.singletonList(id)).get(id);
+				if (enBD != null) {
+					contadoresLock.writeLock().lock();
+					try {
+						AtomicLong pendiente = pendientesMateriasPrimas.get(id);
+						unidades = new AtomicLong(enBD - (pendiente == null ? 0 : pendiente.get()));
+						materiasPrimas.put(id, unidades);
+					} finally {
+						contadoresLock.writeLock().unlock();
+					}
+				}
+				commit = true;
+			} catch (SQLException e) {
+				logger.error("Materia prima: {}", id, e);
+				throw new DataException(e);
+			} finally {
+				JDBCUtils.close(c, commit);
+			}
+			return unidades;
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.pinguela.reflejovision.rest.stock;
+
+public class StockLedgerStats {
+
+	private boolean cargado = false;
+	private int productos = 0;
+	private int materiasPrimas = 0;
+	private int pendientes = 0;
+	private long flushes = 0;
+	private long filasEscritas = 0;
+	private long erroresFlush = 0;
+
+	public StockLedgerStats() {
+	}
+
+	public boolean isCargado() {
+		return cargado;
+	}
+
+	public void setCargado(boolean cargado) {
+		this.cargado = cargado;
+	}
+
+	public int getProductos() {
+		return productos;
+	}
+
+	public void setProductos(int productos) {
+		this.productos = productos;
+	}
+
+	public int getMateriasPrimas() {
+		return materiasPrimas;
+	}
+
+	public void setMateriasPrimas(int materiasPrimas) {
+		this.materiasPrimas = materiasPrimas;
+	}
+
+	/**
+	 * @return Número de productos y materias primas con variaciones aún no
+	 *         escritas en base de datos.
+	 */
+	public int getPendientes() {
+		return pendientes;
+	}
+
+	public void setPendientes(int pendientes) {
+		this.pendientes = pendientes;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	public void setFlushes(long flushes) {
+		this.flushes = flushes;
+	}
+
+	public long getFilasEscritas() {
+		return filasEscritas;
+	}
+
+	public void setFilasEscritas(long filasEscritas) {
+		this.filasEscritas = filasEscritas;
+	}
+
+	public long getErroresFlush() {
+		return erroresFlush;
+	}
+
+	public void setErroresFlush(long erroresFlush) {
+		this.erroresFlush = erroresFlush;
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.pinguela.reflejovision.rest.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.luis.reflejovision.conf.ConfigurationParametersManager;
+
+/**
+ * Lectura tipada de los parámetros de reflejovision-cfg.properties con valor
+ * por defecto cuando el parámetro no existe o no es válido.
+ */
+public class ConfigUtils {
+
+	private static Logger logger = LogManager.getLogger(ConfigUtils.class);
+
+	public static final String getString(String name, String defaultValue) {
+		String value = ConfigurationParametersManager.getParameterValue(name);
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+	}
+
+	public static final int getInt(String name, int defaultValue) {
+		String value = getString(name, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			logger.warn("Valor no válido para {}: {}. Se usa {}", name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public static final long getLong(String name, long defaultValue) {
+		String value = getString(name, null);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			logger.warn("Valor no válido para {}: {}. Se usa {}", name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public static final boolean getBoolean(String name, boolean defaultValue) {
+		String value = getString(name, null);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.List;
+import java.util.Map;
+
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.pinguela.reflejovision.rest.model.Fabricables;
+
+/**
+ * Cálculos sobre los consumos de materias primas de un producto.
+ */
+public class ConsumoUtils {
+
+	// Margen para que, por ejemplo, 0.3 / 0.1 cuente como 3 unidades y no como 2
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Unidades de la materia prima que consume una variación de stock del
+	 * producto. MATERIAPRIMA.UNIDADES es entero, así que cada movimiento se
+	 * redondea hacia arriba en valor absoluto (una devolución repone lo mismo
+	 * que descontó el movimiento original). La comprobación de stock, los
+	 * contadores del ledger y el UPDATE usan este mismo valor, de modo que la
+	 * memoria no se separa de lo que guarda la base de datos.
+	 */
+	public static final long unidadesConsumidas(int variacion, ConsumoDTO consumo) {
+		if (consumo.getUnidades() == null) {
+			return 0;
+		}
+		double cantidad = variacion * consumo.getUnidades();
+		long redondeada = (long) Math.ceil(Math.abs(cantidad) - EPSILON);
+		return cantidad < 0 ? -redondeada : redondeada;
+	}
+
+	/**
+	 * Calcula cuántas unidades del producto se pueden fabricar: para cada
+	 * materia prima, las unidades disponibles entre las que consume una unidad
+	 * del producto, y de todas la menor. Las materias primas sin stock
+	 * conocido cuentan como agotadas.
+	 *
+	 * @param disponibles Unidades de cada materia prima, por id.
+	 */
+	public static final Fabricables fabricables(Long idProducto, List<ConsumoDTO> consumos,
+			Map<Long, ? extends Number> disponibles) {
+
+		Fabricables fabricables = new Fabricables();
+		fabricables.setIdProducto(idProducto);
+		long minimo = Long.MAX_VALUE;
+		for (ConsumoDTO consumo : consumos) {
+			if (consumo.getUnidades() == null || consumo.getUnidades() <= 0) {
+				continue;
+			}
+			Number disponible = disponibles.get(consumo.getIdMateriaPrima());
+			double unidades = disponible == null ? 0 : Math.max(0, disponible.doubleValue());
+			long posibles = (long) Math.floor(unidades / consumo.getUnidades() + EPSILON);
+			if (posibles < minimo) {
+				minimo = posibles;
+				fabricables.setIdMateriaPrimaLimitante(consumo.getIdMateriaPrima());
+			}
+		}
+		if (fabricables.getIdMateriaPrimaLimitante() != null) {
+			fabricables.setUnidades((int) Math.min(minimo, Integer.MAX_VALUE));
+		}
+		return fabricables;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Codificación de los cursores opacos usados en la paginación por keyset.
+ * Un cursor es la tupla de valores de la última fila devuelta, codificada en
+ * Base64 URL-safe para que el cliente no dependa de su contenido.
+ */
+public class CursorUtils {
+
+	public static final int DEFAULT_LIMIT = 10;
+	public static final int MAX_LIMIT = 100;
+
+	private static final String VERSION = "1";
+	private static final String SEPARATOR = "\u001F";
+
+	public static final String encode(String... values) {
+		StringBuilder sb = new StringBuilder(VERSION);
+		for (String value : values) {
+			sb.append(SEPARATOR).append(value == null ? "" : value);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return Los valores del cursor, o null si el cursor es null o vacío.
+	 * @throws IllegalArgumentException si el cursor no es válido.
+	 */
+	public static final List<String> decode(String cursor) {
+		if (cursor == null || cursor.isEmpty()) {
+			return null;
+		}
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+		}
+		String[] parts = decoded.split(SEPARATOR, -1);
+		if (parts.length < 2 || !VERSION.equals(parts[0])) {
+			throw new IllegalArgumentException("Cursor inválido: " + cursor);
+		}
+		return Arrays.asList(parts).subList(1, parts.length);
+	}
+
+	public static final String encodeId(Long id) {
+		return encode(String.valueOf(id));
+	}
+
+	/**
+	 * @return El último id del cursor, o null si no se ha indicado cursor.
+	 * @throws IllegalArgumentException si el cursor no es válido.
+	 */
+	public static final Long decodeId(String cursor) {
+		List<String> values = decode(cursor);
+		if (values == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(values.get(0));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+		}
+	}
+
+	/**
+	 * Acota el tamaño de página solicitado a [1, MAX_LIMIT].
+	 */
+	public static final int normalizeLimit(Integer limit) {
+		if (limit == null || limit <= 0) {
+			return DEFAULT_LIMIT;
+		}
+		return Math.min(limit, MAX_LIMIT);
+	}
+
+}
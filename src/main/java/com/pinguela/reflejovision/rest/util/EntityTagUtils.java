@@ -0,0 +1,144 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+import javax.ws.rs.core.EntityTag;
+
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.Usuario;
+import com.pinguela.reflejovision.rest.model.CursorResults;
+
+/**
+ * Cálculo de ETags fuertes a partir del contenido de las entidades. El hash
+ * se calcula recorriendo los campos del modelo en lugar de serializar la
+ * entidad a JSON, de forma que responder con un 304 no cuesta la
+ * serialización que se pretende ahorrar.
+ * <p>
+ * Todos los campos que aparecen en la representación JSON deben participar en
+ * el hash: si se añade un campo al modelo hay que añadirlo también aquí.
+ */
+public class EntityTagUtils {
+
+	private static final String ALGORITHM = "SHA-256";
+	// 128 bits son más que suficientes para distinguir versiones de un recurso
+	private static final int LENGTH = 16;
+
+	public static final EntityTag of(Producto p) {
+		Hasher h = new Hasher();
+		append(h, p);
+		return h.toEntityTag();
+	}
+
+	public static final EntityTag of(MateriaPrimaDTO mp) {
+		Hasher h = new Hasher();
+		append(h, mp);
+		return h.toEntityTag();
+	}
+
+	public static final EntityTag of(Usuario u) {
+		Hasher h = new Hasher();
+		append(h, u);
+		return h.toEntityTag();
+	}
+
+	public static final EntityTag ofProductos(CursorResults<Producto> results) {
+		Hasher h = new Hasher();
+		appendHeader(h, results);
+		for (Producto p : results.getPage()) {
+			append(h, p);
+		}
+		return h.toEntityTag();
+	}
+
+	public static final EntityTag ofMateriasPrimas(CursorResults<MateriaPrimaDTO> results) {
+		Hasher h = new Hasher();
+		appendHeader(h, results);
+		for (MateriaPrimaDTO mp : results.getPage()) {
+			append(h, mp);
+		}
+		return h.toEntityTag();
+	}
+
+	private static void appendHeader(Hasher h, CursorResults<?> results) {
+		List<?> page = results.getPage();
+		h.add(results.getTotal()).add(results.getNextCursor()).add(page == null ? 0 : page.size());
+	}
+
+	private static void append(Hasher h, Producto p) {
+		h.add(p.getId()).add(p.getNombre()).add(p.getPrecio()).add(p.getUnidades());
+		List<ConsumoDTO> consumos = p.getConsumos();
+		h.add(consumos == null ? -1 : consumos.size());
+		if (consumos != null) {
+			for (ConsumoDTO c : consumos) {
+				h.add(c.getIdProducto()).add(c.getIdMateriaPrima()).add(c.getNombreMateriaPrima())
+						.add(c.getIdUnidadMedidaMp()).add(c.getPrecioMateriaPrima()).add(c.getUnidades());
+			}
+		}
+	}
+
+	private static void append(Hasher h, MateriaPrimaDTO mp) {
+		h.add(mp.getId()).add(mp.getNombre()).add(mp.getPrecio()).add(mp.getUnidades())
+				.add(mp.getIdUnidadMedida());
+		List<MateriaPrimaIdioma> traducciones = mp.getTraducciones();
+		h.add(traducciones == null ? -1 : traducciones.size());
+		if (traducciones != null) {
+			for (MateriaPrimaIdioma t : traducciones) {
+				h.add(t.getIdMateriaPrima()).add(t.getLocale()).add(t.getNombre());
+			}
+		}
+	}
+
+	/**
+	 * La contraseña queda fuera: no se lee al buscar usuarios y no debe poder
+	 * deducirse nada de ella a partir del ETag.
+	 */
+	private static void append(Hasher h, Usuario u) {
+		h.add(u.getId()).add(u.getUsername()).add(u.getNombre()).add(u.getRol()).add(u.getCorreo());
+	}
+
+	/**
+	 * Acumula los valores en el digest separándolos para que, por ejemplo,
+	 * ("ab", "c") y ("a", "bc") no produzcan el mismo hash.
+	 */
+	private static class Hasher {
+
+		private static final byte SEPARATOR = 0x1F;
+		private static final byte NULL = 0x00;
+
+		private final MessageDigest digest;
+
+		private Hasher() {
+			try {
+				digest = MessageDigest.getInstance(ALGORITHM);
+			} catch (NoSuchAlgorithmException e) {
+				// Todas las JVM están obligadas a soportar SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private Hasher add(Object value) {
+			if (value == null) {
+				digest.update(NULL);
+			} else {
+				digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			digest.update(SEPARATOR);
+			return this;
+		}
+
+		private EntityTag toEntityTag() {
+			byte[] hash = digest.digest();
+			byte[] truncated = new byte[LENGTH];
+			System.arraycopy(hash, 0, truncated, 0, LENGTH);
+			return new EntityTag(Base64.getUrlEncoder().withoutPadding().encodeToString(truncated));
+		}
+	}
+
+}
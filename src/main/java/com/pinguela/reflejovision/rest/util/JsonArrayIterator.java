@@ -0,0 +1,87 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbException;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Lee un array JSON de objetos elemento a elemento con el parser en streaming
+ * de JSON-P, de modo que solo el elemento actual está en memoria. Cada objeto
+ * se convierte al tipo indicado con JSON-B.
+ * <p>
+ * Los errores de formato se lanzan como IllegalArgumentException indicando la
+ * posición del elemento.
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+	// Jsonb es thread-safe y costoso de crear: se comparte una única instancia
+	private static final Jsonb jsonb = JsonbBuilder.create();
+
+	private final JsonParser parser;
+	private final Class<T> type;
+	private Event siguiente = null;
+	private int posicion = 0;
+
+	/**
+	 * @throws IllegalArgumentException si la entrada no empieza por un array.
+	 */
+	public JsonArrayIterator(InputStream in, Class<T> type) {
+		this.parser = Json.createParser(in);
+		this.type = type;
+		try {
+			if (!parser.hasNext() || parser.next() != Event.START_ARRAY) {
+				throw new IllegalArgumentException("Se esperaba un array JSON");
+			}
+		} catch (JsonException e) {
+			throw new IllegalArgumentException("JSON inválido: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (siguiente == null) {
+			try {
+				siguiente = parser.next();
+			} catch (JsonException | NoSuchElementException e) {
+				throw new IllegalArgumentException("JSON inválido en el elemento " + posicion + ": " + e.getMessage(), e);
+			}
+		}
+		if (siguiente == Event.END_ARRAY) {
+			return false;
+		}
+		if (siguiente != Event.START_OBJECT) {
+			throw new IllegalArgumentException("El elemento " + posicion + " no es un objeto JSON");
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		try {
+			return jsonb.fromJson(parser.getObject().toString(), type);
+		} catch (JsonException | JsonbException e) {
+			throw new IllegalArgumentException("JSON inválido en el elemento " + posicion + ": " + e.getMessage(), e);
+		} finally {
+			siguiente = null;
+			posicion++;
+		}
+	}
+
+	@Override
+	public void close() {
+		parser.close();
+	}
+
+}
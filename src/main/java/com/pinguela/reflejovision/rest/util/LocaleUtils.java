@@ -0,0 +1,97 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Negociación del idioma de las respuestas entre los idiomas configurados en
+ * locale.supported. El parámetro locale tiene prioridad sobre la cabecera
+ * Accept-Language; si no se indica ninguno de los dos se usa locale.default.
+ */
+public class LocaleUtils {
+
+	public static final String DEFAULT_LOCALE = ConfigUtils.getString("locale.default", "es");
+
+	private static final List<String> SUPPORTED = parseSupported(ConfigUtils.getString("locale.supported", "es,en,gl_ES"));
+
+	public static final List<String> getSupported() {
+		return SUPPORTED;
+	}
+
+	/**
+	 * @param locale     Valor del parámetro locale, o null.
+	 * @param acceptable Idiomas de Accept-Language por orden de preferencia.
+	 * @return El idioma soportado que mejor encaja.
+	 * @throws IllegalArgumentException si se indica un parámetro locale que no
+	 *                                  está soportado.
+	 */
+	public static final String negotiate(String locale, List<Locale> acceptable) {
+		if (locale != null && !locale.trim().isEmpty()) {
+			String supported = findSupported(locale.trim().replace('-', '_'));
+			if (supported == null) {
+				throw new IllegalArgumentException(
+						"Idioma no soportado: " + locale + ". Idiomas soportados: " + String.join(", ", SUPPORTED));
+			}
+			return supported;
+		}
+		if (acceptable != null) {
+			for (Locale l : acceptable) {
+				// "*" llega como un Locale con idioma vacío o "*"
+				if (l.getLanguage().isEmpty() || "*".equals(l.getLanguage())) {
+					continue;
+				}
+				String supported = findSupported(l.toString());
+				if (supported == null) {
+					supported = findSupported(l.getLanguage());
+				}
+				if (supported != null) {
+					return supported;
+				}
+			}
+		}
+		return DEFAULT_LOCALE;
+	}
+
+	/**
+	 * @return El idioma en el formato de Content-Language (gl_ES -&gt; gl-ES).
+	 */
+	public static final String toLanguageTag(String locale) {
+		return locale.replace('_', '-');
+	}
+
+	/**
+	 * Busca el idioma sin distinguir mayúsculas; un idioma sin país (gl)
+	 * encaja con el primer idioma soportado de esa lengua (gl_ES).
+	 */
+	private static String findSupported(String tag) {
+		for (String s : SUPPORTED) {
+			if (s.equalsIgnoreCase(tag)) {
+				return s;
+			}
+		}
+		if (tag.indexOf('_') < 0) {
+			for (String s : SUPPORTED) {
+				if (s.toLowerCase().startsWith(tag.toLowerCase() + "_")) {
+					return s;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static List<String> parseSupported(String value) {
+		List<String> supported = new ArrayList<String>();
+		for (String s : value.split(",")) {
+			if (!s.trim().isEmpty()) {
+				supported.add(s.trim());
+			}
+		}
+		if (supported.isEmpty()) {
+			supported.add(DEFAULT_LOCALE);
+		}
+		return Collections.unmodifiableList(supported);
+	}
+
+}
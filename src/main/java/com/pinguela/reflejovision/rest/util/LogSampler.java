@@ -0,0 +1,43 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Muestreo de las trazas informativas de un endpoint. Con
+ * log.sample.&lt;endpoint&gt;=N solo se registra, de media, una de cada N
+ * peticiones; con N=1 (valor por defecto) se registran todas. Los avisos y
+ * errores no se muestrean nunca.
+ * <p>
+ * La decisión es aleatoria en lugar de usar un contador compartido para que los
+ * hilos que atienden peticiones no compitan por la misma variable.
+ */
+public class LogSampler {
+
+	private final String endpoint;
+	private final int rate;
+
+	private LogSampler(String endpoint, int rate) {
+		this.endpoint = endpoint;
+		this.rate = Math.max(1, rate);
+	}
+
+	public static final LogSampler forEndpoint(String endpoint) {
+		return new LogSampler(endpoint, ConfigUtils.getInt("log.sample." + endpoint, 1));
+	}
+
+	/**
+	 * @return true si esta petición debe registrarse.
+	 */
+	public boolean sample() {
+		return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public int getRate() {
+		return rate;
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.model.MateriaPrimaCriteria;
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.MateriaPrimaIdioma;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+
+/**
+ * Copias de los objetos del modelo. Los objetos guardados en caché no se
+ * entregan nunca directamente, porque los recursos los modifican antes de
+ * actualizarlos.
+ */
+public class ModelUtils {
+
+	public static final Producto copy(Producto p) {
+		if (p == null) {
+			return null;
+		}
+		Producto copy = new Producto();
+		copy.setId(p.getId());
+		copy.setNombre(p.getNombre());
+		copy.setPrecio(p.getPrecio());
+		copy.setUnidades(p.getUnidades());
+		if (p.getConsumos() != null) {
+			List<ConsumoDTO> consumos = new ArrayList<ConsumoDTO>(p.getConsumos().size());
+			for (ConsumoDTO consumo : p.getConsumos()) {
+				consumos.add(copy(consumo));
+			}
+			copy.setConsumos(consumos);
+		}
+		return copy;
+	}
+
+	public static final ConsumoDTO copy(ConsumoDTO c) {
+		if (c == null) {
+			return null;
+		}
+		ConsumoDTO copy = new ConsumoDTO();
+		copy.setIdProducto(c.getIdProducto());
+		copy.setIdMateriaPrima(c.getIdMateriaPrima());
+		copy.setNombreMateriaPrima(c.getNombreMateriaPrima());
+		copy.setIdUnidadMedidaMp(c.getIdUnidadMedidaMp());
+		copy.setPrecioMateriaPrima(c.getPrecioMateriaPrima());
+		copy.setUnidades(c.getUnidades());
+		return copy;
+	}
+
+	public static final MateriaPrimaDTO copy(MateriaPrimaDTO mp) {
+		if (mp == null) {
+			return null;
+		}
+		MateriaPrimaDTO copy = new MateriaPrimaDTO();
+		copy.setId(mp.getId());
+		copy.setNombre(mp.getNombre());
+		copy.setPrecio(mp.getPrecio());
+		copy.setUnidades(mp.getUnidades());
+		copy.setIdUnidadMedida(mp.getIdUnidadMedida());
+		if (mp.getTraducciones() != null) {
+			List<MateriaPrimaIdioma> traducciones = new ArrayList<MateriaPrimaIdioma>(mp.getTraducciones().size());
+			for (MateriaPrimaIdioma traduccion : mp.getTraducciones()) {
+				traducciones.add(copy(traduccion));
+			}
+			copy.setTraducciones(traducciones);
+		}
+		return copy;
+	}
+
+	public static final MateriaPrimaIdioma copy(MateriaPrimaIdioma mpi) {
+		if (mpi == null) {
+			return null;
+		}
+		MateriaPrimaIdioma copy = new MateriaPrimaIdioma();
+		copy.setIdMateriaPrima(mpi.getIdMateriaPrima());
+		copy.setLocale(mpi.getLocale());
+		copy.setNombre(mpi.getNombre());
+		return copy;
+	}
+
+	public static final ProductoCriteria copy(ProductoCriteria pc) {
+		if (pc == null) {
+			return null;
+		}
+		ProductoCriteria copy = new ProductoCriteria();
+		copy.setId(pc.getId());
+		copy.setNombre(pc.getNombre());
+		copy.setPrecioDesde(pc.getPrecioDesde());
+		copy.setPrecioHasta(pc.getPrecioHasta());
+		copy.setUnidadesDesde(pc.getUnidadesDesde());
+		copy.setUnidadesHasta(pc.getUnidadesHasta());
+		copy.setOrderBy(pc.getOrderBy());
+		copy.setAscDesc(pc.getAscDesc());
+		copy.setLocale(pc.getLocale());
+		return copy;
+	}
+
+	public static final MateriaPrimaCriteria copy(MateriaPrimaCriteria mpc) {
+		if (mpc == null) {
+			return null;
+		}
+		MateriaPrimaCriteria copy = new MateriaPrimaCriteria();
+		copy.setId(mpc.getId());
+		copy.setNombre(mpc.getNombre());
+		copy.setPrecioDesde(mpc.getPrecioDesde());
+		copy.setPrecioHasta(mpc.getPrecioHasta());
+		copy.setUnidadesDesde(mpc.getUnidadesDesde());
+		copy.setUnidadesHasta(mpc.getUnidadesHasta());
+		copy.setOrderBy(mpc.getOrderBy());
+		copy.setAscDesc(mpc.getAscDesc());
+		copy.setLocale(mpc.getLocale());
+		return copy;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pinguela.reflejovision.rest.model.MultiGetResults;
+
+/**
+ * Utilidades para las búsquedas por lista de ids (GET ?ids=1,2,3).
+ */
+public class MultiGetUtils {
+
+	public static final int MAX_IDS = ConfigUtils.getInt("multiget.max", 100);
+
+	/**
+	 * Convierte una lista de ids separados por comas conservando el orden y los
+	 * repetidos.
+	 *
+	 * @throws IllegalArgumentException si la lista está vacía, supera
+	 *                                  {@link #MAX_IDS} o contiene algún id no
+	 *                                  numérico.
+	 */
+	public static final List<Long> parseIds(String ids) {
+		if (ids == null || ids.trim().isEmpty()) {
+			throw new IllegalArgumentException("Debe indicarse al menos un id.");
+		}
+		String[] parts = ids.split(",");
+		if (parts.length > MAX_IDS) {
+			throw new IllegalArgumentException("No se pueden solicitar más de " + MAX_IDS + " ids.");
+		}
+		List<Long> result = new ArrayList<Long>(parts.length);
+		for (String part : parts) {
+			try {
+				result.add(Long.valueOf(part.trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Id inválido: " + part.trim(), e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return Los ids sin repetidos, en el orden en que aparecen por primera vez.
+	 */
+	public static final Set<Long> distinct(List<Long> ids) {
+		return new LinkedHashSet<Long>(ids);
+	}
+
+	/**
+	 * Coloca las entidades encontradas en el orden de los ids solicitados.
+	 */
+	public static final <E> MultiGetResults<E> toResults(List<Long> ids, Map<Long, E> encontrados) {
+		MultiGetResults<E> results = new MultiGetResults<E>();
+		List<E> resultados = new ArrayList<E>(ids.size());
+		for (Long id : ids) {
+			E e = encontrados.get(id);
+			resultados.add(e);
+			if (e == null) {
+				results.getNoEncontrados().add(id);
+			}
+		}
+		results.setResultados(resultados);
+		return results;
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.pinguela.reflejovision.rest.dao.RowHandler;
+
+/**
+ * Escribe cada fila recibida como una línea NDJSON, volcando al cliente la
+ * primera fila en cuanto llega y después cada {@link NdjsonUtils#FLUSH_INTERVAL}
+ * filas.
+ */
+public class NdjsonRowHandler<T> implements RowHandler<T> {
+
+	private Writer writer = null;
+	private long rows = 0;
+
+	public NdjsonRowHandler(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void process(T row) throws IOException {
+		NdjsonUtils.writeLine(writer, row);
+		rows++;
+		if (rows == 1 || rows % NdjsonUtils.FLUSH_INTERVAL == 0) {
+			writer.flush();
+		}
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+
+/**
+ * Utilidades para escribir respuestas en formato NDJSON (un objeto JSON por
+ * línea).
+ */
+public class NdjsonUtils {
+
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	/**
+	 * Número de filas tras el cual se vuelca el buffer al cliente. La primera
+	 * fila se vuelca siempre de inmediato.
+	 */
+	public static final int FLUSH_INTERVAL = 500;
+
+	// Jsonb es thread-safe y costoso de crear: se comparte una única instancia
+	private static final Jsonb jsonb = JsonbBuilder.create();
+
+	public static final void writeLine(Writer writer, Object row) throws IOException {
+		writer.write(jsonb.toJson(row));
+		writer.write('\n');
+	}
+
+}
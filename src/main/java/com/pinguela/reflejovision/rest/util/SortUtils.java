@@ -0,0 +1,130 @@
+package com.pinguela.reflejovision.rest.util;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.luis.reflejovision.model.MateriaPrimaDTO;
+import com.luis.reflejovision.model.Producto;
+import com.luis.reflejovision.model.ProductoCriteria;
+import com.luis.reflejovision.util.ProductoIdComparator;
+
+/**
+ * Ordenación de las búsquedas: traduce los parámetros sort y dir a los
+ * ORDER_BY_* de los criterios (ProductoCriteria y MateriaPrimaCriteria usan
+ * los mismos valores) y construye los comparadores equivalentes para ordenar
+ * en memoria.
+ * <p>
+ * La ordenación se hace en SQL; los comparadores solo sirven para reordenar
+ * resultados que ya están en memoria y cuyos valores pueden diferir de los de
+ * base de datos, como las unidades del StockLedger.
+ */
+public class SortUtils {
+
+	public static final String ASC = "asc";
+	public static final String DESC = "desc";
+
+	private static final Map<String, String> CAMPOS = new LinkedHashMap<String, String>();
+
+	static {
+		CAMPOS.put("id", ProductoCriteria.ORDER_BY_ID);
+		CAMPOS.put("nombre", ProductoCriteria.ORDER_BY_NOMBRE);
+		CAMPOS.put("precio", ProductoCriteria.ORDER_BY_PRECIO);
+		CAMPOS.put("unidades", ProductoCriteria.ORDER_BY_UNIDADES);
+	}
+
+	/**
+	 * @return El ORDER_BY_* del campo indicado, o ORDER_BY_ID si es null.
+	 * @throws IllegalArgumentException si no se puede ordenar por ese campo.
+	 */
+	public static final String parseOrderBy(String sort) {
+		if (sort == null || sort.isEmpty()) {
+			return ProductoCriteria.ORDER_BY_ID;
+		}
+		String orderBy = CAMPOS.get(sort.toLowerCase(Locale.ROOT));
+		if (orderBy == null) {
+			throw new IllegalArgumentException(
+					"Ordenación no soportada: " + sort + ". Campos soportados: " + String.join(", ", CAMPOS.keySet()));
+		}
+		return orderBy;
+	}
+
+	/**
+	 * @return true para asc o null, false para desc.
+	 * @throws IllegalArgumentException si la dirección no es asc ni desc.
+	 */
+	public static final Boolean parseAscDesc(String dir) {
+		if (dir == null || dir.isEmpty() || ASC.equalsIgnoreCase(dir)) {
+			return Boolean.TRUE;
+		}
+		if (DESC.equalsIgnoreCase(dir)) {
+			return Boolean.FALSE;
+		}
+		throw new IllegalArgumentException("Dirección de ordenación no soportada: " + dir + ". Use asc o desc");
+	}
+
+	/**
+	 * @return El orderBy de los criterios, o ORDER_BY_ID si no tienen.
+	 */
+	public static final String orderBy(String orderBy) {
+		return orderBy == null ? ProductoCriteria.ORDER_BY_ID : orderBy;
+	}
+
+	/**
+	 * @return El ascDesc de los criterios; ascendente si no tienen.
+	 */
+	public static final boolean isAsc(Boolean ascDesc) {
+		return !Boolean.FALSE.equals(ascDesc);
+	}
+
+	/**
+	 * Comparador con el mismo orden que la consulta: por el campo indicado y, a
+	 * igualdad, por id en la misma dirección.
+	 */
+	public static final Comparator<Producto> productoComparator(String orderBy, boolean asc) {
+		// ProductoPrecioComparator no devuelve 0 con precios iguales, así que no
+		// admite desempate; se compara por precio aquí
+		Comparator<Producto> porId = new ProductoIdComparator();
+		Comparator<Producto> comparator = null;
+		switch (orderBy(orderBy)) {
+		case ProductoCriteria.ORDER_BY_NOMBRE:
+			comparator = Comparator.comparing(Producto::getNombre, String.CASE_INSENSITIVE_ORDER).thenComparing(porId);
+			break;
+		case ProductoCriteria.ORDER_BY_PRECIO:
+			comparator = Comparator.comparing(Producto::getPrecio).thenComparing(porId);
+			break;
+		case ProductoCriteria.ORDER_BY_UNIDADES:
+			comparator = Comparator.comparing(Producto::getUnidades).thenComparing(porId);
+			break;
+		default:
+			comparator = porId;
+		}
+		return asc ? comparator : comparator.reversed();
+	}
+
+	/**
+	 * Comparador con el mismo orden que la consulta: por el campo indicado y, a
+	 * igualdad, por id en la misma dirección.
+	 */
+	public static final Comparator<MateriaPrimaDTO> materiaPrimaComparator(String orderBy, boolean asc) {
+		Comparator<MateriaPrimaDTO> porId = Comparator.comparing(MateriaPrimaDTO::getId);
+		Comparator<MateriaPrimaDTO> comparator = null;
+		switch (orderBy(orderBy)) {
+		case ProductoCriteria.ORDER_BY_NOMBRE:
+			comparator = Comparator.comparing(MateriaPrimaDTO::getNombre, String.CASE_INSENSITIVE_ORDER)
+					.thenComparing(porId);
+			break;
+		case ProductoCriteria.ORDER_BY_PRECIO:
+			comparator = Comparator.comparing(MateriaPrimaDTO::getPrecio).thenComparing(porId);
+			break;
+		case ProductoCriteria.ORDER_BY_UNIDADES:
+			comparator = Comparator.comparing(MateriaPrimaDTO::getUnidades).thenComparing(porId);
+			break;
+		default:
+			comparator = porId;
+		}
+		return asc ? comparator : comparator.reversed();
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.pinguela.reflejovision.rest.idempotency;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Ciclo de vida de una Idempotency-Key en memoria: reserva, respuesta,
+ * repetición y caducidad.
+ */
+public class IdempotencyStoreTest {
+
+	private static final String KEY = "clave-1";
+	private static final String FINGERPRINT = "POST /producto 1234";
+
+	@Test
+	public void repiteLaRespuestaGuardada() {
+		IdempotencyStore store = new IdempotencyStore(null, 100, 3600, 300, 0);
+		assertNull(store.begin(KEY, FINGERPRINT));
+
+		Map<String, String> headers = Collections.singletonMap("Location", "/producto/7");
+		byte[] body = "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+		store.complete(KEY, FINGERPRINT, 201, headers, body);
+
+		IdempotencyRecord record = store.begin(KEY, FINGERPRINT);
+		assertTrue(record.isCompleted());
+		assertEquals(Integer.valueOf(201), record.getStatus());
+		assertEquals(headers, record.getHeaders());
+		assertArrayEquals(body, record.getBody());
+
+		IdempotencyStats stats = store.getStats();
+		assertEquals(1, stats.getNuevas());
+		assertEquals(1, stats.getRepetidas());
+		assertEquals(0, stats.getEnCursoActuales());
+	}
+
+	@Test
+	public void noEjecutaDosVecesUnaClaveEnCurso() {
+		IdempotencyStore store = new IdempotencyStore(null, 100, 3600, 300, 0);
+		assertNull(store.begin(KEY, FINGERPRINT));
+
+		IdempotencyRecord record = store.begin(KEY, FINGERPRINT);
+		assertFalse(record.isCompleted());
+		assertEquals(1, store.getStats().getEnCurso());
+		assertEquals(1, store.getStats().getEnCursoActuales());
+	}
+
+	@Test
+	public void devuelveElRegistroAUnaPeticionDistinta() {
+		IdempotencyStore store = new IdempotencyStore(null, 100, 3600, 300, 0);
+		assertNull(store.begin(KEY, FINGERPRINT));
+		store.complete(KEY, FINGERPRINT, 201, Collections.<String, String>emptyMap(), null);
+
+		// Quien llama compara el fingerprint y responde 422
+		IdempotencyRecord record = store.begin(KEY, "POST /producto 9999");
+		assertEquals(FINGERPRINT, record.getFingerprint());
+		assertEquals(1, store.getStats().getDistintas());
+	}
+
+	@Test
+	public void repiteElEstadoSinCuerpo() {
+		// Respuesta que no se ha podido guardar entera: se repite sin cuerpo
+		IdempotencyStore store = new IdempotencyStore(null, 100, 3600, 300, 0);
+		assertNull(store.begin(KEY, FINGERPRINT));
+		store.complete(KEY, FINGERPRINT, 201, Collections.<String, String>emptyMap(), null);
+
+		IdempotencyRecord record = store.begin(KEY, FINGERPRINT);
+		assertTrue(record.isCompleted());
+		assertEquals(Integer.valueOf(201), record.getStatus());
+		assertNull(record.getBody());
+	}
+
+	@Test
+	public void laClaveCaducadaSeVuelveAEjecutar() throws InterruptedException {
+		IdempotencyStore store = new IdempotencyStore(null, 100, 0, 300, 0);
+		assertNull(store.begin(KEY, FINGERPRINT));
+		store.complete(KEY, FINGERPRINT, 201, Collections.<String, String>emptyMap(), null);
+
+		Thread.sleep(5);
+		assertNull(store.begin(KEY, FINGERPRINT));
+		assertEquals(2, store.getStats().getNuevas());
+	}
+
+	@Test
+	public void descartaLasClavesMasAntiguas() {
+		IdempotencyStore store = new IdempotencyStore(null, 2, 3600, 300, 0);
+		for (int i = 1; i <= 3; i++) {
+			assertNull(store.begin("clave-" + i, FINGERPRINT));
+			store.complete("clave-" + i, FINGERPRINT, 200, Collections.<String, String>emptyMap(), null);
+		}
+		assertEquals(2, store.getStats().getEntradas());
+		assertNull(store.begin("clave-1", FINGERPRINT));
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.pinguela.reflejovision.rest.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Token bucket del {@link RateLimiter} con un reloj fijo: ráfaga, recarga y
+ * espera de Retry-After.
+ */
+public class RateLimiterTest {
+
+	// 10 peticiones por segundo (una cada 100 ms) con ráfagas de 3
+	private static final RateLimiter.Limit LIMIT = new RateLimiter.Limit("test", 10, 3);
+	private static final long INTERVALO = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long T0 = TimeUnit.SECONDS.toNanos(1000);
+
+	@Test
+	public void admiteLaRafagaYDespuesEspera() {
+		RateLimiter limiter = new RateLimiter(100, 0);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire("a", LIMIT, T0));
+		}
+		assertEquals(INTERVALO, limiter.acquire("a", LIMIT, T0));
+		assertEquals(INTERVALO / 2, limiter.acquire("a", LIMIT, T0 + INTERVALO / 2));
+
+		RateLimiterStats stats = limiter.getStats();
+		assertEquals(3, stats.getAdmitidas());
+		assertEquals(2, stats.getRechazadas());
+	}
+
+	@Test
+	public void recargaUnaPeticionPorIntervalo() {
+		RateLimiter limiter = new RateLimiter(100, 0);
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire("a", LIMIT, T0);
+		}
+		assertEquals(0, limiter.acquire("a", LIMIT, T0 + INTERVALO));
+		assertEquals(INTERVALO, limiter.acquire("a", LIMIT, T0 + INTERVALO));
+
+		// Tras un rato sin peticiones el bucket está lleno, no más que lleno
+		long despues = T0 + TimeUnit.SECONDS.toNanos(10);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire("a", LIMIT, despues));
+		}
+		assertEquals(INTERVALO, limiter.acquire("a", LIMIT, despues));
+	}
+
+	@Test
+	public void cadaClienteTieneSuBucket() {
+		RateLimiter limiter = new RateLimiter(100, 0);
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire("a", LIMIT, T0);
+		}
+		assertEquals(0, limiter.acquire("b", LIMIT, T0));
+		assertEquals(2, limiter.getStats().getClientes());
+	}
+
+	@Test
+	public void sinSitioParaMasClientesNoLimita() {
+		RateLimiter limiter = new RateLimiter(1, 0);
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire("a", LIMIT, T0);
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.acquire("b", LIMIT, T0));
+		}
+		assertEquals(5, limiter.getStats().getSinSeguimiento());
+	}
+
+	@Test
+	public void retryAfterRedondeaHaciaArriba() {
+		long segundo = TimeUnit.SECONDS.toNanos(1);
+		assertEquals(1, RateLimiter.getRetryAfterSeconds(1));
+		assertEquals(1, RateLimiter.getRetryAfterSeconds(INTERVALO));
+		assertEquals(1, RateLimiter.getRetryAfterSeconds(segundo));
+		assertEquals(2, RateLimiter.getRetryAfterSeconds(segundo + 1));
+		assertEquals(3, RateLimiter.getRetryAfterSeconds(3 * segundo));
+	}
+
+}
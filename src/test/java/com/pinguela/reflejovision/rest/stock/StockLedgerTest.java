@@ -0,0 +1,243 @@
+package com.pinguela.reflejovision.rest.stock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.luis.reflejovision.dao.DataException;
+import com.luis.reflejovision.model.ConsumoDTO;
+import com.luis.reflejovision.service.StockException;
+import com.pinguela.reflejovision.rest.cache.ConsumoTable;
+import com.pinguela.reflejovision.rest.dao.StockDAO;
+
+/**
+ * Comprobación de stock de materias primas y agrupación de las variaciones en
+ * los flushes, con un {@link StockDAO} en memoria.
+ */
+public class StockLedgerTest {
+
+	private static final Long PRODUCTO = 1L;
+	private static final Long MP_A = 10L;
+	private static final Long MP_B = 11L;
+
+	private StockDAOStub stockDAO = null;
+	private StockLedger ledger = null;
+
+	@BeforeEach
+	public void setUp() {
+		stockDAO = new StockDAOStub();
+		stockDAO.productos.put(PRODUCTO, 5);
+		stockDAO.materiasPrimas.put(MP_A, 100);
+		stockDAO.materiasPrimas.put(MP_B, 3);
+		// Cada unidad del producto consume 2 de A y 0,5 de B
+		stockDAO.consumos.put(PRODUCTO, Arrays.asList(consumo(MP_A, 2.0), consumo(MP_B, 0.5)));
+		ledger = new LedgerSinPool(stockDAO);
+	}
+
+	@Test
+	public void rechazaSinStockDeMateriaPrimaSinModificarNada() throws Exception {
+		// 8 unidades consumen 16 de A, que hay, y 4 de B, que no
+		assertThrows(StockException.class, () -> ledger.updateStockProducto(PRODUCTO, 8, true));
+
+		assertEquals(Integer.valueOf(5), ledger.getUnidadesProducto(PRODUCTO));
+		assertEquals(Integer.valueOf(100), ledger.getUnidadesMateriaPrima(MP_A));
+		assertEquals(Integer.valueOf(3), ledger.getUnidadesMateriaPrima(MP_B));
+		ledger.flush();
+		assertTrue(stockDAO.escriturasProductos.isEmpty());
+		assertTrue(stockDAO.escriturasMateriasPrimas.isEmpty());
+	}
+
+	@Test
+	public void redondeaCadaConsumoHaciaArriba() throws Exception {
+		// 0,5 de B por unidad: 3 movimientos de 1 unidad consumen 3, no 1,5
+		for (int i = 0; i < 3; i++) {
+			ledger.updateStockProducto(PRODUCTO, 1, true);
+		}
+		assertEquals(Integer.valueOf(0), ledger.getUnidadesMateriaPrima(MP_B));
+		assertThrows(StockException.class, () -> ledger.updateStockProducto(PRODUCTO, 1, true));
+	}
+
+	@Test
+	public void flushAgrupaLasVariacionesPorId() throws Exception {
+		ledger.updateStockProducto(PRODUCTO, 2, true);
+		ledger.updateStockProducto(PRODUCTO, 3, false);
+		ledger.updateStockProducto(PRODUCTO, -1, true);
+
+		assertEquals(Integer.valueOf(9), ledger.getUnidadesProducto(PRODUCTO));
+		assertEquals(Integer.valueOf(98), ledger.getUnidadesMateriaPrima(MP_A));
+		assertEquals(Integer.valueOf(3), ledger.getUnidadesMateriaPrima(MP_B));
+
+		ledger.flush();
+		assertEquals(1, stockDAO.escriturasProductos.size());
+		assertEquals(Collections.singletonMap(PRODUCTO, 4), stockDAO.escriturasProductos.get(0));
+		// B: +1 y -1 se anulan y no se escriben
+		assertEquals(Collections.singletonMap(MP_A, 2L), stockDAO.escriturasMateriasPrimas.get(0));
+
+		// Sin variaciones nuevas el siguiente flush no escribe
+		ledger.flush();
+		assertEquals(1, stockDAO.escriturasProductos.size());
+	}
+
+	@Test
+	public void flushFallidoDejaLasVariacionesPendientes() throws Exception {
+		ledger.updateStockProducto(PRODUCTO, 2, true);
+		stockDAO.fallar = true;
+		assertThrows(DataException.class, () -> ledger.flush());
+		assertEquals(1, ledger.getStats().getErroresFlush());
+
+		stockDAO.fallar = false;
+		ledger.updateStockProducto(PRODUCTO, 1, true);
+		ledger.flush();
+		assertEquals(Collections.singletonMap(PRODUCTO, 3), stockDAO.escriturasProductos.get(0));
+		Map<Long, Long> descuentos = new TreeMap<Long, Long>();
+		descuentos.put(MP_A, 6L);
+		descuentos.put(MP_B, 2L);
+		assertEquals(descuentos, stockDAO.escriturasMateriasPrimas.get(0));
+	}
+
+	private static ConsumoDTO consumo(Long idMateriaPrima, double unidades) {
+		ConsumoDTO consumo = new ConsumoDTO();
+		consumo.setIdProducto(PRODUCTO);
+		consumo.setIdMateriaPrima(idMateriaPrima);
+		consumo.setUnidades(unidades);
+		return consumo;
+	}
+
+	/**
+	 * Ledger con una conexión que no hace nada y los consumos del DAO.
+	 */
+	private static class LedgerSinPool extends StockLedger {
+
+		private LedgerSinPool(final StockDAOStub stockDAO) {
+			super(stockDAO, new ConsumoTable(stockDAO) {
+				@Override
+				public List<ConsumoDTO> get(Long idProducto) {
+					List<ConsumoDTO> consumos = stockDAO.consumos.get(idProducto);
+					return consumos == null ? Collections.<ConsumoDTO>emptyList() : consumos;
+				}
+			}, 0);
+		}
+
+		@Override
+		Connection getConnection() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, (proxy, method, args) -> null);
+		}
+
+	}
+
+	/**
+	 * Unidades en memoria; guarda cada escritura de variaciones.
+	 */
+	private static class StockDAOStub implements StockDAO {
+
+		private final Map<Long, Integer> productos = new HashMap<Long, Integer>();
+		private final Map<Long, Integer> materiasPrimas = new HashMap<Long, Integer>();
+		private final Map<Long, List<ConsumoDTO>> consumos = new HashMap<Long, List<ConsumoDTO>>();
+
+		private final List<Map<Long, Integer>> escriturasProductos = new ArrayList<Map<Long, Integer>>();
+		private final List<Map<Long, Long>> escriturasMateriasPrimas = new ArrayList<Map<Long, Long>>();
+		private boolean fallar = false;
+
+		@Override
+		public Map<Long, Integer> lockProductos(Connection c, Collection<Long> ids) {
+			return findUnidades(productos, ids);
+		}
+
+		@Override
+		public Map<Long, Integer> lockMateriasPrimas(Connection c, Collection<Long> ids) {
+			return findUnidades(materiasPrimas, ids);
+		}
+
+		@Override
+		public Map<Long, Integer> findUnidadesProductos(Connection c, Collection<Long> ids) {
+			return findUnidades(productos, ids);
+		}
+
+		@Override
+		public Map<Long, Integer> findUnidadesMateriasPrimas(Connection c, Collection<Long> ids) {
+			return findUnidades(materiasPrimas, ids);
+		}
+
+		@Override
+		public Map<Long, List<ConsumoDTO>> findConsumos(Connection c, Collection<Long> idsProducto) {
+			Map<Long, List<ConsumoDTO>> resultado = new HashMap<Long, List<ConsumoDTO>>();
+			for (Long id : idsProducto) {
+				resultado.put(id, consumos.getOrDefault(id, Collections.<ConsumoDTO>emptyList()));
+			}
+			return resultado;
+		}
+
+		@Override
+		public Map<Long, Integer> findAllUnidadesProductos(Connection c) {
+			return new HashMap<Long, Integer>(productos);
+		}
+
+		@Override
+		public Map<Long, Integer> findAllUnidadesMateriasPrimas(Connection c) {
+			return new HashMap<Long, Integer>(materiasPrimas);
+		}
+
+		@Override
+		public Map<Long, List<ConsumoDTO>> findAllConsumos(Connection c) {
+			return new HashMap<Long, List<ConsumoDTO>>(consumos);
+		}
+
+		@Override
+		public Map<Long, Double> findAllPreciosProductos(Connection c) {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public Map<Long, Double> findAllPreciosMateriasPrimas(Connection c) {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public Map<Long, Double> findPreciosMateriasPrimas(Connection c, Collection<Long> ids) {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public void updateStockProductos(Connection c, Map<Long, Integer> variaciones) throws DataException {
+			if (fallar) {
+				throw new DataException("Error simulado");
+			}
+			escriturasProductos.add(new TreeMap<Long, Integer>(variaciones));
+		}
+
+		@Override
+		public void updateStockMateriasPrimas(Connection c, Map<Long, Long> consumos) throws DataException {
+			if (fallar) {
+				throw new DataException("Error simulado");
+			}
+			escriturasMateriasPrimas.add(new TreeMap<Long, Long>(consumos));
+		}
+
+		private static Map<Long, Integer> findUnidades(Map<Long, Integer> unidades, Collection<Long> ids) {
+			Map<Long, Integer> resultado = new HashMap<Long, Integer>();
+			for (Long id : ids) {
+				if (unidades.containsKey(id)) {
+					resultado.put(id, unidades.get(id));
+				}
+			}
+			return resultado;
+		}
+
+	}
+
+}